@@ -45,10 +45,32 @@ public interface NetworkParticipant extends Connection {
      */
     MessagingService messagingService();
 
+    /**
+     * Returns this participant and the members of the {@link de.verdox.vpipeline.api.membership.MembershipService}.
+     * The objects only live in the local cache and are not synchronized with other participants.
+     *
+     * @deprecated participants are not written to the pipeline anymore. Use {@link #getRemoteAliveMessagingParticipants()} or the
+     * {@link de.verdox.vpipeline.api.membership.MembershipService} of the messaging service.
+     */
+    @Deprecated(forRemoval = true)
     Set<DataAccess<? extends RemoteParticipant>> getOnlineNetworkClients();
 
+    /**
+     * Returns this participant or a member of the {@link de.verdox.vpipeline.api.membership.MembershipService} with the given identifier.
+     * The object only lives in the local cache and is not synchronized with other participants.
+     *
+     * @return the participant or null if it is not online
+     * @deprecated participants are not written to the pipeline anymore. Use the {@link de.verdox.vpipeline.api.membership.MembershipService} of the messaging service.
+     */
+    @Deprecated(forRemoval = true)
     DataAccess<RemoteParticipant> getOnlineNetworkClient(String identifier);
 
+    /**
+     * Returns this participant. The object only lives in the local cache and is not synchronized with other participants.
+     *
+     * @deprecated participants are not written to the pipeline anymore. Use {@link #getIdentifier()} and {@link #getUUID()}.
+     */
+    @Deprecated(forRemoval = true)
     DataAccess<RemoteParticipant> getAsNetworkClient();
 
     default Set<RemoteMessageReceiver> getRemoteAliveMessagingParticipants(){
@@ -0,0 +1,58 @@
+package de.verdox.vpipeline.api.handoff;
+
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.enums.PreloadStrategy;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Moves the local cache of a node to other nodes so they don't have to load the objects from the global storage again.
+ * <p>
+ * A node that shuts down gracefully saves its objects as usual and streams the recently used ones to the other nodes.
+ * A node that joins the network pulls the objects of {@link PreloadStrategy#LOAD_BEFORE} types from the local cache of another node.
+ * Objects are transferred in chunks with a limited rate so the transfer does not congest the transmitter.
+ * Every node answers handoff requests, but only nodes with enabled handoff drain on shutdown and pull on preload.
+ */
+public interface CacheHandoff {
+    /**
+     * Checks if this node drains its local cache on shutdown and pulls preloaded data from other nodes
+     *
+     * @return true if the handoff is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Saves all objects of the local cache and streams the ones that were used within the hot window to the other nodes.
+     * The objects are spread over all nodes that accept the handoff. Objects are removed from the local cache afterwards.
+     *
+     * @return the amount of objects that were handed over
+     */
+    int drain();
+
+    /**
+     * Pulls all objects of a type from the local cache of another node. Objects that are already loaded on this node are kept.
+     *
+     * @param type the data class
+     * @return the uuids of the objects that were received
+     */
+    Set<UUID> pull(@NotNull Class<? extends IPipelineData> type);
+
+    /**
+     * @param chunkSize      the maximum size of one transferred chunk in bytes. Larger objects are sent in a chunk of their own.
+     * @param bytesPerSecond the maximum transfer rate of this node
+     * @param hotWindow      objects that were not used within this window are only saved but not handed over on shutdown
+     */
+    record Settings(int chunkSize, long bytesPerSecond, @NotNull Duration hotWindow) {
+        public static final Settings DEFAULT = new Settings(64 * 1024, 4 * 1024 * 1024, Duration.ofMinutes(10));
+
+        public Settings {
+            Objects.requireNonNull(hotWindow, "hotWindow can't be null!");
+            if (chunkSize <= 0 || bytesPerSecond <= 0)
+                throw new IllegalArgumentException("chunkSize and bytesPerSecond have to be positive");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package de.verdox.vpipeline.api.membership;
+
+import de.verdox.vpipeline.api.messaging.RemoteMessageReceiver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Keeps the view of the other participants that are online in memory, so reading it does not need a round trip.
+ * <p>
+ * Every participant broadcasts a small heartbeat over its transmitter. A participant joins the view with its first heartbeat and leaves it
+ * when it goes offline or misses its heartbeats for {@link Settings#timeout()}.
+ * A participant that connects asks the others to answer its first heartbeat and waits for them up to {@link Settings#joinTimeout()},
+ * so right after connecting both sides know each other.
+ */
+public interface MembershipService {
+    /**
+     * Returns the other participants that are online
+     *
+     * @return the members
+     */
+    Set<RemoteMessageReceiver> getMembers();
+
+    /**
+     * Returns an online participant
+     *
+     * @param uuid the session uuid of the participant
+     * @return the member or null if it is not online
+     */
+    @Nullable RemoteMessageReceiver getMember(@NotNull UUID uuid);
+
+    /**
+     * Returns the amount of other participants that are online
+     *
+     * @return the amount of members
+     */
+    int getMemberCount();
+
+    /**
+     * Returns the other participants that are in a group
+     *
+     * @param group the group
+     * @return the session uuids of the members
+     */
+    Set<UUID> getGroupMembers(@NotNull String group);
+
+    /**
+     * Registers a listener that is notified when participants join or leave.
+     * Listeners are called on the thread that received the heartbeat and should not block.
+     *
+     * @param listener the listener
+     */
+    void addListener(@NotNull Listener listener);
+
+    void removeListener(@NotNull Listener listener);
+
+    interface Listener {
+        default void onJoin(@NotNull RemoteMessageReceiver member) {
+        }
+
+        default void onLeave(@NotNull RemoteMessageReceiver member) {
+        }
+    }
+
+    /**
+     * @param heartbeatInterval the time between two heartbeats
+     * @param timeout           the time after which a participant without heartbeat leaves the view
+     * @param joinTimeout       the time a connecting participant waits for the others to answer its first heartbeat
+     */
+    record Settings(@NotNull Duration heartbeatInterval, @NotNull Duration timeout, @NotNull Duration joinTimeout) {
+        public static final Settings DEFAULT = new Settings(Duration.ofSeconds(5), Duration.ofSeconds(15), Duration.ofSeconds(2));
+
+        public Settings {
+            Objects.requireNonNull(heartbeatInterval, "heartbeatInterval can't be null!");
+            Objects.requireNonNull(timeout, "timeout can't be null!");
+            Objects.requireNonNull(joinTimeout, "joinTimeout can't be null!");
+            if (heartbeatInterval.isNegative() || heartbeatInterval.isZero())
+                throw new IllegalArgumentException("heartbeatInterval has to be positive");
+            if (timeout.compareTo(heartbeatInterval) <= 0)
+                throw new IllegalArgumentException("timeout has to be longer than the heartbeatInterval");
+            if (joinTimeout.isNegative())
+                throw new IllegalArgumentException("joinTimeout can't be negative");
+        }
+    }
+}
@@ -2,6 +2,8 @@ package de.verdox.vpipeline.api.messaging;
 
 import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
 import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.function.Supplier;
 
@@ -27,6 +29,27 @@ public interface MessageFactory {
      */
     <T extends Instruction<?>> void registerInstructionType(int id, Class<? extends T> instructionType, Supplier<T> instanceSupplier);
 
+    /**
+     * Used to register an {@link Instruction} to the system together with the codec that encodes it for the binary wire format.
+     *
+     * @param id               the unique id of the instruction
+     * @param instructionType  the instruction class type
+     * @param instanceSupplier a constructor
+     * @param codec            the codec of the instruction
+     * @param <T>              the instruction type
+     * @param <R>              the response type
+     */
+    <T extends Instruction<R>, R> void registerInstructionType(int id, Class<? extends T> instructionType, Supplier<T> instanceSupplier, InstructionCodec<T, R> codec);
+
+    /**
+     * Returns the codec of an {@link Instruction} type
+     *
+     * @param type the type
+     * @return the codec or null if the instruction type is encoded as json
+     */
+    @Nullable
+    InstructionCodec<?, ?> findInstructionCodec(Class<? extends Instruction<?>> type);
+
     /**
      * Returns the instruction id by {@link Instruction} type
      *
@@ -4,6 +4,12 @@ import de.verdox.vpipeline.api.Connection;
 import de.verdox.vpipeline.api.NetworkParticipant;
 import de.verdox.vpipeline.api.messaging.instruction.Instruction;
 import de.verdox.vpipeline.api.messaging.instruction.ResponseCollector;
+import de.verdox.vpipeline.api.messaging.instruction.types.StreamingQuery;
+import de.verdox.vpipeline.api.messaging.stream.ResponseStream;
+import de.verdox.vpipeline.api.handoff.CacheHandoff;
+import de.verdox.vpipeline.api.membership.MembershipService;
+import de.verdox.vpipeline.api.messaging.dispatch.InstructionDispatcher;
+import de.verdox.vpipeline.api.ownership.OwnershipRegistry;
 import de.verdox.vpipeline.api.pipeline.core.SystemPart;
 import de.verdox.vpipeline.api.ticket.TicketPropagator;
 import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
@@ -12,6 +18,7 @@ import de.verdox.vserializer.generic.Serializer;
 import de.verdox.vserializer.generic.SerializerBuilder;
 import org.jetbrains.annotations.NotNull;
 
+import java.time.Duration;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -36,6 +43,11 @@ public interface MessagingService extends SystemPart, Connection {
     }
 
     NetworkParticipant getNetworkParticipant();
+
+    /**
+     * Returns the other participants that are online
+     * @return the members of the {@link MembershipService}
+     */
     Set<RemoteMessageReceiver> getRemoteMessageReceivers();
     void sendKeepAlivePing();
     Transmitter getTransmitter();
@@ -45,9 +57,73 @@ public interface MessagingService extends SystemPart, Connection {
     String getSessionIdentifier();
     MessageFactory getMessageFactory();
     TicketPropagator getTicketPropagator();
+    OwnershipRegistry getOwnershipRegistry();
+    CacheHandoff getCacheHandoff();
+    InstructionDispatcher getInstructionDispatcher();
+    MembershipService getMembershipService();
 
     void postMessageEvent(String channel, Instruction<?> instruction);
 
     <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, UUID... receivers);
+
+    /**
+     * Sends an instruction with a response timeout that overrides the one of its {@link de.verdox.vpipeline.api.messaging.annotations.InstructionInfo}
+     * @param instruction the instruction
+     * @param responseTimeout the time the receivers have to answer. Zero or negative durations never expire.
+     * @param receivers the receivers or none to broadcast
+     * @return the response collector
+     */
+    <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, @NotNull Duration responseTimeout, UUID... receivers);
     <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull Class<? extends T> instructionType, Consumer<T> consumer, UUID... receivers);
+
+    /**
+     * Sends an instruction to all other members of a group. The instruction is serialized and published once for the whole group.
+     * @param instruction the instruction
+     * @param group the group
+     * @return the response collector that waits for an answer of every member known when the instruction was sent
+     */
+    <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, @NotNull String group);
+
+    /**
+     * Sends an instruction to all other members of a group with a response timeout that overrides the one of its {@link de.verdox.vpipeline.api.messaging.annotations.InstructionInfo}
+     * @param instruction the instruction
+     * @param responseTimeout the time the members have to answer. Zero or negative durations never expire.
+     * @param group the group
+     * @return the response collector
+     */
+    <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, @NotNull Duration responseTimeout, @NotNull String group);
+
+    /**
+     * Creates the stream of a query whose result is sent back in chunks. The query is sent when the stream is subscribed.
+     * @param query the query
+     * @param receiver the participant that answers the query
+     * @return the stream of the result
+     */
+    <T> ResponseStream<T> sendStreamingQuery(@NotNull StreamingQuery<T> query, @NotNull UUID receiver);
+
+    /**
+     * Joins a group, so instructions sent to the group are received from now on.
+     * The other participants learn about it with the next keep alive ping, which is sent right away.
+     * @param group the group
+     */
+    void joinGroup(@NotNull String group);
+
+    /**
+     * Leaves a group
+     * @param group the group
+     */
+    void leaveGroup(@NotNull String group);
+
+    /**
+     * Returns the groups this participant is in
+     * @return the joined groups
+     */
+    Set<String> getJoinedGroups();
+
+    /**
+     * Returns the other participants in a group. The view is kept locally by the {@link MembershipService}.
+     * @param group the group
+     * @return the members without this participant
+     */
+    Set<UUID> getGroupMembers(@NotNull String group);
 }
\ No newline at end of file
@@ -3,12 +3,17 @@ package de.verdox.vpipeline.api.messaging;
 import de.verdox.vpipeline.api.Connection;
 import de.verdox.vpipeline.api.messaging.instruction.Instruction;
 import de.verdox.vpipeline.api.messaging.parts.transmitter.DummyTransmitter;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.FrameBatcher;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.PeerTransmitter;
 import de.verdox.vpipeline.api.messaging.parts.transmitter.RedisTransmitter;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.WireFormat;
 import de.verdox.vpipeline.api.pipeline.core.SystemPart;
 import de.verdox.vpipeline.impl.util.RedisConnection;
 import de.verdox.vserializer.generic.Serializer;
 import org.jetbrains.annotations.NotNull;
 
+import java.net.InetSocketAddress;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -27,8 +32,49 @@ public interface Transmitter extends SystemPart, Connection {
 
     void setMessagingService(MessagingService messagingService);
 
+    /**
+     * Asks the network how many transmitters are connected, including this one.
+     * This can be a round trip, so it is only used when a participant joins. Use the {@link de.verdox.vpipeline.api.membership.MembershipService} otherwise.
+     * @return the amount of connected transmitters
+     */
     long getNetworkTransmitterAmount();
 
+    /**
+     * Checks if broadcasts of this transmitter are delivered to its own messaging service as well.
+     * Used to know how many answers a broadcast can get.
+     * @return true if this transmitter receives its own broadcasts
+     */
+    default boolean receivesOwnBroadcasts() {
+        return false;
+    }
+
+    /**
+     * Starts receiving the instructions sent to a group
+     * @param group the group
+     */
+    default void joinGroup(String group) {
+    }
+
+    /**
+     * Stops receiving the instructions sent to a group
+     * @param group the group
+     */
+    default void leaveGroup(String group) {
+    }
+
+    /**
+     * Sends an instruction to a group. Transmitters without group channels send it to every known member on its own.
+     * @param message the instruction
+     * @param group the group
+     * @param members the other members of the group known to the messaging service
+     * @return the amount of participants the instruction was sent to
+     */
+    default long sendToGroup(Instruction<?> message, String group, Set<UUID> members) {
+        if (members.isEmpty())
+            return 0;
+        return sendMessage(message, members.toArray(UUID[]::new));
+    }
+
     static Transmitter createRedisTransmitter(boolean clusterMode, @NotNull String[] addressArray, String redisPassword) {
         return createRedisTransmitter(new RedisConnection(clusterMode, addressArray, redisPassword));
     }
@@ -37,6 +83,24 @@ public interface Transmitter extends SystemPart, Connection {
         return new RedisTransmitter(redisConnection);
     }
 
+    static Transmitter createRedisTransmitter(RedisConnection redisConnection, WireFormat wireFormat) {
+        return new RedisTransmitter(redisConnection, wireFormat);
+    }
+
+    static Transmitter createRedisTransmitter(RedisConnection redisConnection, WireFormat wireFormat, FrameBatcher.Settings batchSettings) {
+        return new RedisTransmitter(redisConnection, wireFormat, batchSettings);
+    }
+
+    /**
+     * Creates a transmitter that sends instructions for single receivers over direct TCP connections
+     * @param fallback the transmitter used for broadcasts and for peers that can't be reached directly
+     * @param bindAddress the address to listen on. Port 0 picks a free port.
+     * @return the transmitter
+     */
+    static Transmitter createPeerTransmitter(RedisTransmitter fallback, InetSocketAddress bindAddress) {
+        return new PeerTransmitter(fallback, bindAddress);
+    }
+
     static Transmitter createDummyTransmitter() {
         return new DummyTransmitter();
     }
@@ -7,10 +7,35 @@ import java.lang.annotation.RetentionPolicy;
 
 
 /**
- * Used to specify whether an instruction should wait for a response.
+ * Used to specify whether an instruction should wait for a response, how long and how urgent it is.
  */
 @Inherited
 @Retention(RetentionPolicy.RUNTIME)
 public @interface InstructionInfo {
+    long DEFAULT_RESPONSE_TIMEOUT_MILLIS = 30_000;
+
     boolean awaitsResponse();
-}
+
+    /**
+     * The time the receivers have to answer before the response collector of the instruction expires.
+     * Values of 0 or less never expire. Can be overridden for a single instruction when it is sent.
+     */
+    long responseTimeoutMillis() default DEFAULT_RESPONSE_TIMEOUT_MILLIS;
+
+    /**
+     * The priority class of the instruction. Instructions and their responses are sent on separate transmitter channels
+     * and handled by separate dispatch queues per priority class, so bulk traffic can't delay urgent instructions.
+     */
+    Priority priority() default Priority.NORMAL;
+
+    enum Priority {
+        /**
+         * Control messages and queries a user waits for
+         */
+        HIGH,
+        NORMAL,
+        /**
+         * Transfers of large amounts of data that may take a while
+         */
+        BULK
+    }
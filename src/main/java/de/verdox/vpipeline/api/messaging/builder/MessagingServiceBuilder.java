@@ -1,7 +1,11 @@
 package de.verdox.vpipeline.api.messaging.builder;
 
+import de.verdox.vpipeline.api.handoff.CacheHandoff;
+import de.verdox.vpipeline.api.membership.MembershipService;
 import de.verdox.vpipeline.api.messaging.MessagingService;
 import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.dispatch.InstructionDispatcher;
+import de.verdox.vpipeline.api.messaging.stream.ResponseStream;
 import org.jetbrains.annotations.NotNull;
 
 
@@ -23,6 +27,34 @@ public interface MessagingServiceBuilder {
      */
     MessagingServiceBuilder withTransmitter(Transmitter transmitter);
 
+    /**
+     * Used to hand the local cache over to other nodes on shutdown and to pull preloaded data from other nodes on startup
+     * @param settings the chunk size, transfer rate and hot window of the handoff
+     * @return the builder
+     */
+    MessagingServiceBuilder withCacheHandoff(CacheHandoff.Settings settings);
+
+    /**
+     * Used to configure how received instructions are queued and handled. Defaults to {@link InstructionDispatcher.Settings#DEFAULT}.
+     * @param settings the ordering, queue capacity and threads of the dispatcher
+     * @return the builder
+     */
+    MessagingServiceBuilder withDispatch(InstructionDispatcher.Settings settings);
+
+    /**
+     * Used to configure the heartbeats of the membership view. Defaults to {@link MembershipService.Settings#DEFAULT}.
+     * @param settings the heartbeat interval and the timeouts of the membership view
+     * @return the builder
+     */
+    MessagingServiceBuilder withMembership(MembershipService.Settings settings);
+
+    /**
+     * Used to configure the chunks and the flow control of streamed query results. Defaults to {@link ResponseStream.Settings#DEFAULT}.
+     * @param settings the chunk size, window and timeout of the streams
+     * @return the builder
+     */
+    MessagingServiceBuilder withResponseStreams(ResponseStream.Settings settings);
+
     /**
      * Used to build the messaging service
      * @return the built messaging service
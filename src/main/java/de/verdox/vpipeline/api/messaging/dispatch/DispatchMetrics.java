@@ -0,0 +1,129 @@
+package de.verdox.vpipeline.api.messaging.dispatch;
+
+import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how long received instructions waited in the queue of the {@link InstructionDispatcher} and how long their handlers ran.
+ */
+public class DispatchMetrics {
+    private final Map<Class<? extends Instruction<?>>, TypeMetrics> metrics = new ConcurrentHashMap<>();
+    private final LongAdder backpressureStalls = new LongAdder();
+    private final LongAdder shedInstructions = new LongAdder();
+
+    /**
+     * Records a handled instruction
+     *
+     * @param type         the instruction type
+     * @param queueNanos   the time the instruction waited until its handler started
+     * @param handlerNanos the time the handler ran
+     * @param failed       true if the handler threw an exception
+     */
+    public void recordHandled(@NotNull Class<? extends Instruction<?>> type, long queueNanos, long handlerNanos, boolean failed) {
+        TypeMetrics typeMetrics = getMetrics(type);
+        typeMetrics.handled.increment();
+        if (failed)
+            typeMetrics.failed.increment();
+        typeMetrics.queueNanos.add(queueNanos);
+        typeMetrics.handlerNanos.add(handlerNanos);
+        typeMetrics.maxHandlerNanos.accumulate(handlerNanos);
+    }
+
+    /**
+     * Records that a received instruction was parked because the queue was full
+     */
+    public void recordBackpressureStall() {
+        backpressureStalls.increment();
+    }
+
+    /**
+     * Records that a received instruction was dropped because the queue and the parked instructions were full
+     */
+    public void recordShed() {
+        shedInstructions.increment();
+    }
+
+    /**
+     * Returns how often a received instruction was parked because the queue was full
+     *
+     * @return the amount of stalls
+     */
+    public long getBackpressureStalls() {
+        return backpressureStalls.sum();
+    }
+
+    /**
+     * Returns how many received instructions were dropped because the queue and the parked instructions were full
+     *
+     * @return the amount of dropped instructions
+     */
+    public long getShedInstructions() {
+        return shedInstructions.sum();
+    }
+
+    /**
+     * Returns the metrics of an instruction type
+     *
+     * @param type the instruction type
+     * @return the metrics
+     */
+    @NotNull
+    public TypeMetrics getMetrics(@NotNull Class<? extends Instruction<?>> type) {
+        Objects.requireNonNull(type, "type can't be null!");
+        return metrics.computeIfAbsent(type, aClass -> new TypeMetrics());
+    }
+
+    /**
+     * Returns all instruction types that have recorded metrics
+     *
+     * @return the metrics per instruction type
+     */
+    public Map<Class<? extends Instruction<?>>, TypeMetrics> getAllMetrics() {
+        return Map.copyOf(metrics);
+    }
+
+    public static class TypeMetrics {
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder queueNanos = new LongAdder();
+        private final LongAdder handlerNanos = new LongAdder();
+        private final LongAccumulator maxHandlerNanos = new LongAccumulator(Math::max, 0);
+
+        private TypeMetrics() {
+        }
+
+        public long getHandled() {
+            return handled.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public Duration getAverageQueueTime() {
+            long handled = getHandled();
+            return handled == 0 ? Duration.ZERO : Duration.ofNanos(queueNanos.sum() / handled);
+        }
+
+        public Duration getAverageHandlerTime() {
+            long handled = getHandled();
+            return handled == 0 ? Duration.ZERO : Duration.ofNanos(handlerNanos.sum() / handled);
+        }
+
+        public Duration getMaxHandlerTime() {
+            return Duration.ofNanos(maxHandlerNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return "TypeMetrics{handled=" + getHandled() + ", failed=" + getFailed() + ", avgQueue=" + getAverageQueueTime().toNanos() / 1000 + "µs, avgHandler=" + getAverageHandlerTime().toNanos() / 1000 + "µs, maxHandler=" + getMaxHandlerTime().toMillis() + "ms}";
+        }
+    }
+}
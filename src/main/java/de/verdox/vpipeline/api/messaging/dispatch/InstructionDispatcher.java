@@ -0,0 +1,80 @@
+package de.verdox.vpipeline.api.messaging.dispatch;
+
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * Runs the handlers of received instructions off the receiving thread of the {@link de.verdox.vpipeline.api.messaging.Transmitter}.
+ * <p>
+ * Instructions are put into lanes. The instructions of one lane are handled one after another in the order they were received,
+ * while different lanes are handled in parallel. Lanes only exist while they hold instructions.
+ * The receiving thread never waits. If the queue is full received instructions are parked until a handler finished.
+ * Once as many instructions are parked as the queue holds, further instructions are dropped, so a flood of instructions can't pile up in memory.
+ * Senders of dropped instructions run into their response timeout.
+ * <p>
+ * Responses and keep-alive pings are not queued. They are handled on the receiving thread right away, so a slow handler can't delay them.
+ * <p>
+ * Every {@link InstructionInfo.Priority} has its own queue capacity, lanes and executor. Urgent instructions thus skip ahead of bulk instructions,
+ * but instructions of different priority classes of one sender are not handled in the order they were received.
+ */
+public interface InstructionDispatcher {
+    /**
+     * Returns the amount of received instructions whose handler did not start yet
+     *
+     * @return the queue depth
+     */
+    int getQueueDepth();
+
+    /**
+     * Returns the amount of received instructions of a priority class whose handler did not start yet
+     *
+     * @param priority the priority class
+     * @return the queue depth
+     */
+    int getQueueDepth(@NotNull InstructionInfo.Priority priority);
+
+    /**
+     * Returns the amount of lanes that currently hold instructions
+     *
+     * @return the amount of lanes
+     */
+    int getLaneCount();
+
+    /**
+     * Returns the queue and handler times per instruction type
+     *
+     * @return the metrics
+     */
+    DispatchMetrics getMetrics();
+
+    /**
+     * Decides which instructions share a lane and are thus handled in the order they were received
+     */
+    enum Ordering {
+        /**
+         * All instructions of one sender share a lane. A slow handler only delays the instructions of the same sender.
+         */
+        PER_SENDER,
+        /**
+         * All instructions of one type share a lane. A slow handler only delays instructions of the same type.
+         */
+        PER_TYPE
+    }
+
+    /**
+     * @param ordering       decides which instructions share a lane
+     * @param queueCapacity  the maximum amount of received instructions per priority class whose handler did not finish yet
+     * @param virtualThreads true to run handlers on virtual threads, false to use a pool with one thread per processor and priority class
+     */
+    record Settings(@NotNull Ordering ordering, int queueCapacity, boolean virtualThreads) {
+        public static final Settings DEFAULT = new Settings(Ordering.PER_SENDER, 10_000, true);
+
+        public Settings {
+            Objects.requireNonNull(ordering, "ordering can't be null!");
+            if (queueCapacity <= 0)
+                throw new IllegalArgumentException("queueCapacity has to be positive");
+        }
+    }
+}
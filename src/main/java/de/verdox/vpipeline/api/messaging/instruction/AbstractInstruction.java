@@ -3,14 +3,14 @@ package de.verdox.vpipeline.api.messaging.instruction;
 import java.util.UUID;
 
 public abstract class AbstractInstruction<R> implements Instruction<R> {
-    private final UUID uuid;
+    private UUID uuid;
     private UUID senderUUID;
     private String senderIdentifier;
     private int registeredInstructionID;
     private boolean isResponse;
     private R responseToSend;
     private transient ResponseCollector<R> responseCollector;
-    private final long creationTimeStamp = System.currentTimeMillis();
+    private long creationTimeStamp = System.currentTimeMillis();
 
     public AbstractInstruction(UUID uuid) {
         this.uuid = uuid;
@@ -22,6 +22,15 @@ public abstract class AbstractInstruction<R> implements Instruction<R> {
         this.senderIdentifier = senderIdentifier;
     }
 
+    /**
+     * Used by the binary wire format to restore the header of a received instruction
+     */
+    public void restoreHeader(UUID uuid, int registeredInstructionID, UUID sender, String senderIdentifier, long creationTimeStamp) {
+        this.uuid = uuid;
+        this.creationTimeStamp = creationTimeStamp;
+        setupInstruction(registeredInstructionID, sender, senderIdentifier);
+    }
+
     public UUID getUuid() {
         return uuid;
     }
@@ -0,0 +1,122 @@
+package de.verdox.vpipeline.api.messaging.instruction;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import de.verdox.vpipeline.api.messaging.instruction.types.Update;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Encodes the fields of an {@link Instruction} type for the binary wire format.
+ * The header of the instruction (id, uuid, sender and flags) is written by the transmitter,
+ * so a codec only writes the fields of its own instruction type and the response.
+ * Responses are sent without the instruction fields since the sender still knows its instruction.
+ * Instruction types without a codec are sent as json inside the binary frame.
+ *
+ * @param <T> the instruction type
+ * @param <R> the response type
+ */
+public interface InstructionCodec<T extends Instruction<R>, R> {
+    void writePayload(@NotNull T instruction, @NotNull ByteArrayDataOutput out);
+
+    /**
+     * Creates a new instruction from the payload. The header is restored by the transmitter afterwards.
+     *
+     * @param in the payload
+     * @return the instruction
+     */
+    @NotNull
+    T readPayload(@NotNull ByteArrayDataInput in);
+
+    void writeResponse(@NotNull R response, @NotNull ByteArrayDataOutput out);
+
+    @NotNull
+    R readResponse(@NotNull ByteArrayDataInput in);
+
+    static <T extends Instruction<R>, R> InstructionCodec<T, R> of(@NotNull BiConsumer<T, ByteArrayDataOutput> payloadWriter, @NotNull Function<ByteArrayDataInput, T> payloadReader, @NotNull ResponseCodec<R> responseCodec) {
+        return new InstructionCodec<>() {
+            @Override
+            public void writePayload(@NotNull T instruction, @NotNull ByteArrayDataOutput out) {
+                payloadWriter.accept(instruction, out);
+            }
+
+            @Override
+            public @NotNull T readPayload(@NotNull ByteArrayDataInput in) {
+                return payloadReader.apply(in);
+            }
+
+            @Override
+            public void writeResponse(@NotNull R response, @NotNull ByteArrayDataOutput out) {
+                responseCodec.writer().accept(response, out);
+            }
+
+            @Override
+            public @NotNull R readResponse(@NotNull ByteArrayDataInput in) {
+                return responseCodec.reader().apply(in);
+            }
+        };
+    }
+
+    static void writeUUID(@NotNull UUID uuid, @NotNull ByteArrayDataOutput out) {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID readUUID(@NotNull ByteArrayDataInput in) {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static void writeNullableUUID(@Nullable UUID uuid, @NotNull ByteArrayDataOutput out) {
+        out.writeBoolean(uuid != null);
+        if (uuid != null)
+            writeUUID(uuid, out);
+    }
+
+    @Nullable
+    static UUID readNullableUUID(@NotNull ByteArrayDataInput in) {
+        return in.readBoolean() ? readUUID(in) : null;
+    }
+
+    /**
+     * Writes a byte array with its length. Unlike {@link ByteArrayDataOutput#writeUTF(String)} this is not limited to 64 KiB.
+     */
+    static void writeBytes(byte[] data, @NotNull ByteArrayDataOutput out) {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    static byte[] readBytes(@NotNull ByteArrayDataInput in) {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return data;
+    }
+
+    static void writeString(@NotNull String string, @NotNull ByteArrayDataOutput out) {
+        writeBytes(string.getBytes(StandardCharsets.UTF_8), out);
+    }
+
+    static String readString(@NotNull ByteArrayDataInput in) {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes the response of an instruction
+     */
+    record ResponseCodec<R>(@NotNull BiConsumer<R, ByteArrayDataOutput> writer, @NotNull Function<ByteArrayDataInput, R> reader) {
+        /**
+         * Used by instructions that are never answered
+         */
+        public static final ResponseCodec<Boolean> NONE = new ResponseCodec<>((aBoolean, out) -> {
+        }, in -> false);
+        public static final ResponseCodec<Boolean> BOOLEAN = new ResponseCodec<>((aBoolean, out) -> out.writeBoolean(aBoolean), ByteArrayDataInput::readBoolean);
+        public static final ResponseCodec<Integer> INTEGER = new ResponseCodec<>((integer, out) -> out.writeInt(integer), ByteArrayDataInput::readInt);
+        public static final ResponseCodec<String> STRING = new ResponseCodec<>(InstructionCodec::writeString, InstructionCodec::readString);
+        public static final ResponseCodec<UUID> UNIQUE_ID = new ResponseCodec<>(InstructionCodec::writeUUID, InstructionCodec::readUUID);
+        public static final ResponseCodec<Update.UpdateCompletion> UPDATE_COMPLETION = new ResponseCodec<>((completion, out) -> out.writeByte(completion.ordinal()), in -> Update.UpdateCompletion.values()[in.readByte()]);
+    }
+}
@@ -2,18 +2,69 @@ package de.verdox.vpipeline.api.messaging.instruction;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 
 /**
- * Waits and collects responses from network participants
+ * Waits and collects responses from network participants.
+ * <p>
+ * Responses are handed to actions and aggregates on the thread that received them, so actions must not block.
+ * Once all aggregates of a collector completed, the instruction stops waiting for further answers and frees its resources.
+ * Actions registered with {@link #whenResponseReceived(BiConsumer)} don't keep the instruction waiting.
  * @param <T>
  */
 public interface ResponseCollector<T> {
     ResponseCollector<T> whenResponseReceived(@NotNull BiConsumer<? super T, ? super Throwable> action);
+
+    /**
+     * Waits for the first response that matches the test
+     * @param test the test
+     * @return the response or null if all receivers answered without a match
+     */
     T waitForValue(Predicate<T> test);
+
+    /**
+     * Same as {@link #firstMatching(Predicate, Duration)} but only limited by the response timeout of the instruction
+     * @param test the test
+     * @return the future
+     */
     CompletableFuture<T> askForValue(Predicate<T> test);
+
+    /**
+     * Completes with the first response that matches the test, or with null if all receivers answered without a match
+     * @param test the test
+     * @param deadline the time until the future completes with a {@link java.util.concurrent.TimeoutException}
+     * @return the future
+     */
+    CompletableFuture<T> firstMatching(@NotNull Predicate<T> test, @NotNull Duration deadline);
+
+    /**
+     * Completes with the first n responses in the order they arrived
+     * @param n the amount of responses. Fails right away if more responses are requested than receivers exist.
+     * @param deadline the time until the future completes with a {@link java.util.concurrent.TimeoutException}
+     * @return the future
+     */
+    CompletableFuture<List<T>> quorum(int n, @NotNull Duration deadline);
+
+    /**
+     * Completes with the responses of all receivers once everyone answered
+     * @param deadline the time until the future completes with a {@link java.util.concurrent.TimeoutException}
+     * @return the future with the responses per receiver
+     */
+    CompletableFuture<Map<UUID, T>> allOf(@NotNull Duration deadline);
+
     long getAmountReceivedValues();
     boolean hasReceivedAllAnswers();
+
+    /**
+     * Checks if the response timeout of the instruction passed before all receivers answered.
+     * Actions and futures of an expired collector are completed with a {@link java.util.concurrent.TimeoutException}.
+     * @return true if the collector expired
+     */
+    boolean hasExpired();
 }
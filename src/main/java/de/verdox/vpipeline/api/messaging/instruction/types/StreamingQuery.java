@@ -0,0 +1,63 @@
+package de.verdox.vpipeline.api.messaging.instruction.types;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.AbstractInstruction;
+import de.verdox.vpipeline.api.messaging.stream.ResponseStream;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.UUID;
+
+/**
+ * Query whose result is streamed back in chunks instead of one response, so large results never have to fit into one message.
+ * Sent with {@link MessagingService#sendStreamingQuery(StreamingQuery, UUID)} to a single receiver.
+ * <p>
+ * The receiver opens the result with {@link #openStream(MessagingService)} and reads the iterator lazily, only as far as the sender
+ * granted credit for. Subtypes must not change the {@link InstructionInfo} of this class.
+ *
+ * @param <T> the type of the streamed elements
+ */
+@InstructionInfo(awaitsResponse = false, priority = InstructionInfo.Priority.BULK)
+public abstract class StreamingQuery<T> extends AbstractInstruction<Boolean> {
+
+    public StreamingQuery(@NotNull UUID uuid) {
+        super(uuid);
+    }
+
+    /**
+     * Opens the result on the receiver. Called on a thread of its own, so the iterator may block.
+     * An iterator that is {@link AutoCloseable} is closed when the stream ends or is cancelled.
+     *
+     * @param messagingService the messaging service of the receiver
+     * @return the elements. Null elements are not allowed.
+     */
+    public abstract Iterator<T> openStream(MessagingService messagingService);
+
+    public abstract void writeElement(@NotNull T element, @NotNull ByteArrayDataOutput out);
+
+    @NotNull
+    public abstract T readElement(@NotNull ByteArrayDataInput in);
+
+    @Override
+    public boolean onSend(MessagingService messagingService, long receiversAmount) {
+        return true;
+    }
+
+    /**
+     * The result is sent as chunks of the {@link ResponseStream}, not as a response
+     */
+    @Override
+    public final Boolean onInstructionReceive(MessagingService messagingService) {
+        if (messagingService instanceof MessagingServiceImpl messagingServiceImpl)
+            messagingServiceImpl.getResponseStreams().open(this);
+        return false;
+    }
+
+    @Override
+    public final void onResponseReceive(MessagingService messagingService, Boolean response) {
+    }
+}
@@ -0,0 +1,63 @@
+package de.verdox.vpipeline.api.messaging.parts.transmitter;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps direct buffers of one size for reuse, since allocating direct buffers is expensive.
+ * Requests for larger buffers are served with heap buffers that are not pooled.
+ */
+public class DirectBufferPool {
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    /**
+     * @param bufferSize       the capacity of the pooled buffers
+     * @param maxPooledBuffers the maximum amount of buffers kept for reuse
+     */
+    public DirectBufferPool(int bufferSize, int maxPooledBuffers) {
+        if (bufferSize <= 0 || maxPooledBuffers < 0)
+            throw new IllegalArgumentException("bufferSize has to be positive and maxPooledBuffers can't be negative");
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Returns a cleared buffer with at least the requested capacity
+     *
+     * @param minCapacity the requested capacity
+     * @return the buffer
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        if (minCapacity > bufferSize)
+            return ByteBuffer.allocate(minCapacity);
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(bufferSize);
+        pooledBuffers.decrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Hands a buffer back to the pool. The buffer must not be used afterwards.
+     *
+     * @param buffer the buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != bufferSize)
+            return;
+        if (pooledBuffers.incrementAndGet() > maxPooledBuffers) {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -29,6 +29,11 @@ public class DummyTransmitter implements Transmitter {
         return 1;
     }
 
+    @Override
+    public boolean receivesOwnBroadcasts() {
+        return true;
+    }
+
     @Override
     public void shutdown() {
 
@@ -0,0 +1,180 @@
+package de.verdox.vpipeline.api.messaging.parts.transmitter;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Coalesces the frames that are sent to the same channel into batch frames.
+ * <p>
+ * A frame is published right away if nothing else is being published on its channel, so a single frame under low load is not delayed.
+ * Frames that are sent while a publish is in flight are queued. The thread that published continues with the queued frames
+ * and sends them as one batch frame. The more frames are sent in parallel, the larger the batches get.
+ * A sending thread publishes at most one batch besides its own frame. If frames are left after that, a flusher thread takes over
+ * the channel until its queue is empty, so a sender is never kept busy with the frames of others for long.
+ * If a delay is configured the publishing thread waits up to that delay for more frames before it sends a batch, but only if
+ * frames were already queued, i.e. under load.
+ *
+ * @param <C> the channel type
+ */
+public class FrameBatcher<C> {
+    private final Settings settings;
+    private final Publisher<C> publisher;
+    private final Function<List<byte[]>, byte[]> batchEncoder;
+    private final Map<C, ChannelQueue> channels = new ConcurrentHashMap<>();
+    private final LongAdder sentFrames = new LongAdder();
+    private final LongAdder publishedFrames = new LongAdder();
+
+    /**
+     * @param settings     the limits of a batch
+     * @param publisher    publishes a frame to a channel
+     * @param batchEncoder packs several frames into one batch frame
+     */
+    public FrameBatcher(@NotNull Settings settings, @NotNull Publisher<C> publisher, @NotNull Function<List<byte[]>, byte[]> batchEncoder) {
+        this.settings = Objects.requireNonNull(settings);
+        this.publisher = Objects.requireNonNull(publisher);
+        this.batchEncoder = Objects.requireNonNull(batchEncoder);
+    }
+
+    /**
+     * Sends a frame to a channel
+     *
+     * @param channel the channel
+     * @param frame   the frame
+     * @return the amount of subscribers the frame was published to or 0 if the frame was queued for the next batch
+     */
+    public long send(@NotNull C channel, byte[] frame) {
+        sentFrames.increment();
+        ChannelQueue queue = channels.computeIfAbsent(channel, c -> new ChannelQueue());
+        synchronized (queue) {
+            if (queue.publishing) {
+                queue.frames.add(frame);
+                return 0;
+            }
+            queue.publishing = true;
+        }
+        long publishedTo;
+        try {
+            publishedTo = publish(channel, frame);
+        } finally {
+            if (!drain(channel, queue, 1))
+                Thread.ofVirtual().name("FrameBatcher-flusher").start(() -> drain(channel, queue, Integer.MAX_VALUE));
+        }
+        return publishedTo;
+    }
+
+    /**
+     * Publishes the queued frames in batches until the queue of the channel is empty or the maximum amount of batches was published.
+     * The channel stays marked as publishing in the latter case, so the caller has to continue.
+     *
+     * @return true if the queue was emptied
+     */
+    private boolean drain(C channel, ChannelQueue queue, int maxBatches) {
+        boolean lingered = false;
+        int batches = 0;
+        while (true) {
+            List<byte[]> batch;
+            synchronized (queue) {
+                if (queue.frames.isEmpty()) {
+                    queue.publishing = false;
+                    return true;
+                }
+                if (batches >= maxBatches)
+                    return false;
+                if (!lingered && !settings.maxDelay().isZero() && queue.frames.size() < settings.maxFrames()) {
+                    lingered = true;
+                    batch = null;
+                } else {
+                    lingered = false;
+                    batch = takeBatch(queue);
+                }
+            }
+            if (batch == null) {
+                LockSupport.parkNanos(settings.maxDelay().toNanos());
+                continue;
+            }
+            batches++;
+            try {
+                publish(channel, batch.size() == 1 ? batch.get(0) : batchEncoder.apply(batch));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private List<byte[]> takeBatch(ChannelQueue queue) {
+        List<byte[]> batch = new ArrayList<>(Math.min(queue.frames.size(), settings.maxFrames()));
+        int bytes = 0;
+        while (!queue.frames.isEmpty() && batch.size() < settings.maxFrames()) {
+            byte[] next = queue.frames.peek();
+            if (!batch.isEmpty() && bytes + next.length > settings.maxBytes())
+                break;
+            batch.add(queue.frames.poll());
+            bytes += next.length;
+        }
+        return batch;
+    }
+
+    private long publish(C channel, byte[] frame) {
+        publishedFrames.increment();
+        return publisher.publish(channel, frame);
+    }
+
+    /**
+     * Returns the amount of frames that were handed to the batcher
+     *
+     * @return the amount of sent frames
+     */
+    public long getSentFrames() {
+        return sentFrames.sum();
+    }
+
+    /**
+     * Returns the amount of single and batch frames that were actually published
+     *
+     * @return the amount of published frames
+     */
+    public long getPublishedFrames() {
+        return publishedFrames.sum();
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    @FunctionalInterface
+    public interface Publisher<C> {
+        long publish(C channel, byte[] frame);
+    }
+
+    private static class ChannelQueue {
+        private final ArrayDeque<byte[]> frames = new ArrayDeque<>();
+        private boolean publishing;
+    }
+
+    /**
+     * @param maxFrames the maximum amount of frames in one batch
+     * @param maxBytes  the maximum size of one batch. A single frame that is larger is sent on its own.
+     * @param maxDelay  the time to wait for more frames while under load. Zero to never wait.
+     */
+    public record Settings(int maxFrames, int maxBytes, @NotNull Duration maxDelay) {
+        public static final Settings DEFAULT = new Settings(256, 256 * 1024, Duration.ZERO);
+
+        public Settings {
+            Objects.requireNonNull(maxDelay, "maxDelay can't be null!");
+            if (maxFrames <= 0 || maxBytes <= 0)
+                throw new IllegalArgumentException("maxFrames and maxBytes have to be positive");
+            if (maxDelay.isNegative())
+                throw new IllegalArgumentException("maxDelay can't be negative");
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package de.verdox.vpipeline.api.messaging.parts.transmitter;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.messaging.MessageFactory;
+import de.verdox.vpipeline.api.messaging.instruction.AbstractInstruction;
+import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Turns instructions into the frames a transmitter sends and back.
+ * <p>
+ * Binary frames start with a fixed header:
+ * <pre>
+ * magic (1) | version (1) | flags (1) | instruction id (4) | instruction uuid (16) | sender uuid (16) | sender identifier (utf) | creation time (8)
+ * </pre>
+ * The header is followed by the payload of the {@link InstructionCodec} of the instruction type and the response if the frame carries one.
+ * Instruction types without a codec are written as json after the header.
+ * Json frames always start with '{', so both formats can be told apart by their first byte.
+ * <p>
+ * A batch frame packs several frames of either format:
+ * <pre>
+ * batch magic (1) | version (1) | amount (4) | [length (4) | frame]...
+ * </pre>
+ */
+public class InstructionFrameCodec {
+    static final byte MAGIC = (byte) 0xB1;
+    static final byte BATCH_MAGIC = (byte) 0xB2;
+    static final byte VERSION = 1;
+    static final int FLAG_RESPONSE = 1;
+    static final int FLAG_HAS_RESPONSE = 1 << 1;
+    static final int FLAG_JSON_PAYLOAD = 1 << 2;
+
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final MessageFactory messageFactory;
+    private final WireFormat wireFormat;
+
+    public InstructionFrameCodec(@NotNull MessageFactory messageFactory, @NotNull WireFormat wireFormat) {
+        this.messageFactory = Objects.requireNonNull(messageFactory);
+        this.wireFormat = Objects.requireNonNull(wireFormat);
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    public byte[] encode(@NotNull Instruction<?> instruction) {
+        if (wireFormat == WireFormat.JSON || !(instruction instanceof AbstractInstruction<?> abstractInstruction))
+            return encodeJson(instruction);
+        return encodeBinary(abstractInstruction);
+    }
+
+    /**
+     * Decodes a frame of either format
+     *
+     * @param frame the frame
+     * @return the instruction or null if its type is not registered on this node
+     */
+    @Nullable
+    public Instruction<?> decode(byte[] frame) {
+        if (frame.length > 0 && frame[0] == MAGIC)
+            return decodeBinary(frame);
+        return decodeJson(frame);
+    }
+
+    /**
+     * Packs several encoded frames into one batch frame
+     *
+     * @param frames the frames
+     * @return the batch frame
+     */
+    public byte[] encodeBatch(@NotNull List<byte[]> frames) {
+        int size = 6;
+        for (byte[] frame : frames)
+            size += 4 + frame.length;
+        ByteArrayDataOutput out = ByteStreams.newDataOutput(size);
+        out.writeByte(BATCH_MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(frames.size());
+        for (byte[] frame : frames) {
+            out.writeInt(frame.length);
+            out.write(frame);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a single or a batch frame
+     *
+     * @param frame the frame
+     * @return the instructions in the order they were sent. Instructions of unknown types are left out.
+     */
+    public List<Instruction<?>> decodeAll(byte[] frame) {
+        if (frame.length == 0 || frame[0] != BATCH_MAGIC) {
+            Instruction<?> instruction = decode(frame);
+            return instruction != null ? List.of(instruction) : List.of();
+        }
+        ByteArrayDataInput in = ByteStreams.newDataInput(frame);
+        in.readByte();
+        byte version = in.readByte();
+        if (version != VERSION) {
+            NetworkLogger.warning("Received a batch frame of unknown version " + version);
+            return List.of();
+        }
+        int amount = in.readInt();
+        List<Instruction<?>> instructions = new ArrayList<>(amount);
+        for (int i = 0; i < amount; i++) {
+            byte[] next = new byte[in.readInt()];
+            in.readFully(next);
+            Instruction<?> instruction = decode(next);
+            if (instruction != null)
+                instructions.add(instruction);
+        }
+        return instructions;
+    }
+
+    private byte[] encodeJson(@NotNull Instruction<?> instruction) {
+        var object = new JsonObject();
+        object.add("id", new JsonPrimitive(instruction.getInstructionID()));
+        object.add("data", gson.toJsonTree(instruction));
+        return gson.toJson(object).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Nullable
+    private Instruction<?> decodeJson(byte[] frame) {
+        var element = JsonParser.parseString(new String(frame, StandardCharsets.UTF_8)).getAsJsonObject();
+        var type = messageFactory.getCachedInstructionData(element.get("id").getAsInt());
+        if (type == null)
+            return null;
+        return gson.fromJson(element.get("data"), type.type());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> byte[] encodeBinary(@NotNull AbstractInstruction<R> instruction) {
+        var codec = (InstructionCodec<AbstractInstruction<R>, R>) messageFactory.findInstructionCodec((Class<? extends Instruction<?>>) instruction.getClass());
+        R response = instruction.getResponseToSend();
+        int flags = 0;
+        if (instruction.isResponse())
+            flags |= FLAG_RESPONSE;
+        if (response != null)
+            flags |= FLAG_HAS_RESPONSE;
+        if (codec == null)
+            flags |= FLAG_JSON_PAYLOAD;
+
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(flags);
+        out.writeInt(instruction.getInstructionID());
+        InstructionCodec.writeUUID(instruction.getUuid(), out);
+        InstructionCodec.writeUUID(instruction.getSenderUUID(), out);
+        out.writeUTF(instruction.getSenderIdentifier() != null ? instruction.getSenderIdentifier() : "");
+        out.writeLong(instruction.getCreationTimeStamp());
+
+        if (codec == null) {
+            InstructionCodec.writeString(gson.toJson(instruction), out);
+            return out.toByteArray();
+        }
+        // The sender of the instruction only needs the response
+        if (!instruction.isResponse())
+            codec.writePayload(instruction, out);
+        if (response != null)
+            codec.writeResponse(response, out);
+        return out.toByteArray();
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private Instruction<?> decodeBinary(byte[] frame) {
+        ByteArrayDataInput in = ByteStreams.newDataInput(frame);
+        in.readByte();
+        byte version = in.readByte();
+        if (version != VERSION) {
+            NetworkLogger.warning("Received an instruction frame of unknown version " + version);
+            return null;
+        }
+        int flags = in.readByte();
+        int instructionID = in.readInt();
+        UUID uuid = InstructionCodec.readUUID(in);
+        UUID sender = InstructionCodec.readUUID(in);
+        String senderIdentifier = in.readUTF();
+        long creationTimeStamp = in.readLong();
+
+        var type = messageFactory.getCachedInstructionData(instructionID);
+        if (type == null)
+            return null;
+        if ((flags & FLAG_JSON_PAYLOAD) != 0)
+            return gson.fromJson(InstructionCodec.readString(in), type.type());
+
+        var codec = (InstructionCodec<AbstractInstruction<Object>, Object>) messageFactory.findInstructionCodec(type.type());
+        if (codec == null) {
+            NetworkLogger.warning("Received a binary instruction frame for " + type.type().getSimpleName() + " but no codec is registered");
+            return null;
+        }
+        boolean isResponse = (flags & FLAG_RESPONSE) != 0;
+        var instruction = isResponse ? (AbstractInstruction<Object>) type.instanceSupplier().get() : codec.readPayload(in);
+        instruction.restoreHeader(uuid, instructionID, sender, senderIdentifier, creationTimeStamp);
+        if ((flags & FLAG_HAS_RESPONSE) != 0)
+            instruction.setResponseToSend(codec.readResponse(in));
+        else if (isResponse)
+            instruction.setResponseToSend(null);
+        return instruction;
+    }
+}
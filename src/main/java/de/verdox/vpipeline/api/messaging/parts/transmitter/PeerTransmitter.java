@@ -0,0 +1,574 @@
+package de.verdox.vpipeline.api.messaging.parts.transmitter;
+
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo.Priority;
+import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.redisson.api.RMap;
+import org.redisson.client.codec.StringCodec;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends instructions for single receivers over persistent TCP connections to the receiving participant instead of Redis.
+ * <p>
+ * Every participant listens on its own socket and registers the address in Redis, so peers find each other through the same Redis
+ * the wrapped {@link RedisTransmitter} is connected to. A connection is opened on the first instruction to a peer and kept open.
+ * Connections are one way, a peer that answers opens its own connection back.
+ * Broadcasts as well as instructions to peers that can't be reached directly are sent with the wrapped {@link RedisTransmitter}.
+ * A peer that refused a connection is tried again after a short backoff. Instructions to one peer keep their order only as long as
+ * they take the same path and have the same {@link Priority}.
+ * <p>
+ * Every {@link Priority} has its own socket, connections and selector thread, so a large bulk frame never sits in front of a control
+ * instruction in a socket buffer. Frames are prefixed with their length and written from pooled direct buffers.
+ */
+public class PeerTransmitter implements Transmitter {
+    private static final String ADDRESS_REGISTRY = "PeerTransmitterAddresses";
+    private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_BACKOFF_MILLIS = 5000;
+
+    private final RedisTransmitter fallback;
+    private final InetSocketAddress bindAddress;
+    private final DirectBufferPool bufferPool = new DirectBufferPool(64 * 1024, 256);
+    private final Map<Priority, Reactor> reactors = new EnumMap<>(Priority.class);
+    private final Map<ConnectionKey, PeerConnection> connections = new ConcurrentHashMap<>();
+    private final Map<UUID, InetSocketAddress[]> knownAddresses = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> unreachableUntil = new ConcurrentHashMap<>();
+    private final LongAdder directFrames = new LongAdder();
+    private final LongAdder fallbackFrames = new LongAdder();
+    private MessagingService messagingService;
+    private InstructionFrameCodec frameCodec;
+    private volatile boolean running;
+    @Nullable
+    private String advertisedAddress;
+
+    /**
+     * @param fallback    the transmitter used for broadcasts, for peers that can't be reached directly and to register the own address
+     * @param bindAddress the address to listen on. Port 0 picks free ports.
+     */
+    public PeerTransmitter(@NotNull RedisTransmitter fallback, @NotNull InetSocketAddress bindAddress) {
+        this.fallback = Objects.requireNonNull(fallback);
+        this.bindAddress = Objects.requireNonNull(bindAddress);
+    }
+
+    @Override
+    public long sendMessage(Instruction<?> message, UUID... receivers) {
+        if (receivers == null || receivers.length == 0)
+            return broadcastMessage(message);
+        var counter = 0L;
+        var priority = getPriority(message);
+        byte[] frame = null;
+        for (UUID receiver : receivers) {
+            if (receiver.equals(messagingService.getSessionUUID())) {
+                NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Skipping sending to itself");
+                continue;
+            }
+            var connection = getConnection(receiver, priority);
+            if (connection != null) {
+                if (frame == null)
+                    frame = frameCodec.encode(message);
+                if (connection.send(frame)) {
+                    directFrames.increment();
+                    counter++;
+                    continue;
+                }
+            }
+            if (NetworkLogger.transmitterDebugMode.isDebugMode())
+                NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] No direct connection to " + receiver + ", sending over redis");
+            fallbackFrames.increment();
+            counter += fallback.sendMessage(message, receiver);
+        }
+        return counter;
+    }
+
+    @Override
+    public long broadcastMessage(Instruction<?> message) {
+        return fallback.broadcastMessage(message);
+    }
+
+    @Override
+    public void setMessagingService(MessagingService messagingService) {
+        fallback.setMessagingService(messagingService);
+        this.messagingService = messagingService;
+        this.frameCodec = new InstructionFrameCodec(messagingService.getMessageFactory(), fallback.getWireFormat());
+    }
+
+    @Override
+    public long getNetworkTransmitterAmount() {
+        return fallback.getNetworkTransmitterAmount();
+    }
+
+    @Override
+    public void joinGroup(String group) {
+        fallback.joinGroup(group);
+    }
+
+    @Override
+    public void leaveGroup(String group) {
+        fallback.leaveGroup(group);
+    }
+
+    /**
+     * Groups are published once over redis instead of writing the frame to every member
+     */
+    @Override
+    public long sendToGroup(Instruction<?> message, String group, Set<UUID> members) {
+        return fallback.sendToGroup(message, group, members);
+    }
+
+    @Override
+    public void connect() {
+        fallback.connect();
+        running = true;
+        var ports = new StringJoiner(",");
+        for (Priority priority : Priority.values()) {
+            var reactor = new Reactor(priority);
+            reactors.put(priority, reactor);
+            ports.add(String.valueOf(reactor.serverChannel.socket().getLocalPort()));
+        }
+        reactors.values().forEach(Reactor::start);
+
+        advertisedAddress = getAdvertisedHost() + ":" + ports;
+        getAddressRegistry().put(messagingService.getSessionUUID().toString(), advertisedAddress);
+        NetworkLogger.info("[" + messagingService.getSessionIdentifier() + "] Peer Transmitter listening on " + advertisedAddress);
+    }
+
+    @Override
+    public void disconnect() {
+        close();
+        fallback.disconnect();
+    }
+
+    @Override
+    public void shutdown() {
+        close();
+        fallback.shutdown();
+    }
+
+    private void close() {
+        if (!running)
+            return;
+        running = false;
+        try {
+            getAddressRegistry().remove(messagingService.getSessionUUID().toString(), advertisedAddress);
+        } catch (RuntimeException e) {
+            NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Could not unregister peer address: " + e.getMessage());
+        }
+        reactors.values().forEach(Reactor::close);
+    }
+
+    /**
+     * Returns the amount of instructions that were sent over a direct connection
+     *
+     * @return the amount of direct frames
+     */
+    public long getDirectFrames() {
+        return directFrames.sum();
+    }
+
+    /**
+     * Returns the amount of instructions for single receivers that had to be sent over redis
+     *
+     * @return the amount of fallback frames
+     */
+    public long getFallbackFrames() {
+        return fallbackFrames.sum();
+    }
+
+    /**
+     * Returns the address other peers connect to. It contains one port per {@link Priority}, ordered like the priorities.
+     *
+     * @return the address or null if the transmitter is not connected
+     */
+    @Nullable
+    public String getAdvertisedAddress() {
+        return advertisedAddress;
+    }
+
+    public RedisTransmitter getFallback() {
+        return fallback;
+    }
+
+    private Priority getPriority(Instruction<?> instruction) {
+        return messagingService.getMessageFactory().findInstructionInfo((Class<? extends Instruction<?>>) instruction.getClass()).priority();
+    }
+
+    private RMap<String, String> getAddressRegistry() {
+        return fallback.getRedisConnection().getRedissonClient().getMap(ADDRESS_REGISTRY, StringCodec.INSTANCE);
+    }
+
+    private String getAdvertisedHost() {
+        if (!bindAddress.getAddress().isAnyLocalAddress())
+            return bindAddress.getAddress().getHostAddress();
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (IOException e) {
+            return InetAddress.getLoopbackAddress().getHostAddress();
+        }
+    }
+
+    /**
+     * Peers that registered a single port listen for every priority on it
+     */
+    @Nullable
+    private InetSocketAddress lookupAddress(UUID peer, Priority priority) {
+        var known = knownAddresses.get(peer);
+        if (known == null) {
+            var address = getAddressRegistry().get(peer.toString());
+            if (address == null)
+                return null;
+            int separator = address.lastIndexOf(':');
+            var host = address.substring(0, separator);
+            var ports = address.substring(separator + 1).split(",");
+            known = new InetSocketAddress[ports.length];
+            for (int i = 0; i < ports.length; i++)
+                known[i] = new InetSocketAddress(host, Integer.parseInt(ports[i]));
+            knownAddresses.put(peer, known);
+        }
+        return known[Math.min(priority.ordinal(), known.length - 1)];
+    }
+
+    /**
+     * Returns the open connection to a peer for a priority and opens it if there is none yet
+     */
+    @Nullable
+    private PeerConnection getConnection(UUID peer, Priority priority) {
+        var key = new ConnectionKey(peer, priority);
+        var connection = connections.get(key);
+        if (connection != null && connection.isOpen())
+            return connection;
+        if (!running)
+            return null;
+        synchronized (connections) {
+            connection = connections.get(key);
+            if (connection != null && connection.isOpen())
+                return connection;
+            var retryAt = unreachableUntil.get(peer);
+            if (retryAt != null && System.currentTimeMillis() < retryAt)
+                return null;
+            var address = lookupAddress(peer, priority);
+            if (address == null)
+                return null;
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.socket().connect(address, CONNECT_TIMEOUT_MILLIS);
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                closeQuietly(channel);
+                knownAddresses.remove(peer);
+                unreachableUntil.put(peer, System.currentTimeMillis() + RECONNECT_BACKOFF_MILLIS);
+                if (NetworkLogger.transmitterDebugMode.isDebugMode())
+                    NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Could not connect to " + peer + " at " + address + ": " + e.getMessage());
+                return null;
+            }
+            unreachableUntil.remove(peer);
+            var reactor = reactors.get(priority);
+            var newConnection = new PeerConnection(reactor, channel, key);
+            connections.put(key, newConnection);
+            reactor.runOnSelector(newConnection::register);
+            return newConnection;
+        }
+    }
+
+    private void deliver(byte[] frame) {
+        for (Instruction<?> instruction : frameCodec.decodeAll(frame)) {
+            try {
+                messagingService.postMessageEvent("Peer_" + instruction.getSenderUUID(), instruction);
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void closeQuietly(@Nullable AutoCloseable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private record ConnectionKey(UUID peer, Priority priority) {
+    }
+
+    /**
+     * The socket, selector and thread of one priority. The selector thread accepts connections, reads frames and writes what a sender
+     * couldn't write right away.
+     */
+    private class Reactor {
+        private final Priority priority;
+        private final Selector selector;
+        private final ServerSocketChannel serverChannel;
+        private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+        private final Set<PeerConnection> acceptedConnections = ConcurrentHashMap.newKeySet();
+        private final Thread selectorThread;
+
+        private Reactor(Priority priority) {
+            this.priority = priority;
+            try {
+                selector = Selector.open();
+                serverChannel = ServerSocketChannel.open();
+                serverChannel.bind(priority == Priority.NORMAL ? bindAddress : new InetSocketAddress(bindAddress.getAddress(), 0));
+                serverChannel.configureBlocking(false);
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not listen on " + bindAddress + " for " + priority + " instructions", e);
+            }
+            selectorThread = new Thread(this::run, "PeerTransmitter-" + messagingService.getSessionIdentifier() + "-" + priority);
+            selectorThread.setDaemon(true);
+        }
+
+        private void start() {
+            selectorThread.start();
+        }
+
+        private void close() {
+            selector.wakeup();
+            try {
+                selectorThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void runOnSelector(Runnable task) {
+            selectorTasks.add(task);
+            selector.wakeup();
+        }
+
+        private void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    Runnable task;
+                    while ((task = selectorTasks.poll()) != null)
+                        task.run();
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        if (!key.isValid())
+                            continue;
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        var connection = (PeerConnection) key.attachment();
+                        if (key.isReadable())
+                            connection.read();
+                        if (key.isValid() && key.isWritable())
+                            connection.flush();
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running)
+                    e.printStackTrace();
+            } finally {
+                connections.values().stream().filter(connection -> connection.reactor == this).forEach(PeerConnection::closeNow);
+                acceptedConnections.forEach(PeerConnection::closeNow);
+                acceptedConnections.clear();
+                closeQuietly(serverChannel);
+                closeQuietly(selector);
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null)
+                return;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            var connection = new PeerConnection(this, channel, null);
+            acceptedConnections.add(connection);
+            connection.register();
+        }
+    }
+
+    /**
+     * A socket to a peer. Outgoing connections are written by the senders and only read to notice when the peer closes them.
+     * Accepted connections are only read.
+     */
+    private class PeerConnection {
+        private final Reactor reactor;
+        private final SocketChannel channel;
+        @Nullable
+        private final ConnectionKey key;
+        private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        private SelectionKey selectionKey;
+        // Only touched by the selector thread
+        private ByteBuffer readBuffer;
+        @Nullable
+        private ByteBuffer largeFrame;
+        private volatile boolean open = true;
+
+        private PeerConnection(Reactor reactor, SocketChannel channel, @Nullable ConnectionKey key) {
+            this.reactor = reactor;
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private boolean isOpen() {
+            return open;
+        }
+
+        private void register() {
+            try {
+                readBuffer = bufferPool.acquire(bufferPool.getBufferSize());
+                selectionKey = channel.register(reactor.selector, SelectionKey.OP_READ, this);
+                updateInterest();
+            } catch (IOException e) {
+                closeNow();
+            }
+        }
+
+        /**
+         * Writes as much of the frame as possible right away and leaves the rest to the selector thread
+         *
+         * @return false if the connection is closed
+         */
+        private boolean send(byte[] frame) {
+            var buffer = bufferPool.acquire(Integer.BYTES + frame.length);
+            buffer.putInt(frame.length).put(frame).flip();
+            synchronized (this) {
+                if (!open) {
+                    bufferPool.release(buffer);
+                    return false;
+                }
+                if (pendingWrites.isEmpty()) {
+                    try {
+                        channel.write(buffer);
+                    } catch (IOException e) {
+                        bufferPool.release(buffer);
+                        open = false;
+                        reactor.runOnSelector(this::closeNow);
+                        return false;
+                    }
+                    if (!buffer.hasRemaining()) {
+                        bufferPool.release(buffer);
+                        return true;
+                    }
+                }
+                pendingWrites.add(buffer);
+            }
+            reactor.runOnSelector(this::updateInterest);
+            return true;
+        }
+
+        private void flush() {
+            synchronized (this) {
+                try {
+                    while (!pendingWrites.isEmpty()) {
+                        var buffer = pendingWrites.peek();
+                        channel.write(buffer);
+                        if (buffer.hasRemaining())
+                            break;
+                        bufferPool.release(pendingWrites.poll());
+                    }
+                } catch (IOException e) {
+                    closeNow();
+                    return;
+                }
+            }
+            updateInterest();
+        }
+
+        private void updateInterest() {
+            synchronized (this) {
+                if (selectionKey == null || !selectionKey.isValid())
+                    return;
+                selectionKey.interestOps(pendingWrites.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void read() {
+            try {
+                if (channel.read(readBuffer) < 0) {
+                    closeNow();
+                    return;
+                }
+            } catch (IOException e) {
+                closeNow();
+                return;
+            }
+            readBuffer.flip();
+            while (true) {
+                if (largeFrame != null) {
+                    int length = Math.min(largeFrame.remaining(), readBuffer.remaining());
+                    largeFrame.put(largeFrame.position(), readBuffer, readBuffer.position(), length);
+                    largeFrame.position(largeFrame.position() + length);
+                    readBuffer.position(readBuffer.position() + length);
+                    if (largeFrame.hasRemaining())
+                        break;
+                    deliver(largeFrame.array());
+                    largeFrame = null;
+                    continue;
+                }
+                if (readBuffer.remaining() < Integer.BYTES)
+                    break;
+                int length = readBuffer.getInt(readBuffer.position());
+                if (length < 0 || length > MAX_FRAME_SIZE) {
+                    NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Closing " + reactor.priority + " peer connection after a frame of invalid size " + length);
+                    closeNow();
+                    return;
+                }
+                if (Integer.BYTES + length > readBuffer.capacity()) {
+                    readBuffer.getInt();
+                    largeFrame = ByteBuffer.allocate(length);
+                    continue;
+                }
+                if (readBuffer.remaining() < Integer.BYTES + length)
+                    break;
+                readBuffer.getInt();
+                byte[] frame = new byte[length];
+                readBuffer.get(frame);
+                deliver(frame);
+            }
+            readBuffer.compact();
+        }
+
+        /**
+         * Closes the connection. Only called by the selector thread, since the read buffer goes back to the pool.
+         */
+        private void closeNow() {
+            synchronized (this) {
+                open = false;
+                closeQuietly(channel);
+                pendingWrites.forEach(bufferPool::release);
+                pendingWrites.clear();
+            }
+            if (readBuffer != null) {
+                bufferPool.release(readBuffer);
+                readBuffer = null;
+            }
+            if (key != null)
+                connections.remove(key, this);
+            else
+                reactor.acceptedConnections.remove(this);
+        }
+    }
+}
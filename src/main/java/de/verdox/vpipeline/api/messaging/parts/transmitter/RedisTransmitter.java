@@ -1,22 +1,40 @@
 package de.verdox.vpipeline.api.messaging.parts.transmitter;
 
-import com.google.gson.*;
 import de.verdox.vserializer.generic.Serializer;
 import de.verdox.vserializer.generic.SerializerBuilder;
 import de.verdox.vserializer.SerializableField;
 import de.verdox.vpipeline.api.NetworkLogger;
 import de.verdox.vpipeline.api.messaging.MessagingService;
 import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo.Priority;
 import de.verdox.vpipeline.api.messaging.instruction.Instruction;
 import de.verdox.vpipeline.impl.util.RedisConnection;
+import org.jetbrains.annotations.Nullable;
 import org.redisson.api.RTopic;
 import org.redisson.api.listener.MessageListener;
-import org.redisson.client.codec.StringCodec;
+import org.redisson.client.codec.ByteArrayCodec;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Sends instructions over redis pub/sub. Every {@link Priority} has its own channels, so urgent instructions are not queued behind bulk
+ * instructions in redis, in the frame batcher or in the listener of the receiver.
+ * <p>
+ * Redisson calls the listeners of all channels on shared threads. The listeners only hand the received frames to a receiving thread per priority,
+ * which decodes them and passes them to the {@link MessagingService}. Large bulk frames thus never hold up the delivery of urgent instructions.
+ */
 public class RedisTransmitter implements Transmitter {
+    private static final String GLOBAL_MESSAGING_CHANNEL = "GlobalMessagingChannel";
     public static final Serializer<RedisTransmitter> SERIALIZER = SerializerBuilder.create("redis_transmitter", RedisTransmitter.class)
             .constructor(
                     new SerializableField<>("redis_connection", RedisConnection.SERIALIZER, RedisTransmitter::getRedisConnection),
@@ -25,15 +43,40 @@ public class RedisTransmitter implements Transmitter {
             .build();
 
     private RTopic globalMessagingChannel;
-    private MessageListener<String> listener;
+    // One listener per priority, null until the transmitter is connected
+    @Nullable
+    private volatile Map<Priority, MessageListener<byte[]>> listeners;
+    private final Map<Priority, ExecutorService> receivers = new EnumMap<>(Priority.class);
     private final RedisConnection redisConnection;
     private MessagingService messagingService;
-    private RTopic privateMessagingChannel;
-
-    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final WireFormat wireFormat;
+    @Nullable
+    private final FrameBatcher.Settings batchSettings;
+    private InstructionFrameCodec frameCodec;
+    @Nullable
+    private FrameBatcher<String> frameBatcher;
+    // Listeners of the joined group channels, the id is -1 until the transmitter is connected
+    private final Map<String, GroupListener> groupListeners = new ConcurrentHashMap<>();
 
     public RedisTransmitter(RedisConnection redisConnection) {
+        this(redisConnection, WireFormat.JSON);
+    }
+
+    public RedisTransmitter(RedisConnection redisConnection, WireFormat wireFormat) {
+        this(redisConnection, wireFormat, null);
+    }
+
+    /**
+     * @param redisConnection the connection
+     * @param wireFormat      the format instructions are sent in
+     * @param batchSettings   the limits of batch frames or null to publish every instruction on its own.
+     *                        Only nodes of a version that reads batch frames can receive them, so batching is enabled per deployment like the wire format.
+     */
+    public RedisTransmitter(RedisConnection redisConnection, WireFormat wireFormat, @Nullable FrameBatcher.Settings batchSettings) {
         this.redisConnection = redisConnection;
+        this.wireFormat = wireFormat;
+        this.batchSettings = batchSettings;
     }
 
 
@@ -49,7 +92,7 @@ public class RedisTransmitter implements Transmitter {
             }
             if (NetworkLogger.transmitterDebugMode.isDebugMode())
                 NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Sending message to PrivateMessagingChannel_" + receiver);
-            counter += publish(getPrivateMessagingChannel(receiver), message);
+            counter += publish(withPriority(getPrivateMessagingChannelName(receiver), message), message);
         }
         return counter;
     }
@@ -57,22 +100,54 @@ public class RedisTransmitter implements Transmitter {
     @Override
     public long broadcastMessage(Instruction<?> message) {
         Objects.requireNonNull(message);
-        var publishedTo = publish(globalMessagingChannel, message);
+        var publishedTo = publish(withPriority(GLOBAL_MESSAGING_CHANNEL, message), message);
+        // Queued messages are published with the next batch. Counting the subscribers is another round trip, so it is only done for debugging.
+        if (!NetworkLogger.transmitterDebugMode.isDebugMode() || (publishedTo == 0 && frameBatcher != null))
+            return publishedTo;
         var amountSubscribers = globalMessagingChannel.countSubscribers();
         if (publishedTo != amountSubscribers)
             NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Broadcast message couldn't be sent to all subscribers [" + publishedTo + "/" + amountSubscribers + "] - " + message);
-        else {
-            if (NetworkLogger.transmitterDebugMode.isDebugMode())
-                NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Message was broadcasted to " + publishedTo + "/" + amountSubscribers + " clients.");
-        }
+        else
+            NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Message was broadcasted to " + publishedTo + "/" + amountSubscribers + " clients.");
         return publishedTo;
     }
 
+    @Override
+    public synchronized void joinGroup(String group) {
+        Map<Priority, MessageListener<byte[]>> listeners = this.listeners;
+        for (Priority priority : Priority.values()) {
+            String channelName = withPriority(getGroupMessagingChannelName(group), priority);
+            if (!groupListeners.containsKey(channelName))
+                groupListeners.put(channelName, new GroupListener(priority, listeners != null ? getTopic(channelName).addListener(byte[].class, listeners.get(priority)) : -1));
+        }
+    }
+
+    @Override
+    public synchronized void leaveGroup(String group) {
+        for (Priority priority : Priority.values()) {
+            String channelName = withPriority(getGroupMessagingChannelName(group), priority);
+            GroupListener groupListener = groupListeners.remove(channelName);
+            if (groupListener != null && groupListener.listenerId() != -1)
+                getTopic(channelName).removeListener(groupListener.listenerId());
+        }
+    }
+
+    @Override
+    public long sendToGroup(Instruction<?> message, String group, Set<UUID> members) {
+        Objects.requireNonNull(message);
+        if (NetworkLogger.transmitterDebugMode.isDebugMode())
+            NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Sending message to " + getGroupMessagingChannelName(group));
+        return publish(withPriority(getGroupMessagingChannelName(group), message), message);
+    }
+
     @Override
     public void setMessagingService(MessagingService messagingService) {
         if (this.messagingService != null)
             throw new IllegalStateException("MessagingService can't be changed afterwards");
         this.messagingService = messagingService;
+        this.frameCodec = new InstructionFrameCodec(messagingService.getMessageFactory(), wireFormat);
+        if (batchSettings != null)
+            this.frameBatcher = new FrameBatcher<>(batchSettings, (channelName, frame) -> getTopic(channelName).publish(frame), frameCodec::encodeBatch);
     }
 
     @Override
@@ -85,70 +160,135 @@ public class RedisTransmitter implements Transmitter {
     @Override
     public void shutdown() {
         redisConnection.getRedissonClient().shutdown();
-        globalMessagingChannel.removeListener(listener);
-        privateMessagingChannel.removeListener(listener);
+        subscriptions.forEach(subscription -> subscription.channel().removeListener(subscription.listener()));
+        receivers.values().forEach(ExecutorService::shutdown);
+    }
+
+    private static String getPrivateMessagingChannelName(UUID uuid) {
+        return "PrivateMessagingChannel_" + uuid;
+    }
+
+    private static String getGroupMessagingChannelName(String group) {
+        return "GroupMessagingChannel_" + group;
+    }
+
+    /**
+     * Normal instructions use the plain channel names, so they stay readable by nodes that don't know priority channels
+     */
+    private static String withPriority(String channelName, Priority priority) {
+        return priority == Priority.NORMAL ? channelName : channelName + "_" + priority;
+    }
+
+    private String withPriority(String channelName, Instruction<?> instruction) {
+        return withPriority(channelName, messagingService.getMessageFactory().findInstructionInfo((Class<? extends Instruction<?>>) instruction.getClass()).priority());
     }
 
-    private RTopic getPrivateMessagingChannel(UUID uuid) {
-        return redisConnection.getRedissonClient().getTopic("PrivateMessagingChannel_" + uuid, new StringCodec());
+    private RTopic getTopic(String channelName) {
+        if (GLOBAL_MESSAGING_CHANNEL.equals(channelName) && globalMessagingChannel != null)
+            return globalMessagingChannel;
+        return redisConnection.getRedissonClient().getTopic(channelName, ByteArrayCodec.INSTANCE);
     }
 
-    private long publish(RTopic rTopic, Instruction<?> instruction) {
-        var object = new JsonObject();
-        object.add("id", new JsonPrimitive(instruction.getInstructionID()));
-        object.add("data", gson.toJsonTree(instruction));
-        return rTopic.publish(gson.toJson(object));
+    private long publish(String channelName, Instruction<?> instruction) {
+        byte[] frame = frameCodec.encode(instruction);
+        if (frameBatcher != null)
+            return frameBatcher.send(channelName, frame);
+        return getTopic(channelName).publish(frame);
+    }
+
+    /**
+     * Returns the batcher of this transmitter
+     *
+     * @return the batcher or null if batching is disabled
+     */
+    @Nullable
+    public FrameBatcher<String> getFrameBatcher() {
+        return frameBatcher;
     }
 
     public RedisConnection getRedisConnection() {
         return redisConnection;
     }
 
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
     @Override
     public void connect() {
         getRedisConnection().connect();
 
-        globalMessagingChannel = redisConnection.getRedissonClient().getTopic("GlobalMessagingChannel", new StringCodec());
-        this.listener = (channel, msgString) -> {
-            //TODO: Den richtigen Typ hernehmen nach ID zum deserializen
-            //TODO: Die Id mitsenden?
-            var element = JsonParser.parseString(msgString);
+        globalMessagingChannel = redisConnection.getRedissonClient().getTopic(GLOBAL_MESSAGING_CHANNEL, ByteArrayCodec.INSTANCE);
+        Map<Priority, MessageListener<byte[]>> listeners = new EnumMap<>(Priority.class);
+        for (Priority priority : Priority.values()) {
+            ExecutorService receiver = Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("RedisTransmitter-" + messagingService.getSessionIdentifier() + "-" + priority).factory());
+            receivers.put(priority, receiver);
+            listeners.put(priority, (channel, frame) -> {
+                try {
+                    receiver.execute(() -> receive(channel, frame));
+                } catch (RejectedExecutionException e) {
+                    // The transmitter is shut down
+                }
+            });
+        }
+        this.listeners = Map.copyOf(listeners);
 
+        subscribe(globalMessagingChannel, listeners.get(Priority.NORMAL));
+        NetworkLogger.info("Redis Transmitter connected");
+        subscribe(getTopic(getPrivateMessagingChannelName(messagingService.getSessionUUID())), listeners.get(Priority.NORMAL));
 
-            var instructionID = element.getAsJsonObject().get("id").getAsJsonPrimitive().getAsInt();
-            var data = element.getAsJsonObject().get("data");
-            var type = messagingService.getMessageFactory().getCachedInstructionData(instructionID);
-            if (type == null) {
-                if (NetworkLogger.transmitterDebugMode.isDebugMode())
-                    NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Received unknown data with id: " + instructionID);
-                return;
-            }
+        for (Priority priority : Priority.values()) {
+            if (priority == Priority.NORMAL)
+                continue;
+            for (String channelName : List.of(GLOBAL_MESSAGING_CHANNEL, getPrivateMessagingChannelName(messagingService.getSessionUUID())))
+                subscribe(getTopic(withPriority(channelName, priority)), listeners.get(priority));
+        }
+
+        NetworkLogger.info("[" + messagingService.getSessionIdentifier() + "] Private Channel: " + "PrivateMessagingChannel_" + messagingService.getSessionUUID());
+
+        synchronized (this) {
+            groupListeners.replaceAll((channelName, groupListener) -> groupListener.listenerId() != -1 ? groupListener :
+                    new GroupListener(groupListener.priority(), getTopic(channelName).addListener(byte[].class, listeners.get(groupListener.priority()))));
+        }
+    }
 
-            var deserializedInstruction = gson.fromJson(data, type.type());
-            if (deserializedInstruction.getSenderUUID().equals(messagingService.getSessionUUID()))
-                return;
+    private void subscribe(RTopic channel, MessageListener<byte[]> listener) {
+        channel.addListener(byte[].class, listener);
+        subscriptions.add(new Subscription(channel, listener));
+    }
+
+    /**
+     * Decodes a received frame and passes its instructions to the messaging service. Runs on the receiving thread of the priority of the channel.
+     */
+    private void receive(CharSequence channel, byte[] frame) {
+        var deserializedInstructions = frameCodec.decodeAll(frame);
+        if (deserializedInstructions.isEmpty()) {
+            if (NetworkLogger.transmitterDebugMode.isDebugMode())
+                NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Received an instruction of unknown type");
+            return;
+        }
+        for (Instruction<?> deserializedInstruction : deserializedInstructions) {
             if (NetworkLogger.transmitterDebugMode.isDebugMode()) {
                 NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Received a message on global channel");
-                NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Deserialized message to " + type
-                        .type().getSimpleName());
+                NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Deserialized message to " + deserializedInstruction
+                        .getClass().getSimpleName());
             }
             try {
                 messagingService.postMessageEvent(String.valueOf(channel), deserializedInstruction);
             } catch (Throwable e) {
                 e.printStackTrace();
             }
-        };
-        globalMessagingChannel.addListener(String.class, listener);
-        NetworkLogger.info("Redis Transmitter connected");
-
-        privateMessagingChannel = getPrivateMessagingChannel(messagingService.getSessionUUID());
-        privateMessagingChannel.addListener(String.class, listener);
-
-        NetworkLogger.info("[" + messagingService.getSessionIdentifier() + "] Private Channel: " + "PrivateMessagingChannel_" + messagingService.getSessionUUID());
+        }
     }
 
     @Override
     public void disconnect() {
         getRedisConnection().disconnect();
     }
+
+    private record Subscription(RTopic channel, MessageListener<byte[]> listener) {
+    }
+
+    private record GroupListener(Priority priority, int listenerId) {
+    }
 }
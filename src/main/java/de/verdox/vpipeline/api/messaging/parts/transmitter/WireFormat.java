@@ -0,0 +1,17 @@
+package de.verdox.vpipeline.api.messaging.parts.transmitter;
+
+/**
+ * The format a {@link RedisTransmitter} uses to send instructions.
+ * Every transmitter reads both formats, but older versions only read json.
+ * A deployment should therefore switch to {@link #BINARY} once all of its nodes were updated.
+ */
+public enum WireFormat {
+    /**
+     * Instructions are sent as json objects with their id and all of their fields
+     */
+    JSON,
+    /**
+     * Instructions are sent as binary frames with a fixed header and a payload that is encoded by the codec of the instruction type
+     */
+    BINARY
+}
@@ -0,0 +1,51 @@
+package de.verdox.vpipeline.api.messaging.stream;
+
+import de.verdox.vpipeline.api.messaging.instruction.types.StreamingQuery;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+/**
+ * The result of a {@link StreamingQuery}. The query is sent when the stream is subscribed, a stream can only be subscribed once.
+ * <p>
+ * The receiver sends the elements in sequenced chunks of about {@link Settings#chunkSize()} bytes. It only sends a chunk after it got
+ * credit for it, and credit is only granted while less than {@link Settings#window()} chunks are on their way or not delivered yet.
+ * So no matter how large the result is, neither side holds more than the window in memory.
+ * Elements are delivered to the subscriber on the thread that received their chunk or that requested them, subscribers should not block.
+ * <p>
+ * The stream fails with a {@link java.util.concurrent.TimeoutException} if no chunk arrived within {@link Settings#timeout()} while
+ * one was expected. The receiver drops a stream that did not get credit within the timeout, so a subscriber should not pause longer.
+ *
+ * @param <T> the type of the elements
+ */
+public interface ResponseStream<T> extends Flow.Publisher<T> {
+
+    /**
+     * Subscribes to the stream and returns an iterator that blocks until the next element arrived.
+     * A failed stream throws a {@link CompletionException} with the cause.
+     *
+     * @return the iterator
+     */
+    Iterator<T> toIterator();
+
+    /**
+     * @param chunkSize the size in bytes after which the receiver of a query closes a chunk. An element is never split.
+     * @param window    the maximum amount of chunks a sender of a query has in flight or buffered
+     * @param timeout   the time without progress after which a stream is given up on both sides
+     */
+    record Settings(int chunkSize, int window, @NotNull Duration timeout) {
+        public static final Settings DEFAULT = new Settings(64 * 1024, 8, Duration.ofSeconds(10));
+
+        public Settings {
+            Objects.requireNonNull(timeout, "timeout can't be null!");
+            if (chunkSize <= 0 || window <= 0)
+                throw new IllegalArgumentException("chunkSize and window have to be positive");
+            if (timeout.isNegative() || timeout.isZero())
+                throw new IllegalArgumentException("timeout has to be positive");
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package de.verdox.vpipeline.api.ownership;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+
+import java.util.function.Consumer;
+
+/**
+ * A change to an owned {@link IPipelineData} object.
+ * Mutations are applied by the owner of the object. If another node writes the object, the mutation is serialized and forwarded to the owner.
+ * Mutation types have to be registered with the same id on every node, see {@link OwnershipRegistry#registerMutationType(String, Class, java.util.function.Supplier)}.
+ *
+ * @param <T> the data type
+ */
+public interface ObjectMutation<T extends IPipelineData> extends Consumer<T> {
+    /**
+     * Used to deserialize the input data of a mutation from a byte array.
+     *
+     * @param byteArrayDataInput the serialized input data
+     */
+    void readInputParameter(ByteArrayDataInput byteArrayDataInput);
+
+    /**
+     * Used to serialize the input data of a mutation into a byte array.
+     *
+     * @param byteArrayDataOutput the byte array data output to write to
+     */
+    void writeInputParameter(ByteArrayDataOutput byteArrayDataOutput);
+}
@@ -0,0 +1,83 @@
+package de.verdox.vpipeline.api.ownership;
+
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Assigns {@link IPipelineData} objects to an owning node, for example the node a player is connected to.
+ * <p>
+ * The owner applies writes to its local copy without acquiring network locks and pushes the result to the global cache.
+ * Other nodes forward their {@link ObjectMutation}s to the owner. Ownership is handed over on demand when another node claims an object.
+ * Objects that are managed by this registry should not be written with {@link de.verdox.vpipeline.api.pipeline.parts.cache.local.DataAccess#write()} at the same time,
+ * since those writes don't know about the owner.
+ */
+public interface OwnershipRegistry {
+    /**
+     * Used to register a new mutation type. Mutation types have to be registered with the same id on every node.
+     *
+     * @param id          the unique id of the mutation type
+     * @param type        the type
+     * @param constructor the mutation constructor
+     * @param <M>         the generic mutation type
+     */
+    <M extends ObjectMutation<?>> void registerMutationType(@NotNull String id, @NotNull Class<? extends M> type, @NotNull Supplier<M> constructor);
+
+    /**
+     * Returns the session uuid of the node that owns an object.
+     *
+     * @param type the data class
+     * @param uuid the uuid of the data
+     * @return the owner or null if the object has no owner
+     */
+    @Nullable UUID getOwner(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid);
+
+    /**
+     * Checks if this node owns an object
+     *
+     * @param type the data class
+     * @param uuid the uuid of the data
+     * @return true if this node is the owner
+     */
+    boolean isOwner(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid);
+
+    /**
+     * Makes this node the owner of an object. If another node owns the object it is asked to hand it over.
+     * The current owner finishes its running writes and saves the object before it gives up the ownership.
+     * An owner that does not answer in time is treated as offline and the object is taken over anyway.
+     * Every claim increases the epoch of the ownership record, so an owner that was taken over rejects its next write.
+     * Claims are serialized with the network write lock of the ownership record, so this call blocks.
+     *
+     * @param type the data class
+     * @param uuid the uuid of the data
+     * @return true if this node owns the object afterwards
+     */
+    boolean claim(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid);
+
+    /**
+     * Gives up the ownership of an object if this node owns it. The object is saved before the ownership is released.
+     *
+     * @param type the data class
+     * @param uuid the uuid of the data
+     */
+    void release(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid);
+
+    /**
+     * Applies a mutation to an object.
+     * If this node owns the object the mutation is applied locally. If another node owns it the mutation is forwarded to that node.
+     * If the object has no owner, this node claims it.
+     * If the owner does not answer in time the future fails with a {@link java.util.concurrent.TimeoutException}, since the owner may still have applied the mutation.
+     * Use {@link #claim(Class, UUID)} to take over an object from an owner that went offline.
+     *
+     * @param type     the data class
+     * @param uuid     the uuid of the data
+     * @param mutation the mutation. Its type has to be registered.
+     * @param <T>      the generic data type
+     * @return a future that completes with true if the mutation was applied and false if the object does not exist or could not be written
+     */
+    <T extends IPipelineData> CompletableFuture<Boolean> write(@NotNull Class<? extends T> type, @NotNull UUID uuid, @NotNull ObjectMutation<T> mutation);
+}
@@ -7,6 +7,8 @@ import de.verdox.vpipeline.api.pipeline.parts.GlobalCache;
 import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.function.Consumer;
 
 /**
@@ -52,4 +54,24 @@ public interface PipelineBuilder {
      * @return the builder
      */
     PipelineBuilder withGson(Consumer<GsonBuilder> gsonBuilderConsumer);
+
+    /**
+     * Used to keep the local cache across restarts. The local cache is written to the snapshot file on shutdown and restored lazily after the next start
+     * if the objects were not changed in the {@link GlobalCache} in the meantime.
+     * Only objects that are kept in the global cache are snapshotted, so the snapshot has no effect without one.
+     *
+     * @param snapshotFile the snapshot file
+     * @return the builder
+     */
+    PipelineBuilder withLocalCacheSnapshot(@NotNull Path snapshotFile);
+
+    /**
+     * Used to load objects from the local cache of other nodes before they are loaded from the {@link GlobalStorage}.
+     * Peers are only asked if the object is not found in the {@link GlobalCache}. Every node of the network answers the request,
+     * so a load waits at most for the given timeout if a node does not answer.
+     *
+     * @param timeout how long to wait for the other nodes
+     * @return the builder
+     */
+    PipelineBuilder withPeerFetch(@NotNull Duration timeout);
 }
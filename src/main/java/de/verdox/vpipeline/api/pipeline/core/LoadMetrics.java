@@ -0,0 +1,107 @@
+package de.verdox.vpipeline.api.pipeline.core;
+
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts from which tier the objects of a {@link Pipeline} were loaded.
+ * <p>
+ * Every load is answered by the first tier that holds the object, so the hit rate of a tier is the share of all loads that it answered.
+ */
+public class LoadMetrics {
+    private final Map<Class<? extends IPipelineData>, ClassMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Records that a load was answered by a tier
+     *
+     * @param type the data class
+     * @param tier the tier that answered the load
+     */
+    public void recordHit(@NotNull Class<? extends IPipelineData> type, @NotNull Tier tier) {
+        Objects.requireNonNull(tier, "tier can't be null!");
+        getMetrics(type).hits.get(tier).increment();
+    }
+
+    /**
+     * Returns the metrics of a data class
+     *
+     * @param type the data class
+     * @return the metrics
+     */
+    @NotNull
+    public ClassMetrics getMetrics(@NotNull Class<? extends IPipelineData> type) {
+        Objects.requireNonNull(type, "type can't be null!");
+        return metrics.computeIfAbsent(type, aClass -> new ClassMetrics());
+    }
+
+    /**
+     * Returns all data classes that have recorded metrics
+     *
+     * @return the metrics per data class
+     */
+    public Map<Class<? extends IPipelineData>, ClassMetrics> getAllMetrics() {
+        return Map.copyOf(metrics);
+    }
+
+    /**
+     * The tiers a load is answered from, in the order they are asked
+     */
+    public enum Tier {
+        LOCAL,
+        SNAPSHOT,
+        GLOBAL_CACHE,
+        /**
+         * The local cache of another node
+         */
+        PEER,
+        GLOBAL_STORAGE,
+        /**
+         * No tier held the object
+         */
+        MISS
+    }
+
+    public static class ClassMetrics {
+        private final Map<Tier, LongAdder> hits = new EnumMap<>(Tier.class);
+
+        private ClassMetrics() {
+            for (Tier tier : Tier.values())
+                hits.put(tier, new LongAdder());
+        }
+
+        public long getHits(@NotNull Tier tier) {
+            return hits.get(tier).sum();
+        }
+
+        public long getLoads() {
+            return hits.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        /**
+         * Returns the share of all loads that were answered by a tier
+         *
+         * @param tier the tier
+         * @return the hit rate between 0 and 1
+         */
+        public double getHitRate(@NotNull Tier tier) {
+            long loads = getLoads();
+            if (loads == 0)
+                return 0;
+            return (double) getHits(tier) / loads;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("ClassMetrics{loads=").append(getLoads());
+            for (Tier tier : Tier.values())
+                builder.append(", ").append(tier.name().toLowerCase()).append('=').append(String.format("%.2f", getHitRate(tier)));
+            return builder.append('}').toString();
+        }
+    }
+}
@@ -8,6 +8,8 @@ import de.verdox.vpipeline.api.Connection;
 import de.verdox.vpipeline.api.NetworkParticipant;
 import de.verdox.vpipeline.api.pipeline.datatypes.DataRegistry;
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineDataKey;
+import de.verdox.vpipeline.api.pipeline.datatypes.ReadConsistency;
 import de.verdox.vpipeline.api.pipeline.datatypes.SynchronizingService;
 import de.verdox.vpipeline.api.pipeline.parts.GlobalCache;
 import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
@@ -16,12 +18,17 @@ import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
 import de.verdox.vpipeline.api.pipeline.parts.cache.local.DataAccess;
 import de.verdox.vpipeline.api.pipeline.parts.cache.local.DataSubscriber;
 import de.verdox.vpipeline.api.pipeline.parts.cache.local.HashedLocalCache;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.MultiWrite;
+import de.verdox.vpipeline.api.pipeline.parts.lock.LockMetrics;
 import de.verdox.vpipeline.impl.pipeline.core.PipelineImpl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 public interface Pipeline extends SystemPart, Connection {
@@ -111,6 +118,28 @@ public interface Pipeline extends SystemPart, Connection {
     @NotNull
     NetworkDataLockingService getNetworkDataLockingService();
 
+    /**
+     * Returns the locks that guard the local copies of the objects on this node. They are never shared across the network.
+     * Every locked access of the pipeline takes the local lock of an object before its network lock.
+     * @return the local locking service
+     */
+    @NotNull
+    NetworkDataLockingService getLocalLockingService();
+
+    /**
+     * Returns the {@link LockMetrics} that record lock wait and hold times of this pipeline
+     * @return the lock metrics
+     */
+    @NotNull
+    LockMetrics getLockMetrics();
+
+    /**
+     * Returns the {@link LoadMetrics} that count from which tier the objects of this pipeline were loaded
+     * @return the load metrics
+     */
+    @NotNull
+    LoadMetrics getLoadMetrics();
+
     /**
      * Returns the {@link DataRegistry}
      * @return the dataRegistry
@@ -145,6 +174,45 @@ public interface Pipeline extends SystemPart, Connection {
      */
     @Nullable <T extends IPipelineData> DataAccess<T> load(@NotNull Class<? extends T> type, @NotNull UUID uuid);
 
+    /**
+     * Works like {@link #load(Class, UUID)} but gives up if the read lock of the data can't be acquired within the given timeout.
+     * @param type The data class
+     * @param uuid the uuid of the data
+     * @param timeout the maximum time to wait for the lock
+     * @return the data access object if data was loaded successfully. Else it returns null
+     * @param <T> the generic data type
+     * @throws TimeoutException if the lock was not acquired in time
+     * @throws InterruptedException if the thread was interrupted while waiting for the lock
+     */
+    @Nullable <T extends IPipelineData> DataAccess<T> load(@NotNull Class<? extends T> type, @NotNull UUID uuid, @NotNull Duration timeout) throws TimeoutException, InterruptedException;
+
+    /**
+     * Works like {@link #load(Class, UUID)} but lets the caller choose how up to date the local copy has to be.
+     * <ul>
+     *     <li>{@link ReadConsistency#LOCAL} returns the local copy without acquiring any locks.</li>
+     *     <li>{@link ReadConsistency#bounded(Duration)} returns the local copy without locks if it was synchronized within the bound and reloads it otherwise.</li>
+     *     <li>{@link ReadConsistency#LINEARIZABLE} acquires the read lock like {@link #load(Class, UUID)}.</li>
+     * </ul>
+     * Objects that are not in the local cache yet are always loaded with the read lock.
+     * The latency of each level is recorded in the {@link LockMetrics}.
+     * @param type The data class
+     * @param uuid the uuid of the data
+     * @param consistency the read consistency
+     * @return the data access object if data was loaded successfully. Else it returns null
+     * @param <T> the generic data type
+     */
+    @Nullable <T extends IPipelineData> DataAccess<T> load(@NotNull Class<? extends T> type, @NotNull UUID uuid, @NotNull ReadConsistency consistency);
+
+    /**
+     * Reloads the local copy of a particular {@link IPipelineData} from the global cache or the global storage if it was not synchronized within the given bound.
+     * @param type The data class
+     * @param uuid the uuid of the data
+     * @param maxStaleness the maximum age of the last synchronization
+     * @return true if the object exists in the local cache afterwards
+     * @param <T> the generic data type
+     */
+    <T extends IPipelineData> boolean revalidate(@NotNull Class<? extends T> type, @NotNull UUID uuid, @NotNull Duration maxStaleness);
+
     /**
      * Used to load {@link IPipelineData} into the {@link LocalCache} of the {@link Pipeline} or create the data if it was not found anywhere in the pipeline.
      * When the {@link IPipelineData} was loaded successfully a {@link DataAccess} object is created that can be used
@@ -170,6 +238,56 @@ public interface Pipeline extends SystemPart, Connection {
         return loadOrCreate(type, uuid, null);
     }
 
+    /**
+     * Works like {@link #loadOrCreate(Class, UUID, Consumer)} but gives up if a lock of the data can't be acquired within the given timeout.
+     * The timeout is shared by the read and the write lock that might be needed.
+     * @param type The data class
+     * @param uuid the uuid of the data
+     * @param timeout the maximum time to wait for the locks
+     * @param immediateWriteOperation An immediate write operation that is run after the object creation
+     * @return the data access object when data was loaded or created successfully.
+     * @param <T> the generic data type
+     * @throws TimeoutException if a lock was not acquired in time
+     * @throws InterruptedException if the thread was interrupted while waiting for a lock
+     */
+    @NotNull <T extends IPipelineData> DataAccess<T> loadOrCreate(@NotNull Class<? extends T> type, @NotNull UUID uuid, @NotNull Duration timeout, @Nullable Consumer<T> immediateWriteOperation) throws TimeoutException, InterruptedException;
+
+
+    /**
+     * Changes a particular {@link IPipelineData} without acquiring its network write lock.
+     * <p>
+     * The mutation is applied to a copy of the object. The copy is committed to the {@link GlobalCache} with an atomic compare-and-set on the object version.
+     * If another write happened in the meantime the latest version is loaded and the mutation runs again, so it may be called several times and should not have side effects.
+     * After several conflicts, or if the global cache does not support versioned writes, the mutation runs once under the write lock instead.
+     * <p>
+     * The {@link GlobalStorage} is not written on every commit. It is updated the next time the object is synchronized with the storage, e.g. when it leaves the local cache.
+     * Writes with {@link DataAccess#write()} don't check the version, so an object should not be written in both modes at the same time.
+     * @param type The data class
+     * @param uuid the uuid of the data
+     * @param mutation the changes to apply
+     * @return true if the object exists and the changes were committed
+     * @param <T> the generic data type
+     */
+    <T extends IPipelineData> boolean writeOptimistic(@NotNull Class<? extends T> type, @NotNull UUID uuid, @NotNull Consumer<T> mutation);
+
+    /**
+     * Loads several {@link IPipelineData} objects and holds their write locks until the returned access is closed.
+     * The locks are acquired in a canonical order, so two callers that lock overlapping objects can't deadlock.
+     * Objects that don't exist in the pipeline are locked but not created.
+     * @param keys the objects to write
+     * @return the write access. Changes of all objects are committed when it is closed.
+     */
+    @NotNull MultiWrite writeAll(@NotNull Collection<PipelineDataKey> keys);
+
+    /**
+     * Works like {@link #writeAll(Collection)} but gives up if the locks can't be acquired within the given timeout.
+     * @param keys the objects to write
+     * @param timeout the maximum time to wait for the locks
+     * @return the write access. Changes of all objects are committed when it is closed.
+     * @throws TimeoutException if the locks were not acquired in time
+     * @throws InterruptedException if the thread was interrupted while waiting for the locks
+     */
+    @NotNull MultiWrite writeAll(@NotNull Collection<PipelineDataKey> keys, @NotNull Duration timeout) throws TimeoutException, InterruptedException;
 
     /**
      * Used to load all objects of {@link IPipelineData} into the {@link LocalCache} of the {@link Pipeline} or create the data if it was not found anywhere in the pipeline.
@@ -92,6 +92,12 @@ public interface IPipelineData {
     @NotNull
     DataSynchronizer getSynchronizer();
     void updateLastUsage();
+
+    /**
+     * Returns the time in millis when this object was last used on this node
+     * @return the time of the last usage
+     */
+    long getLastUsage();
     void save(boolean saveToStorage);
     AttachedPipeline getAttachedPipeline();
 
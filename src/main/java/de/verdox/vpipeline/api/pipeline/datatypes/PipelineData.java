@@ -104,6 +104,11 @@ public abstract class PipelineData implements IPipelineData {
         lastUse = System.currentTimeMillis();
     }
 
+    @Override
+    public long getLastUsage() {
+        return lastUse;
+    }
+
     @Override
     public void save(boolean saveToStorage) {
         updateLastUsage();
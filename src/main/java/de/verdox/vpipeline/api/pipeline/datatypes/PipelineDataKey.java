@@ -0,0 +1,36 @@
+package de.verdox.vpipeline.api.pipeline.datatypes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Identifies a {@link IPipelineData} object by its type and {@link UUID}.
+ * <p>
+ * Keys are ordered by the name of the data class and the uuid. Locks on several objects are always acquired in this order, so two threads
+ * that lock an overlapping set of objects can never wait for each other in a cycle.
+ *
+ * @param type the data class
+ * @param uuid the object uuid
+ */
+public record PipelineDataKey(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid) implements Comparable<PipelineDataKey> {
+    private static final Comparator<PipelineDataKey> ORDER = Comparator
+            .comparing((PipelineDataKey key) -> key.type().getName())
+            .thenComparing(PipelineDataKey::uuid);
+
+    public PipelineDataKey {
+        Objects.requireNonNull(type, "type can't be null!");
+        Objects.requireNonNull(uuid, "uuid can't be null!");
+    }
+
+    public static PipelineDataKey of(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid) {
+        return new PipelineDataKey(type, uuid);
+    }
+
+    @Override
+    public int compareTo(@NotNull PipelineDataKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,47 @@
+package de.verdox.vpipeline.api.pipeline.datatypes;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * How up to date the local copy of an {@link IPipelineData} object has to be when it is read.
+ *
+ * @param level the consistency level
+ * @param bound the maximum age of the last synchronization. Only used by {@link Level#BOUNDED}.
+ */
+public record ReadConsistency(@NotNull Level level, @Nullable Duration bound) {
+    /**
+     * Returns the local copy without acquiring any locks
+     */
+    public static final ReadConsistency LOCAL = new ReadConsistency(Level.LOCAL, null);
+    /**
+     * Acquires the read lock of the object before it is read
+     */
+    public static final ReadConsistency LINEARIZABLE = new ReadConsistency(Level.LINEARIZABLE, null);
+
+    public ReadConsistency {
+        Objects.requireNonNull(level, "level can't be null!");
+        if (level == Level.BOUNDED && (bound == null || bound.isNegative()))
+            throw new IllegalArgumentException("Bounded reads need a positive bound");
+    }
+
+    /**
+     * Returns the local copy without acquiring any locks if it was synchronized within the given bound.
+     * Older copies are reloaded from the pipeline first.
+     *
+     * @param bound the maximum age of the last synchronization
+     * @return the consistency
+     */
+    public static ReadConsistency bounded(@NotNull Duration bound) {
+        return new ReadConsistency(Level.BOUNDED, bound);
+    }
+
+    public enum Level {
+        LOCAL,
+        BOUNDED,
+        LINEARIZABLE
+    }
+}
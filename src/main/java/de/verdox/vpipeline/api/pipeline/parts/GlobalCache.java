@@ -1,10 +1,15 @@
 package de.verdox.vpipeline.api.pipeline.parts;
 
+import com.google.gson.JsonElement;
 import de.verdox.vpipeline.api.Connection;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
 import de.verdox.vpipeline.api.pipeline.parts.cache.global.RedisCache;
 import de.verdox.vpipeline.impl.util.RedisConnection;
 import de.verdox.vserializer.generic.Serializer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
 
 public interface GlobalCache extends DataProvider, Connection {
     Serializer<GlobalCache> SERIALIZER = Serializer.Selection.create("global_cache", GlobalCache.class)
@@ -12,6 +17,91 @@ public interface GlobalCache extends DataProvider, Connection {
             .variant("redis", RedisCache.SERIALIZER, new RedisCache(new RedisConnection(false, new String[]{"redis://localhost:6379"}, "")))
             ;
 
+    /**
+     * Returns the version of an object. The version is increased every time the object is saved to the global cache.
+     * A version must not come back after the object was removed or expired and created again, so it can be used to validate copies that were taken earlier.
+     *
+     * @param dataClass  the data class
+     * @param objectUUID the object uuid
+     * @return the version or 0 if the object does not exist or the cache does not track versions
+     */
+    default long getVersion(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        return 0;
+    }
+
+    /**
+     * Checks if this cache supports {@link #saveIfAbsent(Class, UUID, JsonElement)}
+     *
+     * @return true if atomic inserts are supported
+     */
+    default boolean supportsSaveIfAbsent() {
+        return false;
+    }
+
+    /**
+     * Saves an object only if no object with this uuid exists yet.
+     * The check and the insert are only one atomic operation if {@link #supportsSaveIfAbsent()} returns true.
+     * Otherwise another writer may insert the object between both steps and is overwritten.
+     *
+     * @param dataClass  the data class
+     * @param objectUUID the object uuid
+     * @param dataToSave the data to save
+     * @return true if the object was saved, false if it already existed
+     */
+    default boolean saveIfAbsent(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
+        if (dataExist(dataClass, objectUUID))
+            return false;
+        save(dataClass, objectUUID, dataToSave);
+        return true;
+    }
+
+    /**
+     * Checks if this cache supports {@link #loadVersioned(Class, UUID)} and {@link #compareAndSave(Class, UUID, long, JsonElement)}
+     *
+     * @return true if versioned compare-and-set writes are supported
+     */
+    default boolean supportsCompareAndSave() {
+        return false;
+    }
+
+    /**
+     * Loads an object together with its version.
+     * Both are only read in one atomic operation if {@link #supportsCompareAndSave()} returns true.
+     *
+     * @param dataClass  the data class
+     * @param objectUUID the object uuid
+     * @return the object and its version or null if the object does not exist
+     */
+    @Nullable
+    default VersionedData loadVersioned(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        long version = getVersion(dataClass, objectUUID);
+        JsonElement data = dataExist(dataClass, objectUUID) ? loadData(dataClass, objectUUID) : null;
+        return data != null ? new VersionedData(version, data) : null;
+    }
+
+    /**
+     * Saves an object only if its version still equals the expected version. The version is increased by the save.
+     * Caches that don't support compare-and-set writes never save anything here, so callers have to check {@link #supportsCompareAndSave()} first.
+     *
+     * @param dataClass       the data class
+     * @param objectUUID      the object uuid
+     * @param expectedVersion the version the changes are based on
+     * @param dataToSave      the data to save
+     * @return the new version or 0 if the object was changed in the meantime and nothing was saved
+     */
+    default long compareAndSave(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, long expectedVersion, @NotNull JsonElement dataToSave) {
+        return 0;
+    }
+
+    /**
+     * An object read from the global cache together with its version
+     *
+     * @param version the version
+     * @param data    the serialized object
+     */
+    record VersionedData(long version, @NotNull JsonElement data) {
+    }
+
     static GlobalCache createRedisCache(boolean clusterMode, @NotNull String[] addressArray, String redisPassword) {
         return createRedisCache(new RedisConnection(clusterMode, addressArray, redisPassword));
     }
@@ -3,23 +3,71 @@ package de.verdox.vpipeline.api.pipeline.parts;
 import com.zaxxer.hikari.HikariConfig;
 import de.verdox.vserializer.generic.Serializer;
 import de.verdox.vpipeline.api.Connection;
+import com.google.gson.JsonElement;
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.parts.storage.JDBCStorage;
 import de.verdox.vpipeline.api.pipeline.parts.storage.JsonFileStorage;
+import de.verdox.vpipeline.api.pipeline.parts.storage.LogStructuredStorage;
+import de.verdox.vpipeline.api.pipeline.parts.storage.MappedKVStorage;
 import de.verdox.vpipeline.api.pipeline.parts.storage.MongoDBStorage;
 import de.verdox.vpipeline.api.pipeline.parts.storage.MySQLStorage;
+import de.verdox.vpipeline.api.pipeline.parts.storage.SQLDialect;
 import de.verdox.vpipeline.api.util.AnnotationResolver;
 import org.jetbrains.annotations.NotNull;
 
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
 
 public interface GlobalStorage extends DataProvider, Connection {
 
     Serializer<GlobalStorage> SERIALIZER = Serializer.Selection.create("global_cache", GlobalStorage.class)
             .variant("json", JsonFileStorage.SERIALIZER, new JsonFileStorage(Path.of("storage")))
             .variant("mongo", MongoDBStorage.SERIALIZER, new MongoDBStorage("127.0.0.1", "pipeline", 27017, "root", "password", "https://mongoURL"))
+            .variant("jdbc", JDBCStorage.SERIALIZER, new JDBCStorage(SQLDialect.H2, "jdbc:h2:./storage/pipeline", "", "", false))
+            .variant("log", LogStructuredStorage.SERIALIZER, new LogStructuredStorage(Path.of("storage")))
+            .variant("mapped", MappedKVStorage.SERIALIZER, new MappedKVStorage(Path.of("storage")))
             ;
 
+    /**
+     * Saves several objects of the same type at once. Storages that support batched writes should override this method.
+     *
+     * @param dataClass  the data class
+     * @param dataToSave the serialized objects mapped by their uuid
+     */
+    default void saveBatch(@NotNull Class<? extends IPipelineData> dataClass, @NotNull Map<UUID, JsonElement> dataToSave) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
+        dataToSave.forEach((uuid, jsonElement) -> save(dataClass, uuid, jsonElement));
+    }
+
+    /**
+     * Checks if this storage supports {@link #saveIfAbsent(Class, UUID, JsonElement)}
+     *
+     * @return true if atomic inserts are supported
+     */
+    default boolean supportsSaveIfAbsent() {
+        return false;
+    }
+
+    /**
+     * Saves an object only if no object with this uuid exists yet.
+     * The check and the insert are only one atomic operation if {@link #supportsSaveIfAbsent()} returns true.
+     * Otherwise another writer may insert the object between both steps and is overwritten.
+     *
+     * @param dataClass  the data class
+     * @param objectUUID the object uuid
+     * @param dataToSave the data to save
+     * @return true if the object was saved, false if it already existed
+     */
+    default boolean saveIfAbsent(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
+        if (dataExist(dataClass, objectUUID))
+            return false;
+        save(dataClass, objectUUID, dataToSave);
+        return true;
+    }
+
     default String getSuffix(@NotNull Class<? extends IPipelineData> dataClass) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         return AnnotationResolver.getDataStorageIdentifier(dataClass);
@@ -43,7 +91,23 @@ public interface GlobalStorage extends DataProvider, Connection {
         return new JsonFileStorage(path);
     }
 
+    static GlobalStorage buildLogStructuredStorage(Path path) {
+        return new LogStructuredStorage(path);
+    }
+
+    static GlobalStorage buildMappedKVStorage(Path path) {
+        return new MappedKVStorage(path);
+    }
+
     static GlobalStorage buildSQLStorage(HikariConfig hikariConfig) {
         return new MySQLStorage(hikariConfig);
     }
+
+    static GlobalStorage buildSQLStorage(HikariConfig hikariConfig, SQLDialect dialect, boolean binary) {
+        return new JDBCStorage(hikariConfig, dialect, binary);
+    }
+
+    static GlobalStorage buildJDBCStorage(SQLDialect dialect, String jdbcUrl, String user, String password) {
+        return new JDBCStorage(dialect, jdbcUrl, user, password, false);
+    }
 }
\ No newline at end of file
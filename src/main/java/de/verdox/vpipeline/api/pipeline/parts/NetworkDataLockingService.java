@@ -2,12 +2,18 @@ package de.verdox.vpipeline.api.pipeline.parts;
 
 import de.verdox.vpipeline.api.Connection;
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineDataKey;
 import de.verdox.vpipeline.api.pipeline.parts.lock.DummyNetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.lock.HierarchicalNetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.lock.OrderedMultiLock;
 import de.verdox.vpipeline.api.pipeline.parts.lock.RedisNetworkDataLockingService;
 import de.verdox.vpipeline.impl.util.RedisConnection;
 import de.verdox.vserializer.generic.Serializer;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.Objects;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 
@@ -18,6 +24,7 @@ public interface NetworkDataLockingService extends Connection {
     Serializer<NetworkDataLockingService> SERIALIZER = Serializer.Selection.create("network_lock", NetworkDataLockingService.class)
             .variant("dummy", Serializer.Dummy.create(new DummyNetworkDataLockingService()))
             .variant("redis", RedisNetworkDataLockingService.SERIALIZER, new RedisNetworkDataLockingService(new RedisConnection(false, new String[]{"redis://localhost:6379"}, "")))
+            .variant("redis_leased", HierarchicalNetworkDataLockingService.SERIALIZER, new HierarchicalNetworkDataLockingService(new RedisConnection(false, new String[]{"redis://localhost:6379"}, "")))
             ;
 
     /**
@@ -40,10 +47,24 @@ public interface NetworkDataLockingService extends Connection {
      */
     <T extends IPipelineData> Lock getWriteLock(@NotNull Class<? extends T> type, @NotNull UUID uuid);
 
+    /**
+     * Returns one {@link Lock} that holds the write locks of several {@link IPipelineData} objects.
+     * The locks are acquired in the order of {@link PipelineDataKey} so threads that lock overlapping objects can't deadlock.
+     * Implementations that share one lock between several objects have to order by their locks instead.
+     *
+     * @param keys the objects to lock
+     * @return the lock
+     */
+    default Lock getWriteLocks(@NotNull Collection<PipelineDataKey> keys) {
+        Objects.requireNonNull(keys, "keys can't be null!");
+        return new OrderedMultiLock(new TreeSet<>(keys).stream().map(key -> getWriteLock(key.type(), key.uuid())).toList());
+    }
+
     /**
      * Creates a dummy {@link NetworkDataLockingService} that only holds local locks that are not shared across the network.
      * If you only have one game server node you won't need network locks since you only have to ensure read/write thread-safety across
      * the gameserver.
+     * Every object has a lock of its own. Locks are reference counted and removed once no thread holds or waits for them anymore.
      *
      * @return the networkDataLockingService
      */
@@ -51,6 +72,26 @@ public interface NetworkDataLockingService extends Connection {
         return new DummyNetworkDataLockingService();
     }
 
+    /**
+     * Same as {@link #createDummy()}
+     *
+     * @return the networkDataLockingService
+     */
+    static NetworkDataLockingService createDummyPerObject() {
+        return DummyNetworkDataLockingService.perObject();
+    }
+
+    /**
+     * Creates a dummy {@link NetworkDataLockingService} that takes its locks from a fixed table of lock stripes, so unrelated objects might share a lock.
+     * A thread that holds a read lock on one object must not write another object, since a read lock can't be upgraded if both share a stripe.
+     *
+     * @param stripes the amount of lock stripes
+     * @return the networkDataLockingService
+     */
+    static NetworkDataLockingService createDummyStriped(int stripes) {
+        return DummyNetworkDataLockingService.striped(stripes);
+    }
+
     /**
      * Creates a redis-based {@link NetworkDataLockingService} that holds global locks that are shared across the network.
      * If you have more than one game server node you will need network locks since you have to ensure read/write thread-safety across.
@@ -64,4 +105,17 @@ public interface NetworkDataLockingService extends Connection {
     static NetworkDataLockingService createRedis(RedisConnection redisConnection) {
         return new RedisNetworkDataLockingService(redisConnection);
     }
+
+    /**
+     * Creates a {@link NetworkDataLockingService} that takes local locks first and shares node wide leases across the network.
+     * Repeated access to the same object from one node only touches local locks as long as the lease is held.
+     * Other nodes can ask for a lease to be given up through the messaging service.
+     *
+     * @param redisConnection the redis connection
+     * @param leaseMillis     how long a lease is valid without renewal
+     * @return the networkDataLockingService
+     */
+    static NetworkDataLockingService createHierarchical(RedisConnection redisConnection, int leaseMillis) {
+        return new HierarchicalNetworkDataLockingService(redisConnection, leaseMillis);
+    }
 }
@@ -14,13 +14,18 @@ import de.verdox.vpipeline.impl.util.RedisConnection;
 import de.verdox.vserializer.generic.Serializer;
 import de.verdox.vserializer.generic.SerializerBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.redisson.api.RAtomicLong;
 import org.redisson.api.RBucket;
+import org.redisson.api.RExpirable;
+import org.redisson.api.RScript;
 import org.redisson.client.codec.StringCodec;
 
 import javax.annotation.Nonnull;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 public class RedisCache implements GlobalCache {
@@ -31,6 +36,66 @@ public class RedisCache implements GlobalCache {
             )
             .build();
 
+    /**
+     * KEYS: data key, version key
+     */
+    private static final String LOAD_VERSIONED_SCRIPT = """
+            local data = redis.call('get', KEYS[1])
+            if not data then
+                return {}
+            end
+            return {redis.call('get', KEYS[2]) or '0', data}
+            """;
+    /**
+     * KEYS: data key, version key
+     * ARGV: expected version, data, expire seconds or 0, start version
+     */
+    private static final String COMPARE_AND_SAVE_SCRIPT = """
+            if (redis.call('get', KEYS[2]) or '0') ~= ARGV[1] then
+                return 0
+            end
+            redis.call('set', KEYS[1], ARGV[2])
+            redis.call('set', KEYS[2], ARGV[4], 'NX')
+            local version = redis.call('incr', KEYS[2])
+            if ARGV[3] ~= '0' then
+                redis.call('expire', KEYS[1], ARGV[3])
+                redis.call('expire', KEYS[2], ARGV[3])
+            end
+            return version
+            """;
+
+    /**
+     * KEYS: data key, version key
+     * ARGV: data, expire seconds or 0, start version
+     */
+    private static final String SAVE_SCRIPT = """
+            redis.call('set', KEYS[1], ARGV[1])
+            redis.call('set', KEYS[2], ARGV[3], 'NX')
+            local version = redis.call('incr', KEYS[2])
+            if ARGV[2] ~= '0' then
+                redis.call('expire', KEYS[1], ARGV[2])
+                redis.call('expire', KEYS[2], ARGV[2])
+            end
+            return version
+            """;
+
+    /**
+     * KEYS: data key, version key
+     * ARGV: data, expire seconds or 0, start version
+     */
+    private static final String SAVE_IF_ABSENT_SCRIPT = """
+            if not redis.call('set', KEYS[1], ARGV[1], 'NX') then
+                return 0
+            end
+            redis.call('set', KEYS[2], ARGV[3], 'NX')
+            local version = redis.call('incr', KEYS[2])
+            if ARGV[2] ~= '0' then
+                redis.call('expire', KEYS[1], ARGV[2])
+                redis.call('expire', KEYS[2], ARGV[2])
+            end
+            return version
+            """;
+
     private final AttachedPipeline attachedPipeline;
     private final RedisConnection redisConnection;
 
@@ -58,14 +123,96 @@ public class RedisCache implements GlobalCache {
         return objectCache.isExists();
     }
 
+    /**
+     * Writes the data and increases the version in one script, so a compare-and-set can't succeed on the old version after the data was replaced.
+     * In cluster mode both keys may live on different nodes and are written one after another. Compare-and-set is not supported there anyway.
+     */
     @Override
     public void save(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
         verifyInput(dataClass, objectUUID);
         RBucket<String> objectCache = getObjectCache(dataClass, objectUUID);
-        objectCache.set(attachedPipeline.getGson().toJson(dataToSave));
         if (AnnotationResolver.getDataProperties(dataClass).debugMode())
             NetworkLogger.debug("[RedisCache] Saving to redis cache " + dataClass.getSimpleName() + " [" + objectCache + "]");
+        if (supportsCompareAndSave()) {
+            getScript().eval(RScript.Mode.READ_WRITE, SAVE_SCRIPT, RScript.ReturnType.INTEGER,
+                    List.of(objectCache.getName(), getVersionCounter(dataClass, objectUUID).getName()),
+                    attachedPipeline.getGson().toJson(dataToSave), String.valueOf(getExpireSeconds(dataClass)), String.valueOf(createStartVersion()));
+            return;
+        }
+        objectCache.set(attachedPipeline.getGson().toJson(dataToSave));
         updateExpireTime(dataClass, objectCache);
+        incrementVersion(dataClass, objectUUID);
+    }
+
+    @Override
+    public boolean supportsSaveIfAbsent() {
+        return true;
+    }
+
+    /**
+     * Runs SET NX on the data key and increases the version in one script, so the object can't be read before it has a version.
+     * In cluster mode both keys may live on different nodes, so the version is increased after the insert there.
+     */
+    @Override
+    public boolean saveIfAbsent(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
+        verifyInput(dataClass, objectUUID);
+        PipelineDataProperties properties = AnnotationResolver.getDataProperties(dataClass);
+        RBucket<String> objectCache = getObjectCache(dataClass, objectUUID);
+        String json = attachedPipeline.getGson().toJson(dataToSave);
+        if (supportsCompareAndSave()) {
+            Long version = getScript().eval(RScript.Mode.READ_WRITE, SAVE_IF_ABSENT_SCRIPT, RScript.ReturnType.INTEGER,
+                    List.of(objectCache.getName(), getVersionCounter(dataClass, objectUUID).getName()),
+                    json, String.valueOf(getExpireSeconds(dataClass)), String.valueOf(createStartVersion()));
+            boolean saved = version != null && version != 0;
+            if (properties.debugMode())
+                NetworkLogger.debug("[RedisCache] Insert of " + dataClass.getSimpleName() + " [" + objectUUID + "] " + (saved ? "succeeded" : "failed because it already exists"));
+            return saved;
+        }
+        boolean saved = properties.cleanOnNoUse()
+                ? objectCache.setIfAbsent(json, java.time.Duration.ofSeconds(properties.timeUnit().toSeconds(properties.time())))
+                : objectCache.setIfAbsent(json);
+        if (properties.debugMode())
+            NetworkLogger.debug("[RedisCache] Insert of " + dataClass.getSimpleName() + " [" + objectUUID + "] " + (saved ? "succeeded" : "failed because it already exists"));
+        if (!saved)
+            return false;
+        incrementVersion(dataClass, objectUUID);
+        return true;
+    }
+
+    @Override
+    public long getVersion(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        verifyInput(dataClass, objectUUID);
+        return getVersionCounter(dataClass, objectUUID).get();
+    }
+
+    /**
+     * Versioned operations run as lua scripts on the data key and the version key. Both keys have to be on the same node, so they are not supported in cluster mode.
+     */
+    @Override
+    public boolean supportsCompareAndSave() {
+        return !redisConnection.isClusterMode();
+    }
+
+    @Override
+    public VersionedData loadVersioned(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        verifyInput(dataClass, objectUUID);
+        List<Object> result = getScript().eval(RScript.Mode.READ_ONLY, LOAD_VERSIONED_SCRIPT, RScript.ReturnType.MULTI, List.of(getObjectCache(dataClass, objectUUID).getName(), getVersionCounter(dataClass, objectUUID).getName()));
+        if (result == null || result.size() < 2)
+            return null;
+        return new VersionedData(Long.parseLong(result.get(0).toString()), JsonParser.parseString(result.get(1).toString()));
+    }
+
+    @Override
+    public long compareAndSave(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, long expectedVersion, @NotNull JsonElement dataToSave) {
+        verifyInput(dataClass, objectUUID);
+        PipelineDataProperties properties = AnnotationResolver.getDataProperties(dataClass);
+        long expireSeconds = getExpireSeconds(dataClass);
+        Long version = getScript().eval(RScript.Mode.READ_WRITE, COMPARE_AND_SAVE_SCRIPT, RScript.ReturnType.INTEGER,
+                List.of(getObjectCache(dataClass, objectUUID).getName(), getVersionCounter(dataClass, objectUUID).getName()),
+                String.valueOf(expectedVersion), attachedPipeline.getGson().toJson(dataToSave), String.valueOf(expireSeconds), String.valueOf(createStartVersion()));
+        if (properties.debugMode())
+            NetworkLogger.debug("[RedisCache] Compare-and-set of " + dataClass.getSimpleName() + " [" + objectUUID + "] at version " + expectedVersion + (version != null && version != 0 ? " succeeded" : " failed"));
+        return version == null ? 0 : version;
     }
 
     @Override
@@ -74,6 +221,7 @@ public class RedisCache implements GlobalCache {
         RBucket<String> objectCache = getObjectCache(dataClass, objectUUID);
         if (AnnotationResolver.getDataProperties(dataClass).debugMode())
             NetworkLogger.debug("[RedisCache] Removing from redis cache " + dataClass.getSimpleName() + " [" + objectCache + "]");
+        getVersionCounter(dataClass, objectUUID).delete();
         return objectCache.delete();
     }
 
@@ -106,6 +254,32 @@ public class RedisCache implements GlobalCache {
         return objectCache;
     }
 
+    private void incrementVersion(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        RAtomicLong version = getVersionCounter(dataClass, objectUUID);
+        version.compareAndSet(0, createStartVersion());
+        version.incrementAndGet();
+        updateExpireTime(dataClass, version);
+    }
+
+    /**
+     * The version counter is removed and expires together with the object. A recreated object starts at a random version,
+     * so versions that were seen before the object was removed don't come back. Lua reads numbers as doubles, so the start stays well below 2^53.
+     */
+    private static long createStartVersion() {
+        return ThreadLocalRandom.current().nextLong(1, 1L << 50);
+    }
+
+    private RAtomicLong getVersionCounter(@Nonnull Class<? extends IPipelineData> dataClass, @Nonnull @NotNull UUID objectUUID) {
+        String classifier = AnnotationResolver
+                .getDataStorageClassifier(dataClass)
+                .isEmpty() ? "" : AnnotationResolver.getDataStorageClassifier(dataClass) + ":";
+        return redisConnection.getRedissonClient().getAtomicLong("VPipeline:Version:" + classifier + objectUUID + ":" + AnnotationResolver.getDataStorageIdentifier(dataClass));
+    }
+
+    private RScript getScript() {
+        return redisConnection.getRedissonClient().getScript(StringCodec.INSTANCE);
+    }
+
     private Set<String> getKeys(Class<? extends IPipelineData> dataClass) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         String storageIdentifier = AnnotationResolver.getDataStorageIdentifier(dataClass);
@@ -114,6 +288,8 @@ public class RedisCache implements GlobalCache {
             String[] parts = s.split(":");
             if (parts[0].equalsIgnoreCase("lock"))
                 return false;
+            if (parts.length > 1 && parts[1].equals("Version"))
+                return false;
 
             if (classifier.isEmpty())
                 return parts[2].equals(storageIdentifier);
@@ -123,7 +299,15 @@ public class RedisCache implements GlobalCache {
         }).collect(Collectors.toSet());
     }
 
-    private void updateExpireTime(@NotNull Class<? extends IPipelineData> dataClass, RBucket<?> bucket) {
+    /**
+     * @return the time to live of the type in seconds or 0 if objects of the type don't expire
+     */
+    private long getExpireSeconds(@NotNull Class<? extends IPipelineData> dataClass) {
+        PipelineDataProperties properties = AnnotationResolver.getDataProperties(dataClass);
+        return properties.cleanOnNoUse() ? properties.timeUnit().toSeconds(properties.time()) : 0;
+    }
+
+    private void updateExpireTime(@NotNull Class<? extends IPipelineData> dataClass, RExpirable bucket) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         PipelineDataProperties properties = AnnotationResolver.getDataProperties(dataClass);
 
@@ -1,10 +1,18 @@
 package de.verdox.vpipeline.api.pipeline.parts.cache.local;
 
+import de.verdox.vpipeline.api.pipeline.core.Pipeline;
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.datatypes.ReadConsistency;
 import de.verdox.vpipeline.api.pipeline.parts.LocalCache;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 /**
  * Represents a thread safe data access to a {@link IPipelineData} object.
@@ -57,6 +65,33 @@ public class DataAccess<T extends IPipelineData> {
         return new LockableAction.Read<>(this, readLock, localCache.loadObject(type, objectUUID));
     }
 
+    /**
+     * Creates a read instruction for this data access object with the given consistency.
+     * <p>
+     * {@link ReadConsistency#LINEARIZABLE} works like {@link #read()}. The other levels read the local copy without acquiring a lock.
+     * {@link ReadConsistency#bounded(java.time.Duration)} reloads the local copy first if it was not synchronized within the bound.
+     *
+     * @param consistency the read consistency
+     * @return The read access
+     * @throws AccessInvalidException thrown when the object was deleted from the network but the access is still used
+     */
+    public LockableAction.Read<T> read(@NotNull ReadConsistency consistency) throws AccessInvalidException {
+        Objects.requireNonNull(consistency, "consistency can't be null!");
+        Pipeline pipeline = localCache.getAttachedPipeline().getAttachedPipeline();
+        long start = System.nanoTime();
+        try {
+            if (consistency.level() == ReadConsistency.Level.LINEARIZABLE)
+                return read();
+            if (consistency.level() == ReadConsistency.Level.BOUNDED && !pipeline.revalidate(type, objectUUID, consistency.bound()))
+                throw new AccessInvalidException("DataAccess invalid for type " + type + " with uuid " + objectUUID);
+            if (killed())
+                throw new AccessInvalidException("DataAccess invalid for type " + type + " with uuid " + objectUUID);
+            return new LockableAction.Read<>(this, null, localCache.loadObject(type, objectUUID), true);
+        } finally {
+            pipeline.getLockMetrics().recordRead(type, consistency.level(), System.nanoTime() - start);
+        }
+    }
+
     /**
      * Creates a read instruction for this data access object. The instruction acquires a {@link Lock}.
      * <p>
@@ -75,6 +110,58 @@ public class DataAccess<T extends IPipelineData> {
         return new LockableAction.Write<>(this, writeLock, localCache.loadObject(type, objectUUID));
     }
 
+    /**
+     * Creates a read instruction for this data access object if the read lock can be acquired within the given timeout.
+     *
+     * @param timeout the maximum time to wait for the lock
+     * @return The read access or null if the lock could not be acquired in time
+     * @throws AccessInvalidException thrown when the object was deleted from the network but the access is still used
+     * @throws InterruptedException   thrown when the thread was interrupted while waiting for the lock
+     */
+    @Nullable
+    public LockableAction.Read<T> tryRead(@NotNull Duration timeout) throws AccessInvalidException, InterruptedException {
+        Objects.requireNonNull(timeout, "timeout can't be null!");
+        if (killed())
+            throw new AccessInvalidException("DataAccess invalid for type " + type + " with uuid " + objectUUID);
+        if (!readLock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS))
+            return null;
+        return new LockableAction.Read<>(this, readLock, localCache.loadObject(type, objectUUID), true);
+    }
+
+    /**
+     * Creates a write instruction for this data access object if the write lock can be acquired within the given timeout.
+     * <p>
+     * A null resource is skipped by try-with-resources, so callers only have to check the result before using it.
+     *
+     * @param timeout the maximum time to wait for the lock
+     * @return The write access or null if the lock could not be acquired in time
+     * @throws AccessInvalidException thrown when the object was deleted from the network but the access is still used
+     * @throws InterruptedException   thrown when the thread was interrupted while waiting for the lock
+     */
+    @Nullable
+    public LockableAction.Write<T> tryWrite(@NotNull Duration timeout) throws AccessInvalidException, InterruptedException {
+        Objects.requireNonNull(timeout, "timeout can't be null!");
+        if (killed())
+            throw new AccessInvalidException("DataAccess invalid for type " + type + " with uuid " + objectUUID);
+        if (!writeLock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS))
+            return null;
+        return new LockableAction.Write<>(this, writeLock, localCache.loadObject(type, objectUUID), true);
+    }
+
+    /**
+     * Changes the data without acquiring the network write lock. The changes are committed with a compare-and-set on the object version and the mutation
+     * is repeated if the object was changed by someone else in the meantime.
+     *
+     * @param mutation the changes to apply. May be called more than once.
+     * @throws AccessInvalidException thrown when the object was deleted from the network but the access is still used
+     * @see de.verdox.vpipeline.api.pipeline.core.Pipeline#writeOptimistic(Class, UUID, Consumer)
+     */
+    public void writeOptimistic(@NotNull Consumer<T> mutation) throws AccessInvalidException {
+        Objects.requireNonNull(mutation, "mutation can't be null!");
+        if (killed() || !localCache.getAttachedPipeline().getAttachedPipeline().writeOptimistic(type, objectUUID, mutation))
+            throw new AccessInvalidException("DataAccess invalid for type " + type + " with uuid " + objectUUID);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
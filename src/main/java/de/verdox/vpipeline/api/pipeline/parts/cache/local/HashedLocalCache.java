@@ -7,6 +7,7 @@ import de.verdox.vpipeline.api.modules.AttachedPipeline;
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
 import de.verdox.vpipeline.api.pipeline.datatypes.PipelineData;
 import de.verdox.vpipeline.api.pipeline.parts.LocalCache;
+import de.verdox.vpipeline.api.pipeline.parts.lock.OrderedMultiLock;
 import de.verdox.vpipeline.api.util.AnnotationResolver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -166,8 +167,15 @@ public class HashedLocalCache implements LocalCache {
     public <S extends IPipelineData> DataAccess<S> createAccess(@NotNull Class<? extends S> dataClass, @NotNull UUID objectUUID) {
         if (!dataExist(dataClass, objectUUID))
             throw new IllegalArgumentException("No object in local cache with dataClass " + dataClass + " and uuid " + objectUUID);
-        Lock objectReadLock = getAttachedPipeline().getAttachedPipeline().getNetworkDataLockingService().getReadLock(dataClass, objectUUID);
-        Lock objectWriteLock = getAttachedPipeline().getAttachedPipeline().getNetworkDataLockingService().getWriteLock(dataClass, objectUUID);
+        var pipeline = getAttachedPipeline().getAttachedPipeline();
+        Lock objectReadLock = new OrderedMultiLock(List.of(
+                pipeline.getLocalLockingService().getReadLock(dataClass, objectUUID),
+                pipeline.getLockMetrics().instrument(pipeline.getNetworkDataLockingService().getReadLock(dataClass, objectUUID), dataClass, objectUUID, false)
+        ));
+        Lock objectWriteLock = new OrderedMultiLock(List.of(
+                pipeline.getLocalLockingService().getWriteLock(dataClass, objectUUID),
+                pipeline.getLockMetrics().instrument(pipeline.getNetworkDataLockingService().getWriteLock(dataClass, objectUUID), dataClass, objectUUID, true)
+        ));
 
         return (DataAccess<S>) cachedAccess.computeIfAbsent(dataClass, aClass -> new ConcurrentHashMap<>()).computeIfAbsent(objectUUID, uuid ->
                 new DataAccess<>(this, dataClass, objectUUID, objectReadLock, objectWriteLock)
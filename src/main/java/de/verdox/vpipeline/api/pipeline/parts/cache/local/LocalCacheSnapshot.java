@@ -0,0 +1,199 @@
+package de.verdox.vpipeline.api.pipeline.parts.cache.local;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A snapshot of the {@link de.verdox.vpipeline.api.pipeline.parts.LocalCache} that is written on shutdown and used to restart with a warm local cache.
+ * <p>
+ * Every entry stores the serialized object together with the {@link de.verdox.vpipeline.api.pipeline.parts.GlobalCache} version it had when the snapshot was written.
+ * On startup the file is memory mapped and only its index is read. Documents are parsed when an object is requested and only if its version still matches the global cache.
+ * <p>
+ * Entries without a version are never restored, since nothing tells whether another node changed the object in the meantime.
+ * <p>
+ * A snapshot can only be used once. It is deleted after it was loaded so a crash can never bring back an outdated snapshot.
+ */
+public class LocalCacheSnapshot {
+    private static final int MAGIC = 0x56504C43;
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final Map<String, Map<UUID, Entry>> index = new ConcurrentHashMap<>();
+    // Guarded by this, the mapping is only released once no take reads it anymore
+    private MappedByteBuffer buffer;
+    private int pendingTakes;
+    private boolean cleared;
+
+    public LocalCacheSnapshot(@NotNull Path path) {
+        Objects.requireNonNull(path, "path can't be null!");
+        this.path = path;
+    }
+
+    /**
+     * Maps the snapshot file and reads its index.
+     */
+    public synchronized void load() {
+        if (!Files.exists(path))
+            return;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                NetworkLogger.warning("[LocalCacheSnapshot] Ignoring snapshot with unknown format at " + path);
+                buffer = null;
+                return;
+            }
+            int entries = buffer.getInt();
+            for (int i = 0; i < entries; i++) {
+                byte[] className = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(className);
+                UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                long version = buffer.getLong();
+                int length = buffer.getInt();
+                index.computeIfAbsent(new String(className, StandardCharsets.UTF_8), s -> new ConcurrentHashMap<>()).put(uuid, new Entry(buffer.position(), length, version));
+                buffer.position(buffer.position() + length);
+            }
+            NetworkLogger.info("[LocalCacheSnapshot] Loaded snapshot with " + entries + " objects");
+        } catch (IOException | RuntimeException e) {
+            NetworkLogger.warning("[LocalCacheSnapshot] Could not read snapshot at " + path + ": " + e.getMessage());
+            index.clear();
+            buffer = null;
+        }
+        try {
+            Files.delete(path);
+        } catch (IOException e) {
+            NetworkLogger.warning("[LocalCacheSnapshot] Could not delete snapshot at " + path);
+        }
+    }
+
+    /**
+     * Removes an object from the snapshot and returns it if it is still up to date.
+     *
+     * @param dataClass      the data class
+     * @param objectUUID     the object uuid
+     * @param currentVersion supplies the version of the object in the global cache or 0 if no version is known. Only called if the snapshot contains the object.
+     *                       The version must never repeat for an object, also not after it was removed and created again.
+     * @return the serialized object or null if the snapshot does not contain it or it is outdated
+     */
+    @Nullable
+    public JsonElement take(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull LongSupplier currentVersion) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        Entry entry;
+        MappedByteBuffer mapped;
+        synchronized (this) {
+            Map<UUID, Entry> entries = index.get(dataClass.getName());
+            if (entries == null)
+                return null;
+            entry = entries.remove(objectUUID);
+            if (entry == null || buffer == null)
+                return null;
+            mapped = buffer;
+            pendingTakes++;
+        }
+        try {
+            long version = currentVersion.getAsLong();
+            if (version == 0 || entry.version() != version)
+                return null;
+            byte[] document = new byte[entry.length()];
+            mapped.get(entry.offset(), document);
+            return JsonParser.parseString(new String(document, StandardCharsets.UTF_8));
+        } finally {
+            synchronized (this) {
+                if (--pendingTakes == 0 && cleared)
+                    buffer = null;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return index.values().stream().allMatch(Map::isEmpty);
+    }
+
+    /**
+     * Drops all entries that were not requested yet and releases the mapped file once no take reads it anymore.
+     */
+    public synchronized void clear() {
+        index.clear();
+        cleared = true;
+        if (pendingTakes == 0)
+            buffer = null;
+    }
+
+    /**
+     * Opens a writer that replaces the snapshot file once it is closed.
+     *
+     * @return the writer
+     */
+    public Writer createWriter() throws IOException {
+        return new Writer();
+    }
+
+    private record Entry(int offset, int length, long version) {
+    }
+
+    public class Writer implements AutoCloseable {
+        private final Path tempFile = Path.of(path + ".tmp");
+        private final Path entriesFile = Path.of(path + ".entries");
+        private final DataOutputStream outputStream;
+        private int entries;
+
+        private Writer() throws IOException {
+            if (path.getParent() != null)
+                Files.createDirectories(path.getParent());
+            this.outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(entriesFile)));
+        }
+
+        public void write(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, long version, @NotNull JsonElement jsonElement) throws IOException {
+            byte[] className = dataClass.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] document = jsonElement.toString().getBytes(StandardCharsets.UTF_8);
+            outputStream.writeShort(className.length);
+            outputStream.write(className);
+            outputStream.writeLong(objectUUID.getMostSignificantBits());
+            outputStream.writeLong(objectUUID.getLeastSignificantBits());
+            outputStream.writeLong(version);
+            outputStream.writeInt(document.length);
+            outputStream.write(document);
+            entries++;
+        }
+
+        /**
+         * Prepends the header, forces the file to disk and moves it over the old snapshot
+         */
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+            try (DataOutputStream header = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                header.writeInt(MAGIC);
+                header.writeInt(VERSION);
+                header.writeInt(entries);
+                Files.copy(entriesFile, header);
+            }
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tempFile, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(entriesFile);
+            NetworkLogger.info("[LocalCacheSnapshot] Wrote snapshot with " + entries + " objects");
+        }
+    }
+}
@@ -2,24 +2,37 @@ package de.verdox.vpipeline.api.pipeline.parts.cache.local;
 
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.Closeable;
 import java.util.concurrent.locks.Lock;
 
 public abstract class LockableAction<T extends IPipelineData> implements Closeable {
     protected final DataAccess<T> dataAccess;
+    @Nullable
     protected final Lock lock;
     protected T initValue;
 
     LockableAction(DataAccess<T> dataAccess, Lock lock, T initValue) {
+        this(dataAccess, lock, initValue, false);
+    }
+
+    /**
+     * @param lock         the lock or null for an action that reads the local copy without a lock
+     * @param lockAcquired true if the lock was already acquired by the caller, for example with {@link Lock#tryLock(long, java.util.concurrent.TimeUnit)}
+     */
+    LockableAction(DataAccess<T> dataAccess, @Nullable Lock lock, T initValue, boolean lockAcquired) {
         this.dataAccess = dataAccess;
         this.lock = lock;
         this.initValue = initValue;
-        this.lock.lock();
+        if (!lockAcquired && this.lock != null)
+            this.lock.lock();
     }
 
     @Override
     public void close() {
-        this.lock.unlock();
+        if (this.lock != null)
+            this.lock.unlock();
     }
 
     //TODO: Wenn Daten remote gelöscht werden müssen die DataAccess Objekte davon irgendwie mitbekommen.
@@ -28,6 +41,10 @@ public abstract class LockableAction<T extends IPipelineData> implements Closeab
             super(dataAccess, lock, initValue);
         }
 
+        Read(DataAccess<T> dataAccess, @Nullable Lock lock, T initValue, boolean lockAcquired) {
+            super(dataAccess, lock, initValue, lockAcquired);
+        }
+
         public T get() {
             return initValue;
         }
@@ -38,6 +55,10 @@ public abstract class LockableAction<T extends IPipelineData> implements Closeab
             super(dataAccess, lock, initValue);
         }
 
+        Write(DataAccess<T> dataAccess, Lock lock, T initValue, boolean lockAcquired) {
+            super(dataAccess, lock, initValue, lockAcquired);
+        }
+
         public void commitChanges(boolean saveToStorage) {
             initValue.getAttachedPipeline().getAttachedPipeline().getPipelineSynchronizer().sync(initValue, saveToStorage);
             dataAccess.notifySubscribers(get());
@@ -0,0 +1,77 @@
+package de.verdox.vpipeline.api.pipeline.parts.cache.local;
+
+import de.verdox.vpipeline.api.pipeline.core.Pipeline;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineDataKey;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Write access to several {@link IPipelineData} objects at once. The write locks of all objects are held until the access is closed.
+ * <p>
+ * Changes of all objects are committed together when the access is closed.
+ */
+public class MultiWrite implements Closeable {
+    private final Pipeline pipeline;
+    private final Lock lock;
+    private final Map<PipelineDataKey, IPipelineData> objects;
+
+    /**
+     * @param pipeline the pipeline the objects belong to
+     * @param lock     the acquired lock that holds the write locks of all objects
+     * @param objects  the loaded objects
+     */
+    public MultiWrite(@NotNull Pipeline pipeline, @NotNull Lock lock, @NotNull Map<PipelineDataKey, IPipelineData> objects) {
+        this.pipeline = pipeline;
+        this.lock = lock;
+        this.objects = objects;
+    }
+
+    /**
+     * Returns one of the locked objects
+     *
+     * @param type the data class
+     * @param uuid the object uuid
+     * @param <T>  the generic data type
+     * @return the object or null if it was not locked by this access or does not exist in the pipeline
+     */
+    @Nullable
+    public <T extends IPipelineData> T get(@NotNull Class<? extends T> type, @NotNull UUID uuid) {
+        Objects.requireNonNull(type, "type can't be null!");
+        Objects.requireNonNull(uuid, "uuid can't be null!");
+        IPipelineData data = objects.get(PipelineDataKey.of(type, uuid));
+        return data == null ? null : type.cast(data);
+    }
+
+    /**
+     * Returns all locked objects that exist in the pipeline
+     *
+     * @return the objects
+     */
+    public Map<PipelineDataKey, IPipelineData> getAll() {
+        return Collections.unmodifiableMap(objects);
+    }
+
+    public void commitChanges(boolean saveToStorage) {
+        for (IPipelineData data : objects.values()) {
+            pipeline.getPipelineSynchronizer().sync(data, saveToStorage);
+            pipeline.getLocalCache().notifySubscribers(data);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            commitChanges(true);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,32 +2,122 @@ package de.verdox.vpipeline.api.pipeline.parts.lock;
 
 import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
-import de.verdox.vpipeline.api.util.AnnotationResolver;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineDataKey;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Holds local locks that are not shared across the network.
+ * <p>
+ * By default every object has a lock of its own. These locks are reference counted and removed as soon as no thread holds or waits for them.
+ * <p>
+ * Users that want to avoid allocating locks can opt into {@link #striped(int)}. Objects are then mapped to a fixed table of lock stripes that is hashed from the data class and the bits of the object uuid.
+ * The memory used for locks stays constant, but unrelated objects may share a stripe. A read lock can't be upgraded to a write lock,
+ * so a thread that holds a read lock on one object and then writes another object on the same stripe deadlocks.
+ */
 public class DummyNetworkDataLockingService implements NetworkDataLockingService {
-    private final Map<String, ReentrantReadWriteLock> localLocks = new ConcurrentHashMap<>();
+    public static final int DEFAULT_STRIPES = 1024;
+
+    private final ReentrantReadWriteLock[] stripes;
+    private final int mask;
+    private final Map<LockKey, RefCountedLock> perObjectLocks;
+
+    public DummyNetworkDataLockingService() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param stripes the amount of lock stripes. Rounded up to the next power of two.
+     * @see #striped(int)
+     */
+    public DummyNetworkDataLockingService(int stripes) {
+        if (stripes <= 0)
+            throw new IllegalArgumentException("stripes must be positive");
+        int size = 1;
+        while (size < stripes)
+            size <<= 1;
+        this.stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++)
+            this.stripes[i] = new ReentrantReadWriteLock();
+        this.mask = size - 1;
+        this.perObjectLocks = null;
+    }
+
+    private DummyNetworkDataLockingService(Map<LockKey, RefCountedLock> perObjectLocks) {
+        this.stripes = null;
+        this.mask = 0;
+        this.perObjectLocks = perObjectLocks;
+    }
+
+    /**
+     * Creates a lock service that holds one lock per object. This is the default.
+     *
+     * @return the lock service
+     */
+    public static DummyNetworkDataLockingService perObject() {
+        return new DummyNetworkDataLockingService();
+    }
+
+    /**
+     * Creates a lock service that maps objects to a fixed table of lock stripes.
+     * Threads must not write an object while they hold a read lock on another object, since both may share a stripe.
+     *
+     * @param stripes the amount of lock stripes. Rounded up to the next power of two.
+     * @return the lock service
+     */
+    public static DummyNetworkDataLockingService striped(int stripes) {
+        return new DummyNetworkDataLockingService(stripes);
+    }
+
     @Override
     public <T extends IPipelineData> Lock getReadLock(@NotNull Class<? extends T> type, @NotNull UUID uuid) {
-        return localLocks.computeIfAbsent(createLockString(type, uuid), s -> new ReentrantReadWriteLock()).readLock();
+        if (perObjectLocks != null)
+            return new PerObjectLock(new LockKey(type, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()), false);
+        return getStripe(type, uuid).readLock();
     }
 
     @Override
     public <T extends IPipelineData> Lock getWriteLock(@NotNull Class<? extends T> type, @NotNull UUID uuid) {
-        return localLocks.computeIfAbsent(createLockString(type, uuid), s -> new ReentrantReadWriteLock()).writeLock();
+        if (perObjectLocks != null)
+            return new PerObjectLock(new LockKey(type, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()), true);
+        return getStripe(type, uuid).writeLock();
+    }
+
+    /**
+     * Objects on the same stripe share one lock, so striped locks are acquired in the order of their stripe instead of the order of the objects.
+     * Otherwise two threads could take the same two stripes in opposite order.
+     */
+    @Override
+    public Lock getWriteLocks(@NotNull Collection<PipelineDataKey> keys) {
+        if (perObjectLocks != null)
+            return NetworkDataLockingService.super.getWriteLocks(keys);
+        Objects.requireNonNull(keys, "keys can't be null!");
+        TreeSet<Integer> stripeIndices = new TreeSet<>();
+        for (PipelineDataKey key : keys)
+            stripeIndices.add(getStripeIndex(key.type(), key.uuid()));
+        return new OrderedMultiLock(stripeIndices.stream().map(index -> (Lock) stripes[index].writeLock()).toList());
+    }
+
+    private ReentrantReadWriteLock getStripe(@NotNull Class<?> type, @NotNull UUID uuid) {
+        return stripes[getStripeIndex(type, uuid)];
     }
 
-    private <T extends IPipelineData> String createLockString(@NotNull Class<? extends T> type, @NotNull UUID uuid){
-        String classifier = AnnotationResolver
-                .getDataStorageClassifier(type)
-                .isEmpty() ? "" : AnnotationResolver.getDataStorageClassifier(type) + ":";
-        return classifier + uuid + ":" + AnnotationResolver.getDataStorageIdentifier(type);
+    private int getStripeIndex(@NotNull Class<?> type, @NotNull UUID uuid) {
+        long hash = type.hashCode() * 0x9E3779B97F4A7C15L ^ uuid.getMostSignificantBits() ^ Long.rotateLeft(uuid.getLeastSignificantBits(), 32);
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
     }
 
     @Override
@@ -39,4 +129,92 @@ public class DummyNetworkDataLockingService implements NetworkDataLockingService
     public void disconnect() {
 
     }
+
+    private record LockKey(Class<?> type, long mostSigBits, long leastSigBits) {
+    }
+
+    private static class RefCountedLock {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private int references;
+    }
+
+    private class PerObjectLock implements Lock {
+        private final LockKey key;
+        private final boolean write;
+
+        PerObjectLock(LockKey key, boolean write) {
+            this.key = key;
+            this.write = write;
+        }
+
+        @Override
+        public void lock() {
+            Lock lock = retain();
+            try {
+                lock.lock();
+            } catch (Throwable e) {
+                release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            Lock lock = retain();
+            try {
+                lock.lockInterruptibly();
+            } catch (Throwable e) {
+                release();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (retain().tryLock())
+                return true;
+            release();
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time, @NotNull TimeUnit unit) throws InterruptedException {
+            boolean locked = false;
+            try {
+                locked = retain().tryLock(time, unit);
+                return locked;
+            } finally {
+                if (!locked)
+                    release();
+            }
+        }
+
+        @Override
+        public void unlock() {
+            RefCountedLock refCountedLock = perObjectLocks.get(key);
+            if (refCountedLock == null)
+                throw new IllegalMonitorStateException("Lock is not held");
+            (write ? refCountedLock.lock.writeLock() : refCountedLock.lock.readLock()).unlock();
+            release();
+        }
+
+        @NotNull
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("Conditions are not supported by per object locks");
+        }
+
+        private Lock retain() {
+            RefCountedLock refCountedLock = perObjectLocks.compute(key, (lockKey, existing) -> {
+                RefCountedLock result = existing != null ? existing : new RefCountedLock();
+                result.references++;
+                return result;
+            });
+            return write ? refCountedLock.lock.writeLock() : refCountedLock.lock.readLock();
+        }
+
+        private void release() {
+            perObjectLocks.computeIfPresent(key, (lockKey, existing) -> --existing.references == 0 ? null : existing);
+        }
+    }
 }
@@ -0,0 +1,503 @@
+package de.verdox.vpipeline.api.pipeline.parts.lock;
+
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.util.AnnotationResolver;
+import de.verdox.vpipeline.impl.util.RedisConnection;
+import de.verdox.vserializer.SerializableField;
+import de.verdox.vserializer.generic.Serializer;
+import de.verdox.vserializer.generic.SerializerBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.redisson.api.RScript;
+import org.redisson.client.codec.StringCodec;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link NetworkDataLockingService} that locks in two levels.
+ * <p>
+ * Every object has a local {@link ReentrantReadWriteLock} that is always acquired first.
+ * Access across the network is guarded by a lease that is held by the whole node instead of a single thread.
+ * A read lease can be shared by several nodes, a write lease is exclusive.
+ * Once a node holds a lease, further local lock operations only touch the local lock until the lease expires.
+ * Leases are renewed while they are locally in use and released when they were idle for a whole lease period.
+ * Released leases that stay idle for another lease period are dropped, so only the leases of recently used objects are kept.
+ * <p>
+ * A node that can't get a lease broadcasts a {@link LeaseRevokePing}. Holders give up their lease as soon as nobody on their node uses it anymore.
+ * If the messaging service is not available, waiting nodes fall back to the lease expiry.
+ */
+public class HierarchicalNetworkDataLockingService implements NetworkDataLockingService {
+    public static final Serializer<HierarchicalNetworkDataLockingService> SERIALIZER = SerializerBuilder.create("hierarchical_network_data_locking_service", HierarchicalNetworkDataLockingService.class)
+            .constructor(
+                    new SerializableField<>("redis_connection", RedisConnection.SERIALIZER, HierarchicalNetworkDataLockingService::getRedisConnection),
+                    new SerializableField<>("leaseMillis", Serializer.Primitive.INTEGER, HierarchicalNetworkDataLockingService::getLeaseMillis),
+                    HierarchicalNetworkDataLockingService::new
+            )
+            .build();
+
+    /*
+     * The lease is a hash that stores the lease mode and one field per holding node.
+     * KEYS[1] = lease key, ARGV[1] = node id, ARGV[2] = requested mode, ARGV[3] = lease time in millis
+     */
+    private static final String ACQUIRE_SCRIPT = """
+            local mode = redis.call('hget', KEYS[1], 'mode')
+            if mode == false or (mode == 'read' and ARGV[2] == 'read') then
+                if mode == false then
+                    redis.call('hset', KEYS[1], 'mode', ARGV[2])
+                end
+                redis.call('hset', KEYS[1], ARGV[1], 1)
+                redis.call('pexpire', KEYS[1], ARGV[3])
+                return 1
+            end
+            if redis.call('hexists', KEYS[1], ARGV[1]) == 1 and redis.call('hlen', KEYS[1]) == 2 then
+                redis.call('hset', KEYS[1], 'mode', ARGV[2])
+                redis.call('pexpire', KEYS[1], ARGV[3])
+                return 1
+            end
+            return 0
+            """;
+    private static final String RELEASE_SCRIPT = """
+            if redis.call('hdel', KEYS[1], ARGV[1]) == 1 and redis.call('hlen', KEYS[1]) <= 1 then
+                redis.call('del', KEYS[1])
+            end
+            return 1
+            """;
+    // Leases are treated as expired a bit earlier locally to account for clock drift and network latency
+    private static final long SAFETY_MARGIN_MILLIS = 100;
+    private static final long REVOKE_REQUEST_INTERVAL_MILLIS = 50;
+
+    private final RedisConnection redisConnection;
+    private final int leaseMillis;
+    private final String nodeID = UUID.randomUUID().toString();
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private ScheduledExecutorService leaseKeeper;
+    private MessagingService messagingService;
+
+    public HierarchicalNetworkDataLockingService(RedisConnection redisConnection, int leaseMillis) {
+        if (leaseMillis <= SAFETY_MARGIN_MILLIS * 2)
+            throw new IllegalArgumentException("leaseMillis must be greater than " + SAFETY_MARGIN_MILLIS * 2);
+        this.redisConnection = redisConnection;
+        this.leaseMillis = leaseMillis;
+    }
+
+    public HierarchicalNetworkDataLockingService(RedisConnection redisConnection) {
+        this(redisConnection, 3000);
+    }
+
+    @Override
+    public <T extends IPipelineData> Lock getReadLock(@NotNull Class<? extends T> type, @NotNull UUID uuid) {
+        return getLease(type, uuid).readLock;
+    }
+
+    @Override
+    public <T extends IPipelineData> Lock getWriteLock(@NotNull Class<? extends T> type, @NotNull UUID uuid) {
+        return getLease(type, uuid).writeLock;
+    }
+
+    /**
+     * Used to broadcast revoke requests to other nodes
+     *
+     * @param messagingService the messaging service
+     */
+    public void setMessagingService(MessagingService messagingService) {
+        this.messagingService = messagingService;
+    }
+
+    /**
+     * Called when another node asks to give up a lease
+     *
+     * @param leaseKey        the lease key
+     * @param requesterNodeID the node id of the requesting node
+     */
+    public void onRevokeRequest(@NotNull String leaseKey, @NotNull String requesterNodeID) {
+        if (nodeID.equals(requesterNodeID))
+            return;
+        Lease lease = leases.get(leaseKey);
+        if (lease == null || lease.mode == LeaseMode.NONE)
+            return;
+        lease.revokeRequested = true;
+        lease.tryRevoke();
+    }
+
+    public RedisConnection getRedisConnection() {
+        return redisConnection;
+    }
+
+    public int getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    @Override
+    public void connect() {
+        this.redisConnection.connect();
+        this.leaseKeeper = Executors.newSingleThreadScheduledExecutor();
+        this.leaseKeeper.scheduleWithFixedDelay(this::maintainLeases, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void disconnect() {
+        if (this.leaseKeeper != null)
+            this.leaseKeeper.shutdownNow();
+        this.leaseKeeper = null;
+        leases.values().forEach(lease -> {
+            if (lease.mode != LeaseMode.NONE)
+                lease.releaseRemote();
+        });
+        this.redisConnection.disconnect();
+    }
+
+    /**
+     * Returns the key of the lease of an object
+     *
+     * @param type the data class
+     * @param uuid the object uuid
+     * @return the lease key
+     */
+    public <T extends IPipelineData> String getLeaseKey(@NotNull Class<? extends T> type, @NotNull UUID uuid) {
+        String classifier = AnnotationResolver
+                .getDataStorageClassifier(type)
+                .isEmpty() ? "" : AnnotationResolver.getDataStorageClassifier(type) + ":";
+        return "Lock:Lease:" + classifier + uuid + ":" + AnnotationResolver.getDataStorageIdentifier(type);
+    }
+
+    /**
+     * Returns the amount of leases this node currently keeps track of
+     *
+     * @return the amount of leases
+     */
+    public int getLeaseCount() {
+        return leases.size();
+    }
+
+    /**
+     * Renews leases that are locally in use, releases leases that were not used for a whole lease period and drops released leases that stayed idle.
+     */
+    private void maintainLeases() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Lease lease : leases.values()) {
+                if (lease.mode != LeaseMode.NONE) {
+                    // A lease must not run out while a local thread relies on it, even if another node asked for it
+                    if (lease.isLocallyHeld())
+                        lease.renew();
+                    else if (lease.revokeRequested || now - lease.lastUse > leaseMillis)
+                        lease.tryRevoke();
+                }
+                if (lease.mode == LeaseMode.NONE && now - lease.lastUse > leaseMillis)
+                    leases.computeIfPresent(lease.key, (key, current) -> current == lease && lease.tryRetire() ? null : current);
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    private <T extends IPipelineData> Lease getLease(@NotNull Class<? extends T> type, @NotNull UUID uuid) {
+        return leases.computeIfAbsent(getLeaseKey(type, uuid), Lease::new);
+    }
+
+    private RScript getScript() {
+        return redisConnection.getRedissonClient().getScript(StringCodec.INSTANCE);
+    }
+
+    private enum LeaseMode {
+        NONE,
+        READ,
+        WRITE
+    }
+
+    private class Lease {
+        private final String key;
+        private final ReentrantReadWriteLock localLock = new ReentrantReadWriteLock();
+        private final Lock readLock;
+        private final Lock writeLock;
+        private volatile LeaseMode mode = LeaseMode.NONE;
+        private volatile long validUntil;
+        private volatile long lastUse = System.currentTimeMillis();
+        private volatile boolean revokeRequested;
+        private volatile long lastRevokeRequest;
+        // Set once the lease was dropped from the map, lock operations that still reach it move on to the new lease of the key
+        private volatile boolean retired;
+
+        Lease(String key) {
+            this.key = key;
+            this.readLock = new LeasedLock(key, false);
+            this.writeLock = new LeasedLock(key, true);
+        }
+
+        boolean holds(boolean write) {
+            LeaseMode currentMode = mode;
+            return currentMode != LeaseMode.NONE && (!write || currentMode == LeaseMode.WRITE) && !revokeRequested && System.currentTimeMillis() < validUntil;
+        }
+
+        /**
+         * Makes sure that the node holds a suitable lease. The local lock of the calling thread has to be held already.
+         *
+         * @param write       whether a write lease is needed
+         * @param deadline    the deadline in millis or {@link Long#MAX_VALUE} to wait forever
+         * @return true if the lease is held
+         */
+        boolean ensure(boolean write, long deadline) throws InterruptedException {
+            if (holds(write))
+                return true;
+            long backoff = 1;
+            synchronized (this) {
+                while (true) {
+                    if (holds(write))
+                        return true;
+                    if (revokeRequested && mode != LeaseMode.NONE && isOnlyLocalHolder(write)) {
+                        releaseRemote();
+                        revokeRequested = false;
+                        // Give the node that asked for the lease a chance to take it
+                        Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10));
+                    }
+                    LeaseMode wanted = write || mode == LeaseMode.WRITE ? LeaseMode.WRITE : LeaseMode.READ;
+                    if (acquireRemote(wanted))
+                        return true;
+                    requestRevoke();
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0)
+                        return false;
+                    Thread.sleep(Math.min(backoff, remaining));
+                    backoff = Math.min(backoff * 2, 50);
+                }
+            }
+        }
+
+        boolean isLocallyHeld() {
+            return localLock.isWriteLocked() || localLock.getReadLockCount() > 0;
+        }
+
+        /**
+         * Checks that the hold the calling thread just acquired is the only local hold, so nested holds of the same thread keep the lease
+         */
+        private boolean isOnlyLocalHolder(boolean write) {
+            return write ? localLock.getWriteHoldCount() == 1 && localLock.getReadLockCount() == 0 : !localLock.isWriteLocked() && localLock.getReadLockCount() == 1;
+        }
+
+        /**
+         * Checks that the write lock the calling thread got by {@link ReentrantReadWriteLock.WriteLock#tryLock()} is not held by an outer section of the same thread
+         */
+        private boolean isFree() {
+            return localLock.getWriteHoldCount() == 1 && localLock.getReadLockCount() == 0;
+        }
+
+        private boolean acquireRemote(LeaseMode wanted) {
+            long now = System.currentTimeMillis();
+            Long result = getScript().eval(RScript.Mode.READ_WRITE, ACQUIRE_SCRIPT, RScript.ReturnType.INTEGER, List.of(key), nodeID, wanted == LeaseMode.WRITE ? "write" : "read", String.valueOf(leaseMillis));
+            if (result == null || result != 1)
+                return false;
+            mode = wanted;
+            validUntil = now + leaseMillis - SAFETY_MARGIN_MILLIS;
+            return true;
+        }
+
+        synchronized void renew() {
+            if (mode == LeaseMode.NONE)
+                return;
+            if (!acquireRemote(mode)) {
+                NetworkLogger.warning("[HierarchicalLocking] Lost lease " + key + " while it was in use");
+                mode = LeaseMode.NONE;
+            }
+        }
+
+        void releaseRemote() {
+            mode = LeaseMode.NONE;
+            try {
+                getScript().eval(RScript.Mode.READ_WRITE, RELEASE_SCRIPT, RScript.ReturnType.INTEGER, List.of(key), nodeID);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Gives up the lease if no local thread uses it right now, including the calling thread
+         */
+        void tryRevoke() {
+            if (!localLock.writeLock().tryLock())
+                return;
+            try {
+                if (!isFree())
+                    return;
+                synchronized (this) {
+                    if (mode != LeaseMode.NONE)
+                        releaseRemote();
+                    revokeRequested = false;
+                }
+            } finally {
+                localLock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Marks the lease as dropped if it is released and nobody on this node uses or waits for it
+         *
+         * @return true if the lease can be removed
+         */
+        boolean tryRetire() {
+            if (!localLock.writeLock().tryLock())
+                return false;
+            try {
+                if (!isFree() || mode != LeaseMode.NONE || localLock.hasQueuedThreads())
+                    return false;
+                retired = true;
+                return true;
+            } finally {
+                localLock.writeLock().unlock();
+            }
+        }
+
+        private void requestRevoke() {
+            long now = System.currentTimeMillis();
+            if (messagingService == null || now - lastRevokeRequest < REVOKE_REQUEST_INTERVAL_MILLIS)
+                return;
+            lastRevokeRequest = now;
+            messagingService.sendInstruction(new LeaseRevokePing(UUID.randomUUID(), key, nodeID));
+        }
+    }
+
+    /**
+     * Resolves the current lease of its key on every lock operation, so it stays usable after its lease was dropped.
+     * While the local lock is held the lease can't be dropped.
+     */
+    private class LeasedLock implements Lock {
+        private final String key;
+        private final boolean write;
+
+        LeasedLock(String key, boolean write) {
+            this.key = key;
+            this.write = write;
+        }
+
+        @Override
+        public void lock() {
+            Lease lease;
+            while (true) {
+                lease = leases.computeIfAbsent(key, Lease::new);
+                getLocalLock(lease).lock();
+                if (!lease.retired)
+                    break;
+                getLocalLock(lease).unlock();
+            }
+            try {
+                lease.ensure(write, Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                getLocalLock(lease).unlock();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for lease " + key, e);
+            } catch (RuntimeException e) {
+                getLocalLock(lease).unlock();
+                throw e;
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            Lease lease = lockLocally(local -> {
+                local.lockInterruptibly();
+                return true;
+            });
+            try {
+                lease.ensure(write, Long.MAX_VALUE);
+            } catch (InterruptedException | RuntimeException e) {
+                getLocalLock(lease).unlock();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            Lease lease;
+            try {
+                lease = lockLocally(Lock::tryLock);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (lease == null)
+                return false;
+            try {
+                if (lease.ensure(write, System.currentTimeMillis()))
+                    return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                getLocalLock(lease).unlock();
+                throw e;
+            }
+            getLocalLock(lease).unlock();
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long time, @NotNull TimeUnit unit) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + unit.toMillis(time);
+            Lease lease = lockLocally(local -> local.tryLock(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            if (lease == null)
+                return false;
+            try {
+                if (lease.ensure(write, deadline))
+                    return true;
+            } catch (InterruptedException | RuntimeException e) {
+                getLocalLock(lease).unlock();
+                throw e;
+            }
+            getLocalLock(lease).unlock();
+            return false;
+        }
+
+        @Override
+        public void unlock() {
+            Lease lease = leases.get(key);
+            if (lease == null)
+                throw new IllegalMonitorStateException("The lease " + key + " is not held");
+            lease.lastUse = System.currentTimeMillis();
+            getLocalLock(lease).unlock();
+            if (lease.revokeRequested)
+                lease.tryRevoke();
+        }
+
+        @NotNull
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("Conditions are not supported by leased locks");
+        }
+
+        private Lock getLocalLock(Lease lease) {
+            return write ? lease.localLock.writeLock() : lease.localLock.readLock();
+        }
+
+        /**
+         * Locks the local lock of the current lease of the key
+         *
+         * @return the locked lease or null if the local lock could not be acquired
+         */
+        @Nullable
+        private Lease lockLocally(LocalLockAttempt attempt) throws InterruptedException {
+            while (true) {
+                Lease lease = leases.computeIfAbsent(key, Lease::new);
+                if (!attempt.lock(getLocalLock(lease)))
+                    return null;
+                if (!lease.retired)
+                    return lease;
+                getLocalLock(lease).unlock();
+            }
+        }
+    }
+
+    private interface LocalLockAttempt {
+        boolean lock(Lock localLock) throws InterruptedException;
+    }
+}
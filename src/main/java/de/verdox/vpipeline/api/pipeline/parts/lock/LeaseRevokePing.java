@@ -0,0 +1,41 @@
+package de.verdox.vpipeline.api.pipeline.parts.lock;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Ping;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Asks all nodes to give up their lease on a lock because another node is waiting for it.
+ */
+@InstructionInfo(awaitsResponse = false, priority = InstructionInfo.Priority.HIGH)
+public class LeaseRevokePing extends Ping {
+    public static final InstructionCodec<LeaseRevokePing, Boolean> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                out.writeUTF(instruction.leaseKey);
+                out.writeUTF(instruction.requesterNodeID);
+            },
+            in -> new LeaseRevokePing(UUID.randomUUID(), in.readUTF(), in.readUTF()),
+            InstructionCodec.ResponseCodec.NONE
+    );
+    private final String leaseKey;
+    private final String requesterNodeID;
+
+    public LeaseRevokePing(@NotNull UUID uuid, @NotNull String leaseKey, @NotNull String requesterNodeID) {
+        super(uuid);
+        this.leaseKey = leaseKey;
+        this.requesterNodeID = requesterNodeID;
+    }
+
+    @Override
+    public void onPingReceive(MessagingService messagingService) {
+        var networkParticipant = messagingService.getNetworkParticipant();
+        if (networkParticipant == null || networkParticipant.pipeline() == null)
+            return;
+        if (networkParticipant.pipeline().getNetworkDataLockingService() instanceof HierarchicalNetworkDataLockingService lockingService)
+            lockingService.onRevokeRequest(leaseKey, requesterNodeID);
+    }
+}
@@ -0,0 +1,337 @@
+package de.verdox.vpipeline.api.pipeline.parts.lock;
+
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.datatypes.ReadConsistency;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Records how long threads wait for and hold the locks of {@link IPipelineData} objects.
+ * <p>
+ * Locks are wrapped with {@link #instrument(Lock, Class, UUID, boolean)}. Wait and hold times are collected per data class in histograms with power of two buckets.
+ * The metrics also remember which local threads currently hold a lock, so the longest held locks can be logged when an acquisition times out.
+ * Holders on other nodes of the network are not known to this node.
+ * <p>
+ * Reads with a {@link ReadConsistency} are recorded per consistency level, since lock free reads are much faster than locked ones.
+ */
+public class LockMetrics {
+    private final Map<Class<? extends IPipelineData>, ClassMetrics> metrics = new ConcurrentHashMap<>();
+    private final Map<Holder, Holding> holders = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps a lock so that its wait and hold times are recorded
+     *
+     * @param lock  the lock
+     * @param type  the data class the lock belongs to
+     * @param uuid  the object uuid the lock belongs to
+     * @param write true if the lock is a write lock
+     * @return the instrumented lock
+     */
+    public Lock instrument(@NotNull Lock lock, @NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid, boolean write) {
+        Objects.requireNonNull(lock, "lock can't be null!");
+        Objects.requireNonNull(type, "type can't be null!");
+        Objects.requireNonNull(uuid, "uuid can't be null!");
+        if (lock instanceof InstrumentedLock)
+            return lock;
+        return new InstrumentedLock(lock, type, uuid, write);
+    }
+
+    /**
+     * Returns the metrics of a data class
+     *
+     * @param type the data class
+     * @return the metrics
+     */
+    @NotNull
+    public ClassMetrics getMetrics(@NotNull Class<? extends IPipelineData> type) {
+        Objects.requireNonNull(type, "type can't be null!");
+        return metrics.computeIfAbsent(type, aClass -> new ClassMetrics());
+    }
+
+    /**
+     * Returns all data classes that have recorded metrics
+     *
+     * @return the metrics per data class
+     */
+    public Map<Class<? extends IPipelineData>, ClassMetrics> getAllMetrics() {
+        return Map.copyOf(metrics);
+    }
+
+    /**
+     * Returns the locks that are currently held by local threads sorted by their hold time, starting with the longest
+     *
+     * @param limit the maximum amount of holders returned
+     * @return the lock holders
+     */
+    public List<HeldLock> getLongestHolders(int limit) {
+        long now = System.nanoTime();
+        return holders.entrySet()
+                .stream()
+                .map(entry -> new HeldLock(entry.getKey().type(), entry.getKey().uuid(), entry.getKey().write(), entry.getKey().thread().getName(), Duration.ofNanos(now - entry.getValue().since)))
+                .sorted(Comparator.comparing(HeldLock::heldFor).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Logs the locks that are held the longest by local threads
+     *
+     * @param limit the maximum amount of holders logged
+     */
+    public void logLongestHolders(int limit) {
+        List<HeldLock> longestHolders = getLongestHolders(limit);
+        if (longestHolders.isEmpty()) {
+            NetworkLogger.info("[LockMetrics] No locks are held by local threads");
+            return;
+        }
+        NetworkLogger.info("[LockMetrics] Longest held locks:");
+        longestHolders.forEach(heldLock -> NetworkLogger.info("[LockMetrics]  " + heldLock));
+    }
+
+    /**
+     * Records the latency of a read with the given consistency level
+     *
+     * @param type  the data class
+     * @param level the consistency level of the read
+     * @param nanos the latency in nanoseconds
+     */
+    public void recordRead(@NotNull Class<? extends IPipelineData> type, @NotNull ReadConsistency.Level level, long nanos) {
+        getMetrics(type).readLatencies.get(level).record(nanos);
+    }
+
+    /**
+     * Records that a bounded read had to reload an object because its local copy was too old
+     *
+     * @param type the data class
+     */
+    public void recordRevalidation(@NotNull Class<? extends IPipelineData> type) {
+        getMetrics(type).revalidations.increment();
+    }
+
+    void onTimeout(Class<? extends IPipelineData> type, UUID uuid, boolean write, long waitedNanos) {
+        getMetrics(type).timeouts.increment();
+        NetworkLogger.warning("[LockMetrics] Timed out after " + TimeUnit.NANOSECONDS.toMillis(waitedNanos) + "ms waiting for " + (write ? "write" : "read") + " lock of " + type.getSimpleName() + " [" + uuid + "]");
+        logLongestHolders(5);
+    }
+
+    private void onAcquire(Class<? extends IPipelineData> type, UUID uuid, boolean write, long waitedNanos) {
+        getMetrics(type).waitTimes.record(waitedNanos);
+        long now = System.nanoTime();
+        holders.compute(new Holder(Thread.currentThread(), type, uuid, write), (holder, holding) -> {
+            if (holding == null)
+                holding = new Holding(now);
+            holding.count++;
+            return holding;
+        });
+    }
+
+    private void onRelease(Class<? extends IPipelineData> type, UUID uuid, boolean write) {
+        long now = System.nanoTime();
+        holders.computeIfPresent(new Holder(Thread.currentThread(), type, uuid, write), (holder, holding) -> {
+            if (--holding.count > 0)
+                return holding;
+            getMetrics(type).holdTimes.record(now - holding.since);
+            return null;
+        });
+    }
+
+    /**
+     * A lock that is currently held by a local thread
+     *
+     * @param type    the data class
+     * @param uuid    the object uuid
+     * @param write   true if it is a write lock
+     * @param thread  the name of the holding thread
+     * @param heldFor the time the lock is held
+     */
+    public record HeldLock(Class<? extends IPipelineData> type, UUID uuid, boolean write, String thread, Duration heldFor) {
+        @Override
+        public String toString() {
+            return (write ? "write" : "read") + " lock of " + type.getSimpleName() + " [" + uuid + "] held by " + thread + " for " + heldFor.toMillis() + "ms";
+        }
+    }
+
+    /**
+     * The lock metrics of one data class
+     */
+    public static class ClassMetrics {
+        private final Histogram waitTimes = new Histogram();
+        private final Histogram holdTimes = new Histogram();
+        private final LongAdder timeouts = new LongAdder();
+        private final Map<ReadConsistency.Level, Histogram> readLatencies = new EnumMap<>(ReadConsistency.Level.class);
+        private final LongAdder revalidations = new LongAdder();
+
+        ClassMetrics() {
+            for (ReadConsistency.Level level : ReadConsistency.Level.values())
+                readLatencies.put(level, new Histogram());
+        }
+
+        public Histogram getWaitTimes() {
+            return waitTimes;
+        }
+
+        public Histogram getHoldTimes() {
+            return holdTimes;
+        }
+
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        public Histogram getReadLatencies(@NotNull ReadConsistency.Level level) {
+            return readLatencies.get(level);
+        }
+
+        /**
+         * Returns how often bounded reads reloaded an object because its local copy was too old
+         *
+         * @return the amount of revalidations
+         */
+        public long getRevalidations() {
+            return revalidations.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "wait=" + waitTimes + ", hold=" + holdTimes + ", timeouts=" + getTimeouts() + ", reads=" + readLatencies + ", revalidations=" + getRevalidations();
+        }
+    }
+
+    /**
+     * A lock free histogram of durations in nanoseconds. Bucket i counts durations below 2^i microseconds.
+     */
+    public static class Histogram {
+        private static final int BUCKETS = 40;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            sum.add(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public Duration getMean() {
+            long count = getCount();
+            return count == 0 ? Duration.ZERO : Duration.ofNanos(sum.sum() / count);
+        }
+
+        /**
+         * Returns an upper bound for the given percentile
+         *
+         * @param percentile the percentile between 0 and 1
+         * @return the upper bound of the bucket that contains the percentile
+         */
+        public Duration getPercentile(double percentile) {
+            long count = getCount();
+            if (count == 0)
+                return Duration.ZERO;
+            long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank)
+                    return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(1L << i));
+            }
+            return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(1L << (BUCKETS - 1)));
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + getCount() + ", mean=" + getMean().toNanos() / 1000 + "us, p50<" + getPercentile(0.5).toNanos() / 1000 + "us, p99<" + getPercentile(0.99).toNanos() / 1000 + "us}";
+        }
+    }
+
+    private record Holder(Thread thread, Class<? extends IPipelineData> type, UUID uuid, boolean write) {
+    }
+
+    private static class Holding {
+        private final long since;
+        private int count;
+
+        Holding(long since) {
+            this.since = since;
+        }
+    }
+
+    private class InstrumentedLock implements Lock {
+        private final Lock lock;
+        private final Class<? extends IPipelineData> type;
+        private final UUID uuid;
+        private final boolean write;
+
+        InstrumentedLock(Lock lock, Class<? extends IPipelineData> type, UUID uuid, boolean write) {
+            this.lock = lock;
+            this.type = type;
+            this.uuid = uuid;
+            this.write = write;
+        }
+
+        @Override
+        public void lock() {
+            long start = System.nanoTime();
+            lock.lock();
+            onAcquire(type, uuid, write, System.nanoTime() - start);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            long start = System.nanoTime();
+            lock.lockInterruptibly();
+            onAcquire(type, uuid, write, System.nanoTime() - start);
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!lock.tryLock())
+                return false;
+            onAcquire(type, uuid, write, 0);
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, @NotNull TimeUnit unit) throws InterruptedException {
+            long start = System.nanoTime();
+            boolean locked = lock.tryLock(time, unit);
+            long waited = System.nanoTime() - start;
+            if (locked)
+                onAcquire(type, uuid, write, waited);
+            else
+                onTimeout(type, uuid, write, waited);
+            return locked;
+        }
+
+        @Override
+        public void unlock() {
+            lock.unlock();
+            onRelease(type, uuid, write);
+        }
+
+        @NotNull
+        @Override
+        public Condition newCondition() {
+            return lock.newCondition();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package de.verdox.vpipeline.api.pipeline.parts.lock;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A {@link Lock} that holds several locks at once.
+ * <p>
+ * The locks are acquired in the order of the given list and released in reverse order.
+ * If a lock can't be acquired, all locks that were already acquired are released again.
+ */
+public class OrderedMultiLock implements Lock {
+    private final List<Lock> locks;
+
+    /**
+     * @param locks the locks in the order they are acquired
+     */
+    public OrderedMultiLock(@NotNull List<Lock> locks) {
+        Objects.requireNonNull(locks, "locks can't be null!");
+        this.locks = List.copyOf(locks);
+    }
+
+    @Override
+    public void lock() {
+        int acquired = 0;
+        try {
+            for (Lock lock : locks) {
+                lock.lock();
+                acquired++;
+            }
+        } catch (Throwable e) {
+            unlock(acquired);
+            throw e;
+        }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        int acquired = 0;
+        try {
+            for (Lock lock : locks) {
+                lock.lockInterruptibly();
+                acquired++;
+            }
+        } catch (Throwable e) {
+            unlock(acquired);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean tryLock() {
+        int acquired = 0;
+        try {
+            for (Lock lock : locks) {
+                if (!lock.tryLock())
+                    break;
+                acquired++;
+            }
+        } catch (Throwable e) {
+            unlock(acquired);
+            throw e;
+        }
+        if (acquired == locks.size())
+            return true;
+        unlock(acquired);
+        return false;
+    }
+
+    @Override
+    public boolean tryLock(long time, @NotNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        int acquired = 0;
+        try {
+            for (Lock lock : locks) {
+                if (!lock.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+                    break;
+                acquired++;
+            }
+        } catch (Throwable e) {
+            unlock(acquired);
+            throw e;
+        }
+        if (acquired == locks.size())
+            return true;
+        unlock(acquired);
+        return false;
+    }
+
+    @Override
+    public void unlock() {
+        unlock(locks.size());
+    }
+
+    @NotNull
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException("Conditions are not supported by multi locks");
+    }
+
+    private void unlock(int acquired) {
+        RuntimeException exception = null;
+        for (int i = acquired - 1; i >= 0; i--) {
+            try {
+                locks.get(i).unlock();
+            } catch (RuntimeException e) {
+                if (exception == null)
+                    exception = e;
+                else
+                    exception.addSuppressed(e);
+            }
+        }
+        if (exception != null)
+            throw exception;
+    }
+}
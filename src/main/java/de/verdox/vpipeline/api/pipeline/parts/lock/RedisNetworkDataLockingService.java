@@ -3,12 +3,16 @@ package de.verdox.vpipeline.api.pipeline.parts.lock;
 import de.verdox.vserializer.SerializableField;
 import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineDataKey;
 import de.verdox.vpipeline.api.util.AnnotationResolver;
 import de.verdox.vpipeline.impl.util.RedisConnection;
 import de.verdox.vserializer.generic.Serializer;
 import de.verdox.vserializer.generic.SerializerBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.redisson.api.RLock;
 
+import java.util.Collection;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 
@@ -33,6 +37,18 @@ public class RedisNetworkDataLockingService implements NetworkDataLockingService
         return this.redisConnection.getRedissonClient().getReadWriteLock(getLockName(type, uuid)).writeLock();
     }
 
+    /**
+     * Uses a redisson multi lock. It releases all locks and tries again if one of them is not available and releases them with parallel requests.
+     */
+    @Override
+    public Lock getWriteLocks(@NotNull Collection<PipelineDataKey> keys) {
+        RLock[] locks = new TreeSet<>(keys)
+                .stream()
+                .map(key -> this.redisConnection.getRedissonClient().getReadWriteLock(getLockName(key.type(), key.uuid())).writeLock())
+                .toArray(RLock[]::new);
+        return this.redisConnection.getRedissonClient().getMultiLock(locks);
+    }
+
     private <T extends IPipelineData> String getLockName(@NotNull Class<? extends T> type, @NotNull UUID uuid){
         String classifier = AnnotationResolver
                 .getDataStorageClassifier(type)
@@ -0,0 +1,175 @@
+package de.verdox.vpipeline.api.pipeline.parts.storage;
+
+import com.google.gson.GsonBuilder;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.modules.AttachedPipeline;
+import de.verdox.vserializer.SerializableField;
+import de.verdox.vserializer.generic.Serializer;
+import de.verdox.vserializer.generic.SerializerBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A {@link SQLStorage} that talks to any JDBC database supported by a {@link SQLDialect}.
+ * Connections are pooled with HikariCP. Embedded databases like H2 or SQLite only need a jdbc url pointing to a local file.
+ */
+public class JDBCStorage extends SQLStorage {
+    public static final Serializer<JDBCStorage> SERIALIZER = SerializerBuilder.create("jdbc_storage", JDBCStorage.class)
+            .constructor(
+                    new SerializableField<>("dialect", Serializer.Primitive.STRING, jdbcStorage -> jdbcStorage.dialect.name()),
+                    new SerializableField<>("jdbcUrl", Serializer.Primitive.STRING, jdbcStorage -> jdbcStorage.hikariConfig.getJdbcUrl()),
+                    new SerializableField<>("user", Serializer.Primitive.STRING, jdbcStorage -> Objects.requireNonNullElse(jdbcStorage.hikariConfig.getUsername(), "")),
+                    new SerializableField<>("password", Serializer.Primitive.STRING, jdbcStorage -> Objects.requireNonNullElse(jdbcStorage.hikariConfig.getPassword(), "")),
+                    new SerializableField<>("binary", Serializer.Primitive.BOOLEAN, JDBCStorage::isBinary),
+                    (dialect, jdbcUrl, user, password, binary) -> new JDBCStorage(SQLDialect.valueOf(dialect), jdbcUrl, user, password, binary)
+            )
+            .build();
+
+    private final HikariConfig hikariConfig;
+    private final SQLDialect dialect;
+    private final boolean binary;
+    private final AttachedPipeline attachedPipeline;
+    private HikariDataSource hikariDataSource;
+
+    public JDBCStorage(@NotNull HikariConfig hikariConfig, @NotNull SQLDialect dialect, boolean binary) {
+        Objects.requireNonNull(hikariConfig, "hikariConfig can't be null!");
+        Objects.requireNonNull(dialect, "dialect can't be null!");
+        this.hikariConfig = hikariConfig;
+        this.dialect = dialect;
+        this.binary = binary;
+        this.attachedPipeline = new AttachedPipeline(GsonBuilder::create);
+    }
+
+    public JDBCStorage(@NotNull SQLDialect dialect, @NotNull String jdbcUrl, @NotNull String user, @NotNull String password, boolean binary) {
+        this(createConfig(jdbcUrl, user, password), dialect, binary);
+    }
+
+    private static HikariConfig createConfig(@NotNull String jdbcUrl, @NotNull String user, @NotNull String password) {
+        Objects.requireNonNull(jdbcUrl, "jdbcUrl can't be null!");
+        Objects.requireNonNull(user, "user can't be null!");
+        Objects.requireNonNull(password, "password can't be null!");
+        var hikariConfig = new HikariConfig();
+        hikariConfig.setJdbcUrl(jdbcUrl);
+        if (!user.isEmpty())
+            hikariConfig.setUsername(user);
+        if (!password.isEmpty())
+            hikariConfig.setPassword(password);
+        return hikariConfig;
+    }
+
+    @Override
+    public void connect() {
+        this.hikariDataSource = new HikariDataSource(hikariConfig);
+        NetworkLogger.info(dialect + " Global Storage connected");
+    }
+
+    @Override
+    public void disconnect() {
+        this.hikariDataSource.close();
+    }
+
+    @Override
+    public @NotNull SQLDialect getDialect() {
+        return dialect;
+    }
+
+    @Override
+    public boolean isBinary() {
+        return binary;
+    }
+
+    @Override
+    public @NotNull Connection connection() {
+        try {
+            return this.hikariDataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to retrieve connection from pool", e);
+        }
+    }
+
+    @Override
+    public int executeUpdate(@NotNull String query, @NotNull Object... objects) {
+        try (Connection con = this.connection(); PreparedStatement statement = con.prepareStatement(query)) {
+            // write all parameters
+            bindParameters(statement, objects);
+
+            // execute the statement
+            return statement.executeUpdate();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return -1;
+        }
+    }
+
+    @Override
+    public int[] executeBatch(@NotNull String query, @NotNull List<Object[]> parameters) {
+        try (Connection con = this.connection(); PreparedStatement statement = con.prepareStatement(query)) {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                for (Object[] objects : parameters) {
+                    bindParameters(statement, objects);
+                    statement.addBatch();
+                }
+                int[] result = statement.executeBatch();
+                con.commit();
+                return result;
+            } catch (SQLException exception) {
+                con.rollback();
+                throw exception;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return new int[0];
+        }
+    }
+
+    @Override
+    public <T> T executeQuery(@NotNull String query, @NotNull Function<ResultSet, T> callback, @Nullable T def, @NotNull Object... objects) {
+        try (Connection con = this.connection(); PreparedStatement statement = con.prepareStatement(query)) {
+            // write all parameters
+            bindParameters(statement, objects);
+
+            // execute the statement, apply to the result handler
+            try (var resultSet = statement.executeQuery()) {
+                return callback.apply(resultSet);
+            }
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        return def;
+    }
+
+    private void bindParameters(@NotNull PreparedStatement statement, @NotNull Object... objects) throws SQLException {
+        for (int i = 0; i < objects.length; i++) {
+            if (objects[i] instanceof byte[] bytes)
+                statement.setBytes(i + 1, bytes);
+            else
+                statement.setString(i + 1, Objects.toString(objects[i]));
+        }
+    }
+
+    @Override
+    public AttachedPipeline getAttachedPipeline() {
+        return attachedPipeline;
+    }
+
+    @Override
+    public void shutdown() {
+        if (this.hikariDataSource != null)
+            this.hikariDataSource.close();
+    }
+}
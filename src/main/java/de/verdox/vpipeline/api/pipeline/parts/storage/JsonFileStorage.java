@@ -3,6 +3,7 @@ package de.verdox.vpipeline.api.pipeline.parts.storage;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import de.verdox.vserializer.SerializableField;
 import de.verdox.vpipeline.api.NetworkLogger;
 import de.verdox.vpipeline.api.modules.AttachedPipeline;
@@ -14,34 +15,71 @@ import jodd.io.FileNameUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Objects;
-import java.util.Set;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Stores every object in its own json file.
+ * <p>
+ * Files are never rewritten in place. A save writes a temporary file that is moved over the old file afterwards, so a crash leaves either the old or the new version.
+ * In async mode saves only queue the document. A dedicated I/O thread coalesces repeated saves of the same object and writes all queued documents with one fsync pass.
+ * Queued documents are visible to readers until they reached the disk.
+ */
 public class JsonFileStorage implements GlobalStorage {
     public static final Serializer<JsonFileStorage> SERIALIZER = SerializerBuilder.create("json_file_storage", JsonFileStorage.class)
             .constructor(
                     new SerializableField<>("path", Serializer.Primitive.STRING, jsonFileStorage -> jsonFileStorage.path.toString()),
-                    s -> new JsonFileStorage(Path.of(s))
+                    new SerializableField<>("asyncWrites", Serializer.Primitive.BOOLEAN, JsonFileStorage::isAsyncWrites),
+                    (s, asyncWrites) -> new JsonFileStorage(Path.of(s), asyncWrites)
             )
             .build();
 
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long WRITE_DELAY_MILLIS = 10;
+    // Marks a queued removal in the pending writes
+    private static final JsonElement REMOVED = new JsonPrimitive("removed");
+
     private final Path path;
+    private final boolean asyncWrites;
     private final AttachedPipeline attachedPipeline;
+    private final Map<Path, JsonElement> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private ScheduledExecutorService ioExecutor;
 
-    public JsonFileStorage(Path path) {
+    public JsonFileStorage(Path path, boolean asyncWrites) {
         this.path = path;
+        this.asyncWrites = asyncWrites;
         this.attachedPipeline = new AttachedPipeline(GsonBuilder::create);
     }
 
+    public JsonFileStorage(Path path) {
+        this(path, false);
+    }
+
+    public boolean isAsyncWrites() {
+        return asyncWrites;
+    }
+
     @Override
     public JsonElement loadData(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
 
+        JsonElement pending = pendingWrites.get(getFilePath(dataClass, objectUUID));
+        if (pending != null)
+            return pending == REMOVED ? null : pending.deepCopy();
         try {
             return loadFromFile(dataClass, objectUUID);
         } catch (IOException e) {
@@ -54,13 +92,22 @@ public class JsonFileStorage implements GlobalStorage {
     public boolean dataExist(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
-        return Files.exists(getFilePath(dataClass, objectUUID));
+        Path filePath = getFilePath(dataClass, objectUUID);
+        JsonElement pending = pendingWrites.get(filePath);
+        if (pending != null)
+            return pending != REMOVED;
+        return Files.exists(filePath);
     }
 
     @Override
     public void save(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        if (asyncWrites) {
+            if (!dataToSave.isJsonNull())
+                enqueue(getFilePath(dataClass, objectUUID), dataToSave.deepCopy());
+            return;
+        }
         try {
             saveJsonToFile(dataClass, objectUUID, dataToSave);
         } catch (IOException e) {
@@ -74,6 +121,10 @@ public class JsonFileStorage implements GlobalStorage {
         Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
         if (!dataExist(dataClass, objectUUID))
             return false;
+        if (asyncWrites) {
+            enqueue(getFilePath(dataClass, objectUUID), REMOVED);
+            return true;
+        }
         try {
             Files.deleteIfExists(getFilePath(dataClass, objectUUID));
             return true;
@@ -87,19 +138,30 @@ public class JsonFileStorage implements GlobalStorage {
     public Set<UUID> getSavedUUIDs(@NotNull Class<? extends IPipelineData> dataClass) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         Path parentFolder = getParentFolder(dataClass);
-        if (!parentFolder.toFile().exists())
-            return Set.of();
-        try (var stream = Files.walk(parentFolder, 1)) {
-            return stream
-                    .skip(1)
-                    .filter(path1 -> FileNameUtil.getExtension(path1.getFileName().toString()).equals(".json"))
-                    .map(path1 -> FileNameUtil.getBaseName(path1.toString()))
-                    .map(UUID::fromString)
-                    .collect(Collectors.toSet());
-        } catch (IOException e) {
-            e.printStackTrace();
-            return Set.of();
+        Set<UUID> savedUUIDs = new HashSet<>();
+        if (parentFolder.toFile().exists()) {
+            try (var stream = Files.walk(parentFolder, 1)) {
+                stream
+                        .skip(1)
+                        .filter(path1 -> FileNameUtil.getExtension(path1.getFileName().toString()).equals(".json"))
+                        .map(path1 -> FileNameUtil.getBaseName(path1.toString()))
+                        .map(UUID::fromString)
+                        .forEach(savedUUIDs::add);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return Set.of();
+            }
         }
+        pendingWrites.forEach((filePath, jsonElement) -> {
+            if (!filePath.getParent().equals(parentFolder))
+                return;
+            UUID uuid = UUID.fromString(FileNameUtil.getBaseName(filePath.toString()));
+            if (jsonElement == REMOVED)
+                savedUUIDs.remove(uuid);
+            else
+                savedUUIDs.add(uuid);
+        });
+        return savedUUIDs;
     }
 
     @Override
@@ -111,19 +173,102 @@ public class JsonFileStorage implements GlobalStorage {
         if (dataToSave.isJsonNull())
             return;
         Path path = getFilePath(dataClass, objectUUID);
+        Path tempFile = writeTempFile(path, dataToSave);
+        try {
+            moveAtomically(tempFile, path);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        syncDirectory(path.getParent());
+    }
 
-        File file = new File(path.toUri());
-        if (!file.exists()) {
-            if(!file.getParentFile().mkdirs() && !file.getParentFile().exists())
-                throw new RuntimeException("Could not create folder structure JsonFileStorage [" + path + "]");
-            else if (!file.createNewFile() && !file.exists())
-                throw new RuntimeException("Could not create save file for [" + path + "]");
+    /**
+     * Writes the document to a temp file of its own next to its target file and forces it to disk.
+     * Every save uses a new temp file so concurrent saves of the same object can't write into each other's file.
+     */
+    private Path writeTempFile(@NotNull Path path, @NotNull JsonElement dataToSave) throws IOException {
+        File parent = path.getParent().toFile();
+        if (!parent.mkdirs() && !parent.exists())
+            throw new RuntimeException("Could not create folder structure JsonFileStorage [" + path + "]");
+        Path tempFile = Files.createTempFile(path.getParent(), path.getFileName() + ".", TEMP_SUFFIX);
+        ByteBuffer buffer = ByteBuffer.wrap(attachedPipeline.getGson().toJson(dataToSave).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
         }
-        try (FileWriter writer = new FileWriter(file)) {
-            attachedPipeline.getGson().toJson(dataToSave, writer);
+        return tempFile;
+    }
+
+    private void moveAtomically(@NotNull Path source, @NotNull Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
+    /**
+     * Makes a rename durable. Not every platform allows to open directories, so failures are ignored.
+     */
+    private void syncDirectory(@NotNull Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void enqueue(@NotNull Path filePath, @NotNull JsonElement jsonElement) {
+        pendingWrites.put(filePath, jsonElement);
+        if (ioExecutor == null) {
+            writePending();
+            return;
+        }
+        if (writeScheduled.compareAndSet(false, true))
+            ioExecutor.schedule(this::writePending, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes all queued documents. The temporary files of the whole group are written and forced first, then all of them are renamed and each touched directory is synced once.
+     * An entry is only dequeued if it was not replaced by a newer save in the meantime.
+     */
+    private synchronized void writePending() {
+        writeScheduled.set(false);
+        if (pendingWrites.isEmpty())
+            return;
+        Map<Path, JsonElement> batch = new HashMap<>(pendingWrites);
+        Map<Path, Path> tempFiles = new HashMap<>();
+        Set<Path> directories = new HashSet<>();
+        batch.forEach((filePath, jsonElement) -> {
+            if (jsonElement == REMOVED)
+                return;
+            try {
+                tempFiles.put(filePath, writeTempFile(filePath, jsonElement));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        batch.forEach((filePath, jsonElement) -> {
+            try {
+                if (jsonElement == REMOVED)
+                    Files.deleteIfExists(filePath);
+                else if (tempFiles.containsKey(filePath))
+                    moveAtomically(tempFiles.get(filePath), filePath);
+                else
+                    return;
+                directories.add(filePath.getParent());
+                pendingWrites.remove(filePath, jsonElement);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        directories.forEach(this::syncDirectory);
+        NetworkLogger.debug("[JsonFileStorage] Wrote " + batch.size() + " queued documents");
+    }
+
     private JsonElement loadFromFile(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) throws IOException {
         Path path = getFilePath(dataClass, objectUUID);
         File file = new File(path.toUri());
@@ -144,11 +289,23 @@ public class JsonFileStorage implements GlobalStorage {
 
     @Override
     public void shutdown() {
-
+        if (ioExecutor == null)
+            return;
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(5, TimeUnit.SECONDS))
+                ioExecutor.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ioExecutor = null;
+        writePending();
     }
 
     @Override
     public void connect() {
+        if (asyncWrites && ioExecutor == null)
+            ioExecutor = Executors.newSingleThreadScheduledExecutor();
         NetworkLogger.info("JsonFileStorage loaded");
     }
 
@@ -0,0 +1,570 @@
+package de.verdox.vpipeline.api.pipeline.parts.storage;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.modules.AttachedPipeline;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
+import de.verdox.vserializer.SerializableField;
+import de.verdox.vserializer.generic.Serializer;
+import de.verdox.vserializer.generic.SerializerBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link GlobalStorage} that appends every write to segment files on the local disk.
+ * <p>
+ * The position of the latest record of every object is kept in an in memory index that is rebuilt by replaying all segments on {@link #connect()}.
+ * A torn record at the end of the last segment is detected by its checksum and cut off during recovery.
+ * Writes are flushed to disk by a background thread in groups. In sync mode a write only returns after the group containing it was flushed.
+ * Segments that mostly contain outdated records are compacted in the background by copying their live records to the active segment.
+ */
+public class LogStructuredStorage implements GlobalStorage {
+    public static final Serializer<LogStructuredStorage> SERIALIZER = SerializerBuilder.create("log_structured_storage", LogStructuredStorage.class)
+            .constructor(
+                    new SerializableField<>("path", Serializer.Primitive.STRING, storage -> storage.path.toString()),
+                    new SerializableField<>("syncWrites", Serializer.Primitive.BOOLEAN, LogStructuredStorage::isSyncWrites),
+                    (s, syncWrites) -> new LogStructuredStorage(Path.of(s), syncWrites)
+            )
+            .build();
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+    // crc(4) + type(1) + keyLength(2) + valueLength(4) + uuid(16)
+    private static final int HEADER_SIZE = 27;
+    private static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final long FLUSH_INTERVAL_MILLIS = 5;
+    private static final long COMPACTION_INTERVAL_SECONDS = 60;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    private final Path path;
+    private final boolean syncWrites;
+    private final long maxSegmentSize;
+    private final AttachedPipeline attachedPipeline;
+    private final Map<String, Map<UUID, RecordLocation>> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    private List<CompletableFuture<Void>> pendingFlushes = new ArrayList<>();
+    private ScheduledExecutorService executorService;
+    private Segment activeSegment;
+    private volatile boolean dirty;
+
+    public LogStructuredStorage(@NotNull Path path, boolean syncWrites) {
+        this(path, syncWrites, DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param path           the directory of the segments
+     * @param syncWrites     true if writes only return after they were flushed to disk
+     * @param maxSegmentSize the size in bytes after which a new segment is started
+     */
+    public LogStructuredStorage(@NotNull Path path, boolean syncWrites, long maxSegmentSize) {
+        Objects.requireNonNull(path, "path can't be null!");
+        if (maxSegmentSize <= 0)
+            throw new IllegalArgumentException("maxSegmentSize has to be positive");
+        this.path = path;
+        this.syncWrites = syncWrites;
+        this.maxSegmentSize = maxSegmentSize;
+        this.attachedPipeline = new AttachedPipeline(GsonBuilder::create);
+    }
+
+    public LogStructuredStorage(@NotNull Path path) {
+        this(path, true);
+    }
+
+    @Override
+    public JsonElement loadData(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        segmentLock.readLock().lock();
+        try {
+            RecordLocation location = getIndex(dataClass).get(objectUUID);
+            if (location == null)
+                return null;
+            ByteBuffer buffer = ByteBuffer.allocate(location.length());
+            segments.get(location.segmentID()).read(buffer, location.offset());
+            buffer.flip();
+            Record record = decodeRecord(buffer);
+            if (record == null)
+                throw new IOException("Corrupted record for " + dataClass.getSimpleName() + " [" + objectUUID + "] in segment " + location.segmentID());
+            return JsonParser.parseString(new String(record.value(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean dataExist(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        return getIndex(dataClass).containsKey(objectUUID);
+    }
+
+    @Override
+    public void save(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
+        saveBatch(dataClass, Map.of(objectUUID, dataToSave));
+    }
+
+    @Override
+    public void saveBatch(@NotNull Class<? extends IPipelineData> dataClass, @NotNull Map<UUID, JsonElement> dataToSave) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
+        if (dataToSave.isEmpty())
+            return;
+        String key = getStorageKey(dataClass);
+        List<Record> records = new ArrayList<>(dataToSave.size());
+        dataToSave.forEach((uuid, jsonElement) -> records.add(new Record(RECORD_PUT, key, uuid, jsonElement.toString().getBytes(StandardCharsets.UTF_8))));
+        awaitFlush(append(records));
+    }
+
+    @Override
+    public boolean remove(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        if (!dataExist(dataClass, objectUUID))
+            return false;
+        awaitFlush(append(List.of(new Record(RECORD_DELETE, getStorageKey(dataClass), objectUUID, new byte[0]))));
+        return true;
+    }
+
+    @Override
+    public Set<UUID> getSavedUUIDs(@NotNull Class<? extends IPipelineData> dataClass) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        return new HashSet<>(getIndex(dataClass).keySet());
+    }
+
+    @Override
+    public AttachedPipeline getAttachedPipeline() {
+        return attachedPipeline;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    @Override
+    public void connect() {
+        try {
+            Files.createDirectories(path);
+            recover();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open log structured storage at " + path, e);
+        }
+        this.executorService = Executors.newSingleThreadScheduledExecutor();
+        this.executorService.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        this.executorService.scheduleWithFixedDelay(this::compact, COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        NetworkLogger.info("LogStructuredStorage loaded with " + segments.size() + " segments");
+    }
+
+    @Override
+    public void disconnect() {
+        shutdown();
+    }
+
+    @Override
+    public void shutdown() {
+        if (this.executorService == null)
+            return;
+        this.executorService.shutdown();
+        try {
+            if (!this.executorService.awaitTermination(5, TimeUnit.SECONDS))
+                this.executorService.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.executorService = null;
+        flush();
+        segmentLock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values())
+                segment.close();
+            segments.clear();
+            index.clear();
+            activeSegment = null;
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends the records to the active segment and updates the index.
+     *
+     * @return a future that completes when the records were flushed to disk
+     */
+    private CompletableFuture<Void> append(@NotNull List<Record> records) {
+        int size = 0;
+        for (Record record : records)
+            size += record.size();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Record record : records)
+            encodeRecord(record, buffer);
+        buffer.flip();
+
+        writeLock.lock();
+        try {
+            if (activeSegment == null)
+                throw new IllegalStateException("LogStructuredStorage is not connected");
+            if (activeSegment.size() + size > maxSegmentSize && activeSegment.size() > 0)
+                rollSegment();
+            long offset = activeSegment.append(buffer);
+            for (Record record : records) {
+                applyRecord(record, new RecordLocation(activeSegment.id(), offset, record.size()));
+                offset += record.size();
+            }
+            dirty = true;
+            var future = new CompletableFuture<Void>();
+            pendingFlushes.add(future);
+            return future;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not append to log structured storage at " + path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void awaitFlush(@NotNull CompletableFuture<Void> future) {
+        if (!syncWrites)
+            return;
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not flush log structured storage at " + path, e.getCause());
+        }
+    }
+
+    /**
+     * Forces all appended records to disk and completes the writers waiting for it.
+     * Every writer that appended since the last flush shares the same fsync.
+     */
+    private void flush() {
+        List<CompletableFuture<Void>> flushed;
+        Segment segment;
+        writeLock.lock();
+        try {
+            if (!dirty)
+                return;
+            dirty = false;
+            flushed = pendingFlushes;
+            pendingFlushes = new ArrayList<>();
+            segment = activeSegment;
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            if (segment != null)
+                segment.force();
+            flushed.forEach(future -> future.complete(null));
+        } catch (IOException e) {
+            e.printStackTrace();
+            flushed.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Rewrites the live records of segments that mostly contain outdated records into the active segment and deletes them afterwards.
+     * Runs periodically in the background.
+     */
+    public void compact() {
+        try {
+            List<Segment> candidates = segments.values()
+                    .stream()
+                    .filter(segment -> segment != activeSegment)
+                    .filter(segment -> segment.size() > 0 && (double) segment.deadBytes() / segment.size() >= COMPACTION_THRESHOLD)
+                    .sorted(Comparator.comparingInt(Segment::id))
+                    .toList();
+            for (Segment segment : candidates)
+                compactSegment(segment);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void compactSegment(@NotNull Segment segment) throws IOException {
+        boolean hasOlderSegments = segments.keySet().stream().anyMatch(id -> id < segment.id());
+        List<Record> liveRecords = new ArrayList<>();
+        segmentLock.readLock().lock();
+        try {
+            scanSegment(segment, (record, location) -> {
+                if (record.type() == RECORD_DELETE) {
+                    // Tombstones have to survive as long as an older segment could still contain the deleted record
+                    if (hasOlderSegments && !getIndex(record.key()).containsKey(record.uuid()))
+                        liveRecords.add(record);
+                } else if (location.equals(getIndex(record.key()).get(record.uuid())))
+                    liveRecords.add(record);
+            });
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+
+        writeLock.lock();
+        try {
+            // Records might have been overwritten and deleted objects might have been created again since the scan
+            liveRecords.removeIf(record -> record.type() == RECORD_PUT ? !isLocatedIn(record, segment) : getIndex(record.key()).containsKey(record.uuid()));
+            // The copied records are forced right away because the old segment is deleted afterwards
+            if (!liveRecords.isEmpty())
+                append(liveRecords);
+            activeSegment.force();
+        } finally {
+            writeLock.unlock();
+        }
+
+        segmentLock.writeLock().lock();
+        try {
+            segments.remove(segment.id());
+            segment.close();
+            Files.deleteIfExists(segment.file());
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        NetworkLogger.debug("[LogStructuredStorage] Compacted segment " + segment.id() + " and kept " + liveRecords.size() + " records");
+    }
+
+    private boolean isLocatedIn(@NotNull Record record, @NotNull Segment segment) {
+        RecordLocation location = getIndex(record.key()).get(record.uuid());
+        return location != null && location.segmentID() == segment.id();
+    }
+
+    private void rollSegment() throws IOException {
+        activeSegment.force();
+        int nextID = activeSegment.id() + 1;
+        activeSegment = openSegment(nextID);
+        segments.put(nextID, activeSegment);
+    }
+
+    private void applyRecord(@NotNull Record record, @NotNull RecordLocation location) {
+        Map<UUID, RecordLocation> keyIndex = getIndex(record.key());
+        RecordLocation previous = record.type() == RECORD_PUT ? keyIndex.put(record.uuid(), location) : keyIndex.remove(record.uuid());
+        if (previous != null) {
+            Segment previousSegment = segments.get(previous.segmentID());
+            if (previousSegment != null)
+                previousSegment.addDeadBytes(previous.length());
+        }
+        if (record.type() == RECORD_DELETE)
+            segments.get(location.segmentID()).addDeadBytes(location.length());
+    }
+
+    private void recover() throws IOException {
+        List<Integer> segmentIDs;
+        try (var stream = Files.list(path)) {
+            segmentIDs = stream
+                    .map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+        for (int i = 0; i < segmentIDs.size(); i++) {
+            Segment segment = openSegment(segmentIDs.get(i));
+            segments.put(segment.id(), segment);
+            long validUntil = scanSegment(segment, this::applyRecord);
+            if (validUntil < segment.size()) {
+                NetworkLogger.warning("[LogStructuredStorage] Truncating corrupted tail of segment " + segment.id() + " at offset " + validUntil);
+                segment.truncate(validUntil);
+            }
+            if (i == segmentIDs.size() - 1)
+                activeSegment = segment;
+        }
+        if (activeSegment == null) {
+            activeSegment = openSegment(0);
+            segments.put(0, activeSegment);
+        }
+    }
+
+    /**
+     * Reads all records of a segment in order.
+     *
+     * @return the offset after the last valid record
+     */
+    private long scanSegment(@NotNull Segment segment, @NotNull RecordConsumer consumer) throws IOException {
+        long offset = 0;
+        long size = segment.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (offset + HEADER_SIZE <= size) {
+            header.clear();
+            segment.read(header, offset);
+            header.flip();
+            int keyLength = Short.toUnsignedInt(header.getShort(5));
+            int valueLength = header.getInt(7);
+            if (valueLength < 0 || offset + HEADER_SIZE + keyLength + valueLength > size)
+                break;
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + keyLength + valueLength);
+            segment.read(buffer, offset);
+            buffer.flip();
+            Record record = decodeRecord(buffer);
+            if (record == null)
+                break;
+            consumer.accept(record, new RecordLocation(segment.id(), offset, record.size()));
+            offset += record.size();
+        }
+        return offset;
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path file = path.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, file, channel);
+    }
+
+    private static void encodeRecord(@NotNull Record record, @NotNull ByteBuffer buffer) {
+        int start = buffer.position();
+        byte[] key = record.key().getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(0);
+        buffer.put(record.type());
+        buffer.putShort((short) key.length);
+        buffer.putInt(record.value().length);
+        buffer.putLong(record.uuid().getMostSignificantBits());
+        buffer.putLong(record.uuid().getLeastSignificantBits());
+        buffer.put(key);
+        buffer.put(record.value());
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), start + 4, buffer.position() - start - 4);
+        buffer.putInt(start, (int) crc32.getValue());
+    }
+
+    @Nullable
+    private static Record decodeRecord(@NotNull ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE)
+            return null;
+        int start = buffer.position();
+        int crc = buffer.getInt();
+        byte type = buffer.get();
+        int keyLength = Short.toUnsignedInt(buffer.getShort());
+        int valueLength = buffer.getInt();
+        if ((type != RECORD_PUT && type != RECORD_DELETE) || valueLength < 0 || buffer.remaining() < 16 + keyLength + valueLength)
+            return null;
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), start + 4, HEADER_SIZE - 4 + keyLength + valueLength);
+        if ((int) crc32.getValue() != crc)
+            return null;
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        byte[] key = new byte[keyLength];
+        buffer.get(key);
+        byte[] value = new byte[valueLength];
+        buffer.get(value);
+        return new Record(type, new String(key, StandardCharsets.UTF_8), uuid, value);
+    }
+
+    private String getStorageKey(@NotNull Class<? extends IPipelineData> dataClass) {
+        return getStoragePath(dataClass, getSuffix(dataClass), "/");
+    }
+
+    private Map<UUID, RecordLocation> getIndex(@NotNull Class<? extends IPipelineData> dataClass) {
+        return getIndex(getStorageKey(dataClass));
+    }
+
+    private Map<UUID, RecordLocation> getIndex(@NotNull String key) {
+        return index.computeIfAbsent(key, s -> new ConcurrentHashMap<>());
+    }
+
+    private record Record(byte type, String key, UUID uuid, byte[] value) {
+        int size() {
+            return HEADER_SIZE + key.getBytes(StandardCharsets.UTF_8).length + value.length;
+        }
+    }
+
+    private record RecordLocation(int segmentID, long offset, int length) {
+    }
+
+    @FunctionalInterface
+    private interface RecordConsumer {
+        void accept(Record record, RecordLocation location) throws IOException;
+    }
+
+    private static class Segment {
+        private final int id;
+        private final Path file;
+        private final FileChannel channel;
+        private final AtomicLong size;
+        private final AtomicLong deadBytes = new AtomicLong();
+
+        Segment(int id, Path file, FileChannel channel) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = new AtomicLong(channel.size());
+        }
+
+        int id() {
+            return id;
+        }
+
+        Path file() {
+            return file;
+        }
+
+        long size() {
+            return size.get();
+        }
+
+        long deadBytes() {
+            return deadBytes.get();
+        }
+
+        void addDeadBytes(long bytes) {
+            deadBytes.addAndGet(bytes);
+        }
+
+        long append(ByteBuffer buffer) throws IOException {
+            long offset = size.get();
+            long position = offset;
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+            size.set(position);
+            return offset;
+        }
+
+        void read(ByteBuffer buffer, long offset) throws IOException {
+            long position = offset;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0)
+                    throw new IOException("Unexpected end of segment " + id);
+                position += read;
+            }
+        }
+
+        void truncate(long newSize) throws IOException {
+            channel.truncate(newSize);
+            size.set(newSize);
+        }
+
+        void force() throws IOException {
+            channel.force(false);
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package de.verdox.vpipeline.api.pipeline.parts.storage;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.modules.AttachedPipeline;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
+import de.verdox.vserializer.SerializableField;
+import de.verdox.vserializer.generic.Serializer;
+import de.verdox.vserializer.generic.SerializerBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An embedded {@link GlobalStorage} for single node setups that keeps all objects in two memory mapped files.
+ * <p>
+ * The index file is an open addressing hash table of fixed size slots keyed by the hash of the storage identifier and the two longs of the object uuid.
+ * Every slot points to a run of fixed size pages in the data file that holds the length prefixed json document.
+ * <p>
+ * Updates never overwrite live pages. A batch writes its documents into free pages, forces the data file and only then switches the index slots to the new pages.
+ * Pages that were replaced by the batch become reusable after the index was forced, so a crash always leaves the index pointing to complete documents.
+ * Documents are parsed directly from the mapped memory.
+ * Both files are mapped as a whole, so the data file is limited to 2 GB.
+ */
+public class MappedKVStorage implements GlobalStorage {
+    public static final Serializer<MappedKVStorage> SERIALIZER = SerializerBuilder.create("mapped_kv_storage", MappedKVStorage.class)
+            .constructor(
+                    new SerializableField<>("path", Serializer.Primitive.STRING, storage -> storage.path.toString()),
+                    s -> new MappedKVStorage(Path.of(s))
+            )
+            .build();
+
+    private static final int MAGIC = 0x56504B56;
+    private static final int VERSION = 1;
+    private static final int INDEX_HEADER_SIZE = 64;
+    // storageKeyHash(8) + mostSigBits(8) + leastSigBits(8) + dataOffset(8)
+    private static final int SLOT_SIZE = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final int PAGE_SIZE = 256;
+    private static final long EMPTY = 0;
+    private static final long DELETED = -1;
+
+    private final Path path;
+    private final AttachedPipeline attachedPipeline;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Free page runs that can be reused. Maps the offset of a run to its page count.
+    private final TreeMap<Long, Integer> freeRuns = new TreeMap<>();
+    private FileChannel indexChannel;
+    private FileChannel dataChannel;
+    private MappedByteBuffer index;
+    private MappedByteBuffer data;
+    private int capacity;
+    private int count;
+    private int usedSlots;
+    private long dataEnd;
+
+    public MappedKVStorage(@NotNull Path path) {
+        Objects.requireNonNull(path, "path can't be null!");
+        this.path = path;
+        this.attachedPipeline = new AttachedPipeline(GsonBuilder::create);
+    }
+
+    @Override
+    public JsonElement loadData(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(hashStorageKey(dataClass), objectUUID);
+            if (slot < 0)
+                return null;
+            long offset = index.getLong(slotPosition(slot) + 24);
+            int length = data.getInt((int) offset);
+            ByteBuffer document = data.slice((int) offset + 4, length);
+            return JsonParser.parseReader(new InputStreamReader(new ByteBufferInputStream(document), StandardCharsets.UTF_8));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean dataExist(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        lock.readLock().lock();
+        try {
+            return findSlot(hashStorageKey(dataClass), objectUUID) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
+        saveBatch(dataClass, Map.of(objectUUID, dataToSave));
+    }
+
+    @Override
+    public void saveBatch(@NotNull Class<? extends IPipelineData> dataClass, @NotNull Map<UUID, JsonElement> dataToSave) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
+        if (dataToSave.isEmpty())
+            return;
+        long storageKeyHash = hashStorageKey(dataClass);
+        Map<UUID, byte[]> documents = new LinkedHashMap<>();
+        dataToSave.forEach((uuid, jsonElement) -> documents.put(uuid, jsonElement.toString().getBytes(StandardCharsets.UTF_8)));
+
+        lock.writeLock().lock();
+        try {
+            ensureIndexCapacity(documents.size());
+            Map<UUID, Long> newOffsets = new LinkedHashMap<>();
+            for (Map.Entry<UUID, byte[]> entry : documents.entrySet()) {
+                byte[] document = entry.getValue();
+                long offset = allocate(pagesFor(document.length));
+                data.putInt((int) offset, document.length);
+                data.put((int) offset + 4, document);
+                newOffsets.put(entry.getKey(), offset);
+            }
+            data.force();
+
+            List<Long> replaced = new ArrayList<>();
+            newOffsets.forEach((uuid, offset) -> {
+                long previous = putSlot(storageKeyHash, uuid, offset);
+                if (previous > 0)
+                    replaced.add(previous);
+            });
+            writeIndexHeader();
+            index.force();
+            replaced.forEach(this::free);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write to mapped storage at " + path, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(hashStorageKey(dataClass), objectUUID);
+            if (slot < 0)
+                return false;
+            int position = slotPosition(slot);
+            long offset = index.getLong(position + 24);
+            index.putLong(position + 24, DELETED);
+            count--;
+            writeIndexHeader();
+            index.force();
+            free(offset);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<UUID> getSavedUUIDs(@NotNull Class<? extends IPipelineData> dataClass) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        long storageKeyHash = hashStorageKey(dataClass);
+        Set<UUID> uuids = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < capacity; slot++) {
+                int position = slotPosition(slot);
+                if (index.getLong(position + 24) > 0 && index.getLong(position) == storageKeyHash)
+                    uuids.add(new UUID(index.getLong(position + 8), index.getLong(position + 16)));
+            }
+            return uuids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public AttachedPipeline getAttachedPipeline() {
+        return attachedPipeline;
+    }
+
+    @Override
+    public void connect() {
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(path);
+            openIndex();
+            openData();
+            NetworkLogger.info("MappedKVStorage loaded with " + count + " objects");
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open mapped storage at " + path, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        shutdown();
+    }
+
+    @Override
+    public void shutdown() {
+        lock.writeLock().lock();
+        try {
+            if (index == null)
+                return;
+            index.force();
+            data.force();
+            indexChannel.close();
+            dataChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            index = null;
+            data = null;
+            freeRuns.clear();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openIndex() throws IOException {
+        Path indexFile = path.resolve("index.db");
+        boolean exists = Files.exists(indexFile) && Files.size(indexFile) >= INDEX_HEADER_SIZE;
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!exists) {
+            capacity = INITIAL_CAPACITY;
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            writeIndexHeader();
+            index.force();
+            return;
+        }
+        MappedByteBuffer header = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, INDEX_HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+            throw new IOException("Index file " + indexFile + " is not a mapped storage index");
+        capacity = header.getInt(8);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        count = 0;
+        usedSlots = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long offset = index.getLong(slotPosition(slot) + 24);
+            if (offset != EMPTY)
+                usedSlots++;
+            if (offset > 0)
+                count++;
+        }
+    }
+
+    /**
+     * Maps the data file and rebuilds the free page runs from the gaps between the documents referenced by the index.
+     */
+    private void openData() throws IOException {
+        dataChannel = FileChannel.open(path.resolve("data.db"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // The first page is reserved so that no document starts at offset 0
+        long size = Math.max(dataChannel.size(), 64L * PAGE_SIZE);
+        data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        TreeMap<Long, Integer> usedRuns = new TreeMap<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            long offset = index.getLong(slotPosition(slot) + 24);
+            if (offset > 0)
+                usedRuns.put(offset, pagesFor(data.getInt((int) offset)));
+        }
+        long position = PAGE_SIZE;
+        for (Map.Entry<Long, Integer> run : usedRuns.entrySet()) {
+            if (run.getKey() > position)
+                freeRuns.put(position, (int) ((run.getKey() - position) / PAGE_SIZE));
+            position = run.getKey() + (long) run.getValue() * PAGE_SIZE;
+        }
+        dataEnd = position;
+    }
+
+    private void writeIndexHeader() {
+        index.putInt(0, MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(8, capacity);
+        index.putInt(12, count);
+    }
+
+    /**
+     * Rebuilds the hash table with twice the capacity if the batch would exceed the load factor.
+     * The new table is written to a temporary file and moved over the old one.
+     */
+    private void ensureIndexCapacity(int additionalEntries) throws IOException {
+        if (usedSlots + additionalEntries <= capacity * MAX_LOAD_FACTOR)
+            return;
+        int newCapacity = capacity;
+        while (count + additionalEntries > newCapacity * MAX_LOAD_FACTOR)
+            newCapacity *= 2;
+        Path indexFile = path.resolve("index.db");
+        Path tempFile = path.resolve("index.db.tmp");
+        MappedByteBuffer oldIndex = index;
+        int oldCapacity = capacity;
+        try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            index = tempChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+            capacity = newCapacity;
+            count = 0;
+            usedSlots = 0;
+            for (int slot = 0; slot < oldCapacity; slot++) {
+                int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+                long offset = oldIndex.getLong(position + 24);
+                if (offset > 0)
+                    putSlot(oldIndex.getLong(position), new UUID(oldIndex.getLong(position + 8), oldIndex.getLong(position + 16)), offset);
+            }
+            writeIndexHeader();
+            index.force();
+        }
+        indexChannel.close();
+        Files.move(tempFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE);
+    }
+
+    private int findSlot(long storageKeyHash, @NotNull UUID uuid) {
+        int mask = capacity - 1;
+        int slot = (int) (mix(storageKeyHash, uuid) & mask);
+        for (int probes = 0; probes < capacity; probes++, slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            long offset = index.getLong(position + 24);
+            if (offset == EMPTY)
+                return -1;
+            if (offset > 0 && index.getLong(position) == storageKeyHash && index.getLong(position + 8) == uuid.getMostSignificantBits() && index.getLong(position + 16) == uuid.getLeastSignificantBits())
+                return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Points the slot of the key to the given offset
+     *
+     * @return the offset the slot pointed to before or {@link #EMPTY} if the key was new
+     */
+    private long putSlot(long storageKeyHash, @NotNull UUID uuid, long offset) {
+        int existing = findSlot(storageKeyHash, uuid);
+        if (existing >= 0) {
+            int position = slotPosition(existing);
+            long previous = index.getLong(position + 24);
+            index.putLong(position + 24, offset);
+            return previous;
+        }
+        int mask = capacity - 1;
+        int slot = (int) (mix(storageKeyHash, uuid) & mask);
+        while (index.getLong(slotPosition(slot) + 24) > 0)
+            slot = (slot + 1) & mask;
+        int position = slotPosition(slot);
+        if (index.getLong(position + 24) == EMPTY)
+            usedSlots++;
+        index.putLong(position, storageKeyHash);
+        index.putLong(position + 8, uuid.getMostSignificantBits());
+        index.putLong(position + 16, uuid.getLeastSignificantBits());
+        // The offset is written last so a slot never points to data with a half written key
+        index.putLong(position + 24, offset);
+        count++;
+        return EMPTY;
+    }
+
+    private long allocate(int pages) throws IOException {
+        for (Map.Entry<Long, Integer> run : freeRuns.entrySet()) {
+            if (run.getValue() < pages)
+                continue;
+            long offset = run.getKey();
+            freeRuns.remove(offset);
+            if (run.getValue() > pages)
+                freeRuns.put(offset + (long) pages * PAGE_SIZE, run.getValue() - pages);
+            return offset;
+        }
+        long offset = dataEnd;
+        long requiredSize = offset + (long) pages * PAGE_SIZE;
+        if (requiredSize > data.capacity()) {
+            long newSize = Math.max(requiredSize, (long) data.capacity() * 2);
+            if (newSize > Integer.MAX_VALUE)
+                throw new IOException("Mapped storage at " + path + " exceeded its maximum size");
+            data.force();
+            data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        }
+        dataEnd = requiredSize;
+        return offset;
+    }
+
+    private void free(long offset) {
+        int pages = pagesFor(data.getInt((int) offset));
+        var lower = freeRuns.floorEntry(offset);
+        if (lower != null && lower.getKey() + (long) lower.getValue() * PAGE_SIZE == offset) {
+            freeRuns.remove(lower.getKey());
+            offset = lower.getKey();
+            pages += lower.getValue();
+        }
+        long end = offset + (long) pages * PAGE_SIZE;
+        Integer higher = freeRuns.remove(end);
+        if (higher != null)
+            pages += higher;
+        freeRuns.put(offset, pages);
+    }
+
+    private long hashStorageKey(@NotNull Class<? extends IPipelineData> dataClass) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : getStoragePath(dataClass, getSuffix(dataClass), "/").getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long storageKeyHash, @NotNull UUID uuid) {
+        long hash = storageKeyHash ^ uuid.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ uuid.getLeastSignificantBits();
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int pagesFor(int documentLength) {
+        return (documentLength + 4 + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte @NotNull [] bytes, int off, int len) {
+            if (!buffer.hasRemaining())
+                return -1;
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, read);
+            return read;
+        }
+    }
+}
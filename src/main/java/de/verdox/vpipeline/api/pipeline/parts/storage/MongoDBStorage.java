@@ -6,6 +6,8 @@ import com.google.gson.JsonParser;
 import com.mongodb.*;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import de.verdox.vpipeline.api.Connection;
 import de.verdox.vpipeline.api.NetworkLogger;
 import de.verdox.vpipeline.api.modules.AttachedPipeline;
@@ -21,6 +23,7 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MongoDBStorage implements GlobalStorage, Connection {
     public static final Serializer<MongoDBStorage> SERIALIZER = SerializerBuilder.create("mongo_db_storage", MongoDBStorage.class)
@@ -44,6 +47,7 @@ public class MongoDBStorage implements GlobalStorage, Connection {
     private final String password;
     private final AttachedPipeline attachedPipeline;
     private final String url;
+    private final Set<String> uniqueIndexedCollections = ConcurrentHashMap.newKeySet();
     //private final CodecRegistry codecRegistry;
 
     public MongoDBStorage(String host, String database, int port, String user, String password, String url) {
@@ -114,6 +118,45 @@ public class MongoDBStorage implements GlobalStorage, Connection {
         }
     }
 
+    @Override
+    public boolean supportsSaveIfAbsent() {
+        return true;
+    }
+
+    /**
+     * Inserts the document into a collection with a unique index on the object uuid. A duplicate key error means that the object already exists.
+     */
+    @Override
+    public boolean saveIfAbsent(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
+
+        String storagePath = getStoragePath(dataClass, getSuffix(dataClass), "");
+        MongoCollection<Document> collection = getCollection(storagePath);
+        if (uniqueIndexedCollections.add(storagePath)) {
+            try {
+                collection.createIndex(Indexes.ascending("objectUUID"), new IndexOptions().unique(true));
+            } catch (MongoException e) {
+                uniqueIndexedCollections.remove(storagePath);
+                NetworkLogger.warning("Could not create unique index on objectUUID in " + storagePath + ". Inserts are not atomic: " + e.getMessage());
+                if (dataExist(dataClass, objectUUID))
+                    return false;
+            }
+        }
+
+        Document newData = new Document("objectUUID", objectUUID.toString());
+        newData.putAll(Document.parse(attachedPipeline.getGson().toJson(dataToSave)));
+        try {
+            collection.insertOne(newData);
+            return true;
+        } catch (MongoWriteException e) {
+            if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY)
+                return false;
+            throw e;
+        }
+    }
+
     @Override
     public boolean remove(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
@@ -0,0 +1,136 @@
+package de.verdox.vpipeline.api.pipeline.parts.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Describes the SQL flavour a {@link SQLStorage} talks to.
+ * Every dialect knows how to quote identifiers, which column types to use for documents and how to upsert or conditionally insert a row.
+ */
+public enum SQLDialect {
+    MYSQL('`', "JSON", "LONGBLOB") {
+        @Override
+        public String upsert(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+            return "INSERT INTO " + quote(table) + " (" + quote(keyColumn) + ", " + quote(valueColumn) + ") VALUES (?, ?) ON DUPLICATE KEY UPDATE " + quote(valueColumn) + " = VALUES(" + quote(valueColumn) + ")";
+        }
+
+        @Override
+        public String insertIfAbsent(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+            return "INSERT INTO " + quote(table) + " (" + quote(keyColumn) + ", " + quote(valueColumn) + ") VALUES (?, ?) ON DUPLICATE KEY UPDATE " + quote(keyColumn) + " = " + quote(keyColumn);
+        }
+    },
+    POSTGRESQL('"', "JSONB", "BYTEA") {
+        @Override
+        public String upsert(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+            return "INSERT INTO " + quote(table) + " (" + quote(keyColumn) + ", " + quote(valueColumn) + ") VALUES (?, " + valuePlaceholder(binary) + ") ON CONFLICT (" + quote(keyColumn) + ") DO UPDATE SET " + quote(valueColumn) + " = EXCLUDED." + quote(valueColumn);
+        }
+
+        @Override
+        public String insertIfAbsent(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+            return "INSERT INTO " + quote(table) + " (" + quote(keyColumn) + ", " + quote(valueColumn) + ") VALUES (?, " + valuePlaceholder(binary) + ") ON CONFLICT (" + quote(keyColumn) + ") DO NOTHING";
+        }
+
+        @Override
+        public String valuePlaceholder(boolean binary) {
+            return binary ? "?" : "CAST(? AS JSONB)";
+        }
+    },
+    H2('"', "CLOB", "BLOB") {
+        @Override
+        public String upsert(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+            return "MERGE INTO " + quote(table) + " (" + quote(keyColumn) + ", " + quote(valueColumn) + ") KEY (" + quote(keyColumn) + ") VALUES (?, ?)";
+        }
+
+        @Override
+        public String insertIfAbsent(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+            return "MERGE INTO " + quote(table) + " t USING (SELECT CAST(? AS VARCHAR(64)) k, CAST(? AS " + documentColumnType(binary) + ") v) s ON t." + quote(keyColumn) + " = s.k WHEN NOT MATCHED THEN INSERT (" + quote(keyColumn) + ", " + quote(valueColumn) + ") VALUES (s.k, s.v)";
+        }
+    },
+    SQLITE('"', "TEXT", "BLOB") {
+        @Override
+        public String upsert(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+            return "INSERT INTO " + quote(table) + " (" + quote(keyColumn) + ", " + quote(valueColumn) + ") VALUES (?, ?) ON CONFLICT (" + quote(keyColumn) + ") DO UPDATE SET " + quote(valueColumn) + " = excluded." + quote(valueColumn);
+        }
+
+        @Override
+        public String insertIfAbsent(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+            return "INSERT INTO " + quote(table) + " (" + quote(keyColumn) + ", " + quote(valueColumn) + ") VALUES (?, ?) ON CONFLICT (" + quote(keyColumn) + ") DO NOTHING";
+        }
+    };
+
+    private final char quoteCharacter;
+    private final String documentType;
+    private final String binaryType;
+
+    SQLDialect(char quoteCharacter, String documentType, String binaryType) {
+        this.quoteCharacter = quoteCharacter;
+        this.documentType = documentType;
+        this.binaryType = binaryType;
+    }
+
+    /**
+     * Builds a statement that inserts the key/value pair or replaces the value if the key already exists.
+     * The statement expects the key as first and the value as second parameter.
+     *
+     * @param table       the unquoted table name
+     * @param keyColumn   the unquoted key column
+     * @param valueColumn the unquoted value column
+     * @param binary      whether the value column stores raw bytes
+     * @return the upsert statement
+     */
+    public abstract String upsert(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary);
+
+    /**
+     * Builds a statement that inserts the key/value pair only if the key does not exist yet. Exactly one row is affected if the pair was inserted.
+     * The statement expects the key as first and the value as second parameter.
+     *
+     * @param table       the unquoted table name
+     * @param keyColumn   the unquoted key column
+     * @param valueColumn the unquoted value column
+     * @param binary      whether the value column stores raw bytes
+     * @return the insert statement
+     */
+    public abstract String insertIfAbsent(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary);
+
+    /**
+     * Returns the placeholder that is used to bind a document value
+     *
+     * @param binary whether the value column stores raw bytes
+     * @return the placeholder
+     */
+    public String valuePlaceholder(boolean binary) {
+        return "?";
+    }
+
+    /**
+     * Quotes an identifier like a table or a column name
+     *
+     * @param identifier the identifier
+     * @return the quoted identifier
+     */
+    public String quote(@NotNull String identifier) {
+        return quoteCharacter + identifier.replace(String.valueOf(quoteCharacter), String.valueOf(quoteCharacter).repeat(2)) + quoteCharacter;
+    }
+
+    /**
+     * Returns the column type used to store documents
+     *
+     * @param binary whether documents are stored as raw bytes
+     * @return the column type
+     */
+    public String documentColumnType(boolean binary) {
+        return binary ? binaryType : documentType;
+    }
+
+    /**
+     * Builds the statement that creates a document table if it does not exist yet
+     *
+     * @param table       the unquoted table name
+     * @param keyColumn   the unquoted key column
+     * @param valueColumn the unquoted value column
+     * @param binary      whether documents are stored as raw bytes
+     * @return the create statement
+     */
+    public String createTable(@NotNull String table, @NotNull String keyColumn, @NotNull String valueColumn, boolean binary) {
+        return "CREATE TABLE IF NOT EXISTS " + quote(table) + " (" + quote(keyColumn) + " VARCHAR(64) PRIMARY KEY, " + quote(valueColumn) + " " + documentColumnType(binary) + ")";
+    }
+}
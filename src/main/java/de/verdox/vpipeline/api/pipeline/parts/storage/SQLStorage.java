@@ -8,13 +8,12 @@ import de.verdox.vpipeline.api.util.AnnotationResolver;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashSet;
-import java.util.Objects;
-import java.util.Set;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 public abstract class SQLStorage implements GlobalStorage {
@@ -22,16 +21,18 @@ public abstract class SQLStorage implements GlobalStorage {
     protected static final String TABLE_COLUMN_KEY = "UUID";
     protected static final String TABLE_COLUMN_VAL = "Document";
 
+    private final Set<String> createdTables = ConcurrentHashMap.newKeySet();
+
     @Override
     public JsonElement loadData(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
 
         return executeQuery(
-                String.format("SELECT %s FROM `%s` WHERE %s = ?", TABLE_COLUMN_VAL, tableName(dataClass), TABLE_COLUMN_KEY),
+                String.format("SELECT %s FROM %s WHERE %s = ?", quote(TABLE_COLUMN_VAL), quote(tableName(dataClass)), quote(TABLE_COLUMN_KEY)),
                 resultSet -> {
                     try {
-                        return resultSet.next() ? JsonParser.parseString(resultSet.getString(TABLE_COLUMN_VAL)) : null;
+                        return resultSet.next() ? readDocument(resultSet) : null;
                     } catch (SQLException e) {
                         e.printStackTrace();
                         return null;
@@ -48,7 +49,7 @@ public abstract class SQLStorage implements GlobalStorage {
         Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
 
         return executeQuery(
-                String.format("SELECT %s FROM `%s` WHERE %s = ?", TABLE_COLUMN_KEY, tableName(dataClass), TABLE_COLUMN_KEY),
+                String.format("SELECT %s FROM %s WHERE %s = ?", quote(TABLE_COLUMN_KEY), quote(tableName(dataClass)), quote(TABLE_COLUMN_KEY)),
                 resultSet -> {
                     try {
                         return resultSet.next();
@@ -67,17 +68,42 @@ public abstract class SQLStorage implements GlobalStorage {
         Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
         Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
 
-        if (!dataExist(dataClass, objectUUID)) {
-            executeUpdate(
-                    "INSERT INTO `" + tableName(dataClass) + "` (" + TABLE_COLUMN_KEY + "," + TABLE_COLUMN_VAL + ") VALUES (?, ?);",
-                    objectUUID.toString(), dataToSave
-            );
-        } else {
-            executeUpdate(
-                    "UPDATE `" + tableName(dataClass) + "` SET " + TABLE_COLUMN_VAL + "=? WHERE " + TABLE_COLUMN_KEY + "=?",
-                    dataToSave, objectUUID.toString()
-            );
-        }
+        executeUpdate(
+                getDialect().upsert(tableName(dataClass), TABLE_COLUMN_KEY, TABLE_COLUMN_VAL, isBinary()),
+                objectUUID.toString(), writeDocument(dataToSave)
+        );
+    }
+
+    @Override
+    public boolean supportsSaveIfAbsent() {
+        return true;
+    }
+
+    /**
+     * Relies on the primary key of the document table. A failed statement is treated like an existing object, so callers load the object instead.
+     */
+    @Override
+    public boolean saveIfAbsent(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID objectUUID, @NotNull JsonElement dataToSave) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
+        Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
+
+        return executeUpdate(
+                getDialect().insertIfAbsent(tableName(dataClass), TABLE_COLUMN_KEY, TABLE_COLUMN_VAL, isBinary()),
+                objectUUID.toString(), writeDocument(dataToSave)
+        ) == 1;
+    }
+
+    @Override
+    public void saveBatch(@NotNull Class<? extends IPipelineData> dataClass, @NotNull Map<UUID, JsonElement> dataToSave) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null!");
+        Objects.requireNonNull(dataToSave, "dataToSave can't be null!");
+        if (dataToSave.isEmpty())
+            return;
+
+        List<Object[]> parameters = new ArrayList<>(dataToSave.size());
+        dataToSave.forEach((uuid, jsonElement) -> parameters.add(new Object[]{uuid.toString(), writeDocument(jsonElement)}));
+        executeBatch(getDialect().upsert(tableName(dataClass), TABLE_COLUMN_KEY, TABLE_COLUMN_VAL, isBinary()), parameters);
     }
 
     @Override
@@ -86,7 +112,7 @@ public abstract class SQLStorage implements GlobalStorage {
         Objects.requireNonNull(objectUUID, "objectUUID can't be null!");
 
         return executeUpdate(
-                String.format("DELETE FROM `%s` WHERE %s = ?", tableName(dataClass), TABLE_COLUMN_KEY),
+                String.format("DELETE FROM %s WHERE %s = ?", quote(tableName(dataClass)), quote(TABLE_COLUMN_KEY)),
                 objectUUID.toString()
         ) != -1;
     }
@@ -96,12 +122,12 @@ public abstract class SQLStorage implements GlobalStorage {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
 
         return executeQuery(
-                String.format("SELECT %s FROM `%s`;", TABLE_COLUMN_KEY, tableName(dataClass)),
+                String.format("SELECT %s FROM %s", quote(TABLE_COLUMN_KEY), quote(tableName(dataClass))),
                 resultSet -> {
                     Set<UUID> keys = new HashSet<>();
                     try {
                         while (resultSet.next()) {
-                            keys.add(UUID.fromString(resultSet.getString(TABLE_COLUMN_KEY)));
+                            keys.add(UUID.fromString(resultSet.getString(1)));
                         }
                     } catch (SQLException e) {
                         e.printStackTrace();
@@ -114,26 +140,58 @@ public abstract class SQLStorage implements GlobalStorage {
     private String tableName(@NotNull Class<? extends IPipelineData> dataClass) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         var name = AnnotationResolver.getDataStorageIdentifier(dataClass);
-        createTableIfNotExists(dataClass, name);
+        if (!createdTables.contains(name))
+            createTableIfNotExists(dataClass, name);
         return name;
     }
 
     private void createTableIfNotExists(@NotNull Class<? extends IPipelineData> dataClass, @NotNull String name) {
         Objects.requireNonNull(dataClass, "dataClass can't be null!");
         Objects.requireNonNull(name, "name can't be null!");
-        executeUpdate(String.format(
-                "CREATE TABLE IF NOT EXISTS `%s` (%s VARCHAR(64) PRIMARY KEY, %s JSON);",
-                name,
-                TABLE_COLUMN_KEY,
-                TABLE_COLUMN_VAL
-        ));
+        if (executeUpdate(getDialect().createTable(name, TABLE_COLUMN_KEY, TABLE_COLUMN_VAL, isBinary())) != -1)
+            createdTables.add(name);
     }
 
+    private Object writeDocument(@NotNull JsonElement jsonElement) {
+        String json = jsonElement.toString();
+        return isBinary() ? json.getBytes(StandardCharsets.UTF_8) : json;
+    }
+
+    private JsonElement readDocument(@NotNull ResultSet resultSet) throws SQLException {
+        if (isBinary()) {
+            byte[] bytes = resultSet.getBytes(1);
+            return bytes == null ? null : JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+        }
+        String json = resultSet.getString(1);
+        return json == null ? null : JsonParser.parseString(json);
+    }
+
+    private String quote(@NotNull String identifier) {
+        return getDialect().quote(identifier);
+    }
+
+    /**
+     * Returns the {@link SQLDialect} used to build the statements of this storage
+     *
+     * @return the dialect
+     */
+    @NotNull
+    public abstract SQLDialect getDialect();
+
+    /**
+     * Returns whether documents are stored as raw bytes instead of a text or json column
+     *
+     * @return true if documents are stored in a binary column
+     */
+    public abstract boolean isBinary();
+
     @NotNull
     public abstract Connection connection();
 
     public abstract int executeUpdate(@NotNull String query, @NotNull Object... objects);
 
+    public abstract int[] executeBatch(@NotNull String query, @NotNull List<Object[]> parameters);
+
     public abstract <T> T executeQuery(
             @NotNull String query,
             @NotNull Function<ResultSet, T> callback,
@@ -0,0 +1,336 @@
+package de.verdox.vpipeline.impl.handoff;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.handoff.CacheHandoff;
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.instruction.ResponseCollector;
+import de.verdox.vpipeline.api.messaging.instruction.types.Update;
+import de.verdox.vpipeline.api.pipeline.core.Pipeline;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.util.AnnotationResolver;
+import de.verdox.vpipeline.impl.pipeline.core.PipelineImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CacheHandoffImpl implements CacheHandoff {
+    private static final long RESPONSE_TIMEOUT_MILLIS = 2000;
+
+    private final MessagingService messagingService;
+    /**
+     * The pulls of this node that are still waiting for objects
+     */
+    private final Map<UUID, Transfer> incomingTransfers = new ConcurrentHashMap<>();
+    private final ExecutorService streamingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CacheHandoff");
+        thread.setDaemon(true);
+        return thread;
+    });
+    @Nullable
+    private volatile Settings settings;
+    private volatile RateLimiter rateLimiter = RateLimiter.create(Settings.DEFAULT.bytesPerSecond());
+    private volatile boolean draining;
+
+    public CacheHandoffImpl(MessagingService messagingService) {
+        this.messagingService = messagingService;
+    }
+
+    public void setSettings(@Nullable Settings settings) {
+        this.settings = settings;
+        this.rateLimiter = RateLimiter.create((settings != null ? settings : Settings.DEFAULT).bytesPerSecond());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return settings != null;
+    }
+
+    @Override
+    public int drain() {
+        Settings settings = this.settings;
+        if (settings == null || !(getPipeline() instanceof PipelineImpl pipeline))
+            return 0;
+        draining = true;
+        List<UUID> acceptors = findAcceptors();
+        if (acceptors.isEmpty()) {
+            NetworkLogger.info("[" + messagingService.getSessionIdentifier() + "] No node accepts the cache handoff");
+            return 0;
+        }
+
+        long hotSince = System.currentTimeMillis() - settings.hotWindow().toMillis();
+        Map<UUID, ChunkWriter> writers = new HashMap<>();
+        pipeline.saveAll(data -> {
+            if (data.getLastUsage() < hotSince || !isTransferable(data.getClass()))
+                return;
+            UUID acceptor = acceptors.get(Math.floorMod(data.getObjectUUID().hashCode(), acceptors.size()));
+            writers.computeIfAbsent(acceptor, uuid -> new ChunkWriter(uuid, null, settings.chunkSize())).write(data.getClass(), data.getObjectUUID(), data.serialize());
+        });
+        int handedOver = writers.values().stream().mapToInt(ChunkWriter::close).sum();
+        NetworkLogger.info("[" + messagingService.getSessionIdentifier() + "] Handed over " + handedOver + " objects to " + acceptors.size() + " nodes");
+        return handedOver;
+    }
+
+    @Override
+    public Set<UUID> pull(@NotNull Class<? extends IPipelineData> type) {
+        Objects.requireNonNull(type);
+        if (!isEnabled() || !isTransferable(type))
+            return Set.of();
+        List<UUID> peers = findAcceptors();
+        if (peers.isEmpty())
+            return Set.of();
+
+        UUID transferId = UUID.randomUUID();
+        Transfer transfer = new Transfer();
+        incomingTransfers.put(transferId, transfer);
+        try {
+            Integer expected = messagingService
+                    .sendInstruction(new HandoffPullQuery(UUID.randomUUID(), peers.get(0), messagingService.getSessionUUID(), transferId, AnnotationResolver.getDataStorageIdentifier(type)), peers.get(0))
+                    .firstMatching(Objects::nonNull, Duration.ofMillis(RESPONSE_TIMEOUT_MILLIS))
+                    .exceptionally(throwable -> null)
+                    .join();
+            if (expected == null || expected == 0)
+                return Set.of();
+            transfer.await();
+            if (AnnotationResolver.getDataProperties(type).debugMode())
+                NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Pulled " + transfer.received.size() + "/" + expected + " " + type.getSimpleName() + " from " + peers.get(0));
+            return Set.copyOf(transfer.received);
+        } finally {
+            incomingTransfers.remove(transferId);
+        }
+    }
+
+    public void shutdown() {
+        streamingExecutor.shutdownNow();
+    }
+
+    boolean acceptsHandoff() {
+        if (draining || messagingService.getNetworkParticipant() == null)
+            return false;
+        Pipeline pipeline = messagingService.getNetworkParticipant().pipeline();
+        return pipeline != null && pipeline.isReady();
+    }
+
+    /**
+     * Streams all local objects of a type to the requester of a pull in the background.
+     * Objects that are evicted in the meantime are skipped, so the end of the stream is marked by an empty chunk.
+     *
+     * @return the amount of objects that will be sent at most
+     */
+    int startStreaming(@NotNull UUID requester, @NotNull UUID transferId, @NotNull String dataStorageIdentifier) {
+        Pipeline pipeline = getPipeline();
+        Class<? extends IPipelineData> type = pipeline.getDataRegistry().getTypeByStorageId(dataStorageIdentifier);
+        if (type == null || !isTransferable(type))
+            return 0;
+        Set<UUID> uuids = pipeline.getLocalCache().getSavedUUIDs(type);
+        int chunkSize = (settings != null ? settings : Settings.DEFAULT).chunkSize();
+        streamingExecutor.execute(() -> {
+            ChunkWriter writer = new ChunkWriter(requester, transferId, chunkSize);
+            for (UUID uuid : uuids) {
+                JsonElement data = pipeline.getLocalCache().loadData(type, uuid);
+                if (data != null)
+                    writer.write(type, uuid, data);
+            }
+            writer.close();
+        });
+        return uuids.size();
+    }
+
+    Update.UpdateCompletion importChunk(@Nullable UUID transferId, byte[] chunk) {
+        if (!(getPipeline() instanceof PipelineImpl pipeline))
+            return Update.UpdateCompletion.CANCELLED;
+        Transfer transfer = transferId != null ? incomingTransfers.get(transferId) : null;
+        if (transferId != null && transfer == null)
+            return Update.UpdateCompletion.CANCELLED;
+
+        ByteArrayDataInput in = ByteStreams.newDataInput(chunk);
+        int amount = in.readInt();
+        List<UUID> received = new ArrayList<>(amount);
+        for (int i = 0; i < amount; i++) {
+            String dataStorageIdentifier = in.readUTF();
+            UUID uuid = new UUID(in.readLong(), in.readLong());
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            Class<? extends IPipelineData> type = pipeline.getDataRegistry().getTypeByStorageId(dataStorageIdentifier);
+            if (type == null || !isTransferable(type))
+                continue;
+            pipeline.importFromPeer(type, uuid, JsonParser.parseString(new String(data, StandardCharsets.UTF_8)));
+            received.add(uuid);
+        }
+        if (transfer != null) {
+            if (amount == 0)
+                transfer.finish();
+            else
+                transfer.receive(received, amount);
+        }
+        return Update.UpdateCompletion.DONE;
+    }
+
+    private List<UUID> findAcceptors() {
+        List<UUID> acceptors = new ArrayList<>();
+        ResponseCollector<UUID> responses = messagingService.sendInstruction(new HandoffOfferQuery(UUID.randomUUID(), messagingService.getSessionUUID()));
+        if (responses == null)
+            return acceptors;
+        CompletableFuture<Void> allAnswered = new CompletableFuture<>();
+        responses.whenResponseReceived((uuid, throwable) -> {
+            if (uuid != null) {
+                synchronized (acceptors) {
+                    acceptors.add(uuid);
+                }
+            }
+            if (responses.hasReceivedAllAnswers())
+                allAnswered.complete(null);
+        });
+        allAnswered.completeOnTimeout(null, RESPONSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).join();
+        synchronized (acceptors) {
+            // Sorted so every acceptor gets the same objects no matter in which order the answers arrived
+            return acceptors.stream().sorted().toList();
+        }
+    }
+
+    /**
+     * Objects that are only kept on one node are never handed over
+     */
+    private static boolean isTransferable(@NotNull Class<? extends IPipelineData> type) {
+        var dataContext = AnnotationResolver.getDataProperties(type).dataContext();
+        return dataContext.isCacheAllowed() || dataContext.isStorageAllowed();
+    }
+
+    private Pipeline getPipeline() {
+        if (messagingService.getNetworkParticipant() == null || messagingService.getNetworkParticipant().pipeline() == null)
+            throw new IllegalStateException("The cache handoff needs a network participant with a pipeline");
+        return messagingService.getNetworkParticipant().pipeline();
+    }
+
+    /**
+     * Collects serialized objects into chunks and sends every full chunk to the receiver.
+     * Each chunk waits for the rate limiter and for the acknowledgement of the previous chunk.
+     */
+    private class ChunkWriter {
+        private final UUID receiver;
+        @Nullable
+        private final UUID transferId;
+        private final int chunkSize;
+        private ByteArrayDataOutput buffer = ByteStreams.newDataOutput();
+        private int bufferedObjects;
+        private int bufferedBytes;
+        private int sentObjects;
+
+        private ChunkWriter(@NotNull UUID receiver, @Nullable UUID transferId, int chunkSize) {
+            this.receiver = receiver;
+            this.transferId = transferId;
+            this.chunkSize = chunkSize;
+        }
+
+        private void write(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid, @NotNull JsonElement data) {
+            byte[] serialized = data.toString().getBytes(StandardCharsets.UTF_8);
+            String dataStorageIdentifier = AnnotationResolver.getDataStorageIdentifier(type);
+            buffer.writeUTF(dataStorageIdentifier);
+            buffer.writeLong(uuid.getMostSignificantBits());
+            buffer.writeLong(uuid.getLeastSignificantBits());
+            buffer.writeInt(serialized.length);
+            buffer.write(serialized);
+            bufferedObjects++;
+            bufferedBytes += dataStorageIdentifier.length() + serialized.length + 22;
+            if (bufferedBytes >= chunkSize)
+                flush();
+        }
+
+        private void flush() {
+            if (bufferedObjects == 0)
+                return;
+            ByteArrayDataOutput chunk = ByteStreams.newDataOutput();
+            chunk.writeInt(bufferedObjects);
+            chunk.write(buffer.toByteArray());
+            byte[] payload = chunk.toByteArray();
+            rateLimiter.acquire(payload.length);
+
+            Update.UpdateCompletion completion = send(payload);
+            if (Update.UpdateCompletion.DONE.equals(completion))
+                sentObjects += bufferedObjects;
+            else
+                NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] " + receiver + " did not accept a handoff chunk of " + bufferedObjects + " objects");
+            buffer = ByteStreams.newDataOutput();
+            bufferedObjects = 0;
+            bufferedBytes = 0;
+        }
+
+        /**
+         * Sends the last chunk and, if the receiver waits for the objects, the empty chunk that marks the end of the transfer
+         */
+        private int close() {
+            flush();
+            if (transferId != null) {
+                ByteArrayDataOutput endMarker = ByteStreams.newDataOutput();
+                endMarker.writeInt(0);
+                send(endMarker.toByteArray());
+            }
+            return sentObjects;
+        }
+
+        private Update.UpdateCompletion send(byte[] payload) {
+            return messagingService
+                    .sendInstruction(new HandoffChunkUpdate(UUID.randomUUID(), receiver, transferId, payload), receiver)
+                    .firstMatching(Objects::nonNull, Duration.ofMillis(RESPONSE_TIMEOUT_MILLIS))
+                    .exceptionally(throwable -> Update.UpdateCompletion.NOT_DONE)
+                    .join();
+        }
+    }
+
+    /**
+     * A pull that waits for the end of its stream. The pull gives up if no chunk arrived within the response timeout.
+     */
+    private static class Transfer {
+        private final Set<UUID> received = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger receivedEntries = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private void receive(List<UUID> uuids, int entries) {
+            received.addAll(uuids);
+            receivedEntries.addAndGet(entries);
+        }
+
+        private void finish() {
+            done.complete(null);
+        }
+
+        private void await() {
+            int lastProgress = -1;
+            while (lastProgress != receivedEntries.get()) {
+                lastProgress = receivedEntries.get();
+                try {
+                    done.get(RESPONSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException ignored) {
+                } catch (ExecutionException e) {
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package de.verdox.vpipeline.impl.handoff;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Update;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Carries a chunk of serialized objects to the receiver of a cache handoff.
+ * The transfer id is only set if the receiver pulled the objects and waits for them. The end of such a transfer is marked by a chunk without objects.
+ */
+@InstructionInfo(awaitsResponse = true, priority = InstructionInfo.Priority.BULK)
+public class HandoffChunkUpdate extends Update {
+    public static final InstructionCodec<HandoffChunkUpdate, UpdateCompletion> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                InstructionCodec.writeUUID(instruction.receiver, out);
+                InstructionCodec.writeNullableUUID(instruction.transferId, out);
+                InstructionCodec.writeBytes(instruction.chunk, out);
+            },
+            in -> new HandoffChunkUpdate(UUID.randomUUID(), InstructionCodec.readUUID(in), InstructionCodec.readNullableUUID(in), InstructionCodec.readBytes(in)),
+            InstructionCodec.ResponseCodec.UPDATE_COMPLETION
+    );
+    private final UUID receiver;
+    @Nullable
+    private final UUID transferId;
+    private final byte[] chunk;
+
+    public HandoffChunkUpdate(@NotNull UUID uuid, @NotNull UUID receiver, @Nullable UUID transferId, byte[] chunk) {
+        super(uuid);
+        this.receiver = receiver;
+        this.transferId = transferId;
+        this.chunk = chunk;
+    }
+
+    @Override
+    public UpdateCompletion onInstructionReceive(MessagingService messagingService) {
+        if (!receiver.equals(messagingService.getSessionUUID()))
+            return UpdateCompletion.NOT_DONE;
+        return ((CacheHandoffImpl) messagingService.getCacheHandoff()).importChunk(transferId, chunk);
+    }
+}
@@ -0,0 +1,41 @@
+package de.verdox.vpipeline.impl.handoff;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Query;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Asks the other nodes if they accept objects of a cache handoff. Nodes that accept answer with their session uuid.
+ */
+@InstructionInfo(awaitsResponse = true, priority = InstructionInfo.Priority.BULK)
+public class HandoffOfferQuery extends Query<UUID> {
+    public static final InstructionCodec<HandoffOfferQuery, UUID> CODEC = InstructionCodec.of(
+            (instruction, out) -> InstructionCodec.writeUUID(instruction.requester, out),
+            in -> new HandoffOfferQuery(UUID.randomUUID(), InstructionCodec.readUUID(in)),
+            InstructionCodec.ResponseCodec.UNIQUE_ID
+    );
+    private final UUID requester;
+
+    public HandoffOfferQuery(@NotNull UUID uuid, @NotNull UUID requester) {
+        super(uuid);
+        this.requester = requester;
+    }
+
+    @Override
+    public UUID onInstructionReceive(MessagingService messagingService) {
+        if (requester.equals(messagingService.getSessionUUID()))
+            return null;
+        if (!((CacheHandoffImpl) messagingService.getCacheHandoff()).acceptsHandoff())
+            return null;
+        return messagingService.getSessionUUID();
+    }
+
+    @Override
+    public void onResponseReceive(MessagingService messagingService, UUID response) {
+
+    }
+}
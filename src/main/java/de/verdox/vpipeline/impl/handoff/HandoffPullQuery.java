@@ -0,0 +1,51 @@
+package de.verdox.vpipeline.impl.handoff;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Query;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Asks a node to stream all objects of a type in its local cache to the requester.
+ * The node answers with the amount of objects it is going to send at most and streams them in the background.
+ */
+@InstructionInfo(awaitsResponse = true, priority = InstructionInfo.Priority.BULK)
+public class HandoffPullQuery extends Query<Integer> {
+    public static final InstructionCodec<HandoffPullQuery, Integer> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                InstructionCodec.writeUUID(instruction.peer, out);
+                InstructionCodec.writeUUID(instruction.requester, out);
+                InstructionCodec.writeUUID(instruction.transferId, out);
+                out.writeUTF(instruction.dataStorageIdentifier);
+            },
+            in -> new HandoffPullQuery(UUID.randomUUID(), InstructionCodec.readUUID(in), InstructionCodec.readUUID(in), InstructionCodec.readUUID(in), in.readUTF()),
+            InstructionCodec.ResponseCodec.INTEGER
+    );
+    private final UUID peer;
+    private final UUID requester;
+    private final UUID transferId;
+    private final String dataStorageIdentifier;
+
+    public HandoffPullQuery(@NotNull UUID uuid, @NotNull UUID peer, @NotNull UUID requester, @NotNull UUID transferId, @NotNull String dataStorageIdentifier) {
+        super(uuid);
+        this.peer = peer;
+        this.requester = requester;
+        this.transferId = transferId;
+        this.dataStorageIdentifier = dataStorageIdentifier;
+    }
+
+    @Override
+    public Integer onInstructionReceive(MessagingService messagingService) {
+        if (!peer.equals(messagingService.getSessionUUID()))
+            return null;
+        return ((CacheHandoffImpl) messagingService.getCacheHandoff()).startStreaming(requester, transferId, dataStorageIdentifier);
+    }
+
+    @Override
+    public void onResponseReceive(MessagingService messagingService, Integer response) {
+
+    }
+}
@@ -0,0 +1,282 @@
+package de.verdox.vpipeline.impl.membership;
+
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.membership.MembershipService;
+import de.verdox.vpipeline.api.messaging.RemoteMessageReceiver;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class MembershipServiceImpl implements MembershipService {
+    private final MessagingServiceImpl messagingService;
+    private final Map<UUID, Member> members = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    // Sent with every heartbeat, so heartbeats of another process with the same session uuid can be told apart from the own ones
+    private final UUID sessionNonce = UUID.randomUUID();
+    private volatile boolean sessionUUIDShared;
+    private Settings settings = Settings.DEFAULT;
+    private ScheduledExecutorService heartbeats;
+
+    public MembershipServiceImpl(MessagingServiceImpl messagingService) {
+        this.messagingService = messagingService;
+    }
+
+    public void setSettings(@NotNull Settings settings) {
+        Objects.requireNonNull(settings, "settings can't be null!");
+        if (heartbeats != null)
+            throw new IllegalStateException("Settings can't be changed after the membership service was started");
+        this.settings = settings;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Announces this participant and waits until the participants that are subscribed to the transmitter answered or the join timeout passed.
+     * Sends the periodic heartbeats afterwards.
+     */
+    public synchronized void start() {
+        if (heartbeats != null)
+            return;
+        long expectedMembers = messagingService.getTransmitter().getNetworkTransmitterAmount() - 1;
+        messagingService.sendKeepAlivePing(true);
+        if (!awaitMembers(expectedMembers, settings.joinTimeout().toMillis()))
+            NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Only " + members.size() + " of " + expectedMembers + " participants answered the join heartbeat in time");
+
+        long interval = settings.heartbeatInterval().toMillis();
+        heartbeats = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("Membership-" + messagingService.getSessionIdentifier()).factory());
+        heartbeats.scheduleAtFixedRate(this::beat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (heartbeats != null)
+            heartbeats.shutdownNow();
+        members.clear();
+    }
+
+    /**
+     * Returns the nonce this process sends with its heartbeats
+     *
+     * @return the nonce
+     */
+    public UUID getSessionNonce() {
+        return sessionNonce;
+    }
+
+    /**
+     * Returns whether a heartbeat of another process with the session uuid of this participant was received.
+     * Session uuids are derived from the identifier, so this means that two participants were started with the same identifier.
+     *
+     * @return true if another process uses the same session uuid
+     */
+    public boolean isSessionUUIDShared() {
+        return sessionUUIDShared;
+    }
+
+    /**
+     * Called when a heartbeat was received. A member keeps the nonce of its first heartbeat. Heartbeats with another nonce are not counted for it
+     * until it left the view, so a second process with the same session uuid can't keep it alive.
+     *
+     * @param sender          the session uuid of the sender
+     * @param nonce           the nonce of the sending process or null if the sender does not send one
+     * @param identifier      the session identifier of the sender
+     * @param groups          the groups the sender is in
+     * @param answerRequested true if the sender just connected and waits for an answer
+     */
+    public void handleHeartbeat(@NotNull UUID sender, @Nullable UUID nonce, @NotNull String identifier, @NotNull Set<String> groups, boolean answerRequested) {
+        if (sender.equals(messagingService.getSessionUUID())) {
+            if (nonce == null || nonce.equals(sessionNonce))
+                return;
+            if (!sessionUUIDShared)
+                NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Another participant runs with the session uuid " + sender + ". Every participant needs its own identifier.");
+            sessionUUIDShared = true;
+            synchronized (members) {
+                members.notifyAll();
+            }
+            // The other process can't be answered directly since it shares the private channel, so the answer is broadcast
+            if (answerRequested)
+                messagingService.sendKeepAlivePing(false);
+            return;
+        }
+        Member[] joined = new Member[1];
+        members.compute(sender, (uuid, member) -> {
+            if (member == null)
+                return joined[0] = new Member(uuid, nonce, identifier, groups);
+            if (member.isSameProcess(nonce))
+                member.update(groups);
+            else if (NetworkLogger.messagingServiceDebugMode.isDebugMode())
+                NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Ignoring a heartbeat of a second process with the session uuid " + uuid);
+            return member;
+        });
+        // The sender is part of the view before it gets the answer
+        if (answerRequested)
+            messagingService.sendKeepAlivePing(false, sender);
+        if (joined[0] == null)
+            return;
+        synchronized (members) {
+            members.notifyAll();
+        }
+        if (NetworkLogger.messagingServiceDebugMode.isDebugMode())
+            NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] " + identifier + " joined");
+        notifyListeners(listener -> listener.onJoin(joined[0]));
+    }
+
+    /**
+     * Called when another participant announced that it goes offline
+     *
+     * @param sender the session uuid of the sender
+     * @param nonce  the nonce of the sending process or null if the sender does not send one
+     */
+    public void handleOffline(@NotNull UUID sender, @Nullable UUID nonce) {
+        Member member = members.get(sender);
+        if (member != null && member.isSameProcess(nonce))
+            leave(member);
+    }
+
+    @Override
+    public Set<RemoteMessageReceiver> getMembers() {
+        return Set.copyOf(members.values());
+    }
+
+    @Override
+    public @Nullable RemoteMessageReceiver getMember(@NotNull UUID uuid) {
+        return members.get(uuid);
+    }
+
+    @Override
+    public int getMemberCount() {
+        return members.size();
+    }
+
+    @Override
+    public Set<UUID> getGroupMembers(@NotNull String group) {
+        Objects.requireNonNull(group);
+        return members.values()
+                      .stream()
+                      .filter(member -> member.groups.contains(group))
+                      .map(Member::getUuid)
+                      .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void addListener(@NotNull Listener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    @Override
+    public void removeListener(@NotNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void beat() {
+        try {
+            messagingService.sendKeepAlivePing(false);
+            long oldest = System.currentTimeMillis() - settings.timeout().toMillis();
+            for (Member member : members.values()) {
+                if (member.getLastKeepAlive() < oldest)
+                    leave(member);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void leave(@Nullable Member member) {
+        if (member == null || !members.remove(member.getUuid(), member))
+            return;
+        if (NetworkLogger.messagingServiceDebugMode.isDebugMode())
+            NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] " + member.getIdentifier() + " left");
+        notifyListeners(listener -> listener.onLeave(member));
+    }
+
+    private boolean awaitMembers(long amount, long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (members) {
+            // A join that collides with a running participant doesn't wait for the others
+            while (!sessionUUIDShared && members.size() < amount) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return false;
+                try {
+                    members.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void notifyListeners(Consumer<Listener> call) {
+        for (Listener listener : listeners) {
+            try {
+                call.accept(listener);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class Member implements RemoteMessageReceiver {
+        private final UUID uuid;
+        @Nullable
+        private final UUID nonce;
+        private final String identifier;
+        private volatile Set<String> groups;
+        private volatile long lastKeepAlive = System.currentTimeMillis();
+
+        private Member(UUID uuid, @Nullable UUID nonce, String identifier, Set<String> groups) {
+            this.uuid = uuid;
+            this.nonce = nonce;
+            this.identifier = identifier;
+            this.groups = Set.copyOf(groups);
+        }
+
+        /**
+         * Pings without a nonce come from nodes that don't send one and are always counted
+         */
+        private boolean isSameProcess(@Nullable UUID nonce) {
+            return this.nonce == null || nonce == null || this.nonce.equals(nonce);
+        }
+
+        private void update(Set<String> groups) {
+            this.groups = Set.copyOf(groups);
+            this.lastKeepAlive = System.currentTimeMillis();
+        }
+
+        @Override
+        public long getLastKeepAlive() {
+            return lastKeepAlive;
+        }
+
+        @Override
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+
+        @Override
+        public String toString() {
+            return "Member{" + identifier + ", " + uuid + ", groups=" + groups + "}";
+        }
+    }
+}
@@ -3,6 +3,8 @@ package de.verdox.vpipeline.impl.messaging;
 import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
 import de.verdox.vpipeline.api.messaging.instruction.AbstractInstruction;
 import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.HashSet;
 import java.util.Map;
@@ -15,6 +17,7 @@ public class MessageFactoryImpl implements de.verdox.vpipeline.api.messaging.Mes
     private final MessagingServiceImpl messagingServiceImpl;
     private final Map<Integer, CachedInstructionData<?>> instructionTypes = new ConcurrentHashMap<>();
     private final Set<Class<? extends Instruction<?>>> registeredTypes = new HashSet<>();
+    private final Map<Class<? extends Instruction<?>>, InstructionCodec<?, ?>> codecs = new ConcurrentHashMap<>();
 
     public MessageFactoryImpl(MessagingServiceImpl messagingServiceImpl) {
         this.messagingServiceImpl = messagingServiceImpl;
@@ -34,6 +37,17 @@ public class MessageFactoryImpl implements de.verdox.vpipeline.api.messaging.Mes
         registeredTypes.add(instructionType);
     }
 
+    @Override
+    public <T extends Instruction<R>, R> void registerInstructionType(int id, Class<? extends T> instructionType, Supplier<T> instanceSupplier, InstructionCodec<T, R> codec) {
+        registerInstructionType(id, instructionType, instanceSupplier);
+        codecs.put(instructionType, codec);
+    }
+
+    @Override
+    public @Nullable InstructionCodec<?, ?> findInstructionCodec(Class<? extends Instruction<?>> type) {
+        return codecs.get(type);
+    }
+
 
     @Override
     public int findInstructionID(Class<? extends Instruction<?>> type) {
@@ -1,7 +1,5 @@
 package de.verdox.vpipeline.impl.messaging;
 
-import com.google.common.eventbus.EventBus;
-import com.google.common.eventbus.Subscribe;
 import de.verdox.vpipeline.api.NetworkLogger;
 import de.verdox.vpipeline.api.NetworkParticipant;
 import de.verdox.vpipeline.api.messaging.MessageFactory;
@@ -12,35 +10,60 @@ import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
 import de.verdox.vpipeline.api.messaging.event.MessageEvent;
 import de.verdox.vpipeline.api.messaging.instruction.AbstractInstruction;
 import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
 import de.verdox.vpipeline.api.messaging.instruction.ResponseCollector;
 import de.verdox.vpipeline.api.messaging.instruction.types.Ping;
+import de.verdox.vpipeline.api.messaging.instruction.types.StreamingQuery;
+import de.verdox.vpipeline.api.messaging.stream.ResponseStream;
 import de.verdox.vpipeline.api.network.RemoteParticipant;
+import de.verdox.vpipeline.api.ownership.OwnershipRegistry;
+import de.verdox.vpipeline.api.pipeline.parts.lock.LeaseRevokePing;
 import de.verdox.vpipeline.api.ticket.TicketPropagator;
+import de.verdox.vpipeline.impl.messaging.dispatch.InstructionDispatcherImpl;
 import de.verdox.vpipeline.impl.messaging.event.MessageEventImpl;
+import de.verdox.vpipeline.impl.messaging.stream.ResponseStreamsImpl;
+import de.verdox.vpipeline.impl.messaging.stream.StreamChunkPing;
+import de.verdox.vpipeline.impl.messaging.stream.StreamCreditPing;
+import de.verdox.vpipeline.impl.handoff.CacheHandoffImpl;
+import de.verdox.vpipeline.impl.handoff.HandoffChunkUpdate;
+import de.verdox.vpipeline.impl.handoff.HandoffOfferQuery;
+import de.verdox.vpipeline.impl.handoff.HandoffPullQuery;
+import de.verdox.vpipeline.impl.ownership.ForwardedMutationUpdate;
+import de.verdox.vpipeline.impl.ownership.OwnerChangedPing;
+import de.verdox.vpipeline.impl.ownership.OwnershipHandoverQuery;
+import de.verdox.vpipeline.impl.ownership.OwnershipRegistryImpl;
+import de.verdox.vpipeline.impl.pipeline.core.PeerFetchQuery;
 import de.verdox.vpipeline.impl.ticket.TicketIssuanceInstruction;
 import de.verdox.vpipeline.impl.ticket.TicketPropagatorImpl;
 import de.verdox.vpipeline.impl.ticket.TicketTakeInstruction;
+import de.verdox.vpipeline.impl.membership.MembershipServiceImpl;
+import de.verdox.vpipeline.impl.util.HashedTimingWheel;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 public class MessagingServiceImpl implements MessagingService {
 
-    private final ConcurrentHashMap<UUID, Instruction<?>> pendingInstructions = new ConcurrentHashMap<>();
-    private final Map<UUID, RemoteMessageReceiverImpl> remoteParticipants = new ConcurrentHashMap<>();
-    private final Set<RemoteMessageReceiverImpl> receivedKeepAlivePings = ConcurrentHashMap.newKeySet();
-    private final EventBus eventBus;
+    private final ConcurrentHashMap<UUID, PendingInstruction> pendingInstructions = new ConcurrentHashMap<>();
+    private final HashedTimingWheel responseTimeouts;
+    private final Set<String> joinedGroups = ConcurrentHashMap.newKeySet();
+    private volatile boolean connected;
+    private final InstructionDispatcherImpl instructionDispatcher;
+    private final ResponseStreamsImpl responseStreams;
     private MessageFactoryImpl messageFactoryImpl;
     private final Transmitter transmitter;
     private final String sessionIdentifier;
     private NetworkParticipant networkParticipant;
-    private final ScheduledExecutorService keepAliveThread = Executors.newSingleThreadScheduledExecutor();
     private final TicketPropagatorImpl ticketPropagator = new TicketPropagatorImpl(this);
+    private final OwnershipRegistryImpl ownershipRegistry = new OwnershipRegistryImpl(this);
+    private final CacheHandoffImpl cacheHandoff = new CacheHandoffImpl(this);
+    private final MembershipServiceImpl membershipService = new MembershipServiceImpl(this);
 
     public MessagingServiceImpl(String sessionIdentifier, Transmitter transmitter) {
         Objects.requireNonNull(sessionIdentifier);
@@ -49,15 +72,45 @@ public class MessagingServiceImpl implements MessagingService {
         this.transmitter = transmitter;
 
         this.messageFactoryImpl = new MessageFactoryImpl(this);
-        this.messageFactoryImpl.registerInstructionType(9996, TicketTakeInstruction.class, () -> new TicketTakeInstruction(UUID.randomUUID(), UUID.randomUUID()));
-        this.messageFactoryImpl.registerInstructionType(9997, TicketIssuanceInstruction.class, () -> new TicketIssuanceInstruction(UUID.randomUUID(), new byte[0]));
-        this.messageFactoryImpl.registerInstructionType(9998, KeepAlivePing.class, () -> new KeepAlivePing(UUID.randomUUID()));
-        this.messageFactoryImpl.registerInstructionType(9999, OfflinePing.class, () -> new OfflinePing(UUID.randomUUID()));
-
-        this.eventBus = new EventBus();
+        this.messageFactoryImpl.registerInstructionType(9986, StreamChunkPing.class, () -> new StreamChunkPing(UUID.randomUUID(), UUID.randomUUID(), 0, 0, false, null, new byte[0]), StreamChunkPing.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9987, StreamCreditPing.class, () -> new StreamCreditPing(UUID.randomUUID(), UUID.randomUUID(), 0, false), StreamCreditPing.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9988, HandoffOfferQuery.class, () -> new HandoffOfferQuery(UUID.randomUUID(), UUID.randomUUID()), HandoffOfferQuery.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9989, HandoffPullQuery.class, () -> new HandoffPullQuery(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), ""), HandoffPullQuery.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9990, HandoffChunkUpdate.class, () -> new HandoffChunkUpdate(UUID.randomUUID(), UUID.randomUUID(), null, new byte[0]), HandoffChunkUpdate.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9991, PeerFetchQuery.class, () -> new PeerFetchQuery(UUID.randomUUID(), "", UUID.randomUUID()), PeerFetchQuery.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9992, OwnershipHandoverQuery.class, () -> new OwnershipHandoverQuery(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "", UUID.randomUUID()), OwnershipHandoverQuery.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9993, ForwardedMutationUpdate.class, () -> new ForwardedMutationUpdate(UUID.randomUUID(), UUID.randomUUID(), "", UUID.randomUUID(), new byte[0]), ForwardedMutationUpdate.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9994, OwnerChangedPing.class, () -> new OwnerChangedPing(UUID.randomUUID(), "", UUID.randomUUID(), null), OwnerChangedPing.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9995, LeaseRevokePing.class, () -> new LeaseRevokePing(UUID.randomUUID(), "", ""), LeaseRevokePing.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9996, TicketTakeInstruction.class, () -> new TicketTakeInstruction(UUID.randomUUID(), UUID.randomUUID()), TicketTakeInstruction.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9997, TicketIssuanceInstruction.class, () -> new TicketIssuanceInstruction(UUID.randomUUID(), new byte[0]), TicketIssuanceInstruction.CODEC);
+        this.messageFactoryImpl.registerInstructionType(9998, KeepAlivePing.class, () -> new KeepAlivePing(UUID.randomUUID()), InstructionCodec.<KeepAlivePing, Boolean>of((keepAlivePing, out) -> {
+            out.writeBoolean(keepAlivePing.answerRequested);
+            out.writeInt(keepAlivePing.groups.size());
+            keepAlivePing.groups.forEach(group -> InstructionCodec.writeString(group, out));
+            InstructionCodec.writeNullableUUID(keepAlivePing.nonce, out);
+        }, in -> {
+            var keepAlivePing = new KeepAlivePing(UUID.randomUUID());
+            keepAlivePing.answerRequested = in.readBoolean();
+            int amount = in.readInt();
+            for (int i = 0; i < amount; i++)
+                keepAlivePing.groups.add(InstructionCodec.readString(in));
+            keepAlivePing.nonce = InstructionCodec.readNullableUUID(in);
+            return keepAlivePing;
+        }, InstructionCodec.ResponseCodec.NONE));
+        this.messageFactoryImpl.registerInstructionType(9999, OfflinePing.class, () -> new OfflinePing(UUID.randomUUID()), InstructionCodec.<OfflinePing, Boolean>of((offlinePing, out) -> {
+            InstructionCodec.writeNullableUUID(offlinePing.nonce, out);
+        }, in -> {
+            var offlinePing = new OfflinePing(UUID.randomUUID());
+            offlinePing.nonce = InstructionCodec.readNullableUUID(in);
+            return offlinePing;
+        }, InstructionCodec.ResponseCodec.NONE));
+
+        this.instructionDispatcher = new InstructionDispatcherImpl(sessionIdentifier);
+        this.responseTimeouts = new HashedTimingWheel("ResponseTimeouts-" + sessionIdentifier, 100, TimeUnit.MILLISECONDS, 512);
+        this.responseStreams = new ResponseStreamsImpl(this, responseTimeouts);
     }
 
-    @Subscribe
     private void onMessage(MessageEvent messageEvent) {
         try {
             var instruction = messageEvent.getMessage();
@@ -76,10 +129,17 @@ public class MessagingServiceImpl implements MessagingService {
                 return;
             }
 
-            if (!instruction.isResponse())
+            // Own broadcasts come back over the transmitter. Heartbeats are still passed on, since another process might use the same session uuid.
+            if (abstractInstruction.getSenderUUID().equals(getSessionUUID()) && !(instruction instanceof KeepAlivePing))
+                return;
+
+            // Responses only complete pending instructions and keep-alives have to arrive in time, so both skip the queue
+            if (instruction.isResponse())
+                handleResponse(abstractInstruction);
+            else if (instruction instanceof KeepAlivePing || instruction instanceof OfflinePing)
                 handleInstruction(abstractInstruction);
             else
-                handleResponse(abstractInstruction);
+                instructionDispatcher.dispatch(abstractInstruction, messageFactoryImpl.findInstructionInfo((Class<? extends AbstractInstruction<?>>) instruction.getClass()).priority(), () -> handleInstruction(abstractInstruction));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -87,12 +147,39 @@ public class MessagingServiceImpl implements MessagingService {
 
     @Override
     public <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, UUID... receivers) {
+        return sendInstruction(instruction, null, receivers);
+    }
+
+    @Override
+    public <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, @Nullable Duration responseTimeout, UUID... receivers) {
+        var receiversAmount = receivers.length == 0 ? countBroadcastReceivers() : receivers.length;
+        return sendInstruction(instruction, responseTimeout, receiversAmount, () -> {
+            if (receivers.length == 0) {
+                transmitter.broadcastMessage(instruction);
+            } else {
+                transmitter.sendMessage(instruction, receivers);
+            }
+        });
+    }
+
+    @Override
+    public <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, @NotNull String group) {
+        return sendInstruction(instruction, null, group);
+    }
+
+    @Override
+    public <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, @Nullable Duration responseTimeout, @NotNull String group) {
+        Objects.requireNonNull(group);
+        var members = getGroupMembers(group);
+        return sendInstruction(instruction, responseTimeout, members.size(), () -> transmitter.sendToGroup(instruction, group, members));
+    }
+
+    private <R, T extends Instruction<R>> ResponseCollector<R> sendInstruction(@NotNull T instruction, @Nullable Duration responseTimeout, long receiversAmount, Runnable transmit) {
         if (!(instruction instanceof AbstractInstruction<?> abstractInstruction)) {
             NetworkLogger.warning("[" + getSessionIdentifier() + "] Message is not a subtype of " + AbstractInstruction.class.getSimpleName());
             return null;
         }
 
-        var receiversAmount = receivers.length == 0 ? transmitter.getNetworkTransmitterAmount() : receivers.length;
         InstructionInfo instructionInfo = messageFactoryImpl.findInstructionInfo((Class<? extends AbstractInstruction<?>>) instruction.getClass());
         var registeredID = messageFactoryImpl.findInstructionID(instruction);
         if (registeredID == -1)
@@ -106,14 +193,11 @@ public class MessagingServiceImpl implements MessagingService {
 
         if (instruction.onSend(this, receiversAmount)) {
             abstractInstruction.setupInstruction(registeredID, getSessionUUID(), getSessionIdentifier());
-            abstractInstruction.setResponseCollector(new ResponseCollectorImpl<>(receiversAmount));
-            if (receivers.length == 0) {
-                transmitter.broadcastMessage(instruction);
-            } else {
-                transmitter.sendMessage(instruction, receivers);
-            }
-            if (instructionInfo.awaitsResponse())
-                pendingInstructions.put(instruction.getUuid(), instruction);
+            abstractInstruction.setResponseCollector(new ResponseCollectorImpl<>(receiversAmount, responseTimeouts));
+            // Registered before sending, so fast answers find their instruction
+            if (instructionInfo.awaitsResponse() && receiversAmount > 0)
+                trackResponses(abstractInstruction, responseTimeout != null ? responseTimeout.toMillis() : instructionInfo.responseTimeoutMillis());
+            transmit.run();
         } else {
             abstractInstruction.setResponseCollector(new ResponseCollectorImpl<>(0));
             var responseCollector = (ResponseCollectorImpl<R>) abstractInstruction.getResponseCollector();
@@ -147,6 +231,47 @@ public class MessagingServiceImpl implements MessagingService {
         return (ResponseCollector<R>) sendInstruction(instruction, receivers);
     }
 
+    @Override
+    public <T> ResponseStream<T> sendStreamingQuery(@NotNull StreamingQuery<T> query, @NotNull UUID receiver) {
+        Objects.requireNonNull(query);
+        Objects.requireNonNull(receiver);
+        if (receiver.equals(getSessionUUID()))
+            throw new IllegalArgumentException("[" + getSessionIdentifier() + "] A streaming query can't be answered by its own sender");
+        if (messageFactoryImpl.findInstructionID(query) == -1)
+            throw new IllegalArgumentException("[" + getSessionIdentifier() + "] Instruction of type " + query.getClass().getSimpleName() + " is not registered yet");
+        return responseStreams.create(query, receiver);
+    }
+
+    /**
+     * Broadcasts reach the members of the membership view and this node if the transmitter delivers them to itself
+     */
+    private long countBroadcastReceivers() {
+        return membershipService.getMemberCount() + (transmitter.receivesOwnBroadcasts() ? 1 : 0);
+    }
+
+    private void trackResponses(@NotNull AbstractInstruction<?> instruction, long timeoutMillis) {
+        UUID uuid = instruction.getUuid();
+        HashedTimingWheel.Timeout timeout = null;
+        if (timeoutMillis > 0) {
+            timeout = responseTimeouts.schedule(() -> {
+                PendingInstruction expired = pendingInstructions.remove(uuid);
+                if (expired == null)
+                    return;
+                if (expired.instruction().getResponseCollector() instanceof ResponseCollectorImpl<?> responseCollector) {
+                    responseCollector.expire(new TimeoutException(expired.instruction().getClass().getSimpleName() + " received " + responseCollector.getAmountReceivedValues() + " of its answers within " + timeoutMillis + "ms"));
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        PendingInstruction pendingInstruction = new PendingInstruction(instruction, timeout);
+        pendingInstructions.put(uuid, pendingInstruction);
+        // Once the caller got what it waited for, later answers are dropped
+        if (instruction.getResponseCollector() instanceof ResponseCollectorImpl<?> responseCollector)
+            responseCollector.setOnSettled(() -> {
+                if (pendingInstructions.remove(uuid, pendingInstruction) && pendingInstruction.timeout() != null)
+                    pendingInstruction.timeout().cancel();
+            });
+    }
+
     private <R, T extends AbstractInstruction<R>> void handleInstruction(@NotNull T instruction) {
         var response = instruction.onInstructionReceive(this);
         var instructionInfo = messageFactoryImpl.findInstructionInfo((Class<? extends AbstractInstruction<?>>) instruction.getClass());
@@ -182,13 +307,17 @@ public class MessagingServiceImpl implements MessagingService {
         if (NetworkLogger.messagingServiceDebugMode.isDebugMode())
             NetworkLogger.debug("[" + getSessionIdentifier() + "] Received response from" + response
                     .getSenderIdentifier());
-        if (!pendingInstructions.containsKey(response.getUuid()))
+        PendingInstruction pendingInstruction = pendingInstructions.get(response.getUuid());
+        if (pendingInstruction == null)
             return;
-        T instructionLeft = (T) pendingInstructions.get(response.getUuid());
+        T instructionLeft = (T) pendingInstruction.instruction();
         NetworkLogger.debug("Handling response");
         if (response.isResponse() && !instructionLeft.isResponse()) {
-            if (instructionLeft.getResponseCollector() instanceof ResponseCollectorImpl responseCollector)
+            if (instructionLeft.getResponseCollector() instanceof ResponseCollectorImpl responseCollector) {
                 responseCollector.complete(response.getSenderUUID(), response.getResponseToSend());
+                if (responseCollector.hasReceivedAllAnswers() && pendingInstructions.remove(response.getUuid(), pendingInstruction) && pendingInstruction.timeout() != null)
+                    pendingInstruction.timeout().cancel();
+            }
             instructionLeft.onResponseReceive(this, response.getResponseToSend());
         }
     }
@@ -197,61 +326,95 @@ public class MessagingServiceImpl implements MessagingService {
     public void postMessageEvent(String channelName, Instruction<?> message) {
         Objects.requireNonNull(channelName);
         Objects.requireNonNull(message);
-        this.eventBus.post(new MessageEventImpl(channelName, message));
+        onMessage(new MessageEventImpl(channelName, message));
     }
 
     public void setNetworkParticipant(NetworkParticipant networkParticipant) {
         this.networkParticipant = networkParticipant;
-        remoteParticipants.put(getSessionUUID(), new RemoteMessageReceiverImpl(getSessionUUID(), sessionIdentifier));
-
         this.transmitter.setMessagingService(this);
-        eventBus.register(this);
-
-        keepAliveThread.scheduleAtFixedRate(() -> {
-            /*            sendKeepAlivePing();*/
-            remoteParticipants
-                    .entrySet()
-                    .removeIf(entry -> !receivedKeepAlivePings.contains(entry.getValue()) && !entry
-                            .getValue()
-                            .getUuid()
-                            .equals(getSessionUUID()));
-            receivedKeepAlivePings.clear();
-            pendingInstructions.forEach((uuid, instruction) -> pendingInstructions.computeIfPresent(uuid, (uuid1, instruction1) -> {
-                if (!instruction1.getResponseCollector().hasReceivedAllAnswers())
-                    return instruction1;
-                if (instruction1.getResponseCollector() instanceof ResponseCollectorImpl<?> responseCollector)
-                    responseCollector.cancel();
-                return null;
-            }));
-        }, 0, 10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void connect() {
+        transmitter.connect();
+        connected = true;
+        membershipService.start();
+    }
+
+    @Override
+    public void joinGroup(@NotNull String group) {
+        Objects.requireNonNull(group);
+        if (!joinedGroups.add(group))
+            return;
+        transmitter.joinGroup(group);
+        // Groups joined before connecting are announced by the join heartbeat
+        if (connected)
+            sendKeepAlivePing();
+    }
+
+    @Override
+    public void leaveGroup(@NotNull String group) {
+        Objects.requireNonNull(group);
+        if (!joinedGroups.remove(group))
+            return;
+        transmitter.leaveGroup(group);
+        if (connected)
+            sendKeepAlivePing();
+    }
+
+    @Override
+    public Set<String> getJoinedGroups() {
+        return Set.copyOf(joinedGroups);
+    }
+
+    @Override
+    public Set<UUID> getGroupMembers(@NotNull String group) {
+        return membershipService.getGroupMembers(group);
     }
 
     @Override
     public Set<RemoteMessageReceiver> getRemoteMessageReceivers() {
-        return new HashSet<>(remoteParticipants.values());
+        return membershipService.getMembers();
     }
 
     @Override
     public void sendKeepAlivePing() {
+        sendKeepAlivePing(false);
+    }
+
+    /**
+     * Sends a heartbeat with the groups of this node
+     *
+     * @param answerRequested true to ask the receivers to answer with their own heartbeat
+     * @param receivers       the receivers or none to broadcast
+     */
+    public void sendKeepAlivePing(boolean answerRequested, UUID... receivers) {
         sendInstruction(KeepAlivePing.class, keepAlivePing -> {
-        });
+            keepAlivePing.answerRequested = answerRequested;
+            keepAlivePing.groups.addAll(joinedGroups);
+            keepAlivePing.nonce = membershipService.getSessionNonce();
+        }, receivers);
     }
 
     private void sendOfflinePing() {
-        sendInstruction(OfflinePing.class, offlinePing -> {
-        });
+        sendInstruction(OfflinePing.class, offlinePing -> offlinePing.nonce = membershipService.getSessionNonce());
     }
 
     @Override
     public void shutdown() {
         NetworkLogger.info("Shutting down message transmitter");
         sendOfflinePing();
-        this.pendingInstructions.forEach((uuid, instruction) -> {
-            if (instruction.getResponseCollector() instanceof ResponseCollectorImpl<?> responseCollector)
+        this.pendingInstructions.forEach((uuid, pendingInstruction) -> {
+            if (pendingInstruction.instruction().getResponseCollector() instanceof ResponseCollectorImpl<?> responseCollector)
                 responseCollector.cancel();
         });
-        this.keepAliveThread.shutdownNow();
+        this.pendingInstructions.clear();
+        this.responseTimeouts.stop();
+        this.responseStreams.shutdown();
+        this.membershipService.shutdown();
+        this.cacheHandoff.shutdown();
         transmitter.shutdown();
+        this.instructionDispatcher.shutdown();
         NetworkLogger.info("MessagingService is offline");
     }
 
@@ -280,19 +443,74 @@ public class MessagingServiceImpl implements MessagingService {
         return ticketPropagator;
     }
 
+    @Override
+    public OwnershipRegistry getOwnershipRegistry() {
+        return ownershipRegistry;
+    }
+
+    @Override
+    public CacheHandoffImpl getCacheHandoff() {
+        return cacheHandoff;
+    }
+
+    @Override
+    public MembershipServiceImpl getMembershipService() {
+        return membershipService;
+    }
+
+    public ResponseStreamsImpl getResponseStreams() {
+        return responseStreams;
+    }
+
+    @Override
+    public InstructionDispatcherImpl getInstructionDispatcher() {
+        return instructionDispatcher;
+    }
+
+    /**
+     * Returns the amount of sent instructions that still wait for answers
+     *
+     * @return the amount of pending instructions
+     */
+    public int getPendingInstructionCount() {
+        return pendingInstructions.size();
+    }
+
+    /**
+     * An instruction that waits for answers and the timeout that expires its response collector
+     */
+    private record PendingInstruction(AbstractInstruction<?> instruction, @Nullable HashedTimingWheel.Timeout timeout) {
+    }
+
+    /**
+     * The heartbeat of the {@link MembershipServiceImpl}. Sent periodically and whenever the sender joins or leaves a group.
+     * Carries all groups the sender is in.
+     */
+    @InstructionInfo(awaitsResponse = false, priority = InstructionInfo.Priority.HIGH)
     public class KeepAlivePing extends Ping {
+        private final Set<String> groups = new HashSet<>();
+        private boolean answerRequested;
+        // Null in pings of nodes without duplicate session detection
+        @Nullable
+        private UUID nonce;
+
         public KeepAlivePing(@NotNull UUID uuid) {
             super(uuid);
         }
 
         @Override
         public void onPingReceive(MessagingService messagingService) {
+            // Json pings of nodes without groups support don't contain the field
             if (messagingService instanceof MessagingServiceImpl messagingServiceImpl)
-                messagingServiceImpl.receivedKeepAlivePings.add(new RemoteMessageReceiverImpl(this.getSenderUUID(), this.getSenderIdentifier()));
+                messagingServiceImpl.membershipService.handleHeartbeat(this.getSenderUUID(), nonce, this.getSenderIdentifier(), groups != null ? groups : Set.of(), answerRequested);
         }
     }
 
+    @InstructionInfo(awaitsResponse = false, priority = InstructionInfo.Priority.HIGH)
     public class OfflinePing extends Ping {
+        @Nullable
+        private UUID nonce;
+
         public OfflinePing(@NotNull UUID uuid) {
             super(uuid);
         }
@@ -302,7 +520,7 @@ public class MessagingServiceImpl implements MessagingService {
             var sender = getSenderUUID();
 
             if (messagingService instanceof MessagingServiceImpl messagingServiceImpl)
-                messagingServiceImpl.remoteParticipants.remove(sender);
+                messagingServiceImpl.membershipService.handleOffline(sender, nonce);
         }
     }
 }
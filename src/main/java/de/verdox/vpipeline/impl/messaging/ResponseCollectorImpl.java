@@ -1,39 +1,115 @@
 package de.verdox.vpipeline.impl.messaging;
 
 import de.verdox.vpipeline.api.messaging.instruction.ResponseCollector;
+import de.verdox.vpipeline.impl.util.HashedTimingWheel;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 
+/**
+ * Responses are kept in one map and handed to the actions on the thread that received them.
+ * All state is guarded by the collector itself, while actions are always called outside the lock.
+ */
 public class ResponseCollectorImpl<T> implements ResponseCollector<T> {
-    private final Map<UUID, CompletableFuture<T>> receivedValues = new ConcurrentHashMap<>();
-    private final AtomicBoolean wasCancelled = new AtomicBoolean(false);
-    private final Set<BiConsumer<? super T, ? super Throwable>> actions = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, T> receivedValues = new LinkedHashMap<>();
+    private final List<BiConsumer<? super T, ? super Throwable>> actions = new ArrayList<>(2);
     private final long amountReceivers;
+    @Nullable
+    private final HashedTimingWheel timer;
+    @Nullable
+    private Throwable failure;
+    private boolean expired;
+    private int pendingAggregates;
+    @Nullable
+    private Runnable onSettled;
+    /**
+     * True once the instruction stopped waiting for answers
+     */
+    private boolean settled;
 
     public ResponseCollectorImpl(long amountReceivers) {
+        this(amountReceivers, null);
+    }
+
+    /**
+     * @param amountReceivers the amount of receivers that answer
+     * @param timer           drives the deadlines of the aggregates. Falls back to {@link CompletableFuture#orTimeout} if null.
+     */
+    public ResponseCollectorImpl(long amountReceivers, @Nullable HashedTimingWheel timer) {
         this.amountReceivers = amountReceivers;
+        this.timer = timer;
+    }
+
+    /**
+     * Sets the task that stops waiting for answers. It runs once the last pending aggregate completed.
+     *
+     * @param onSettled the task
+     */
+    void setOnSettled(@Nullable Runnable onSettled) {
+        synchronized (this) {
+            this.onSettled = onSettled;
+        }
     }
 
     void complete(UUID transmitter, T value) {
-        if (wasCancelled.get())
-            return;
-        var future = new CompletableFuture<T>();
-        actions.forEach(future::whenComplete);
-        future.completeAsync(() -> value);
-        receivedValues.put(transmitter, future);
+        BiConsumer<? super T, ? super Throwable>[] toCall;
+        synchronized (this) {
+            if (failure != null || receivedValues.containsKey(transmitter))
+                return;
+            receivedValues.put(transmitter, value);
+            toCall = actions.toArray(BiConsumer[]::new);
+        }
+        for (BiConsumer<? super T, ? super Throwable> action : toCall)
+            call(action, value, null);
+    }
+
+    /**
+     * Called if not all receivers answered in time. Every action is called once more with the timeout as throwable.
+     *
+     * @param timeout the cause
+     */
+    void expire(TimeoutException timeout) {
+        fail(timeout, true);
+    }
+
+    public void cancel() {
+        fail(new CancellationException("The instruction was cancelled"), false);
+    }
+
+    private void fail(Throwable cause, boolean expiry) {
+        BiConsumer<? super T, ? super Throwable>[] toCall;
+        synchronized (this) {
+            if (failure != null)
+                return;
+            failure = cause;
+            expired = expiry;
+            toCall = actions.toArray(BiConsumer[]::new);
+        }
+        for (BiConsumer<? super T, ? super Throwable> action : toCall)
+            call(action, null, cause);
     }
 
     public ResponseCollectorImpl<T> whenResponseReceived(@NotNull BiConsumer<? super T, ? super Throwable> action) {
         Objects.requireNonNull(action);
-        actions.add(action);
-        receivedValues.forEach((uuid, value) -> value.whenComplete(action));
+        List<T> received;
+        Throwable failure;
+        synchronized (this) {
+            actions.add(action);
+            received = receivedValues.isEmpty() ? List.of() : new ArrayList<>(receivedValues.values());
+            failure = this.failure;
+        }
+        for (T value : received)
+            call(action, value, null);
+        if (failure != null)
+            call(action, null, failure);
         return this;
     }
 
@@ -42,15 +118,137 @@ public class ResponseCollectorImpl<T> implements ResponseCollector<T> {
     }
 
     public CompletableFuture<T> askForValue(Predicate<T> test) {
-        var future = new CompletableFuture<T>();
-        whenResponseReceived((t, throwable) -> {
-            if (test.test(t))
-                future.complete(t);
+        return firstMatching(test, null);
+    }
+
+    @Override
+    public CompletableFuture<T> firstMatching(@NotNull Predicate<T> test, @Nullable Duration deadline) {
+        Objects.requireNonNull(test);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        return aggregate(result, deadline, (value, throwable) -> {
+            if (throwable != null)
+                result.completeExceptionally(throwable);
+            else if (test.test(value))
+                result.complete(value);
+            else if (hasReceivedAllAnswers())
+                result.complete(null);
+        }, () -> result.complete(null));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> quorum(int n, @NotNull Duration deadline) {
+        Objects.requireNonNull(deadline);
+        CompletableFuture<List<T>> result = new CompletableFuture<>();
+        if (n > amountReceivers) {
+            result.completeExceptionally(new IllegalArgumentException("A quorum of " + n + " can't be reached with " + amountReceivers + " receivers"));
+            return result;
+        }
+        Runnable check = () -> {
+            List<T> values = null;
+            synchronized (this) {
+                if (receivedValues.size() >= n) {
+                    values = new ArrayList<>(n);
+                    for (T value : receivedValues.values()) {
+                        if (values.size() == n)
+                            break;
+                        values.add(value);
+                    }
+                }
+            }
+            if (values != null)
+                result.complete(Collections.unmodifiableList(values));
+        };
+        return aggregate(result, deadline, (value, throwable) -> {
+            if (throwable != null)
+                result.completeExceptionally(throwable);
+            else
+                check.run();
+        }, check);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, T>> allOf(@NotNull Duration deadline) {
+        Objects.requireNonNull(deadline);
+        CompletableFuture<Map<UUID, T>> result = new CompletableFuture<>();
+        Runnable check = () -> {
+            Map<UUID, T> values = null;
+            synchronized (this) {
+                if (receivedValues.size() >= amountReceivers)
+                    values = Collections.unmodifiableMap(new LinkedHashMap<>(receivedValues));
+            }
+            if (values != null)
+                result.complete(values);
+        };
+        return aggregate(result, deadline, (value, throwable) -> {
+            if (throwable != null)
+                result.completeExceptionally(throwable);
+            else
+                check.run();
+        }, check);
+    }
+
+    /**
+     * Registers the listener of an aggregate and removes it again once the aggregate completed
+     *
+     * @param result        the future of the aggregate
+     * @param deadline      the deadline or null to only wait for the response timeout of the instruction
+     * @param listener      called for every response
+     * @param onAllAnswered called once after registration if all receivers already answered
+     */
+    private <R> CompletableFuture<R> aggregate(CompletableFuture<R> result, @Nullable Duration deadline, BiConsumer<T, Throwable> listener, Runnable onAllAnswered) {
+        synchronized (this) {
+            pendingAggregates++;
+        }
+        HashedTimingWheel.Timeout timeout = null;
+        if (deadline != null) {
+            TimeoutException timeoutException = new TimeoutException("No result within " + deadline.toMillis() + "ms");
+            if (timer != null)
+                timeout = timer.schedule(() -> result.completeExceptionally(timeoutException), deadline.toMillis(), TimeUnit.MILLISECONDS);
+            else
+                result.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        HashedTimingWheel.Timeout deadlineTimeout = timeout;
+        result.whenComplete((r, throwable) -> {
+            if (deadlineTimeout != null)
+                deadlineTimeout.cancel();
+            Runnable settled = null;
+            synchronized (this) {
+                actions.remove(listener);
+                if (--pendingAggregates == 0 && onSettled != null) {
+                    settled = onSettled;
+                    this.settled = true;
+                }
+            }
+            if (settled != null)
+                settled.run();
         });
-        return future;
+        whenResponseReceived(listener);
+        boolean noMoreAnswers;
+        synchronized (this) {
+            noMoreAnswers = settled;
+        }
+        if (hasReceivedAllAnswers() || noMoreAnswers)
+            onAllAnswered.run();
+        if (noMoreAnswers)
+            result.completeExceptionally(new CancellationException("The instruction does not wait for answers anymore"));
+        // The aggregate may have completed before its listener was registered
+        if (result.isDone()) {
+            synchronized (this) {
+                actions.remove(listener);
+            }
+        }
+        return result;
     }
 
-    public long getAmountReceivedValues() {
+    private static <T> void call(BiConsumer<? super T, ? super Throwable> action, T value, Throwable throwable) {
+        try {
+            action.accept(value, throwable);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized long getAmountReceivedValues() {
         return receivedValues.size();
     }
 
@@ -58,8 +256,7 @@ public class ResponseCollectorImpl<T> implements ResponseCollector<T> {
         return getAmountReceivedValues() >= amountReceivers;
     }
 
-    public void cancel() {
-        wasCancelled.set(true);
-        receivedValues.forEach((uuid, future) -> future.cancel(true));
+    public synchronized boolean hasExpired() {
+        return expired;
     }
-}
\ No newline at end of file
+}
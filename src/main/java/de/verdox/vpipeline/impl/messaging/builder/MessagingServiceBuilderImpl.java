@@ -1,9 +1,13 @@
 package de.verdox.vpipeline.impl.messaging.builder;
 
+import de.verdox.vpipeline.api.handoff.CacheHandoff;
+import de.verdox.vpipeline.api.membership.MembershipService;
 import de.verdox.vpipeline.api.NetworkLogger;
 import de.verdox.vpipeline.api.messaging.MessagingService;
 import de.verdox.vpipeline.api.messaging.builder.MessagingServiceBuilder;
 import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.dispatch.InstructionDispatcher;
+import de.verdox.vpipeline.api.messaging.stream.ResponseStream;
 import de.verdox.vpipeline.api.messaging.parts.transmitter.RedisTransmitter;
 import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
 import de.verdox.vpipeline.impl.util.RedisConnection;
@@ -13,6 +17,10 @@ public class MessagingServiceBuilderImpl implements MessagingServiceBuilder {
 
     private Transmitter transmitter;
     private String identifier;
+    private CacheHandoff.Settings cacheHandoffSettings;
+    private InstructionDispatcher.Settings dispatchSettings = InstructionDispatcher.Settings.DEFAULT;
+    private MembershipService.Settings membershipSettings = MembershipService.Settings.DEFAULT;
+    private ResponseStream.Settings responseStreamSettings = ResponseStream.Settings.DEFAULT;
 
 
     @Override
@@ -28,6 +36,30 @@ public class MessagingServiceBuilderImpl implements MessagingServiceBuilder {
     }
 
 
+    @Override
+    public MessagingServiceBuilder withCacheHandoff(CacheHandoff.Settings settings) {
+        this.cacheHandoffSettings = settings;
+        return this;
+    }
+
+    @Override
+    public MessagingServiceBuilder withDispatch(InstructionDispatcher.Settings settings) {
+        this.dispatchSettings = settings;
+        return this;
+    }
+
+    @Override
+    public MessagingServiceBuilder withMembership(MembershipService.Settings settings) {
+        this.membershipSettings = settings;
+        return this;
+    }
+
+    @Override
+    public MessagingServiceBuilder withResponseStreams(ResponseStream.Settings settings) {
+        this.responseStreamSettings = settings;
+        return this;
+    }
+
     @Override
     public MessagingService buildMessagingService() {
         if (identifier == null)
@@ -35,6 +67,11 @@ public class MessagingServiceBuilderImpl implements MessagingServiceBuilder {
         if (transmitter == null)
             throw new NullPointerException("Transmitter was not set during building phase.");
         MessagingServiceImpl messagingService = new MessagingServiceImpl(identifier, transmitter);
+        messagingService.getCacheHandoff().setSettings(cacheHandoffSettings);
+        if (dispatchSettings != InstructionDispatcher.Settings.DEFAULT)
+            messagingService.getInstructionDispatcher().setSettings(dispatchSettings);
+        messagingService.getMembershipService().setSettings(membershipSettings);
+        messagingService.getResponseStreams().setSettings(responseStreamSettings);
         NetworkLogger.info("Building messaging service");
         return messagingService;
     }
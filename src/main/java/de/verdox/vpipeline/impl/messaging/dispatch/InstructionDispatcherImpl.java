@@ -0,0 +1,295 @@
+package de.verdox.vpipeline.impl.messaging.dispatch;
+
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo.Priority;
+import de.verdox.vpipeline.api.messaging.dispatch.DispatchMetrics;
+import de.verdox.vpipeline.api.messaging.dispatch.InstructionDispatcher;
+import de.verdox.vpipeline.api.messaging.instruction.AbstractInstruction;
+import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InstructionDispatcherImpl implements InstructionDispatcher {
+    private static final Priority[] PRIORITIES = Priority.values();
+    private final String sessionIdentifier;
+    /**
+     * Lanes are only created, drained and removed inside {@link ConcurrentHashMap#compute}, so a lane is never dropped while it holds tasks.
+     */
+    private final Map<LaneKey, Lane> lanes = new ConcurrentHashMap<>();
+    private final DispatchMetrics metrics = new DispatchMetrics();
+    // Indexed by the ordinal of the priority
+    private final AtomicInteger[] queueDepths = new AtomicInteger[PRIORITIES.length];
+    /**
+     * Instructions that arrived while the queue of their priority was full. They are moved into their lane once a handler of the priority finished.
+     * Guarded by the deque itself. Indexed by the ordinal of the priority.
+     */
+    private final ArrayDeque<ParkedTask>[] parked = new ArrayDeque[PRIORITIES.length];
+    private volatile Settings settings = Settings.DEFAULT;
+    private volatile Semaphore[] capacities;
+    private volatile ExecutorService[] executors;
+    private volatile boolean shutdown;
+
+    public InstructionDispatcherImpl(@NotNull String sessionIdentifier) {
+        this.sessionIdentifier = Objects.requireNonNull(sessionIdentifier);
+        for (int i = 0; i < queueDepths.length; i++) {
+            queueDepths[i] = new AtomicInteger();
+            parked[i] = new ArrayDeque<>();
+        }
+        this.capacities = createCapacities(Settings.DEFAULT);
+        this.executors = createExecutors(Settings.DEFAULT);
+    }
+
+    /**
+     * Replaces the settings. Only called while building the messaging service, before any instruction was received.
+     *
+     * @param settings the settings
+     */
+    public void setSettings(@NotNull Settings settings) {
+        Objects.requireNonNull(settings, "settings can't be null!");
+        ExecutorService[] oldExecutors = this.executors;
+        this.settings = settings;
+        this.capacities = createCapacities(settings);
+        this.executors = createExecutors(settings);
+        for (ExecutorService oldExecutor : oldExecutors)
+            oldExecutor.shutdown();
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Queues the handler of a received instruction of {@link Priority#NORMAL} priority
+     *
+     * @param instruction the received instruction
+     * @param handler     the handler
+     * @return false if the dispatcher is shut down and the instruction was dropped
+     */
+    public boolean dispatch(@NotNull AbstractInstruction<?> instruction, @NotNull Runnable handler) {
+        return dispatch(instruction, Priority.NORMAL, handler);
+    }
+
+    /**
+     * Queues the handler of a received instruction in the lane of the instruction. Never blocks the calling thread, which is usually the receiving thread of the transmitter
+     * that also delivers responses and keep-alives.
+     * If the queue of the priority is full the instruction is parked until a handler of the same priority finished.
+     * If the parked instructions fill the queue capacity as well the instruction is dropped. Its sender runs into the response timeout.
+     *
+     * @param instruction the received instruction
+     * @param priority    the priority class of the instruction
+     * @param handler     the handler
+     * @return false if the dispatcher is shut down or overloaded and the instruction was dropped
+     */
+    public boolean dispatch(@NotNull AbstractInstruction<?> instruction, @NotNull Priority priority, @NotNull Runnable handler) {
+        if (shutdown)
+            return false;
+        Semaphore capacity = this.capacities[priority.ordinal()];
+        LaneKey key = new LaneKey(priority, settings.ordering() == Ordering.PER_SENDER ? instruction.getSenderUUID() : instruction.getInstructionID());
+        Task task = new Task((Class<? extends Instruction<?>>) instruction.getClass(), handler, capacity, System.nanoTime());
+        ArrayDeque<ParkedTask> parkedTasks = parked[priority.ordinal()];
+        synchronized (parkedTasks) {
+            // Instructions that arrive after parked ones are parked as well, so a lane keeps its order
+            if (!parkedTasks.isEmpty() || !capacity.tryAcquire()) {
+                if (parkedTasks.size() >= settings.queueCapacity()) {
+                    metrics.recordShed();
+                    NetworkLogger.warning("[" + sessionIdentifier + "] Dropping received " + task.type.getSimpleName() + " since the " + priority + " queue is full");
+                    return false;
+                }
+                metrics.recordBackpressureStall();
+                queueDepths[priority.ordinal()].incrementAndGet();
+                parkedTasks.add(new ParkedTask(key, task));
+                return true;
+            }
+        }
+        queueDepths[priority.ordinal()].incrementAndGet();
+        return enqueue(key, task);
+    }
+
+    private boolean enqueue(LaneKey key, Task task) {
+        boolean[] scheduled = new boolean[1];
+        lanes.compute(key, (o, lane) -> {
+            if (lane == null)
+                lane = new Lane();
+            lane.tasks.add(task);
+            if (!lane.running) {
+                lane.running = true;
+                scheduled[0] = true;
+            }
+            return lane;
+        });
+        if (scheduled[0]) {
+            try {
+                executors[key.priority().ordinal()].execute(() -> drain(key));
+            } catch (RejectedExecutionException e) {
+                NetworkLogger.warning("[" + sessionIdentifier + "] Dropping received instructions since the dispatcher is shut down");
+                dropLane(key);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void drain(LaneKey key) {
+        Task[] next = new Task[1];
+        while (true) {
+            lanes.compute(key, (o, lane) -> {
+                next[0] = lane != null ? lane.tasks.poll() : null;
+                if (next[0] != null)
+                    return lane;
+                // The lane is removed while idle and recreated by the next instruction
+                return null;
+            });
+            Task task = next[0];
+            if (task == null)
+                return;
+            queueDepths[key.priority().ordinal()].decrementAndGet();
+            long start = System.nanoTime();
+            boolean failed = false;
+            try {
+                task.handler.run();
+            } catch (Throwable e) {
+                failed = true;
+                NetworkLogger.warning("[" + sessionIdentifier + "] Handler of " + task.type.getSimpleName() + " failed");
+                e.printStackTrace();
+            } finally {
+                long end = System.nanoTime();
+                task.capacity.release();
+                metrics.recordHandled(task.type, start - task.queuedAt, end - start, failed);
+                unpark(key.priority());
+            }
+        }
+    }
+
+    /**
+     * Moves parked instructions into their lanes while the queue of the priority has capacity
+     */
+    private void unpark(Priority priority) {
+        Semaphore capacity = this.capacities[priority.ordinal()];
+        ArrayDeque<ParkedTask> parkedTasks = parked[priority.ordinal()];
+        synchronized (parkedTasks) {
+            while (!parkedTasks.isEmpty() && capacity.tryAcquire()) {
+                ParkedTask parkedTask = parkedTasks.poll();
+                enqueue(parkedTask.key(), parkedTask.task());
+            }
+        }
+    }
+
+    private void dropLane(LaneKey key) {
+        Lane lane = lanes.remove(key);
+        if (lane == null)
+            return;
+        for (Task task : lane.tasks) {
+            queueDepths[key.priority().ordinal()].decrementAndGet();
+            task.capacity.release();
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int queueDepth = 0;
+        for (AtomicInteger depth : queueDepths)
+            queueDepth += depth.get();
+        return queueDepth;
+    }
+
+    @Override
+    public int getQueueDepth(@NotNull Priority priority) {
+        return queueDepths[priority.ordinal()].get();
+    }
+
+    @Override
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    @Override
+    public DispatchMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Stops accepting instructions and waits a few seconds for the queued handlers to finish
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (int i = 0; i < parked.length; i++) {
+            synchronized (parked[i]) {
+                queueDepths[i].addAndGet(-parked[i].size());
+                parked[i].clear();
+            }
+        }
+        ExecutorService[] executors = this.executors;
+        for (ExecutorService executor : executors)
+            executor.shutdown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        try {
+            for (ExecutorService executor : executors) {
+                if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+                    executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            for (ExecutorService executor : executors)
+                executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Semaphore[] createCapacities(Settings settings) {
+        Semaphore[] capacities = new Semaphore[PRIORITIES.length];
+        for (int i = 0; i < capacities.length; i++)
+            capacities[i] = new Semaphore(settings.queueCapacity());
+        return capacities;
+    }
+
+    /**
+     * Every priority class gets its own executor, so busy bulk handlers never occupy the threads of urgent instructions
+     */
+    private ExecutorService[] createExecutors(Settings settings) {
+        ExecutorService[] executors = new ExecutorService[PRIORITIES.length];
+        for (Priority priority : PRIORITIES)
+            executors[priority.ordinal()] = createExecutor(settings, "InstructionDispatcher-" + sessionIdentifier + "-" + priority + "-");
+        return executors;
+    }
+
+    private static ExecutorService createExecutor(Settings settings, String threadName) {
+        if (settings.virtualThreads())
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(threadName, 0).factory());
+        AtomicInteger threadCounter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, threadName + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The instructions that have to be handled in the order they were received.
+     * A lane is running while a drain task of the executor works through it.
+     */
+    private static class Lane {
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+        private boolean running;
+    }
+
+    /**
+     * Instructions of different priority classes never share a lane
+     */
+    private record LaneKey(Priority priority, Object key) {
+    }
+
+    private record Task(Class<? extends Instruction<?>> type, Runnable handler, Semaphore capacity, long queuedAt) {
+    }
+
+    private record ParkedTask(LaneKey key, Task task) {
+    }
+}
@@ -0,0 +1,347 @@
+package de.verdox.vpipeline.impl.messaging.stream;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteStreams;
+import de.verdox.vpipeline.api.messaging.instruction.types.StreamingQuery;
+import de.verdox.vpipeline.api.messaging.stream.ResponseStream;
+import de.verdox.vpipeline.impl.util.HashedTimingWheel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The sending side of a {@link StreamingQuery}.
+ * <p>
+ * Chunks are put back into order by their sequence and buffered until the subscriber requested their elements.
+ * Every chunk on its way or in the buffer uses up one credit of the window, and credit is granted again in batches of half the window.
+ * All state is guarded by the stream itself, the subscriber is always called outside the lock by one thread at a time.
+ */
+public class ResponseStreamImpl<T> implements ResponseStream<T>, Flow.Subscription {
+    private final ResponseStreamsImpl streams;
+    private final StreamingQuery<T> query;
+    private final UUID receiver;
+    private final int window;
+    private final long timeoutMillis;
+    private final AtomicInteger drainers = new AtomicInteger();
+    private final ArrayDeque<ArrayDeque<T>> chunks = new ArrayDeque<>();
+    private final TreeMap<Integer, StreamChunkPing> outOfOrder = new TreeMap<>();
+    @Nullable
+    private Flow.Subscriber<? super T> subscriber;
+    /**
+     * The first chunk is sent without credit
+     */
+    private int granted = 1;
+    private int nextSequence;
+    private long demand;
+    private boolean lastReceived;
+    @Nullable
+    private Throwable failure;
+    private boolean cancelled;
+    private boolean terminated;
+    @Nullable
+    private HashedTimingWheel.Timeout idleTimeout;
+
+    ResponseStreamImpl(@NotNull ResponseStreamsImpl streams, @NotNull StreamingQuery<T> query, @NotNull UUID receiver, @NotNull Settings settings) {
+        this.streams = streams;
+        this.query = query;
+        this.receiver = receiver;
+        this.window = settings.window();
+        this.timeoutMillis = settings.timeout().toMillis();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        synchronized (this) {
+            if (this.subscriber == null)
+                this.subscriber = subscriber;
+        }
+        if (this.subscriber != subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A response stream can only be subscribed once"));
+            return;
+        }
+        subscriber.onSubscribe(this);
+        synchronized (this) {
+            if (cancelled)
+                return;
+            armIdleTimeout();
+        }
+        streams.start(this);
+    }
+
+    @Override
+    public Iterator<T> toIterator() {
+        var iterator = new BlockingIterator<T>();
+        subscribe(iterator);
+        return iterator;
+    }
+
+    @Override
+    public void request(long n) {
+        synchronized (this) {
+            if (n <= 0) {
+                // Fails right away instead of after the buffered elements
+                failure = new IllegalArgumentException("The amount of requested elements has to be positive but was " + n);
+                chunks.clear();
+            } else
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        boolean notifyReceiver;
+        synchronized (this) {
+            if (cancelled || terminated)
+                return;
+            cancelled = true;
+            notifyReceiver = !lastReceived;
+            chunks.clear();
+            outOfOrder.clear();
+            if (idleTimeout != null)
+                idleTimeout.cancel();
+        }
+        streams.remove(this);
+        if (notifyReceiver)
+            streams.sendCredit(receiver, getStreamId(), 0, true);
+    }
+
+    UUID getStreamId() {
+        return query.getUuid();
+    }
+
+    StreamingQuery<T> getQuery() {
+        return query;
+    }
+
+    UUID getReceiver() {
+        return receiver;
+    }
+
+    void receive(@NotNull StreamChunkPing chunk) {
+        int credits;
+        synchronized (this) {
+            if (cancelled || terminated || chunk.getSequence() < nextSequence)
+                return;
+            outOfOrder.put(chunk.getSequence(), chunk);
+            if (outOfOrder.size() > window) {
+                failure = new IllegalStateException("More chunks arrived than the window of " + window + " allows");
+            } else {
+                StreamChunkPing next;
+                while ((next = outOfOrder.remove(nextSequence)) != null)
+                    accept(next);
+            }
+            credits = grantCredit();
+            armIdleTimeout();
+        }
+        if (credits > 0)
+            streams.sendCredit(receiver, getStreamId(), credits, false);
+        drain();
+    }
+
+    /**
+     * Fails the stream after the elements that already arrived were delivered
+     */
+    void fail(@NotNull Throwable throwable) {
+        synchronized (this) {
+            if (failure == null)
+                failure = throwable;
+        }
+        drain();
+    }
+
+    private void accept(StreamChunkPing chunk) {
+        nextSequence++;
+        if (chunk.isLast())
+            lastReceived = true;
+        if (chunk.getError() != null) {
+            failure = new IllegalStateException(query.getClass().getSimpleName() + " failed on " + receiver + ": " + chunk.getError());
+            return;
+        }
+        if (chunk.getElements() == 0)
+            return;
+        ByteArrayDataInput in = ByteStreams.newDataInput(chunk.getPayload());
+        ArrayDeque<T> elements = new ArrayDeque<>(chunk.getElements());
+        for (int i = 0; i < chunk.getElements(); i++)
+            elements.add(query.readElement(in));
+        chunks.add(elements);
+    }
+
+    /**
+     * Grants the free part of the window once it is at least half of the window
+     *
+     * @return the credit to send
+     */
+    private int grantCredit() {
+        if (lastReceived || failure != null || cancelled)
+            return 0;
+        int free = window - (granted - nextSequence) - chunks.size();
+        if (free < Math.max(1, window / 2))
+            return 0;
+        granted += free;
+        return free;
+    }
+
+    /**
+     * Only runs while chunks are expected, so a subscriber that does not request elements does not time out
+     */
+    private void armIdleTimeout() {
+        if (idleTimeout != null)
+            idleTimeout.cancel();
+        idleTimeout = null;
+        if (lastReceived || terminated || cancelled || granted == nextSequence)
+            return;
+        idleTimeout = streams.getTimer().schedule(() -> fail(new TimeoutException("No chunk of " + query.getClass().getSimpleName() + " arrived from " + receiver + " within " + timeoutMillis + "ms")), timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void drain() {
+        if (drainers.getAndIncrement() != 0)
+            return;
+        int missed = 1;
+        do {
+            while (true) {
+                T element = null;
+                Throwable error = null;
+                boolean complete = false;
+                int credits = 0;
+                synchronized (this) {
+                    if (cancelled || terminated || subscriber == null)
+                        break;
+                    if (chunks.isEmpty()) {
+                        if (failure != null)
+                            error = failure;
+                        else if (lastReceived)
+                            complete = true;
+                        else
+                            break;
+                        terminated = true;
+                        if (idleTimeout != null)
+                            idleTimeout.cancel();
+                    } else if (demand == 0) {
+                        break;
+                    } else {
+                        ArrayDeque<T> head = chunks.peek();
+                        element = head.poll();
+                        if (head.isEmpty()) {
+                            chunks.poll();
+                            credits = grantCredit();
+                            armIdleTimeout();
+                        }
+                        if (demand != Long.MAX_VALUE)
+                            demand--;
+                    }
+                }
+                if (credits > 0)
+                    streams.sendCredit(receiver, getStreamId(), credits, false);
+                if (element != null) {
+                    subscriber.onNext(element);
+                    continue;
+                }
+                streams.remove(this);
+                if (error != null) {
+                    if (!lastReceived)
+                        streams.sendCredit(receiver, getStreamId(), 0, true);
+                    subscriber.onError(error);
+                } else if (complete) {
+                    subscriber.onComplete();
+                }
+                break;
+            }
+            missed = drainers.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Requests one element at a time and waits for it
+     */
+    private static class BlockingIterator<T> implements Flow.Subscriber<T>, Iterator<T> {
+        private static final Object COMPLETE = new Object();
+        private final LinkedBlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        private Flow.Subscription subscription;
+        @Nullable
+        private Object next;
+        private boolean done;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            signals.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            signals.add(new Failure(throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            signals.add(COMPLETE);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null)
+                return true;
+            if (done)
+                return false;
+            subscription.request(1);
+            Object signal;
+            try {
+                signal = signals.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                subscription.cancel();
+                throw new CompletionException(e);
+            }
+            if (signal == COMPLETE) {
+                done = true;
+                return false;
+            }
+            if (signal instanceof Failure failure) {
+                done = true;
+                throw new CompletionException(failure.cause());
+            }
+            next = signal;
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T element = (T) next;
+            next = null;
+            return element;
+        }
+
+        private record Failure(Throwable cause) {
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package de.verdox.vpipeline.impl.messaging.stream;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.messaging.instruction.types.StreamingQuery;
+import de.verdox.vpipeline.api.messaging.stream.ResponseStream;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import de.verdox.vpipeline.impl.util.HashedTimingWheel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the streams of {@link StreamingQuery streaming queries} this node sent and the ones it answers.
+ * Answered streams read their iterator on a thread of their own, one chunk per credit.
+ */
+public class ResponseStreamsImpl {
+    private final MessagingServiceImpl messagingService;
+    private final HashedTimingWheel timer;
+    private final Map<UUID, ResponseStreamImpl<?>> incomingStreams = new ConcurrentHashMap<>();
+    private final Map<UUID, OutgoingStream<?>> outgoingStreams = new ConcurrentHashMap<>();
+    private final ExecutorService streamingExecutor;
+    private volatile ResponseStream.Settings settings = ResponseStream.Settings.DEFAULT;
+
+    public ResponseStreamsImpl(@NotNull MessagingServiceImpl messagingService, @NotNull HashedTimingWheel timer) {
+        this.messagingService = Objects.requireNonNull(messagingService);
+        this.timer = Objects.requireNonNull(timer);
+        this.streamingExecutor = Executors.newCachedThreadPool(Thread.ofPlatform().daemon().name("ResponseStreams-" + messagingService.getSessionIdentifier() + "-", 0).factory());
+    }
+
+    public void setSettings(@NotNull ResponseStream.Settings settings) {
+        this.settings = Objects.requireNonNull(settings, "settings can't be null!");
+    }
+
+    public ResponseStream.Settings getSettings() {
+        return settings;
+    }
+
+    public <T> ResponseStream<T> create(@NotNull StreamingQuery<T> query, @NotNull UUID receiver) {
+        return new ResponseStreamImpl<>(this, query, receiver, settings);
+    }
+
+    /**
+     * Returns the amount of streams this node currently reads
+     *
+     * @return the amount of incoming streams
+     */
+    public int getIncomingStreamCount() {
+        return incomingStreams.size();
+    }
+
+    /**
+     * Returns the amount of streams this node currently answers
+     *
+     * @return the amount of outgoing streams
+     */
+    public int getOutgoingStreamCount() {
+        return outgoingStreams.size();
+    }
+
+    public void shutdown() {
+        incomingStreams.values().forEach(stream -> stream.fail(new CancellationException("The messaging service was shut down")));
+        incomingStreams.clear();
+        outgoingStreams.values().forEach(OutgoingStream::cancel);
+        outgoingStreams.clear();
+        streamingExecutor.shutdownNow();
+    }
+
+    /**
+     * Sends the query of a subscribed stream
+     */
+    void start(@NotNull ResponseStreamImpl<?> stream) {
+        incomingStreams.put(stream.getStreamId(), stream);
+        try {
+            messagingService.sendInstruction(stream.getQuery(), stream.getReceiver());
+        } catch (RuntimeException e) {
+            stream.fail(e);
+        }
+    }
+
+    void remove(@NotNull ResponseStreamImpl<?> stream) {
+        incomingStreams.remove(stream.getStreamId(), stream);
+    }
+
+    void sendCredit(@NotNull UUID receiver, @NotNull UUID streamId, int credits, boolean cancel) {
+        messagingService.sendInstruction(new StreamCreditPing(UUID.randomUUID(), streamId, credits, cancel), receiver);
+    }
+
+    HashedTimingWheel getTimer() {
+        return timer;
+    }
+
+    /**
+     * Called on the receiver of a streaming query. The first chunk may be sent right away, the next ones need credit.
+     */
+    public <T> void open(@NotNull StreamingQuery<T> query) {
+        var stream = new OutgoingStream<>(query);
+        if (outgoingStreams.putIfAbsent(query.getUuid(), stream) != null)
+            return;
+        stream.grant(1);
+    }
+
+    void receiveChunk(@NotNull StreamChunkPing chunk) {
+        var stream = incomingStreams.get(chunk.getStreamId());
+        if (stream != null)
+            stream.receive(chunk);
+    }
+
+    void receiveCredit(@NotNull UUID sender, @NotNull UUID streamId, int credits, boolean cancel) {
+        var stream = outgoingStreams.get(streamId);
+        if (stream == null || !stream.query.getSenderUUID().equals(sender))
+            return;
+        if (cancel)
+            stream.cancel();
+        else
+            stream.grant(credits);
+    }
+
+    /**
+     * The answer to a streaming query of another node. Only one pump reads the iterator at a time.
+     */
+    private class OutgoingStream<T> {
+        private final StreamingQuery<T> query;
+        @Nullable
+        private Iterator<T> iterator;
+        private int sequence;
+        // Guarded by this
+        private int credits;
+        private boolean pumping;
+        private boolean closed;
+        @Nullable
+        private HashedTimingWheel.Timeout idleTimeout;
+
+        private OutgoingStream(StreamingQuery<T> query) {
+            this.query = query;
+        }
+
+        private void grant(int credits) {
+            synchronized (this) {
+                if (closed)
+                    return;
+                this.credits += credits;
+                if (idleTimeout != null)
+                    idleTimeout.cancel();
+                if (pumping)
+                    return;
+                pumping = true;
+            }
+            try {
+                streamingExecutor.execute(this::pump);
+            } catch (RuntimeException e) {
+                cancel();
+            }
+        }
+
+        private void cancel() {
+            boolean closeNow;
+            synchronized (this) {
+                if (closed)
+                    return;
+                closed = true;
+                closeNow = !pumping;
+            }
+            outgoingStreams.remove(query.getUuid(), this);
+            // A running pump closes the iterator itself
+            if (closeNow)
+                closeIterator();
+        }
+
+        private void pump() {
+            while (true) {
+                synchronized (this) {
+                    if (closed || credits == 0) {
+                        pumping = false;
+                        if (closed)
+                            break;
+                        long timeoutMillis = settings.timeout().toMillis();
+                        idleTimeout = timer.schedule(this::cancel, timeoutMillis, TimeUnit.MILLISECONDS);
+                        return;
+                    }
+                    credits--;
+                }
+                if (!sendChunk()) {
+                    cancel();
+                    break;
+                }
+            }
+            closeIterator();
+        }
+
+        /**
+         * @return false if this was the last chunk
+         */
+        private boolean sendChunk() {
+            var bytes = new ByteArrayOutputStream();
+            ByteArrayDataOutput out = ByteStreams.newDataOutput(bytes);
+            int elements = 0;
+            boolean last;
+            String error = null;
+            try {
+                if (iterator == null)
+                    iterator = Objects.requireNonNull(query.openStream(messagingService), "openStream returned null");
+                int chunkSize = settings.chunkSize();
+                while (bytes.size() < chunkSize && iterator.hasNext()) {
+                    query.writeElement(iterator.next(), out);
+                    elements++;
+                }
+                last = !iterator.hasNext();
+            } catch (Exception e) {
+                NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] " + query.getClass().getSimpleName() + " failed after " + sequence + " chunks: " + e);
+                error = e.toString();
+                elements = 0;
+                last = true;
+            }
+            byte[] payload = error == null ? bytes.toByteArray() : new byte[0];
+            messagingService.sendInstruction(new StreamChunkPing(UUID.randomUUID(), query.getUuid(), sequence++, elements, last, error, payload), query.getSenderUUID());
+            return !last;
+        }
+
+        private void closeIterator() {
+            if (iterator instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package de.verdox.vpipeline.impl.messaging.stream;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Ping;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Carries a chunk of encoded elements of a {@link de.verdox.vpipeline.api.messaging.instruction.types.StreamingQuery} to its sender.
+ * The last chunk of a stream is flagged and carries the error if the receiver could not read the result.
+ */
+@InstructionInfo(awaitsResponse = false, priority = InstructionInfo.Priority.BULK)
+public class StreamChunkPing extends Ping {
+    public static final InstructionCodec<StreamChunkPing, Boolean> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                InstructionCodec.writeUUID(instruction.streamId, out);
+                out.writeInt(instruction.sequence);
+                out.writeInt(instruction.elements);
+                out.writeBoolean(instruction.last);
+                out.writeBoolean(instruction.error != null);
+                if (instruction.error != null)
+                    InstructionCodec.writeString(instruction.error, out);
+                InstructionCodec.writeBytes(instruction.payload, out);
+            },
+            in -> new StreamChunkPing(UUID.randomUUID(), InstructionCodec.readUUID(in), in.readInt(), in.readInt(), in.readBoolean(), in.readBoolean() ? InstructionCodec.readString(in) : null, InstructionCodec.readBytes(in)),
+            InstructionCodec.ResponseCodec.NONE
+    );
+    private final UUID streamId;
+    private final int sequence;
+    private final int elements;
+    private final boolean last;
+    @Nullable
+    private final String error;
+    private final byte[] payload;
+
+    public StreamChunkPing(@NotNull UUID uuid, @NotNull UUID streamId, int sequence, int elements, boolean last, @Nullable String error, byte[] payload) {
+        super(uuid);
+        this.streamId = streamId;
+        this.sequence = sequence;
+        this.elements = elements;
+        this.last = last;
+        this.error = error;
+        this.payload = payload;
+    }
+
+    @Override
+    public void onPingReceive(MessagingService messagingService) {
+        if (messagingService instanceof MessagingServiceImpl messagingServiceImpl)
+            messagingServiceImpl.getResponseStreams().receiveChunk(this);
+    }
+
+    UUID getStreamId() {
+        return streamId;
+    }
+
+    int getSequence() {
+        return sequence;
+    }
+
+    int getElements() {
+        return elements;
+    }
+
+    boolean isLast() {
+        return last;
+    }
+
+    @Nullable
+    String getError() {
+        return error;
+    }
+
+    byte[] getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,42 @@
+package de.verdox.vpipeline.impl.messaging.stream;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Ping;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Allows the receiver of a {@link de.verdox.vpipeline.api.messaging.instruction.types.StreamingQuery} to send more chunks, or cancels the stream.
+ */
+@InstructionInfo(awaitsResponse = false, priority = InstructionInfo.Priority.HIGH)
+public class StreamCreditPing extends Ping {
+    public static final InstructionCodec<StreamCreditPing, Boolean> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                InstructionCodec.writeUUID(instruction.streamId, out);
+                out.writeInt(instruction.credits);
+                out.writeBoolean(instruction.cancel);
+            },
+            in -> new StreamCreditPing(UUID.randomUUID(), InstructionCodec.readUUID(in), in.readInt(), in.readBoolean()),
+            InstructionCodec.ResponseCodec.NONE
+    );
+    private final UUID streamId;
+    private final int credits;
+    private final boolean cancel;
+
+    public StreamCreditPing(@NotNull UUID uuid, @NotNull UUID streamId, int credits, boolean cancel) {
+        super(uuid);
+        this.streamId = streamId;
+        this.credits = credits;
+        this.cancel = cancel;
+    }
+
+    @Override
+    public void onPingReceive(MessagingService messagingService) {
+        if (messagingService instanceof MessagingServiceImpl messagingServiceImpl)
+            messagingServiceImpl.getResponseStreams().receiveCredit(getSenderUUID(), streamId, credits, cancel);
+    }
+}
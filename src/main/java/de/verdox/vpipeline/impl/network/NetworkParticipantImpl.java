@@ -1,23 +1,24 @@
 package de.verdox.vpipeline.impl.network;
 
 import de.verdox.vpipeline.api.NetworkParticipant;
-import de.verdox.vpipeline.api.pipeline.parts.cache.local.AccessInvalidException;
 import de.verdox.vpipeline.api.pipeline.parts.cache.local.DataAccess;
-import de.verdox.vpipeline.api.pipeline.parts.cache.local.LockableAction;
 import de.verdox.vpipeline.api.NetworkLogger;
 import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.RemoteMessageReceiver;
 import de.verdox.vpipeline.api.network.RemoteParticipant;
 import de.verdox.vpipeline.api.pipeline.core.Pipeline;
+import de.verdox.vpipeline.api.pipeline.parts.LocalCache;
+import de.verdox.vpipeline.api.pipeline.parts.lock.HierarchicalNetworkDataLockingService;
 import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
 import de.verdox.vpipeline.impl.pipeline.core.PipelineImpl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public record NetworkParticipantImpl(UUID uuid, String identifier, @Nullable Pipeline pipeline,
                                      @Nullable MessagingService messagingService,
@@ -32,63 +33,67 @@ public record NetworkParticipantImpl(UUID uuid, String identifier, @Nullable Pip
             pipelineImpl.setNetworkParticipant(this);
         if (messagingService instanceof MessagingServiceImpl messagingServiceImpl)
             messagingServiceImpl.setNetworkParticipant(this);
+        if (pipeline != null && messagingService != null && pipeline.getNetworkDataLockingService() instanceof HierarchicalNetworkDataLockingService lockingService)
+            lockingService.setMessagingService(messagingService);
 
         NetworkParticipant.super.connect();
         enable();
     }
 
+    /**
+     * Heartbeats are sent by the membership service of the messaging service, so nothing has to be written to the pipeline periodically
+     */
     void enable() {
-        //Check network if there is already a participant online.
-        if (pipeline != null) {
+        if (pipeline != null)
             this.pipeline.getDataRegistry().registerType(RemoteParticipantImpl.class);
-
-            if (this.pipeline.exist(RemoteParticipantImpl.class, uuid)) {
-                NetworkLogger.warning("There is already a pipeline running with this uuid");
-                shutdown();
-                return;
-            }
+        //Check network if there is already a participant online.
+        if (messagingService instanceof MessagingServiceImpl messagingServiceImpl && messagingServiceImpl.getMembershipService().isSessionUUIDShared()) {
+            NetworkLogger.warning("There is already a participant running with the identifier " + identifier);
+            shutdown();
+            return;
         }
-
-        if (this.service != null)
-            this.service.scheduleAtFixedRate(() -> {
-
-                if (this.pipeline != null) {
-                    try(LockableAction.Write<RemoteParticipantImpl> access = this.pipeline.loadOrCreate(RemoteParticipantImpl.class, uuid).write()){
-                        access.get().setIdentifier(identifier);
-                        access.commitChanges(true);
-                    }
-                    catch (AccessInvalidException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-
-                if (this.messagingService != null) {
-                    this.messagingService.sendKeepAlivePing();
-                }
-
-
-            }, 0L, 5, TimeUnit.SECONDS);
         NetworkLogger.info("Network participant up and running");
     }
 
     @Override
+    @Deprecated(forRemoval = true)
     public Set<DataAccess<? extends RemoteParticipant>> getOnlineNetworkClients() {
-        if (this.pipeline == null)
-            throw new IllegalStateException("No pipeline was instantiated");
-        return pipeline.loadAllData(RemoteParticipantImpl.class);
+        Set<DataAccess<? extends RemoteParticipant>> onlineClients = new HashSet<>();
+        onlineClients.add(getAsNetworkClient());
+        if (messagingService != null) {
+            for (RemoteMessageReceiver member : messagingService.getMembershipService().getMembers())
+                onlineClients.add(toNetworkClient(member.getUuid(), member.getIdentifier()));
+        }
+        return onlineClients;
     }
 
     @Override
+    @Deprecated(forRemoval = true)
     public DataAccess<RemoteParticipant> getOnlineNetworkClient(@NotNull String identifier) {
-        Objects.requireNonNull(pipeline);
         Objects.requireNonNull(identifier);
-        return pipeline.load(RemoteParticipantImpl.class, RemoteParticipant.getParticipantUUID(identifier));
+        if (identifier.equals(this.identifier))
+            return getAsNetworkClient();
+        if (messagingService == null)
+            return null;
+        RemoteMessageReceiver member = messagingService.getMembershipService().getMember(RemoteParticipant.getParticipantUUID(identifier));
+        return member != null ? toNetworkClient(member.getUuid(), member.getIdentifier()) : null;
     }
 
     @Override
+    @Deprecated(forRemoval = true)
     public DataAccess<RemoteParticipant> getAsNetworkClient() {
-        Objects.requireNonNull(pipeline);
-        return pipeline.load(RemoteParticipantImpl.class, uuid);
+        return toNetworkClient(uuid, identifier);
+    }
+
+    /**
+     * Participants are not written to the pipeline anymore. The deprecated lookups get a local object that is built from the membership view.
+     */
+    private DataAccess<RemoteParticipant> toNetworkClient(UUID participantUUID, String participantIdentifier) {
+        Objects.requireNonNull(pipeline, "No pipeline was instantiated");
+        LocalCache localCache = pipeline.getLocalCache();
+        if (!localCache.dataExist(RemoteParticipantImpl.class, participantUUID))
+            localCache.saveObject(new RemoteParticipantImpl(pipeline, participantUUID).setIdentifier(participantIdentifier));
+        return localCache.createAccess(RemoteParticipantImpl.class, participantUUID);
     }
 
     @Override
@@ -104,7 +109,11 @@ public record NetworkParticipantImpl(UUID uuid, String identifier, @Nullable Pip
     @Override
     public void shutdown() {
         if (this.pipeline != null) {
-            this.pipeline.delete(RemoteParticipantImpl.class, uuid);
+            // Removes the participant object that older versions kept in the pipeline. Can be dropped in the next release.
+            if (this.pipeline.getDataRegistry().isTypeRegistered(RemoteParticipantImpl.class))
+                this.pipeline.delete(RemoteParticipantImpl.class, uuid);
+            if (this.messagingService != null && this.messagingService.getCacheHandoff().isEnabled())
+                this.messagingService.getCacheHandoff().drain();
             pipeline.shutdown();
         }
         if (this.messagingService != null)
@@ -0,0 +1,44 @@
+package de.verdox.vpipeline.impl.ownership;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Update;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Forwards a serialized {@link de.verdox.vpipeline.api.ownership.ObjectMutation} to the owner of an object.
+ * The owner answers {@link UpdateCompletion#NOT_DONE} if it does not own the object anymore and {@link UpdateCompletion#CANCELLED} if the object does not exist.
+ */
+public class ForwardedMutationUpdate extends Update {
+    public static final InstructionCodec<ForwardedMutationUpdate, UpdateCompletion> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                InstructionCodec.writeUUID(instruction.owner, out);
+                out.writeUTF(instruction.dataStorageIdentifier);
+                InstructionCodec.writeUUID(instruction.objectUUID, out);
+                InstructionCodec.writeBytes(instruction.mutation, out);
+            },
+            in -> new ForwardedMutationUpdate(UUID.randomUUID(), InstructionCodec.readUUID(in), in.readUTF(), InstructionCodec.readUUID(in), InstructionCodec.readBytes(in)),
+            InstructionCodec.ResponseCodec.UPDATE_COMPLETION
+    );
+    private final UUID owner;
+    private final String dataStorageIdentifier;
+    private final UUID objectUUID;
+    private final byte[] mutation;
+
+    public ForwardedMutationUpdate(@NotNull UUID uuid, @NotNull UUID owner, @NotNull String dataStorageIdentifier, @NotNull UUID objectUUID, byte[] mutation) {
+        super(uuid);
+        this.owner = owner;
+        this.dataStorageIdentifier = dataStorageIdentifier;
+        this.objectUUID = objectUUID;
+        this.mutation = mutation;
+    }
+
+    @Override
+    public UpdateCompletion onInstructionReceive(MessagingService messagingService) {
+        if (!owner.equals(messagingService.getSessionUUID()))
+            return UpdateCompletion.NOT_DONE;
+        return ((OwnershipRegistryImpl) messagingService.getOwnershipRegistry()).applyForwarded(dataStorageIdentifier, objectUUID, mutation);
+    }
+}
@@ -0,0 +1,22 @@
+package de.verdox.vpipeline.impl.ownership;
+
+import de.verdox.vpipeline.api.pipeline.annotations.DataStorageIdentifier;
+import de.verdox.vpipeline.api.pipeline.annotations.PipelineDataProperties;
+import de.verdox.vpipeline.api.pipeline.core.Pipeline;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineData;
+import de.verdox.vpipeline.api.pipeline.enums.DataContext;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * The ownership record of an object. Records are only kept in the global cache and never loaded into the local cache.
+ * Their network write lock serializes ownership claims.
+ */
+@PipelineDataProperties(dataContext = DataContext.CACHE_ONLY)
+@DataStorageIdentifier(identifier = "network.ObjectOwnership")
+public class ObjectOwnership extends PipelineData {
+    public ObjectOwnership(@NotNull Pipeline pipeline, @NotNull UUID objectUUID) {
+        super(pipeline, objectUUID);
+    }
+}
@@ -0,0 +1,42 @@
+package de.verdox.vpipeline.impl.ownership;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Ping;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+
+/**
+ * Tells all nodes that an object has a new owner, so they forward their writes to it.
+ */
+@InstructionInfo(awaitsResponse = false, priority = InstructionInfo.Priority.HIGH)
+public class OwnerChangedPing extends Ping {
+    public static final InstructionCodec<OwnerChangedPing, Boolean> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                out.writeUTF(instruction.dataStorageIdentifier);
+                InstructionCodec.writeUUID(instruction.objectUUID, out);
+                InstructionCodec.writeNullableUUID(instruction.newOwner, out);
+            },
+            in -> new OwnerChangedPing(UUID.randomUUID(), in.readUTF(), InstructionCodec.readUUID(in), InstructionCodec.readNullableUUID(in)),
+            InstructionCodec.ResponseCodec.NONE
+    );
+    private final String dataStorageIdentifier;
+    private final UUID objectUUID;
+    @Nullable
+    private final UUID newOwner;
+
+    public OwnerChangedPing(@NotNull UUID uuid, @NotNull String dataStorageIdentifier, @NotNull UUID objectUUID, @Nullable UUID newOwner) {
+        super(uuid);
+        this.dataStorageIdentifier = dataStorageIdentifier;
+        this.objectUUID = objectUUID;
+        this.newOwner = newOwner;
+    }
+
+    @Override
+    public void onPingReceive(MessagingService messagingService) {
+        ((OwnershipRegistryImpl) messagingService.getOwnershipRegistry()).onOwnerChanged(dataStorageIdentifier, objectUUID, newOwner);
+    }
+}
@@ -0,0 +1,50 @@
+package de.verdox.vpipeline.impl.ownership;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Query;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * Asks the owner of an object to hand it over to the sender.
+ */
+@InstructionInfo(awaitsResponse = true, priority = InstructionInfo.Priority.HIGH)
+public class OwnershipHandoverQuery extends Query<Boolean> {
+    public static final InstructionCodec<OwnershipHandoverQuery, Boolean> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                InstructionCodec.writeUUID(instruction.owner, out);
+                InstructionCodec.writeUUID(instruction.requester, out);
+                out.writeUTF(instruction.dataStorageIdentifier);
+                InstructionCodec.writeUUID(instruction.objectUUID, out);
+            },
+            in -> new OwnershipHandoverQuery(UUID.randomUUID(), InstructionCodec.readUUID(in), InstructionCodec.readUUID(in), in.readUTF(), InstructionCodec.readUUID(in)),
+            InstructionCodec.ResponseCodec.BOOLEAN
+    );
+    private final UUID owner;
+    private final UUID requester;
+    private final String dataStorageIdentifier;
+    private final UUID objectUUID;
+
+    public OwnershipHandoverQuery(@NotNull UUID uuid, @NotNull UUID owner, @NotNull UUID requester, @NotNull String dataStorageIdentifier, @NotNull UUID objectUUID) {
+        super(uuid);
+        this.owner = owner;
+        this.requester = requester;
+        this.dataStorageIdentifier = dataStorageIdentifier;
+        this.objectUUID = objectUUID;
+    }
+
+    @Override
+    public Boolean onInstructionReceive(MessagingService messagingService) {
+        if (!owner.equals(messagingService.getSessionUUID()))
+            return null;
+        return ((OwnershipRegistryImpl) messagingService.getOwnershipRegistry()).handOver(dataStorageIdentifier, objectUUID, requester);
+    }
+
+    @Override
+    public void onResponseReceive(MessagingService messagingService, Boolean response) {
+
+    }
+}
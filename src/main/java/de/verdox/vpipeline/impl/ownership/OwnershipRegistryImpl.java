@@ -0,0 +1,373 @@
+package de.verdox.vpipeline.impl.ownership;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.instruction.types.Update;
+import de.verdox.vpipeline.api.ownership.ObjectMutation;
+import de.verdox.vpipeline.api.ownership.OwnershipRegistry;
+import de.verdox.vpipeline.api.pipeline.core.Pipeline;
+import de.verdox.vpipeline.api.pipeline.core.PipelineSynchronizer;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineDataKey;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalCache;
+import de.verdox.vpipeline.api.util.AnnotationResolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
+
+public class OwnershipRegistryImpl implements OwnershipRegistry {
+    private static final int WRITE_ATTEMPTS = 3;
+    private static final long RESPONSE_TIMEOUT_MILLIS = 5000;
+
+    private final Map<String, Supplier<? extends ObjectMutation<?>>> mutationConstructors = new ConcurrentHashMap<>();
+    private final Map<Class<?>, String> mutationTypeToIdMapping = new ConcurrentHashMap<>();
+    /**
+     * The last known owner of each object. Updated by claims and {@link OwnerChangedPing}s.
+     */
+    private final Map<PipelineDataKey, UUID> owners = new ConcurrentHashMap<>();
+    /**
+     * The epoch of every object this node claimed. A write is only applied while the record still names this node with the same epoch.
+     */
+    private final Map<PipelineDataKey, Long> ownedEpochs = new ConcurrentHashMap<>();
+    private final MessagingService messagingService;
+
+    public OwnershipRegistryImpl(MessagingService messagingService) {
+        this.messagingService = messagingService;
+    }
+
+    @Override
+    public <M extends ObjectMutation<?>> void registerMutationType(@NotNull String id, @NotNull Class<? extends M> type, @NotNull Supplier<M> constructor) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(constructor);
+        if (mutationConstructors.containsKey(id))
+            throw new IllegalArgumentException("Mutation with id " + id + " already registered");
+        mutationConstructors.put(id, constructor);
+        mutationTypeToIdMapping.put(type, id);
+    }
+
+    @Override
+    public @Nullable UUID getOwner(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid) {
+        return findOwner(PipelineDataKey.of(type, uuid));
+    }
+
+    @Override
+    public boolean isOwner(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid) {
+        return messagingService.getSessionUUID().equals(owners.get(PipelineDataKey.of(type, uuid)));
+    }
+
+    @Override
+    public boolean claim(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid) {
+        PipelineDataKey key = PipelineDataKey.of(type, uuid);
+        UUID self = messagingService.getSessionUUID();
+        Lock recordLock = getRecordLock(key);
+        recordLock.lock();
+        try {
+            OwnershipRecord previousRecord = loadRecord(key);
+            UUID previousOwner = previousRecord.owner();
+            if (self.equals(previousOwner) && ownedEpochs.getOrDefault(key, -1L) == previousRecord.epoch()) {
+                owners.put(key, self);
+                return true;
+            }
+            // An owner that does not answer is treated as offline. If it is still alive, the new epoch makes it reject its next write.
+            if (previousOwner != null && !self.equals(previousOwner) && !requestHandover(key, previousOwner))
+                NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Owner " + previousOwner + " did not hand over " + type.getSimpleName() + " [" + uuid + "]. Taking it over.");
+            long epoch = previousRecord.epoch() + 1;
+            saveRecord(key, new OwnershipRecord(self, epoch));
+            ownedEpochs.put(key, epoch);
+            owners.put(key, self);
+            // Our local copy may be older than the data the previous owner saved
+            if (previousOwner != null)
+                refreshLocalCopy(key);
+            messagingService.sendInstruction(new OwnerChangedPing(UUID.randomUUID(), AnnotationResolver.getDataStorageIdentifier(type), uuid, self));
+            if (AnnotationResolver.getDataProperties(type).debugMode())
+                NetworkLogger.debug("[" + messagingService.getSessionIdentifier() + "] Claimed " + type.getSimpleName() + " [" + uuid + "] from " + previousOwner);
+            return true;
+        } finally {
+            recordLock.unlock();
+        }
+    }
+
+    @Override
+    public void release(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid) {
+        PipelineDataKey key = PipelineDataKey.of(type, uuid);
+        UUID self = messagingService.getSessionUUID();
+        Lock recordLock = getRecordLock(key);
+        recordLock.lock();
+        try {
+            OwnershipRecord record = loadRecord(key);
+            if (!self.equals(record.owner()))
+                return;
+            Lock localLock = getLocalWriteLock(type, uuid);
+            localLock.lock();
+            try {
+                owners.remove(key);
+                ownedEpochs.remove(key);
+                getPipeline().getPipelineSynchronizer().sync(type, uuid, true);
+            } finally {
+                localLock.unlock();
+            }
+            // The epoch is kept, so the next owner gets a new one
+            saveRecord(key, new OwnershipRecord(null, record.epoch()));
+            messagingService.sendInstruction(new OwnerChangedPing(UUID.randomUUID(), AnnotationResolver.getDataStorageIdentifier(type), uuid, null));
+        } finally {
+            recordLock.unlock();
+        }
+    }
+
+    @Override
+    public <T extends IPipelineData> CompletableFuture<Boolean> write(@NotNull Class<? extends T> type, @NotNull UUID uuid, @NotNull ObjectMutation<T> mutation) {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(uuid);
+        Objects.requireNonNull(mutation);
+        if (!mutationTypeToIdMapping.containsKey(mutation.getClass()))
+            throw new IllegalArgumentException("Mutation type " + mutation.getClass().getName() + " not registered");
+        return write(PipelineDataKey.of(type, uuid), mutation, 0);
+    }
+
+    private CompletableFuture<Boolean> write(@NotNull PipelineDataKey key, @NotNull ObjectMutation<?> mutation, int attempt) {
+        UUID self = messagingService.getSessionUUID();
+        UUID owner = findOwner(key);
+        // The record may still name this node from an earlier session that this node has no epoch for
+        if (owner == null || (owner.equals(self) && !ownedEpochs.containsKey(key))) {
+            if (!claim(key.type(), key.uuid()))
+                return CompletableFuture.completedFuture(false);
+            owner = self;
+        }
+
+        if (owner.equals(self)) {
+            Update.UpdateCompletion completion = applyLocally(key, mutation);
+            if (completion != Update.UpdateCompletion.NOT_DONE)
+                return CompletableFuture.completedFuture(completion == Update.UpdateCompletion.DONE);
+            return retry(key, mutation, attempt, self);
+        }
+
+        UUID forwardTo = owner;
+        // A late answer does not tell whether the owner applied the mutation, so it is not applied again here
+        return messagingService
+                .sendInstruction(new ForwardedMutationUpdate(UUID.randomUUID(), forwardTo, AnnotationResolver.getDataStorageIdentifier(key.type()), key.uuid(), serialize(mutation)), forwardTo)
+                .firstMatching(Objects::nonNull, Duration.ofMillis(RESPONSE_TIMEOUT_MILLIS))
+                .thenComposeAsync(completion -> {
+                    if (completion == Update.UpdateCompletion.DONE)
+                        return CompletableFuture.completedFuture(true);
+                    if (completion == Update.UpdateCompletion.CANCELLED)
+                        return CompletableFuture.completedFuture(false);
+                    if (completion == null)
+                        return CompletableFuture.<Boolean>failedFuture(new TimeoutException("Owner " + forwardTo + " of " + key.type().getSimpleName() + " [" + key.uuid() + "] did not answer within " + RESPONSE_TIMEOUT_MILLIS + "ms"));
+                    return retry(key, mutation, attempt, forwardTo);
+                });
+    }
+
+    /**
+     * Called if the assumed owner did not apply a mutation because it does not own the object anymore
+     */
+    private CompletableFuture<Boolean> retry(@NotNull PipelineDataKey key, @NotNull ObjectMutation<?> mutation, int attempt, @NotNull UUID assumedOwner) {
+        owners.remove(key, assumedOwner);
+        if (attempt + 1 >= WRITE_ATTEMPTS) {
+            NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Could not write " + key.type().getSimpleName() + " [" + key.uuid() + "] after " + WRITE_ATTEMPTS + " attempts");
+            return CompletableFuture.completedFuture(false);
+        }
+        return write(key, mutation, attempt + 1);
+    }
+
+    /**
+     * Applies a mutation that was forwarded by another node
+     */
+    Update.UpdateCompletion applyForwarded(@NotNull String dataStorageIdentifier, @NotNull UUID objectUUID, byte[] data) {
+        Class<? extends IPipelineData> type = getPipeline().getDataRegistry().getTypeByStorageId(dataStorageIdentifier);
+        if (type == null)
+            return Update.UpdateCompletion.CANCELLED;
+        ByteArrayDataInput in = ByteStreams.newDataInput(data);
+        Supplier<? extends ObjectMutation<?>> constructor = mutationConstructors.get(in.readUTF());
+        if (constructor == null)
+            return Update.UpdateCompletion.CANCELLED;
+        ObjectMutation<?> mutation = constructor.get();
+        mutation.readInputParameter(in);
+        return applyLocally(PipelineDataKey.of(type, objectUUID), mutation);
+    }
+
+    /**
+     * Hands an owned object over to another node. Running local writes are finished and the object is saved first.
+     */
+    boolean handOver(@NotNull String dataStorageIdentifier, @NotNull UUID objectUUID, @NotNull UUID requester) {
+        Class<? extends IPipelineData> type = getPipeline().getDataRegistry().getTypeByStorageId(dataStorageIdentifier);
+        if (type == null)
+            return true;
+        Lock localLock = getLocalWriteLock(type, objectUUID);
+        localLock.lock();
+        try {
+            owners.put(PipelineDataKey.of(type, objectUUID), requester);
+            ownedEpochs.remove(PipelineDataKey.of(type, objectUUID));
+            getPipeline().getPipelineSynchronizer().sync(type, objectUUID, true);
+            return true;
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    void onOwnerChanged(@NotNull String dataStorageIdentifier, @NotNull UUID objectUUID, @Nullable UUID newOwner) {
+        Class<? extends IPipelineData> type = getPipeline().getDataRegistry().getTypeByStorageId(dataStorageIdentifier);
+        if (type == null)
+            return;
+        PipelineDataKey key = PipelineDataKey.of(type, objectUUID);
+        if (!messagingService.getSessionUUID().equals(newOwner))
+            ownedEpochs.remove(key);
+        if (newOwner == null)
+            owners.remove(key);
+        else
+            owners.put(key, newOwner);
+    }
+
+    /**
+     * Applies a mutation to the local copy of an owned object and pushes the result to the global cache.
+     * The storage is written when the ownership is handed over or released, or when the object is saved.
+     * <p>
+     * The ownership record is checked first, so an owner that was taken over without answering rejects the write instead of writing next to the new owner.
+     * A takeover between this check and the push to the global cache is not fenced. It only happens if the old owner did not answer the handover in time.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends IPipelineData> Update.UpdateCompletion applyLocally(@NotNull PipelineDataKey key, @NotNull ObjectMutation<T> mutation) {
+        Pipeline pipeline = getPipeline();
+        Lock localLock = getLocalWriteLock(key.type(), key.uuid());
+        localLock.lock();
+        try {
+            if (!isOwner(key.type(), key.uuid()))
+                return Update.UpdateCompletion.NOT_DONE;
+            if (!hasCurrentEpoch(key)) {
+                NetworkLogger.warning("[" + messagingService.getSessionIdentifier() + "] Lost the ownership of " + key.type().getSimpleName() + " [" + key.uuid() + "] without a handover");
+                owners.remove(key, messagingService.getSessionUUID());
+                ownedEpochs.remove(key);
+                return Update.UpdateCompletion.NOT_DONE;
+            }
+            // Only the first access of an object needs the pipeline read lock to load it
+            if (!pipeline.getLocalCache().dataExist(key.type(), key.uuid()) && pipeline.load(key.type(), key.uuid()) == null)
+                return Update.UpdateCompletion.CANCELLED;
+            T data = (T) pipeline.getLocalCache().loadObject(key.type(), key.uuid());
+            if (data == null)
+                return Update.UpdateCompletion.CANCELLED;
+            mutation.accept(data);
+            pipeline.getPipelineSynchronizer().sync(data, false);
+            pipeline.getLocalCache().notifySubscribers(data);
+            return Update.UpdateCompletion.DONE;
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    private boolean requestHandover(@NotNull PipelineDataKey key, @NotNull UUID owner) {
+        Boolean handedOver = messagingService
+                .sendInstruction(new OwnershipHandoverQuery(UUID.randomUUID(), owner, messagingService.getSessionUUID(), AnnotationResolver.getDataStorageIdentifier(key.type()), key.uuid()), owner)
+                .firstMatching(Objects::nonNull, Duration.ofMillis(RESPONSE_TIMEOUT_MILLIS))
+                .exceptionally(throwable -> false)
+                .join();
+        return Boolean.TRUE.equals(handedOver);
+    }
+
+    private void refreshLocalCopy(@NotNull PipelineDataKey key) {
+        Pipeline pipeline = getPipeline();
+        if (!pipeline.getLocalCache().dataExist(key.type(), key.uuid()))
+            return;
+        if (!pipeline.getPipelineSynchronizer().synchronizePipelineData(PipelineSynchronizer.DataSourceType.GLOBAL_CACHE, PipelineSynchronizer.DataSourceType.LOCAL, key.type(), key.uuid()))
+            pipeline.getPipelineSynchronizer().synchronizePipelineData(PipelineSynchronizer.DataSourceType.GLOBAL_STORAGE, PipelineSynchronizer.DataSourceType.LOCAL, key.type(), key.uuid());
+    }
+
+    private boolean hasCurrentEpoch(@NotNull PipelineDataKey key) {
+        Long epoch = ownedEpochs.get(key);
+        if (epoch == null)
+            return false;
+        OwnershipRecord record = loadRecord(key);
+        return messagingService.getSessionUUID().equals(record.owner()) && record.epoch() == epoch;
+    }
+
+    private @Nullable UUID findOwner(@NotNull PipelineDataKey key) {
+        UUID owner = owners.get(key);
+        if (owner != null)
+            return owner;
+        owner = loadRecord(key).owner();
+        if (owner != null)
+            owners.put(key, owner);
+        return owner;
+    }
+
+    /**
+     * Ownership records are kept in the global cache. Without a global cache this node is the only one that knows about its objects.
+     */
+    private @NotNull OwnershipRecord loadRecord(@NotNull PipelineDataKey key) {
+        GlobalCache globalCache = getPipeline().getGlobalCache();
+        if (globalCache == null)
+            return new OwnershipRecord(owners.get(key), ownedEpochs.getOrDefault(key, 0L));
+        UUID recordUUID = getRecordUUID(key);
+        if (!globalCache.dataExist(ObjectOwnership.class, recordUUID))
+            return new OwnershipRecord(null, 0);
+        JsonElement record = globalCache.loadData(ObjectOwnership.class, recordUUID);
+        if (record == null || !record.isJsonObject())
+            return new OwnershipRecord(null, 0);
+        JsonObject jsonObject = record.getAsJsonObject();
+        return new OwnershipRecord(
+                jsonObject.has("owner") ? UUID.fromString(jsonObject.get("owner").getAsString()) : null,
+                jsonObject.has("epoch") ? jsonObject.get("epoch").getAsLong() : 0
+        );
+    }
+
+    private void saveRecord(@NotNull PipelineDataKey key, @NotNull OwnershipRecord ownershipRecord) {
+        GlobalCache globalCache = getPipeline().getGlobalCache();
+        if (globalCache == null)
+            return;
+        JsonObject record = new JsonObject();
+        if (ownershipRecord.owner() != null)
+            record.addProperty("owner", ownershipRecord.owner().toString());
+        record.addProperty("epoch", ownershipRecord.epoch());
+        globalCache.save(ObjectOwnership.class, getRecordUUID(key), record);
+    }
+
+    /**
+     * Owned objects are written with the local lock of the pipeline, so mutations, handovers and local {@link de.verdox.vpipeline.api.pipeline.parts.cache.local.DataAccess} writes exclude each other.
+     * The local lock is never shared across the network.
+     */
+    private Lock getLocalWriteLock(@NotNull Class<? extends IPipelineData> type, @NotNull UUID uuid) {
+        return getPipeline().getLocalLockingService().getWriteLock(type, uuid);
+    }
+
+    private Lock getRecordLock(@NotNull PipelineDataKey key) {
+        return getPipeline().getNetworkDataLockingService().getWriteLock(ObjectOwnership.class, getRecordUUID(key));
+    }
+
+    private static UUID getRecordUUID(@NotNull PipelineDataKey key) {
+        return UUID.nameUUIDFromBytes((AnnotationResolver.getDataStorageClassifier(key.type()) + ":" + AnnotationResolver.getDataStorageIdentifier(key.type()) + ":" + key.uuid()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] serialize(@NotNull ObjectMutation<?> mutation) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeUTF(mutationTypeToIdMapping.get(mutation.getClass()));
+        mutation.writeInputParameter(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param owner the owning node or null if the object is not owned
+     * @param epoch increased on every claim, so a node that was taken over can tell that its ownership is outdated
+     */
+    private record OwnershipRecord(@Nullable UUID owner, long epoch) {
+    }
+
+    private Pipeline getPipeline() {
+        if (messagingService.getNetworkParticipant() == null || messagingService.getNetworkParticipant().pipeline() == null)
+            throw new IllegalStateException("Ownership needs a network participant with a pipeline");
+        return messagingService.getNetworkParticipant().pipeline();
+    }
+}
@@ -12,8 +12,11 @@ import de.verdox.vpipeline.api.pipeline.parts.LocalCache;
 import de.verdox.vpipeline.api.pipeline.parts.synchronizer.pipeline.DummySynchronizingService;
 import de.verdox.vpipeline.impl.pipeline.core.PipelineImpl;
 import de.verdox.vpipeline.api.pipeline.parts.cache.local.HashedLocalCache;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.LocalCacheSnapshot;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.function.Consumer;
 
 public class PipelineBuilderImpl implements PipelineBuilder {
@@ -23,6 +26,8 @@ public class PipelineBuilderImpl implements PipelineBuilder {
     private NetworkDataLockingService networkDataLockingService = NetworkDataLockingService.createDummy();
     private Consumer<GsonBuilder> gsonBuilderConsumer;
     private LocalCache localCache = new HashedLocalCache();
+    private LocalCacheSnapshot localCacheSnapshot;
+    private Duration peerFetchTimeout;
 
     public PipelineBuilder withLocalCache(LocalCache localCache) {
         this.localCache = localCache;
@@ -61,13 +66,26 @@ public class PipelineBuilderImpl implements PipelineBuilder {
         return this;
     }
 
+    @Override
+    public PipelineBuilder withLocalCacheSnapshot(@NotNull Path snapshotFile) {
+        this.localCacheSnapshot = new LocalCacheSnapshot(snapshotFile);
+        return this;
+    }
+
+    @Override
+    public PipelineBuilder withPeerFetch(@NotNull Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero())
+            throw new IllegalArgumentException("The peer fetch timeout has to be positive");
+        this.peerFetchTimeout = timeout;
+        return this;
+    }
 
     public Pipeline buildPipeline() {
         if (globalStorage == null && globalCache == null)
             NetworkLogger.warning("Both globalCache and globalStorage were not set during pipeline building phase.");
         if (synchronizingService == null && globalCache != null)
             NetworkLogger.warning("A globalCache but no synchronizing service was set during pipeline building phase.");
-        return new PipelineImpl(localCache, networkDataLockingService, globalCache, globalStorage, synchronizingService, gsonBuilderConsumer);
+        return new PipelineImpl(localCache, networkDataLockingService, globalCache, globalStorage, synchronizingService, gsonBuilderConsumer, localCacheSnapshot, peerFetchTimeout);
     }
 
     private void checkStorage() {
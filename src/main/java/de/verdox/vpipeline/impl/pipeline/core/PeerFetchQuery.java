@@ -0,0 +1,63 @@
+package de.verdox.vpipeline.impl.pipeline.core;
+
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.Query;
+import de.verdox.vpipeline.api.pipeline.core.Pipeline;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Asks the other nodes for the serialized state of an object in their local cache.
+ * Nodes that don't hold the object answer with null.
+ * The local copy is read under the local read lock of the pipeline. The network lock of the sender does not keep local writers out,
+ * since optimistic writes, owned writes and local locking services don't take the network write lock of the object.
+ */
+@InstructionInfo(awaitsResponse = true, priority = InstructionInfo.Priority.HIGH)
+public class PeerFetchQuery extends Query<String> {
+    public static final InstructionCodec<PeerFetchQuery, String> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                out.writeUTF(instruction.dataStorageIdentifier);
+                InstructionCodec.writeUUID(instruction.objectUUID, out);
+            },
+            in -> new PeerFetchQuery(UUID.randomUUID(), in.readUTF(), InstructionCodec.readUUID(in)),
+            InstructionCodec.ResponseCodec.STRING
+    );
+    private final String dataStorageIdentifier;
+    private final UUID objectUUID;
+
+    public PeerFetchQuery(@NotNull UUID uuid, @NotNull String dataStorageIdentifier, @NotNull UUID objectUUID) {
+        super(uuid);
+        this.dataStorageIdentifier = dataStorageIdentifier;
+        this.objectUUID = objectUUID;
+    }
+
+    @Override
+    public String onInstructionReceive(MessagingService messagingService) {
+        if (messagingService.getNetworkParticipant() == null)
+            return null;
+        Pipeline pipeline = messagingService.getNetworkParticipant().pipeline();
+        if (pipeline == null)
+            return null;
+        Class<? extends IPipelineData> type = pipeline.getDataRegistry().getTypeByStorageId(dataStorageIdentifier);
+        if (type == null || !pipeline.getLocalCache().dataExist(type, objectUUID))
+            return null;
+        Lock readLock = pipeline.getLocalLockingService().getReadLock(type, objectUUID);
+        readLock.lock();
+        try {
+            var data = pipeline.getLocalCache().loadData(type, objectUUID);
+            return data != null ? data.toString() : null;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void onResponseReceive(MessagingService messagingService, String response) {
+
+    }
+}
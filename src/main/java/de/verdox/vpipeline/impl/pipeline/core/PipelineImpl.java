@@ -1,11 +1,15 @@
 package de.verdox.vpipeline.impl.pipeline.core;
 
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import de.verdox.vpipeline.api.messaging.instruction.ResponseCollector;
 import de.verdox.vpipeline.api.pipeline.parts.cache.local.DataAccess;
 import de.verdox.vpipeline.api.NetworkLogger;
 import de.verdox.vpipeline.api.NetworkParticipant;
 import de.verdox.vpipeline.api.pipeline.annotations.PipelineDataProperties;
 import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.core.LoadMetrics;
 import de.verdox.vpipeline.api.pipeline.core.Pipeline;
 import de.verdox.vpipeline.api.pipeline.core.PipelineSynchronizer;
 import de.verdox.vpipeline.api.pipeline.datatypes.DataRegistry;
@@ -16,20 +20,39 @@ import de.verdox.vpipeline.api.pipeline.parts.GlobalCache;
 import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
 import de.verdox.vpipeline.api.pipeline.parts.LocalCache;
 import de.verdox.vpipeline.api.pipeline.parts.cache.local.DataSubscriber;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineData;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineDataKey;
+import de.verdox.vpipeline.api.pipeline.datatypes.ReadConsistency;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.MultiWrite;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.LocalCacheSnapshot;
+import de.verdox.vpipeline.api.pipeline.parts.lock.DummyNetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.lock.LockMetrics;
+import de.verdox.vpipeline.api.pipeline.parts.lock.OrderedMultiLock;
 import de.verdox.vpipeline.api.util.AnnotationResolver;
 import de.verdox.vpipeline.impl.pipeline.datatypes.DataRegistryImpl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class PipelineImpl implements Pipeline {
+    private static final int OPTIMISTIC_WRITE_ATTEMPTS = 8;
     private final GlobalStorage globalStorage;
     private final GlobalCache globalCache;
     private final LocalCache localCache;
@@ -39,10 +62,37 @@ public class PipelineImpl implements Pipeline {
     private NetworkParticipant networkParticipant;
     private boolean ready;
     private final NetworkDataLockingService networkDataLockingService;
+    /**
+     * Guards the local copies of the objects on this node. Taken before the network lock of an object.
+     */
+    private final DummyNetworkDataLockingService localLockingService = DummyNetworkDataLockingService.perObject();
     private final Consumer<GsonBuilder> gsonBuilderConsumer;
+    @Nullable
+    private final LocalCacheSnapshot localCacheSnapshot;
+    private final LockMetrics lockMetrics = new LockMetrics();
+    private final LoadMetrics loadMetrics = new LoadMetrics();
+    /**
+     * How long a load waits for other nodes to answer with their local copy before it falls back to the global storage. Null if peers are not asked.
+     */
+    @Nullable
+    private final Duration peerFetchTimeout;
+    /**
+     * The global cache versions the local objects had after this node committed them with an optimistic write
+     */
+    private final Map<Class<? extends IPipelineData>, Map<UUID, Long>> committedVersions = new ConcurrentHashMap<>();
+    /**
+     * The time in millis when the local objects were last loaded from or saved to the global cache or storage
+     */
+    private final Map<Class<? extends IPipelineData>, Map<UUID, Long>> lastSyncTimes = new ConcurrentHashMap<>();
 
     public PipelineImpl(@NotNull LocalCache localCache, @NotNull NetworkDataLockingService networkDataLockingService, @Nullable GlobalCache globalCache, @Nullable GlobalStorage globalStorage, @Nullable SynchronizingService synchronizingService, @Nullable Consumer<GsonBuilder> gsonBuilderConsumer) {
+        this(localCache, networkDataLockingService, globalCache, globalStorage, synchronizingService, gsonBuilderConsumer, null, null);
+    }
+
+    public PipelineImpl(@NotNull LocalCache localCache, @NotNull NetworkDataLockingService networkDataLockingService, @Nullable GlobalCache globalCache, @Nullable GlobalStorage globalStorage, @Nullable SynchronizingService synchronizingService, @Nullable Consumer<GsonBuilder> gsonBuilderConsumer, @Nullable LocalCacheSnapshot localCacheSnapshot, @Nullable Duration peerFetchTimeout) {
         this.networkDataLockingService = networkDataLockingService;
+        this.localCacheSnapshot = localCacheSnapshot;
+        this.peerFetchTimeout = peerFetchTimeout;
         this.gsonBuilderConsumer = gsonBuilderConsumer;
         this.globalStorage = globalStorage;
         this.globalCache = globalCache;
@@ -68,6 +118,8 @@ public class PipelineImpl implements Pipeline {
     @Override
     public void connect() {
         Pipeline.super.connect();
+        if (localCacheSnapshot != null)
+            localCacheSnapshot.load();
         NetworkLogger.info("Pipeline started");
     }
 
@@ -115,6 +167,21 @@ public class PipelineImpl implements Pipeline {
         return networkDataLockingService;
     }
 
+    @Override
+    public @NotNull NetworkDataLockingService getLocalLockingService() {
+        return localLockingService;
+    }
+
+    @Override
+    public @NotNull LockMetrics getLockMetrics() {
+        return lockMetrics;
+    }
+
+    @Override
+    public @NotNull LoadMetrics getLoadMetrics() {
+        return loadMetrics;
+    }
+
     @Override
     public @NotNull DataRegistry getDataRegistry() {
         return dataRegistry;
@@ -136,7 +203,37 @@ public class PipelineImpl implements Pipeline {
                 .getAllTypes()
                 .forEach(type -> getLocalCache()
                         .getSavedUUIDs(type)
-                        .forEach(uuid -> sync(type, uuid)));
+                        .forEach(uuid -> sync(type, uuid, null, null)));
+    }
+
+    /**
+     * Saves all objects like {@link #saveAll()} and passes every saved object to the handoff before it is removed from the local cache.
+     *
+     * @param handoff receives the saved objects
+     */
+    public void saveAll(@NotNull Consumer<IPipelineData> handoff) {
+        Objects.requireNonNull(handoff);
+        dataRegistry
+                .getAllTypes()
+                .forEach(type -> getLocalCache()
+                        .getSavedUUIDs(type)
+                        .forEach(uuid -> sync(type, uuid, null, handoff)));
+    }
+
+    /**
+     * Puts an object that another node handed over into the local cache. Objects that are already loaded on this node are kept.
+     *
+     * @param dataClass the data class
+     * @param uuid      the uuid of the data
+     * @param data      the serialized object
+     * @return true if the object was put into the local cache
+     */
+    public boolean importFromPeer(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid, @NotNull JsonElement data) {
+        if (localCache.dataExist(dataClass, uuid))
+            return false;
+        localCache.save(dataClass, uuid, data);
+        markSynced(dataClass, uuid);
+        return true;
     }
 
     @Override
@@ -148,18 +245,69 @@ public class PipelineImpl implements Pipeline {
 
     @Override
     public <T extends IPipelineData> @Nullable DataAccess<T> load(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid) {
-        Objects.requireNonNull(dataClass, "dataClass can't be null");
-        Objects.requireNonNull(uuid, "uuid can't be null");
-        if (!getDataRegistry().isTypeRegistered(dataClass))
-            throw new IllegalStateException("dataclass " + dataClass.getSimpleName() + " not registered in pipeline data registry");
-
-        Lock readLock = getNetworkDataLockingService().getReadLock(dataClass, uuid);
+        checkRegistered(dataClass, uuid);
+        Lock readLock = getReadLock(dataClass, uuid);
         readLock.lock();
         try {
-            T data = tryLoad(dataClass, uuid);
-            if (data == null)
+            return loadLocked(dataClass, uuid);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public <T extends IPipelineData> @Nullable DataAccess<T> load(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @NotNull Duration timeout) throws TimeoutException, InterruptedException {
+        checkRegistered(dataClass, uuid);
+        Objects.requireNonNull(timeout, "timeout can't be null");
+        Lock readLock = getReadLock(dataClass, uuid);
+        acquire(readLock, dataClass, uuid, System.nanoTime() + timeout.toNanos());
+        try {
+            return loadLocked(dataClass, uuid);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public <T extends IPipelineData> @Nullable DataAccess<T> load(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @NotNull ReadConsistency consistency) {
+        checkRegistered(dataClass, uuid);
+        Objects.requireNonNull(consistency, "consistency can't be null");
+        long start = System.nanoTime();
+        try {
+            if (consistency.level() == ReadConsistency.Level.LINEARIZABLE || !localCache.dataExist(dataClass, uuid))
+                return load(dataClass, uuid);
+            if (consistency.level() == ReadConsistency.Level.BOUNDED && !revalidate(dataClass, uuid, consistency.bound()))
                 return null;
-            return createAccess(data);
+            T data = localCache.loadObject(dataClass, uuid);
+            return data != null ? createAccess(data) : null;
+        } finally {
+            lockMetrics.recordRead(dataClass, consistency.level(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T extends IPipelineData> boolean revalidate(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @NotNull Duration maxStaleness) {
+        checkRegistered(dataClass, uuid);
+        Objects.requireNonNull(maxStaleness, "maxStaleness can't be null");
+        Long lastSync = lastSyncTimes.getOrDefault(dataClass, Map.of()).get(uuid);
+        if (lastSync != null && System.currentTimeMillis() - lastSync <= maxStaleness.toMillis())
+            return localCache.dataExist(dataClass, uuid);
+
+        Lock readLock = getReadLock(dataClass, uuid);
+        readLock.lock();
+        try {
+            lockMetrics.recordRevalidation(dataClass);
+            if (!localCache.dataExist(dataClass, uuid))
+                return tryLoad(dataClass, uuid) != null;
+            var dataContext = AnnotationResolver.getDataProperties(dataClass).dataContext();
+            if (globalCache != null && dataContext.isCacheAllowed() && globalCache.dataExist(dataClass, uuid))
+                pipelineSynchronizer.synchronizePipelineData(PipelineSynchronizer.DataSourceType.GLOBAL_CACHE, PipelineSynchronizer.DataSourceType.LOCAL, dataClass, uuid);
+            else if (globalStorage != null && dataContext.isStorageAllowed() && globalStorage.dataExist(dataClass, uuid))
+                pipelineSynchronizer.synchronizePipelineData(PipelineSynchronizer.DataSourceType.GLOBAL_STORAGE, PipelineSynchronizer.DataSourceType.LOCAL, dataClass, uuid);
+            // The local version of the optimistic write mode may not match the reloaded object anymore
+            forgetCommittedVersion(dataClass, uuid);
+            markSynced(dataClass, uuid);
+            return true;
         } finally {
             readLock.unlock();
         }
@@ -167,37 +315,308 @@ public class PipelineImpl implements Pipeline {
 
     @Override
     public @NotNull <T extends IPipelineData> DataAccess<T> loadOrCreate(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @Nullable Consumer<T> immediateWriteOperation) {
-        Objects.requireNonNull(dataClass, "dataClass can't be null");
-        Objects.requireNonNull(uuid, "uuid can't be null");
-        if (!getDataRegistry().isTypeRegistered(dataClass))
-            throw new IllegalStateException("dataclass " + dataClass.getSimpleName() + " not registered in pipeline data registry");
+        checkRegistered(dataClass, uuid);
 
         //First we try to load
         DataAccess<T> access = load(dataClass, uuid);
         if (access != null)
             return access;
 
+        // If the tier that owns the data supports atomic inserts, no write lock is needed. Whoever loses the race loads the winner's object.
+        if (supportsAtomicCreation(dataClass)) {
+            T created = createIfAbsent(dataClass, uuid, immediateWriteOperation);
+            access = created != null ? createAccess(created) : load(dataClass, uuid);
+            if (access != null)
+                return access;
+        }
+
         // If no data was found we want to create new data. We have to trigger a load again but this time in write mode.
         // We need to do the load again since someone could have created the data between the read call and this call.
         // Nonetheless, this approach is preferred since the alternative is to always do the loadOrCreate with a write lock which is not preferable performance wise.
-        Lock writeLock = getNetworkDataLockingService().getWriteLock(dataClass, uuid);
+        Lock writeLock = getWriteLock(dataClass, uuid);
         writeLock.lock();
 
         try {
-            T loadedData = tryLoad(dataClass, uuid);
-            if (loadedData == null) {
-                if (AnnotationResolver.getDataProperties(dataClass).debugMode())
-                    NetworkLogger.debug("Creating new " + dataClass.getSimpleName() + " [" + uuid + "]");
-                loadedData = createNewData(dataClass, uuid, immediateWriteOperation);
-                if (immediateWriteOperation != null)
-                    immediateWriteOperation.accept(loadedData);
+            return loadOrCreateLocked(dataClass, uuid, immediateWriteOperation);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public @NotNull <T extends IPipelineData> DataAccess<T> loadOrCreate(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @NotNull Duration timeout, @Nullable Consumer<T> immediateWriteOperation) throws TimeoutException, InterruptedException {
+        checkRegistered(dataClass, uuid);
+        Objects.requireNonNull(timeout, "timeout can't be null");
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        DataAccess<T> access = load(dataClass, uuid, timeout);
+        if (access != null)
+            return access;
+
+        if (supportsAtomicCreation(dataClass)) {
+            T created = createIfAbsent(dataClass, uuid, immediateWriteOperation);
+            access = created != null ? createAccess(created) : load(dataClass, uuid, Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+            if (access != null)
+                return access;
+        }
+
+        Lock writeLock = getWriteLock(dataClass, uuid);
+        acquire(writeLock, dataClass, uuid, deadline);
+        try {
+            return loadOrCreateLocked(dataClass, uuid, immediateWriteOperation);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public @NotNull MultiWrite writeAll(@NotNull Collection<PipelineDataKey> keys) {
+        checkRegistered(keys);
+        Lock lock = getWriteLocks(keys);
+        lock.lock();
+        return openMultiWrite(keys, lock);
+    }
+
+    @Override
+    public @NotNull MultiWrite writeAll(@NotNull Collection<PipelineDataKey> keys, @NotNull Duration timeout) throws TimeoutException, InterruptedException {
+        checkRegistered(keys);
+        Objects.requireNonNull(timeout, "timeout can't be null");
+        Lock lock = getWriteLocks(keys);
+        if (!lock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS))
+            throw new TimeoutException("Could not acquire the locks of " + keys.size() + " objects in time");
+        return openMultiWrite(keys, lock);
+    }
+
+    private void checkRegistered(@NotNull Collection<PipelineDataKey> keys) {
+        Objects.requireNonNull(keys, "keys can't be null");
+        if (keys.isEmpty())
+            throw new IllegalArgumentException("keys can't be empty");
+        keys.forEach(key -> checkRegistered(key.type(), key.uuid()));
+    }
+
+    private MultiWrite openMultiWrite(@NotNull Collection<PipelineDataKey> keys, @NotNull Lock lock) {
+        try {
+            Map<PipelineDataKey, IPipelineData> objects = new LinkedHashMap<>();
+            for (PipelineDataKey key : new TreeSet<>(keys)) {
+                IPipelineData data = tryLoad(key.type(), key.uuid());
+                if (data != null)
+                    objects.put(key, data);
+            }
+            return new MultiWrite(this, lock, objects);
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Objects are created with an atomic insert into the tier that owns their consistency.
+     * This is the global cache if the data may be cached and the global storage otherwise.
+     */
+    private boolean supportsAtomicCreation(@NotNull Class<? extends IPipelineData> dataClass) {
+        var dataContext = AnnotationResolver.getDataProperties(dataClass).dataContext();
+        if (globalCache != null && dataContext.isCacheAllowed())
+            return globalCache.supportsSaveIfAbsent();
+        return globalStorage != null && dataContext.isStorageAllowed() && globalStorage.supportsSaveIfAbsent();
+    }
+
+    /**
+     * Creates an object with an atomic insert into the tier that owns its consistency.
+     * The creation hooks of the object run before the insert, so they may run for an object that is discarded afterwards.
+     *
+     * @return the created object or null if someone else created it first
+     */
+    private <T extends IPipelineData> @Nullable T createIfAbsent(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @Nullable Consumer<T> immediateWriteOperation) {
+        boolean ownedByCache = globalCache != null && AnnotationResolver.getDataProperties(dataClass).dataContext().isCacheAllowed();
+
+        T pipelineData = PipelineData.instantiateData(this, dataClass, uuid);
+        pipelineData.loadDependentData();
+        pipelineData.onCreate();
+        if (immediateWriteOperation != null)
+            immediateWriteOperation.accept(pipelineData);
+        JsonElement serialized = pipelineData.serialize();
+
+        boolean created = ownedByCache ? globalCache.saveIfAbsent(dataClass, uuid, serialized) : globalStorage.saveIfAbsent(dataClass, uuid, serialized);
+        if (!created) {
+            if (AnnotationResolver.getDataProperties(dataClass).debugMode())
+                NetworkLogger.debug(dataClass.getSimpleName() + " [" + uuid + "] was created by someone else. Loading it instead.");
+            return null;
+        }
+
+        if (AnnotationResolver.getDataProperties(dataClass).debugMode())
+            NetworkLogger.debug("Created new " + dataClass.getSimpleName() + " [" + uuid + "] in " + (ownedByCache ? "global cache" : "global storage"));
+        localCache.saveObject(pipelineData);
+        markSynced(dataClass, uuid);
+        if (ownedByCache)
+            pipelineSynchronizer.synchronizePipelineData(PipelineSynchronizer.DataSourceType.LOCAL, PipelineSynchronizer.DataSourceType.GLOBAL_STORAGE, dataClass, uuid);
+        if (getSynchronizingService() != null)
+            getSynchronizingService()
+                    .getOrCreate(this, dataClass)
+                    .pushCreation(pipelineData);
+        return pipelineData;
+    }
+
+    @Override
+    public <T extends IPipelineData> boolean writeOptimistic(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @NotNull Consumer<T> mutation) {
+        checkRegistered(dataClass, uuid);
+        Objects.requireNonNull(mutation, "mutation can't be null");
+        if (globalCache == null || !globalCache.supportsCompareAndSave() || !AnnotationResolver.getDataProperties(dataClass).dataContext().isCacheAllowed())
+            return writeLocked(dataClass, uuid, mutation);
+
+        // If this node made the last commit, the local object is the latest version and the first attempt needs no read.
+        // The local read lock keeps uncommitted changes of a local writer out of the copy.
+        JsonElement base = null;
+        long version = 0;
+        Lock localReadLock = localLockingService.getReadLock(dataClass, uuid);
+        localReadLock.lock();
+        try {
+            Long committedVersion = committedVersions.getOrDefault(dataClass, Map.of()).get(uuid);
+            if (committedVersion != null) {
+                base = localCache.loadData(dataClass, uuid);
+                version = committedVersion;
             }
-            return createAccess(loadedData);
+        } finally {
+            localReadLock.unlock();
+        }
+
+        for (int attempt = 0; attempt < OPTIMISTIC_WRITE_ATTEMPTS; attempt++) {
+            if (base == null) {
+                GlobalCache.VersionedData current = globalCache.loadVersioned(dataClass, uuid);
+                if (current == null)
+                    return writeLocked(dataClass, uuid, mutation);
+                base = current.data();
+                version = current.version();
+            }
+            T copy = PipelineData.instantiateData(this, dataClass, uuid);
+            copy.deserialize(base);
+            mutation.accept(copy);
+            JsonElement changed = copy.serialize();
+
+            long newVersion = globalCache.compareAndSave(dataClass, uuid, version, changed);
+            if (newVersion != 0) {
+                Lock localWriteLock = localLockingService.getWriteLock(dataClass, uuid);
+                localWriteLock.lock();
+                try {
+                    localCache.save(dataClass, uuid, changed);
+                    committedVersions.computeIfAbsent(dataClass, aClass -> new ConcurrentHashMap<>()).put(uuid, newVersion);
+                    localCache.notifySubscribers(localCache.loadObject(dataClass, uuid));
+                } finally {
+                    localWriteLock.unlock();
+                }
+                markSynced(dataClass, uuid);
+                pipelineSynchronizer.syncLocalInstances(dataClass, uuid);
+                persistOptimistic(dataClass, uuid, newVersion, changed);
+                return true;
+            }
+            if (AnnotationResolver.getDataProperties(dataClass).debugMode())
+                NetworkLogger.debug("Optimistic write conflict for " + dataClass.getSimpleName() + " [" + uuid + "] at version " + version);
+            base = null;
+        }
+        NetworkLogger.warning("Optimistic write of " + dataClass.getSimpleName() + " [" + uuid + "] failed " + OPTIMISTIC_WRITE_ATTEMPTS + " times. Falling back to the write lock.");
+        return writeLocked(dataClass, uuid, mutation);
+    }
+
+    /**
+     * Writes a committed optimistic write to the global storage. Optimistic writers don't hold the write lock, so their storage writes can arrive out of order.
+     * Every writer checks the version of the global cache after its storage write and writes the latest version again if someone committed in between.
+     * The writer whose storage write came last therefore always leaves the latest version in the storage.
+     */
+    private void persistOptimistic(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid, long version, @NotNull JsonElement data) {
+        if (globalStorage == null || !AnnotationResolver.getDataProperties(dataClass).dataContext().isStorageAllowed())
+            return;
+        while (true) {
+            globalStorage.save(dataClass, uuid, data);
+            GlobalCache.VersionedData current = globalCache.loadVersioned(dataClass, uuid);
+            if (current == null || current.version() == version)
+                return;
+            version = current.version();
+            data = current.data();
+        }
+    }
+
+    private <T extends IPipelineData> boolean writeLocked(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @NotNull Consumer<T> mutation) {
+        Lock writeLock = getWriteLock(dataClass, uuid);
+        writeLock.lock();
+        try {
+            T data = tryLoad(dataClass, uuid);
+            if (data == null)
+                return false;
+            mutation.accept(data);
+            forgetCommittedVersion(dataClass, uuid);
+            pipelineSynchronizer.sync(data, true);
+            markSynced(dataClass, uuid);
+            localCache.notifySubscribers(data);
+            return true;
         } finally {
             writeLock.unlock();
         }
     }
 
+    private void forgetCommittedVersion(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid) {
+        Map<UUID, Long> versions = committedVersions.get(dataClass);
+        if (versions != null)
+            versions.remove(uuid);
+    }
+
+    private void markSynced(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid) {
+        lastSyncTimes.computeIfAbsent(dataClass, aClass -> new ConcurrentHashMap<>()).put(uuid, System.currentTimeMillis());
+    }
+
+    private void forgetLastSync(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid) {
+        Map<UUID, Long> syncTimes = lastSyncTimes.get(dataClass);
+        if (syncTimes != null)
+            syncTimes.remove(uuid);
+    }
+
+    private <T extends IPipelineData> @Nullable DataAccess<T> loadLocked(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid) {
+        T data = tryLoad(dataClass, uuid);
+        if (data == null)
+            return null;
+        return createAccess(data);
+    }
+
+    /**
+     * Called after a load without the write lock missed. The peers were asked by that load already, so they are skipped while the write lock is held.
+     */
+    private <T extends IPipelineData> @NotNull DataAccess<T> loadOrCreateLocked(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, @Nullable Consumer<T> immediateWriteOperation) {
+        T loadedData = tryLoad(dataClass, uuid, false);
+        if (loadedData == null) {
+            if (AnnotationResolver.getDataProperties(dataClass).debugMode())
+                NetworkLogger.debug("Creating new " + dataClass.getSimpleName() + " [" + uuid + "]");
+            loadedData = createNewData(dataClass, uuid, immediateWriteOperation);
+            if (immediateWriteOperation != null)
+                immediateWriteOperation.accept(loadedData);
+        }
+        return createAccess(loadedData);
+    }
+
+    private void checkRegistered(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid) {
+        Objects.requireNonNull(dataClass, "dataClass can't be null");
+        Objects.requireNonNull(uuid, "uuid can't be null");
+        if (!getDataRegistry().isTypeRegistered(dataClass))
+            throw new IllegalStateException("dataclass " + dataClass.getSimpleName() + " not registered in pipeline data registry");
+    }
+
+    private Lock getReadLock(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid) {
+        return new OrderedMultiLock(List.of(localLockingService.getReadLock(dataClass, uuid), lockMetrics.instrument(getNetworkDataLockingService().getReadLock(dataClass, uuid), dataClass, uuid, false)));
+    }
+
+    private Lock getWriteLock(@NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid) {
+        return new OrderedMultiLock(List.of(localLockingService.getWriteLock(dataClass, uuid), lockMetrics.instrument(getNetworkDataLockingService().getWriteLock(dataClass, uuid), dataClass, uuid, true)));
+    }
+
+    private Lock getWriteLocks(@NotNull Collection<PipelineDataKey> keys) {
+        return new OrderedMultiLock(List.of(localLockingService.getWriteLocks(keys), getNetworkDataLockingService().getWriteLocks(keys)));
+    }
+
+    /**
+     * Acquires a lock before the deadline. Timeouts are recorded and logged by the {@link LockMetrics}.
+     */
+    private void acquire(@NotNull Lock lock, @NotNull Class<? extends IPipelineData> dataClass, @NotNull UUID uuid, long deadline) throws TimeoutException, InterruptedException {
+        if (!lock.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+            throw new TimeoutException("Could not acquire lock of " + dataClass.getSimpleName() + " [" + uuid + "] in time");
+    }
+
     @Override
     public <T extends IPipelineData> Set<DataAccess<? extends T>> loadAllData(@NotNull Class<? extends T> dataClass) {
         Objects.requireNonNull(dataClass, "dataClass can't be null");
@@ -238,7 +657,7 @@ public class PipelineImpl implements Pipeline {
         Objects.requireNonNull(uuid, "uuid can't be null");
         if (!getDataRegistry().isTypeRegistered(dataClass))
             throw new IllegalStateException("dataclass " + dataClass.getSimpleName() + " not registered in pipeline data registry");
-        Lock lock = getNetworkDataLockingService().getReadLock(dataClass, uuid);
+        Lock lock = getReadLock(dataClass, uuid);
         lock.lock();
         try {
             return checkExistence(dataClass, uuid);
@@ -251,10 +670,12 @@ public class PipelineImpl implements Pipeline {
     public <T extends IPipelineData> boolean delete(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid) {
         if (!getDataRegistry().isTypeRegistered(dataClass))
             throw new IllegalStateException("dataclass " + dataClass.getSimpleName() + " not registered in pipeline data registry");
-        Lock lock = getNetworkDataLockingService().getWriteLock(dataClass, uuid);
+        Lock lock = getWriteLock(dataClass, uuid);
         lock.lock();
 
         try {
+            forgetCommittedVersion(dataClass, uuid);
+            forgetLastSync(dataClass, uuid);
             var deleted = getLocalCache().remove(dataClass, uuid);
             if (getSynchronizingService() != null) {
                 getSynchronizingService()
@@ -276,30 +697,78 @@ public class PipelineImpl implements Pipeline {
     }
 
     private <T extends IPipelineData> T tryLoad(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid) {
+        return tryLoad(dataClass, uuid, true);
+    }
+
+    /**
+     * @param askPeers false to skip the local caches of other nodes
+     */
+    private <T extends IPipelineData> T tryLoad(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid, boolean askPeers) {
         if (!getDataRegistry().isTypeRegistered(dataClass))
             throw new IllegalStateException("dataclass " + dataClass.getSimpleName() + " not registered in pipeline data registry");
+        LoadMetrics.Tier tier;
         if (localCache.dataExist(dataClass, uuid)) {
+            loadMetrics.recordHit(dataClass, LoadMetrics.Tier.LOCAL);
             return localCache.loadObject(dataClass, uuid);
+        } else if (restoreFromSnapshot(dataClass, uuid)) {
+            tier = LoadMetrics.Tier.SNAPSHOT;
+            if (AnnotationResolver.getDataProperties(dataClass).debugMode())
+                NetworkLogger.debug("SNAPSHOT -> Local | " + dataClass + " [" + uuid + "]");
         } else if (globalCache != null && globalCache.dataExist(dataClass, uuid) && AnnotationResolver
                 .getDataProperties(dataClass)
                 .dataContext()
                 .isCacheAllowed()) {
+            tier = LoadMetrics.Tier.GLOBAL_CACHE;
             pipelineSynchronizer.synchronizePipelineData(PipelineSynchronizer.DataSourceType.GLOBAL_CACHE, PipelineSynchronizer.DataSourceType.LOCAL, dataClass, uuid);
             if (AnnotationResolver.getDataProperties(dataClass).debugMode())
                 NetworkLogger.debug("CACHE -> Local | " + dataClass + " [" + uuid + "]");
+        } else if (askPeers && fetchFromPeers(dataClass, uuid)) {
+            tier = LoadMetrics.Tier.PEER;
+            if (AnnotationResolver.getDataProperties(dataClass).debugMode())
+                NetworkLogger.debug("PEER -> Local | " + dataClass + " [" + uuid + "]");
         } else if (globalStorage != null && globalStorage.dataExist(dataClass, uuid) && AnnotationResolver
                 .getDataProperties(dataClass)
                 .dataContext()
                 .isStorageAllowed()) {
+            tier = LoadMetrics.Tier.GLOBAL_STORAGE;
             pipelineSynchronizer.synchronizePipelineData(PipelineSynchronizer.DataSourceType.GLOBAL_STORAGE, PipelineSynchronizer.DataSourceType.LOCAL, dataClass, uuid);
             if (AnnotationResolver.getDataProperties(dataClass).debugMode())
                 NetworkLogger
                         .debug("GLOBAL -> Local | " + dataClass.getSimpleName() + " [" + uuid + "]");
-        } else
+        } else {
+            loadMetrics.recordHit(dataClass, LoadMetrics.Tier.MISS);
             return null;
+        }
+        loadMetrics.recordHit(dataClass, tier);
+        markSynced(dataClass, uuid);
         return localCache.loadObject(dataClass, uuid);
     }
 
+    /**
+     * Asks the other nodes for their local copy of an object. Peers that don't hold the object answer with null,
+     * so the fetch ends as soon as every node answered or the peer fetch timeout passed.
+     */
+    private <T extends IPipelineData> boolean fetchFromPeers(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid) {
+        if (peerFetchTimeout == null || networkParticipant == null || networkParticipant.messagingService() == null)
+            return false;
+        var dataContext = AnnotationResolver.getDataProperties(dataClass).dataContext();
+        if (!dataContext.isCacheAllowed() && !dataContext.isStorageAllowed())
+            return false;
+        ResponseCollector<String> responses = networkParticipant
+                .messagingService()
+                .sendInstruction(new PeerFetchQuery(UUID.randomUUID(), AnnotationResolver.getDataStorageIdentifier(dataClass), uuid));
+        if (responses == null)
+            return false;
+        String serialized = responses
+                .firstMatching(Objects::nonNull, peerFetchTimeout)
+                .exceptionally(throwable -> null)
+                .join();
+        if (serialized == null)
+            return false;
+        localCache.save(dataClass, uuid, JsonParser.parseString(serialized));
+        return true;
+    }
+
     private <T extends IPipelineData> boolean checkExistence(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid) {
         boolean localExist = getLocalCache().dataExist(dataClass, uuid);
         if (localExist) return true;
@@ -313,7 +782,43 @@ public class PipelineImpl implements Pipeline {
         return false;
     }
 
-    private <T extends IPipelineData> void sync(@NotNull Class<? extends T> type, UUID uuid) {
+    /**
+     * Moves an object from the local cache snapshot to the local cache if its version still matches the global cache.
+     */
+    private <T extends IPipelineData> boolean restoreFromSnapshot(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid) {
+        if (localCacheSnapshot == null || !isSnapshotAllowed(dataClass))
+            return false;
+        JsonElement snapshotData = localCacheSnapshot.take(dataClass, uuid, () -> globalCache.getVersion(dataClass, uuid));
+        if (localCacheSnapshot.isEmpty())
+            localCacheSnapshot.clear();
+        if (snapshotData == null)
+            return false;
+        localCache.save(dataClass, uuid, snapshotData);
+        return true;
+    }
+
+    /**
+     * Objects are only put into a snapshot if they can be validated against the version in the global cache on startup.
+     * Storage only data has no version. The storage may be shared with other nodes, so a snapshot of it could bring back outdated data.
+     */
+    private boolean isSnapshotAllowed(@NotNull Class<? extends IPipelineData> dataClass) {
+        return globalCache != null && AnnotationResolver.getDataProperties(dataClass).dataContext().isCacheAllowed();
+    }
+
+    private void saveAllWithSnapshot() {
+        try (LocalCacheSnapshot.Writer writer = localCacheSnapshot.createWriter()) {
+            dataRegistry
+                    .getAllTypes()
+                    .forEach(type -> getLocalCache()
+                            .getSavedUUIDs(type)
+                            .forEach(uuid -> sync(type, uuid, writer, null)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            saveAll();
+        }
+    }
+
+    private <T extends IPipelineData> void sync(@NotNull Class<? extends T> type, UUID uuid, @Nullable LocalCacheSnapshot.Writer snapshotWriter, @Nullable Consumer<IPipelineData> handoff) {
         Objects.requireNonNull(type);
         Objects.requireNonNull(uuid);
         IPipelineData data = getLocalCache().loadObject(type, uuid);
@@ -324,6 +829,19 @@ public class PipelineImpl implements Pipeline {
         data.cleanUp();
         pipelineSynchronizer.synchronizePipelineData(PipelineSynchronizer.DataSourceType.LOCAL, PipelineSynchronizer.DataSourceType.GLOBAL_CACHE, type, uuid);
         pipelineSynchronizer.synchronizePipelineData(PipelineSynchronizer.DataSourceType.LOCAL, PipelineSynchronizer.DataSourceType.GLOBAL_STORAGE, type, uuid);
+        if (snapshotWriter != null && isSnapshotAllowed(type)) {
+            long version = globalCache.getVersion(type, uuid);
+            try {
+                if (version != 0)
+                    snapshotWriter.write(type, uuid, version, data.serialize());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (handoff != null)
+            handoff.accept(data);
+        forgetCommittedVersion(type, uuid);
+        forgetLastSync(type, uuid);
         getLocalCache().remove(type, uuid);
     }
 
@@ -334,11 +852,18 @@ public class PipelineImpl implements Pipeline {
 
         if (!preloadStrategy.equals(PreloadStrategy.LOAD_BEFORE)) return;
         Set<UUID> alreadyLoaded = new HashSet<>();
+        if (networkParticipant != null && networkParticipant.messagingService() != null && networkParticipant
+                .messagingService()
+                .getCacheHandoff()
+                .isEnabled())
+            alreadyLoaded.addAll(networkParticipant.messagingService().getCacheHandoff().pull(type));
         if (globalCache != null && dataProperties
                 .dataContext()
                 .isStorageAllowed())
             globalCache
                     .getSavedUUIDs(type)
+                    .stream()
+                    .filter(uuid -> !alreadyLoaded.contains(uuid))
                     .forEach(uuid -> {
                         if (pipelineSynchronizer.synchronizePipelineData(PipelineSynchronizer.DataSourceType.GLOBAL_CACHE, PipelineSynchronizer.DataSourceType.LOCAL, type, uuid))
                             alreadyLoaded.add(uuid);
@@ -367,6 +892,7 @@ public class PipelineImpl implements Pipeline {
         if (immediateWriteOperation != null)
             immediateWriteOperation.accept(pipelineData);
         localCache.saveObject(pipelineData);
+        markSynced(dataClass, uuid);
 
         if (AnnotationResolver
                 .getDataProperties(dataClass)
@@ -397,7 +923,10 @@ public class PipelineImpl implements Pipeline {
         this.ready = false;
 
         NetworkLogger.info("Saving all data");
-        saveAll();
+        if (localCacheSnapshot != null)
+            saveAllWithSnapshot();
+        else
+            saveAll();
 
         NetworkLogger.info("Shutting down pipeline synchronizer");
         getPipelineSynchronizer().shutdown();
@@ -417,6 +946,8 @@ public class PipelineImpl implements Pipeline {
     @Override
     public <T extends IPipelineData> boolean saveAndRemoveFromLocalCache(@NotNull Class<? extends T> dataClass, @NotNull UUID uuid) {
         pipelineSynchronizer.sync(dataClass, uuid, true);
+        forgetCommittedVersion(dataClass, uuid);
+        forgetLastSync(dataClass, uuid);
         return getLocalCache().remove(dataClass, uuid);
     }
 
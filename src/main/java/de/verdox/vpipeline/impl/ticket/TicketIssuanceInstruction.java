@@ -1,12 +1,20 @@
 package de.verdox.vpipeline.impl.ticket;
 
 import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
 import de.verdox.vpipeline.api.messaging.instruction.types.Ping;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.UUID;
 
+@InstructionInfo(awaitsResponse = false, priority = InstructionInfo.Priority.BULK)
 public class TicketIssuanceInstruction extends Ping {
+    public static final InstructionCodec<TicketIssuanceInstruction, Boolean> CODEC = InstructionCodec.of(
+            (instruction, out) -> InstructionCodec.writeBytes(instruction.data, out),
+            in -> new TicketIssuanceInstruction(UUID.randomUUID(), InstructionCodec.readBytes(in)),
+            InstructionCodec.ResponseCodec.NONE
+    );
     private final byte[] data;
     public TicketIssuanceInstruction(@NotNull UUID uuid, byte[] data) {
         super(uuid);
@@ -1,12 +1,18 @@
 package de.verdox.vpipeline.impl.ticket;
 
 import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
 import de.verdox.vpipeline.api.messaging.instruction.types.Ping;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.UUID;
 
 public class TicketTakeInstruction extends Ping {
+    public static final InstructionCodec<TicketTakeInstruction, Boolean> CODEC = InstructionCodec.of(
+            (instruction, out) -> InstructionCodec.writeUUID(instruction.ticketID, out),
+            in -> new TicketTakeInstruction(UUID.randomUUID(), InstructionCodec.readUUID(in)),
+            InstructionCodec.ResponseCodec.NONE
+    );
     private final UUID ticketID;
     public TicketTakeInstruction(@NotNull UUID uuid, @NotNull UUID ticketID) {
         super(uuid);
@@ -0,0 +1,191 @@
+package de.verdox.vpipeline.impl.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timer that runs tasks after a delay with O(1) scheduling and cancelling, no matter how many tasks are scheduled.
+ * <p>
+ * The wheel consists of a ring of buckets. A worker thread moves to the next bucket every tick and runs all tasks of the bucket
+ * that are due. A task is put into the bucket its deadline falls into and remembers how many rotations of the wheel it has to wait.
+ * Tasks are therefore run up to one tick late. Cancelled tasks stay in their bucket until the worker passes it the next time.
+ * <p>
+ * Tasks run on the worker thread and must not block.
+ */
+public class HashedTimingWheel {
+    private final long tickNanos;
+    private final Queue<Timeout>[] buckets;
+    private final int mask;
+    private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Thread worker;
+    private volatile long startTime;
+    private volatile boolean stopped;
+
+    /**
+     * @param name      the name of the worker thread
+     * @param tick      the duration of one tick
+     * @param unit      the unit of the tick
+     * @param wheelSize the amount of buckets. Rounded up to the next power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(@NotNull String name, long tick, @NotNull TimeUnit unit, int wheelSize) {
+        Objects.requireNonNull(name, "name can't be null!");
+        if (tick <= 0 || wheelSize <= 0)
+            throw new IllegalArgumentException("tick and wheelSize have to be positive");
+        this.tickNanos = unit.toNanos(tick);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (size == 0)
+            size = 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++)
+            buckets[i] = new ArrayDeque<>();
+        this.mask = size - 1;
+        this.worker = new Thread(this::work, name);
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * Schedules a task
+     *
+     * @param task  the task
+     * @param delay the delay until the task runs
+     * @param unit  the unit of the delay
+     * @return the handle to cancel the task
+     */
+    public Timeout schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+        Objects.requireNonNull(task, "task can't be null!");
+        if (stopped)
+            throw new IllegalStateException("The timing wheel was stopped");
+        if (started.compareAndSet(false, true)) {
+            startTime = System.nanoTime();
+            worker.start();
+        }
+        Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        pending.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the amount of tasks that are neither run nor cancelled yet
+     *
+     * @return the amount of pending tasks
+     */
+    public int getPendingTimeouts() {
+        return pending.get();
+    }
+
+    /**
+     * Stops the worker thread. Pending tasks are not run anymore.
+     */
+    public void stop() {
+        stopped = true;
+        worker.interrupt();
+    }
+
+    private void work() {
+        long tick = 0;
+        while (!stopped) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (stopped)
+                        return;
+                }
+            }
+            transferNewTimeouts(tick);
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /**
+     * Puts the newly scheduled tasks into their buckets. Tasks that are already due go into the bucket of the current tick.
+     */
+    private void transferNewTimeouts(long currentTick) {
+        Timeout timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (timeout.isCancelled())
+                continue;
+            long dueTick = Math.max(currentTick, (timeout.deadline - startTime) / tickNanos);
+            timeout.remainingRounds = (dueTick - currentTick) / buckets.length;
+            buckets[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+                continue;
+            }
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                continue;
+            }
+            iterator.remove();
+            if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+                pending.decrementAndGet();
+                try {
+                    timeout.task.run();
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        /**
+         * Only accessed by the worker thread
+         */
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it did not run yet
+         *
+         * @return true if the task was cancelled
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED))
+                return false;
+            pending.decrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+}
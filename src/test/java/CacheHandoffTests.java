@@ -0,0 +1,96 @@
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.handoff.CacheHandoff;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.AccessInvalidException;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.LockableAction;
+import model.data.TestData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.util.Set;
+import java.util.UUID;
+
+public class CacheHandoffTests {
+    private static RedisServer redisServer = null;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    @Test
+    public void testDrainOnShutdown() {
+        NetworkParticipant draining = createParticipant("draining");
+        NetworkParticipant takingOver = createParticipant("takingOver");
+        UUID uuid = UUID.randomUUID();
+        createTestData(draining, uuid, 4);
+
+        draining.shutdown();
+        Assertions.assertTrue(takingOver.pipeline().getLocalCache().dataExist(TestData.class, uuid));
+        Assertions.assertEquals(4, takingOver.pipeline().getLocalCache().loadObject(TestData.class, uuid).testInt);
+        takingOver.shutdown();
+    }
+
+    @Test
+    public void testPullFromPeer() {
+        NetworkParticipant running = createParticipant("running");
+        NetworkParticipant joining = createParticipant("joining");
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        createTestData(running, first, 1);
+        createTestData(running, second, 2);
+
+        long start = System.currentTimeMillis();
+        Set<UUID> pulled = joining.messagingService().getCacheHandoff().pull(TestData.class);
+        // The pull ends with the end marker of the stream instead of waiting for the response timeout
+        Assertions.assertTrue(System.currentTimeMillis() - start < 1500);
+        Assertions.assertTrue(pulled.containsAll(Set.of(first, second)));
+        Assertions.assertEquals(2, joining.pipeline().getLocalCache().loadObject(TestData.class, second).testInt);
+        joining.shutdown();
+        running.shutdown();
+    }
+
+    private static void createTestData(NetworkParticipant networkParticipant, UUID uuid, int testInt) {
+        try (LockableAction.Write<TestData> write = networkParticipant.pipeline().loadOrCreate(TestData.class, uuid).write()) {
+            write.get().testInt = testInt;
+        } catch (AccessInvalidException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder
+                        .withTransmitter(Transmitter.createRedisTransmitter(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                        .withCacheHandoff(CacheHandoff.Settings.DEFAULT))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, "")))
+                .build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        networkParticipant.connect();
+        return networkParticipant;
+    }
+}
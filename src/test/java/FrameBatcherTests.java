@@ -0,0 +1,134 @@
+import de.verdox.vpipeline.api.messaging.parts.transmitter.FrameBatcher;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class FrameBatcherTests {
+
+    @Test
+    public void testSingleFrameIsPublishedRightAway() {
+        List<byte[]> published = new ArrayList<>();
+        FrameBatcher<String> batcher = new FrameBatcher<>(FrameBatcher.Settings.DEFAULT, (channel, frame) -> {
+            published.add(frame);
+            return 3;
+        }, FrameBatcherTests::encodeBatch);
+
+        Assertions.assertEquals(3, batcher.send("channel", frame(1)));
+        Assertions.assertEquals(1, published.size());
+        Assertions.assertEquals(1, batcher.getPublishedFrames());
+    }
+
+    /**
+     * Publishing takes a millisecond, so frames that are sent in the meantime are coalesced into batches
+     */
+    @Test
+    public void testFramesAreBatchedUnderLoad() throws InterruptedException {
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        FrameBatcher<String> batcher = new FrameBatcher<>(new FrameBatcher.Settings(64, 64 * 1024, Duration.ZERO), (channel, frame) -> {
+            sleep(1);
+            received.addAll(decodeBatch(frame));
+            return 1;
+        }, FrameBatcherTests::encodeBatch);
+
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread * 1000;
+            senders.execute(() -> {
+                for (int i = 0; i < 250; i++)
+                    batcher.send("channel", frame(offset + i));
+            });
+        }
+        senders.shutdown();
+        Assertions.assertTrue(senders.awaitTermination(30, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(2000, batcher.getSentFrames());
+        Assertions.assertEquals(2000, received.size());
+        Assertions.assertTrue(batcher.getPublishedFrames() < batcher.getSentFrames());
+        // Frames of one sender keep their order
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread * 1000;
+            List<Integer> ofSender = received.stream().filter(integer -> integer >= offset && integer < offset + 1000).toList();
+            for (int i = 0; i < 250; i++)
+                Assertions.assertEquals(offset + i, ofSender.get(i));
+        }
+    }
+
+    /**
+     * The sender whose publish was in flight only publishes one batch of the frames queued in the meantime and leaves the rest to the flusher
+     */
+    @Test
+    public void testSenderOnlyPublishesOneBatchOfOthers() throws InterruptedException {
+        CountDownLatch firstPublishStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstPublish = new CountDownLatch(1);
+        CountDownLatch allReceived = new CountDownLatch(21);
+        Map<Thread, Integer> publishesPerThread = new ConcurrentHashMap<>();
+        FrameBatcher<String> batcher = new FrameBatcher<>(new FrameBatcher.Settings(4, 64 * 1024, Duration.ZERO), (channel, frame) -> {
+            if (firstPublishStarted.getCount() == 1) {
+                firstPublishStarted.countDown();
+                awaitQuietly(releaseFirstPublish);
+            }
+            publishesPerThread.merge(Thread.currentThread(), 1, Integer::sum);
+            decodeBatch(frame).forEach(integer -> allReceived.countDown());
+            return 1;
+        }, FrameBatcherTests::encodeBatch);
+
+        Thread firstSender = new Thread(() -> batcher.send("channel", frame(0)));
+        firstSender.start();
+        Assertions.assertTrue(firstPublishStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 20; i++)
+            Assertions.assertEquals(0, batcher.send("channel", frame(i)));
+        releaseFirstPublish.countDown();
+        firstSender.join(5000);
+
+        Assertions.assertFalse(firstSender.isAlive());
+        Assertions.assertTrue(allReceived.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, publishesPerThread.get(firstSender));
+        Assertions.assertEquals(21, batcher.getSentFrames());
+    }
+
+    private static byte[] frame(int number) {
+        return ByteBuffer.allocate(5).put((byte) 0).putInt(number).array();
+    }
+
+    private static byte[] encodeBatch(List<byte[]> frames) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + frames.size() * 4).put((byte) 1);
+        for (byte[] frame : frames)
+            buffer.put(frame, 1, 4);
+        return buffer.array();
+    }
+
+    private static List<Integer> decodeBatch(byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame, 1, frame.length - 1);
+        List<Integer> numbers = new ArrayList<>();
+        while (buffer.hasRemaining())
+            numbers.add(buffer.getInt());
+        return numbers;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
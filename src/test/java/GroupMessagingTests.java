@@ -0,0 +1,146 @@
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.util.AnnotationResolver;
+import de.verdox.vpipeline.impl.pipeline.core.PeerFetchQuery;
+import model.data.TestData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+public class GroupMessagingTests {
+    private static RedisServer redisServer = null;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+    private static NetworkParticipant third;
+
+    @BeforeAll
+    public static void startRedis() throws InterruptedException {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = createParticipant("first");
+        second = createParticipant("second");
+        third = createParticipant("third");
+        first.connect();
+        second.connect();
+        third.connect();
+
+        second.messagingService().joinGroup("lobby");
+        third.messagingService().joinGroup("lobby");
+        second.messagingService().joinGroup("shard-3");
+        awaitMembers("lobby", 2);
+        awaitMembers("shard-3", 1);
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.shutdown();
+        second.shutdown();
+        third.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    @Test
+    public void testMembershipView() {
+        Assertions.assertEquals(Set.of(second.messagingService().getSessionUUID(), third.messagingService().getSessionUUID()), first.messagingService().getGroupMembers("lobby"));
+        Assertions.assertEquals(Set.of(second.messagingService().getSessionUUID()), first.messagingService().getGroupMembers("shard-3"));
+        // A participant is not a member of its own view
+        Assertions.assertEquals(Set.of(third.messagingService().getSessionUUID()), second.messagingService().getGroupMembers("lobby"));
+        Assertions.assertEquals(Set.of("lobby", "shard-3"), second.messagingService().getJoinedGroups());
+    }
+
+    @Test
+    public void testAllMembersAnswer() throws Exception {
+        Map<UUID, String> answers = fetch(UUID.randomUUID(), "lobby");
+        Assertions.assertEquals(Set.of(second.messagingService().getSessionUUID(), third.messagingService().getSessionUUID()), answers.keySet());
+    }
+
+    @Test
+    public void testOnlyMembersReceive() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        third.pipeline().loadOrCreate(TestData.class, uuid);
+        Map<UUID, String> answers = fetch(uuid, "shard-3");
+        Assertions.assertEquals(Set.of(second.messagingService().getSessionUUID()), answers.keySet());
+        Assertions.assertNull(answers.get(second.messagingService().getSessionUUID()));
+    }
+
+    @Test
+    public void testLeaveGroup() throws Exception {
+        first.messagingService().joinGroup("temporary");
+        third.messagingService().joinGroup("temporary");
+        awaitMembers(second, "temporary", 2);
+
+        third.messagingService().leaveGroup("temporary");
+        awaitMembers(second, "temporary", 1);
+        Assertions.assertEquals(Set.of(first.messagingService().getSessionUUID()), second.messagingService().getGroupMembers("temporary"));
+    }
+
+    @Test
+    public void testJoinGroupBeforeConnect() throws Exception {
+        NetworkParticipant early = createParticipant("early");
+        try {
+            early.messagingService().joinGroup("early");
+            early.connect();
+            awaitMembers("early", 1);
+
+            Map<UUID, String> answers = fetch(UUID.randomUUID(), "early");
+            Assertions.assertEquals(Set.of(early.messagingService().getSessionUUID()), answers.keySet());
+        } finally {
+            early.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmptyGroup() throws Exception {
+        Map<UUID, String> answers = fetch(UUID.randomUUID(), "nobody");
+        Assertions.assertTrue(answers.isEmpty());
+    }
+
+    private static Map<UUID, String> fetch(UUID uuid, String group) throws Exception {
+        return first.messagingService()
+                .<String, PeerFetchQuery>sendInstruction(new PeerFetchQuery(UUID.randomUUID(), AnnotationResolver.getDataStorageIdentifier(TestData.class), uuid), group)
+                .allOf(Duration.ofSeconds(2))
+                .get(3, TimeUnit.SECONDS);
+    }
+
+    private static void awaitMembers(String group, int amount) throws InterruptedException {
+        awaitMembers(first, group, amount);
+    }
+
+    private static void awaitMembers(NetworkParticipant participant, String group, int amount) throws InterruptedException {
+        for (int i = 0; i < 40 && participant.messagingService().getGroupMembers(group).size() != amount; i++)
+            Thread.sleep(50);
+        Assertions.assertEquals(amount, participant.messagingService().getGroupMembers(group).size());
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder.withTransmitter(Transmitter.createRedisTransmitter(false, new String[]{"redis://127.0.0.1:6379"}, "")))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                ).build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        return networkParticipant;
+    }
+}
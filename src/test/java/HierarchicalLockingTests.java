@@ -0,0 +1,136 @@
+import de.verdox.vpipeline.api.pipeline.parts.lock.HierarchicalNetworkDataLockingService;
+import de.verdox.vpipeline.impl.util.RedisConnection;
+import model.data.TestData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+public class HierarchicalLockingTests {
+    private static RedisServer redisServer = null;
+    private static HierarchicalNetworkDataLockingService first;
+    private static HierarchicalNetworkDataLockingService second;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = new HierarchicalNetworkDataLockingService(new RedisConnection(false, new String[]{"redis://localhost:6379"}, ""), 3000);
+        second = new HierarchicalNetworkDataLockingService(new RedisConnection(false, new String[]{"redis://localhost:6379"}, ""), 3000);
+        first.connect();
+        second.connect();
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.disconnect();
+        second.disconnect();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    @Test
+    public void testWriteLeaseIsExclusiveUntilRevoked() throws InterruptedException {
+        UUID uuid = UUID.randomUUID();
+        Lock writeLock = first.getWriteLock(TestData.class, uuid);
+        writeLock.lock();
+        writeLock.unlock();
+
+        // The first node keeps its lease after unlocking
+        Lock otherWriteLock = second.getWriteLock(TestData.class, uuid);
+        Assertions.assertFalse(otherWriteLock.tryLock(200, TimeUnit.MILLISECONDS));
+
+        first.onRevokeRequest(first.getLeaseKey(TestData.class, uuid), "second");
+        Assertions.assertTrue(otherWriteLock.tryLock(200, TimeUnit.MILLISECONDS));
+        Assertions.assertFalse(first.getReadLock(TestData.class, uuid).tryLock());
+        otherWriteLock.unlock();
+    }
+
+    @Test
+    public void testNestedLocksKeepLeaseUntilOutermostUnlock() throws InterruptedException {
+        UUID uuid = UUID.randomUUID();
+        Lock writeLock = first.getWriteLock(TestData.class, uuid);
+        Lock readLock = first.getReadLock(TestData.class, uuid);
+        Lock otherWriteLock = second.getWriteLock(TestData.class, uuid);
+        writeLock.lock();
+        try {
+            // The revoke request arrives on the thread that is still inside the outer section
+            first.onRevokeRequest(first.getLeaseKey(TestData.class, uuid), "second");
+            writeLock.lock();
+            writeLock.unlock();
+            readLock.lock();
+            readLock.unlock();
+            Assertions.assertFalse(otherWriteLock.tryLock(200, TimeUnit.MILLISECONDS));
+        } finally {
+            writeLock.unlock();
+        }
+        Assertions.assertTrue(otherWriteLock.tryLock(200, TimeUnit.MILLISECONDS));
+        otherWriteLock.unlock();
+    }
+
+    @Test
+    public void testReadLeasesAreShared() {
+        UUID uuid = UUID.randomUUID();
+        Lock readLock = first.getReadLock(TestData.class, uuid);
+        Lock otherReadLock = second.getReadLock(TestData.class, uuid);
+        Assertions.assertTrue(readLock.tryLock());
+        Assertions.assertTrue(otherReadLock.tryLock());
+        Assertions.assertFalse(second.getWriteLock(TestData.class, uuid).tryLock());
+        readLock.unlock();
+        otherReadLock.unlock();
+    }
+
+    @Test
+    public void testRepeatedAccessReusesLease() {
+        UUID uuid = UUID.randomUUID();
+        Lock readLock = first.getReadLock(TestData.class, uuid);
+        readLock.lock();
+        readLock.unlock();
+        long start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) {
+            readLock.lock();
+            readLock.unlock();
+        }
+        // 100k round trips to redis would take seconds
+        Assertions.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    public void testIdleLeasesAreDropped() throws InterruptedException {
+        var service = new HierarchicalNetworkDataLockingService(new RedisConnection(false, new String[]{"redis://localhost:6379"}, ""), 300);
+        service.connect();
+        try {
+            UUID uuid = UUID.randomUUID();
+            Lock writeLock = service.getWriteLock(TestData.class, uuid);
+            for (int i = 0; i < 100; i++)
+                service.getReadLock(TestData.class, UUID.randomUUID());
+            writeLock.lock();
+            writeLock.unlock();
+            Assertions.assertEquals(101, service.getLeaseCount());
+
+            for (int i = 0; i < 40 && service.getLeaseCount() != 0; i++)
+                Thread.sleep(50);
+            Assertions.assertEquals(0, service.getLeaseCount());
+
+            // A lock that was handed out before its lease was dropped moves on to a new lease
+            Assertions.assertTrue(writeLock.tryLock());
+            Assertions.assertFalse(second.getWriteLock(TestData.class, uuid).tryLock());
+            writeLock.unlock();
+        } finally {
+            service.disconnect();
+        }
+    }
+}
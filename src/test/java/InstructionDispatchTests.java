@@ -0,0 +1,142 @@
+import de.verdox.vpipeline.api.messaging.annotations.InstructionInfo;
+import de.verdox.vpipeline.api.messaging.dispatch.InstructionDispatcher;
+import de.verdox.vpipeline.impl.messaging.dispatch.InstructionDispatcherImpl;
+import de.verdox.vpipeline.impl.pipeline.core.PeerFetchQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class InstructionDispatchTests {
+    private InstructionDispatcherImpl dispatcher;
+
+    @BeforeEach
+    public void setup() {
+        dispatcher = new InstructionDispatcherImpl("dispatchTest");
+    }
+
+    @AfterEach
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testOrderIsKeptPerSender() throws InterruptedException {
+        UUID sender = UUID.randomUUID();
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            int number = i;
+            dispatcher.dispatch(createInstruction(sender), () -> {
+                handled.add(number);
+                done.countDown();
+            });
+        }
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++)
+            Assertions.assertEquals(i, handled.get(i));
+        Assertions.assertEquals(1000, dispatcher.getMetrics().getMetrics(PeerFetchQuery.class).getHandled());
+    }
+
+    @Test
+    public void testSlowHandlerOnlyBlocksItsSender() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch slowHandlerStarted = new CountDownLatch(1);
+        CountDownLatch otherSenderHandled = new CountDownLatch(1);
+        UUID slowSender = UUID.randomUUID();
+
+        dispatcher.dispatch(createInstruction(slowSender), () -> {
+            slowHandlerStarted.countDown();
+            awaitQuietly(release);
+        });
+        dispatcher.dispatch(createInstruction(slowSender), () -> {
+        });
+        dispatcher.dispatch(createInstruction(UUID.randomUUID()), otherSenderHandled::countDown);
+
+        Assertions.assertTrue(otherSenderHandled.await(2, TimeUnit.SECONDS));
+        Assertions.assertTrue(slowHandlerStarted.await(2, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, dispatcher.getQueueDepth());
+        release.countDown();
+    }
+
+    @Test
+    public void testFullQueueDoesNotBlockTheReceiver() throws Exception {
+        dispatcher.setSettings(new InstructionDispatcher.Settings(InstructionDispatcher.Ordering.PER_SENDER, 2, true));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch parkedHandled = new CountDownLatch(1);
+        dispatcher.dispatch(createInstruction(UUID.randomUUID()), () -> awaitQuietly(release));
+        dispatcher.dispatch(createInstruction(UUID.randomUUID()), () -> awaitQuietly(release));
+
+        CompletableFuture<Boolean> parkedDispatch = CompletableFuture.supplyAsync(() -> dispatcher.dispatch(createInstruction(UUID.randomUUID()), parkedHandled::countDown));
+        Assertions.assertTrue(parkedDispatch.get(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, dispatcher.getMetrics().getBackpressureStalls());
+        Assertions.assertEquals(1, dispatcher.getQueueDepth());
+        Assertions.assertFalse(parkedHandled.await(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        Assertions.assertTrue(parkedHandled.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOverloadedQueueDropsInstructions() throws Exception {
+        dispatcher.setSettings(new InstructionDispatcher.Settings(InstructionDispatcher.Ordering.PER_SENDER, 2, true));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch parkedHandled = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++)
+            Assertions.assertTrue(dispatcher.dispatch(createInstruction(UUID.randomUUID()), () -> awaitQuietly(release)));
+        for (int i = 0; i < 2; i++)
+            Assertions.assertTrue(dispatcher.dispatch(createInstruction(UUID.randomUUID()), parkedHandled::countDown));
+
+        Assertions.assertFalse(dispatcher.dispatch(createInstruction(UUID.randomUUID()), () -> Assertions.fail("Dropped instruction was handled")));
+        Assertions.assertEquals(1, dispatcher.getMetrics().getShedInstructions());
+
+        release.countDown();
+        Assertions.assertTrue(parkedHandled.await(2, TimeUnit.SECONDS));
+        Assertions.assertTrue(dispatcher.dispatch(createInstruction(UUID.randomUUID()), () -> {
+        }));
+    }
+
+    /**
+     * A full bulk queue parks bulk instructions but not urgent ones
+     */
+    @Test
+    public void testFullBulkQueueDoesNotDelayHighPriority() throws Exception {
+        dispatcher.setSettings(new InstructionDispatcher.Settings(InstructionDispatcher.Ordering.PER_SENDER, 2, true));
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch highHandled = new CountDownLatch(1);
+        CountDownLatch parkedHandled = new CountDownLatch(1);
+        dispatcher.dispatch(createInstruction(UUID.randomUUID()), InstructionInfo.Priority.BULK, () -> awaitQuietly(release));
+        dispatcher.dispatch(createInstruction(UUID.randomUUID()), InstructionInfo.Priority.BULK, () -> awaitQuietly(release));
+        Assertions.assertTrue(dispatcher.dispatch(createInstruction(UUID.randomUUID()), InstructionInfo.Priority.BULK, parkedHandled::countDown));
+        Assertions.assertEquals(1, dispatcher.getQueueDepth(InstructionInfo.Priority.BULK));
+
+        Assertions.assertTrue(dispatcher.dispatch(createInstruction(UUID.randomUUID()), InstructionInfo.Priority.HIGH, highHandled::countDown));
+        Assertions.assertTrue(highHandled.await(2, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, parkedHandled.getCount());
+
+        release.countDown();
+        Assertions.assertTrue(parkedHandled.await(2, TimeUnit.SECONDS));
+    }
+
+    private static PeerFetchQuery createInstruction(UUID sender) {
+        PeerFetchQuery instruction = new PeerFetchQuery(UUID.randomUUID(), "", UUID.randomUUID());
+        instruction.setupInstruction(9991, sender, sender.toString());
+        return instruction;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
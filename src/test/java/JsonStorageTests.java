@@ -2,7 +2,9 @@ import de.verdox.vpipeline.api.NetworkParticipant;
 import de.verdox.vpipeline.api.VNetwork;
 import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
 import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import com.google.gson.JsonObject;
 import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
+import de.verdox.vpipeline.api.pipeline.parts.storage.JsonFileStorage;
 import model.data.*;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
@@ -11,7 +13,10 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public class JsonStorageTests {
@@ -49,6 +54,17 @@ public class JsonStorageTests {
         Assertions.assertTrue(networkParticipant.pipeline().exist(TestData.class, uuid));
     }
 
+    @Test
+    public void testSaveIfAbsentKeepsExistingObject() {
+        UUID uuid = UUID.randomUUID();
+        GlobalStorage globalStorage = networkParticipant.pipeline().getGlobalStorage();
+        JsonObject first = new JsonObject();
+        first.addProperty("testInt", 1);
+        Assertions.assertTrue(globalStorage.saveIfAbsent(TestData.class, uuid, first));
+        Assertions.assertFalse(globalStorage.saveIfAbsent(TestData.class, uuid, new JsonObject()));
+        Assertions.assertEquals(1, globalStorage.loadData(TestData.class, uuid).getAsJsonObject().get("testInt").getAsInt());
+    }
+
     @Test
     public void testRemove(){
         UUID uuid = UUID.randomUUID();
@@ -57,4 +73,51 @@ public class JsonStorageTests {
         Assertions.assertFalse(networkParticipant.pipeline().exist(TestData.class, uuid));
     }
 
+    @Test
+    public void testAsyncWrites(){
+        JsonFileStorage storage = new JsonFileStorage(Path.of("storage", "async"), true);
+        storage.getAttachedPipeline().attachPipeline(networkParticipant.pipeline());
+        storage.connect();
+        UUID uuid = UUID.randomUUID();
+        for (int i = 0; i < 10; i++) {
+            JsonObject jsonObject = new JsonObject();
+            jsonObject.addProperty("value", i);
+            storage.save(TestData.class, uuid, jsonObject);
+        }
+        Assertions.assertEquals(9, storage.loadData(TestData.class, uuid).getAsJsonObject().get("value").getAsInt());
+        storage.shutdown();
+
+        JsonFileStorage reopened = new JsonFileStorage(Path.of("storage", "async"));
+        Assertions.assertEquals(9, reopened.loadData(TestData.class, uuid).getAsJsonObject().get("value").getAsInt());
+        reopened.remove(TestData.class, uuid);
+        Assertions.assertFalse(reopened.dataExist(TestData.class, uuid));
+    }
+
+    @Test
+    public void testConcurrentSaves() throws Exception {
+        Path folder = Path.of("storage", "concurrent");
+        JsonFileStorage storage = new JsonFileStorage(folder);
+        storage.getAttachedPipeline().attachPipeline(networkParticipant.pipeline());
+        UUID uuid = UUID.randomUUID();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int thread = i;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < 50; j++) {
+                    JsonObject jsonObject = new JsonObject();
+                    jsonObject.addProperty("value", thread);
+                    jsonObject.addProperty("padding", "x".repeat(thread * 512));
+                    storage.save(TestData.class, uuid, jsonObject);
+                }
+            }));
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        JsonObject saved = storage.loadData(TestData.class, uuid).getAsJsonObject();
+        Assertions.assertEquals(saved.get("value").getAsInt() * 512, saved.get("padding").getAsString().length());
+        try (var files = Files.walk(folder)) {
+            Assertions.assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+    }
 }
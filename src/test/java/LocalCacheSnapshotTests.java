@@ -0,0 +1,162 @@
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.pipeline.core.LoadMetrics;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalCache;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.AccessInvalidException;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.LocalCacheSnapshot;
+import model.data.TestData;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+public class LocalCacheSnapshotTests {
+    private static final Path PATH = Path.of("snapshot_storage");
+    private static RedisServer redisServer = null;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+    }
+
+    @AfterAll
+    public static void cleanUp() throws IOException {
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+        FileUtils.deleteDirectory(PATH.toFile());
+    }
+
+    @Test
+    public void testWarmRestart() throws AccessInvalidException {
+        UUID uuid = UUID.randomUUID();
+        NetworkParticipant first = createParticipant();
+        first.connect();
+        first.pipeline().loadOrCreate(TestData.class, uuid, testData -> testData.testString = "warm");
+        first.shutdown();
+        Assertions.assertTrue(Files.exists(PATH.resolve("local.snapshot")));
+
+        NetworkParticipant second = createParticipant();
+        second.connect();
+        Assertions.assertFalse(Files.exists(PATH.resolve("local.snapshot")));
+        var access = second.pipeline().load(TestData.class, uuid);
+        Assertions.assertNotNull(access);
+        try (var read = access.read()) {
+            Assertions.assertEquals("warm", read.get().testString);
+        }
+        second.shutdown();
+    }
+
+    /**
+     * An object that was removed and created again starts at a new version, so the snapshot of the old object is not restored
+     */
+    @Test
+    public void testRecreatedObjectIsNotRestored() throws AccessInvalidException {
+        UUID uuid = UUID.randomUUID();
+        NetworkParticipant first = createParticipant();
+        first.connect();
+        first.pipeline().loadOrCreate(TestData.class, uuid, testData -> testData.testString = "old");
+        GlobalCache globalCache = first.pipeline().getGlobalCache();
+        long oldVersion = globalCache.getVersion(TestData.class, uuid);
+        first.shutdown();
+
+        GlobalCache otherNode = GlobalCache.createRedisCache(false, new String[]{"redis://127.0.0.1:6379"}, "");
+        otherNode.connect();
+        JsonElement recreated = otherNode.loadData(TestData.class, uuid);
+        recreated.getAsJsonObject().addProperty("testString", "new");
+        otherNode.remove(TestData.class, uuid);
+        for (int i = 0; i < 3; i++)
+            otherNode.save(TestData.class, uuid, recreated);
+        Assertions.assertNotEquals(oldVersion, otherNode.getVersion(TestData.class, uuid));
+        otherNode.disconnect();
+
+        NetworkParticipant second = createParticipant();
+        second.connect();
+        try (var read = second.pipeline().load(TestData.class, uuid).read()) {
+            Assertions.assertEquals("new", read.get().testString);
+        }
+        Assertions.assertEquals(0, second.pipeline().getLoadMetrics().getMetrics(TestData.class).getHits(LoadMetrics.Tier.SNAPSHOT));
+        second.shutdown();
+    }
+
+    @Test
+    public void testUnversionedEntriesAreDiscarded() throws IOException {
+        Path file = PATH.resolve("unversioned.snapshot");
+        UUID uuid = UUID.randomUUID();
+        LocalCacheSnapshot snapshot = new LocalCacheSnapshot(file);
+        try (var writer = snapshot.createWriter()) {
+            writer.write(TestData.class, uuid, 0, new JsonObject());
+        }
+        snapshot.load();
+        Assertions.assertNull(snapshot.take(TestData.class, uuid, () -> 0));
+    }
+
+    @Test
+    public void testOutdatedEntriesAreDiscarded() throws IOException {
+        Path file = PATH.resolve("versions.snapshot");
+        UUID current = UUID.randomUUID();
+        UUID outdated = UUID.randomUUID();
+        LocalCacheSnapshot snapshot = new LocalCacheSnapshot(file);
+        try (var writer = snapshot.createWriter()) {
+            writer.write(TestData.class, current, 3, new JsonObject());
+            writer.write(TestData.class, outdated, 3, new JsonObject());
+        }
+        snapshot.load();
+        Assertions.assertNotNull(snapshot.take(TestData.class, current, () -> 3));
+        Assertions.assertNull(snapshot.take(TestData.class, outdated, () -> 4));
+        Assertions.assertNull(snapshot.take(TestData.class, current, () -> 3));
+        Assertions.assertTrue(snapshot.isEmpty());
+    }
+
+    @Test
+    public void testClearDuringTake() throws IOException {
+        Path file = PATH.resolve("clear.snapshot");
+        UUID uuid = UUID.randomUUID();
+        LocalCacheSnapshot snapshot = new LocalCacheSnapshot(file);
+        try (var writer = snapshot.createWriter()) {
+            writer.write(TestData.class, uuid, 3, new JsonObject());
+        }
+        snapshot.load();
+        // The pipeline clears the snapshot as soon as it is empty, which happens while this take still reads its entry
+        Assertions.assertNotNull(snapshot.take(TestData.class, uuid, () -> {
+            Assertions.assertTrue(snapshot.isEmpty());
+            snapshot.clear();
+            return 3;
+        }));
+        Assertions.assertNull(snapshot.take(TestData.class, uuid, () -> 3));
+    }
+
+    private static NetworkParticipant createParticipant() {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName("snapshot")
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createDummy())
+                        .withGlobalCache(GlobalCache.createRedisCache(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                        .withGlobalStorage(GlobalStorage.buildJsonStorage(PATH.resolve("storage")))
+                        .withLocalCacheSnapshot(PATH.resolve("local.snapshot"))
+                ).build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        return networkParticipant;
+    }
+}
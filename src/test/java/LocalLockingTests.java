@@ -0,0 +1,277 @@
+import com.google.gson.JsonObject;
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.pipeline.datatypes.PipelineDataKey;
+import de.verdox.vpipeline.api.pipeline.datatypes.ReadConsistency;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.AccessInvalidException;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.MultiWrite;
+import de.verdox.vpipeline.api.pipeline.parts.lock.DummyNetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.lock.LockMetrics;
+import model.data.OnlyLocalData;
+import model.data.TestData;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+public class LocalLockingTests {
+
+    @Test
+    public void testStripedLocksAreExclusive() throws ExecutionException, InterruptedException {
+        NetworkDataLockingService lockingService = NetworkDataLockingService.createDummyStriped(DummyNetworkDataLockingService.DEFAULT_STRIPES);
+        UUID uuid = UUID.randomUUID();
+        Lock writeLock = lockingService.getWriteLock(TestData.class, uuid);
+        writeLock.lock();
+        try {
+            Assertions.assertFalse(CompletableFuture.supplyAsync(() -> lockingService.getReadLock(TestData.class, uuid).tryLock()).get());
+        } finally {
+            writeLock.unlock();
+        }
+        Assertions.assertSame(lockingService.getWriteLock(TestData.class, uuid), lockingService.getWriteLock(TestData.class, uuid));
+    }
+
+    @Test
+    public void testPerObjectLocks() throws ExecutionException, InterruptedException {
+        NetworkDataLockingService lockingService = NetworkDataLockingService.createDummyPerObject();
+        UUID uuid = UUID.randomUUID();
+        Lock writeLock = lockingService.getWriteLock(TestData.class, uuid);
+        writeLock.lock();
+        try {
+            Assertions.assertFalse(CompletableFuture.supplyAsync(() -> lockingService.getReadLock(TestData.class, uuid).tryLock()).get());
+            Assertions.assertTrue(CompletableFuture.supplyAsync(() -> {
+                Lock otherLock = lockingService.getWriteLock(OnlyLocalData.class, uuid);
+                boolean locked = otherLock.tryLock();
+                if (locked)
+                    otherLock.unlock();
+                return locked;
+            }).get());
+        } finally {
+            writeLock.unlock();
+        }
+        Lock readLock = lockingService.getReadLock(TestData.class, uuid);
+        Assertions.assertTrue(readLock.tryLock());
+        readLock.unlock();
+    }
+
+    @Test
+    public void testDefaultLocksAllowWritingWhileReadingAnotherObject() {
+        NetworkDataLockingService lockingService = NetworkDataLockingService.createDummy();
+        Lock readLock = lockingService.getReadLock(TestData.class, UUID.randomUUID());
+        readLock.lock();
+        try {
+            Lock writeLock = lockingService.getWriteLock(TestData.class, UUID.randomUUID());
+            Assertions.assertTrue(writeLock.tryLock());
+            writeLock.unlock();
+        } finally {
+            readLock.unlock();
+        }
+
+        // With a single stripe both objects share a lock, and the read lock can't be upgraded
+        NetworkDataLockingService striped = NetworkDataLockingService.createDummyStriped(1);
+        Lock stripedReadLock = striped.getReadLock(TestData.class, UUID.randomUUID());
+        stripedReadLock.lock();
+        try {
+            Assertions.assertFalse(striped.getWriteLock(TestData.class, UUID.randomUUID()).tryLock());
+        } finally {
+            stripedReadLock.unlock();
+        }
+    }
+
+    @Test
+    public void testLockMetricsRecordTimeoutsAndHolders() throws ExecutionException, InterruptedException {
+        NetworkDataLockingService lockingService = NetworkDataLockingService.createDummy();
+        LockMetrics lockMetrics = new LockMetrics();
+        UUID uuid = UUID.randomUUID();
+        Lock writeLock = lockMetrics.instrument(lockingService.getWriteLock(TestData.class, uuid), TestData.class, uuid, true);
+        writeLock.lock();
+        try {
+            Assertions.assertEquals(1, lockMetrics.getLongestHolders(10).size());
+            Assertions.assertFalse(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return lockMetrics.instrument(lockingService.getReadLock(TestData.class, uuid), TestData.class, uuid, false).tryLock(20, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }).get());
+        } finally {
+            writeLock.unlock();
+        }
+        LockMetrics.ClassMetrics metrics = lockMetrics.getMetrics(TestData.class);
+        Assertions.assertEquals(1, metrics.getTimeouts());
+        Assertions.assertEquals(1, metrics.getWaitTimes().getCount());
+        Assertions.assertEquals(1, metrics.getHoldTimes().getCount());
+        Assertions.assertTrue(lockMetrics.getLongestHolders(10).isEmpty());
+    }
+
+    @Test
+    public void testMultiLocksInOppositeOrderDoNotDeadlock() {
+        NetworkDataLockingService lockingService = NetworkDataLockingService.createDummyPerObject();
+        PipelineDataKey first = PipelineDataKey.of(TestData.class, UUID.randomUUID());
+        PipelineDataKey second = PipelineDataKey.of(TestData.class, UUID.randomUUID());
+        Runnable forward = () -> lockRepeatedly(lockingService.getWriteLocks(List.of(first, second)));
+        Runnable backward = () -> lockRepeatedly(lockingService.getWriteLocks(List.of(second, first)));
+        Assertions.assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> CompletableFuture.allOf(CompletableFuture.runAsync(forward), CompletableFuture.runAsync(backward)).join());
+    }
+
+    /**
+     * Striped locks are shared by unrelated objects, so multi locks over different objects can still take the same stripes
+     */
+    @Test
+    public void testStripedMultiLocksInOppositeOrderDoNotDeadlock() {
+        NetworkDataLockingService lockingService = NetworkDataLockingService.createDummyStriped(DummyNetworkDataLockingService.DEFAULT_STRIPES);
+        PipelineDataKey first = PipelineDataKey.of(TestData.class, UUID.randomUUID());
+        PipelineDataKey second = PipelineDataKey.of(TestData.class, UUID.randomUUID());
+        Runnable forward = () -> lockRepeatedly(lockingService.getWriteLocks(List.of(first, second)));
+        Runnable backward = () -> lockRepeatedly(lockingService.getWriteLocks(List.of(second, first)));
+        Assertions.assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> CompletableFuture.allOf(CompletableFuture.runAsync(forward), CompletableFuture.runAsync(backward)).join());
+
+        List<PipelineDataKey> keys = new ArrayList<>();
+        for (int i = 0; i < 4096; i++)
+            keys.add(PipelineDataKey.of(TestData.class, UUID.randomUUID()));
+        Runnable randomSets = () -> {
+            Random random = new Random();
+            for (int i = 0; i < 2000; i++) {
+                List<PipelineDataKey> set = new ArrayList<>();
+                for (int j = 0; j < 8; j++)
+                    set.add(keys.get(random.nextInt(keys.size())));
+                Lock lock = lockingService.getWriteLocks(set);
+                lock.lock();
+                lock.unlock();
+            }
+        };
+        Assertions.assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> CompletableFuture.allOf(CompletableFuture.runAsync(randomSets), CompletableFuture.runAsync(randomSets), CompletableFuture.runAsync(randomSets), CompletableFuture.runAsync(randomSets)).join());
+    }
+
+    @Test
+    public void testWriteAllCommitsAllObjects() throws AccessInvalidException {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName("multiWrite")
+                .withPipeline(pipelineBuilder -> pipelineBuilder.withNetworkDataLockingService(NetworkDataLockingService.createDummy()))
+                .build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        networkParticipant.connect();
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        networkParticipant.pipeline().loadOrCreate(TestData.class, from, testData -> testData.testInt = 10);
+        networkParticipant.pipeline().loadOrCreate(TestData.class, to);
+
+        try (MultiWrite multiWrite = networkParticipant.pipeline().writeAll(List.of(PipelineDataKey.of(TestData.class, to), PipelineDataKey.of(TestData.class, from)))) {
+            multiWrite.get(TestData.class, from).testInt -= 5;
+            multiWrite.get(TestData.class, to).testInt += 5;
+        }
+        try (var read = networkParticipant.pipeline().load(TestData.class, to).read()) {
+            Assertions.assertEquals(5, read.get().testInt);
+        }
+        networkParticipant.shutdown();
+    }
+
+    @Test
+    public void testLocalReadsDoNotWaitForWriteLock() throws AccessInvalidException, ExecutionException, InterruptedException {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName("localReads")
+                .withPipeline(pipelineBuilder -> pipelineBuilder.withNetworkDataLockingService(NetworkDataLockingService.createDummy()))
+                .build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        networkParticipant.connect();
+        UUID uuid = UUID.randomUUID();
+        networkParticipant.pipeline().loadOrCreate(TestData.class, uuid, testData -> testData.testInt = 7);
+
+        try (var ignored = networkParticipant.pipeline().load(TestData.class, uuid).write()) {
+            Assertions.assertEquals(7, CompletableFuture.supplyAsync(() -> {
+                try (var read = networkParticipant.pipeline().load(TestData.class, uuid, ReadConsistency.LOCAL).read(ReadConsistency.LOCAL)) {
+                    return read.get().testInt;
+                } catch (AccessInvalidException e) {
+                    throw new RuntimeException(e);
+                }
+            }).get());
+            Assertions.assertEquals(7, CompletableFuture.supplyAsync(() -> {
+                try (var read = networkParticipant.pipeline().load(TestData.class, uuid, ReadConsistency.bounded(Duration.ofMinutes(1))).read(ReadConsistency.bounded(Duration.ofMinutes(1)))) {
+                    return read.get().testInt;
+                } catch (AccessInvalidException e) {
+                    throw new RuntimeException(e);
+                }
+            }).get());
+        }
+        LockMetrics.ClassMetrics metrics = networkParticipant.pipeline().getLockMetrics().getMetrics(TestData.class);
+        Assertions.assertEquals(2, metrics.getReadLatencies(ReadConsistency.Level.LOCAL).getCount());
+        Assertions.assertEquals(2, metrics.getReadLatencies(ReadConsistency.Level.BOUNDED).getCount());
+        Assertions.assertEquals(0, metrics.getRevalidations());
+        networkParticipant.shutdown();
+    }
+
+    /**
+     * Another node changed the object in the storage. Local reads keep the local copy, bounded reads reload it once it is older than the bound.
+     */
+    @Test
+    public void testBoundedReadsRevalidateStaleCopies() throws AccessInvalidException, InterruptedException, IOException {
+        Path storagePath = Path.of("bounded_storage");
+        GlobalStorage globalStorage = GlobalStorage.buildJsonStorage(storagePath);
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName("boundedReads")
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createDummy())
+                        .withGlobalStorage(globalStorage))
+                .build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        networkParticipant.connect();
+        try {
+            UUID uuid = UUID.randomUUID();
+            networkParticipant.pipeline().loadOrCreate(TestData.class, uuid, testData -> testData.testInt = 1);
+            saveRemoteChange(networkParticipant, globalStorage, uuid, 5);
+
+            try (var read = networkParticipant.pipeline().load(TestData.class, uuid, ReadConsistency.LOCAL).read(ReadConsistency.LOCAL)) {
+                Assertions.assertEquals(1, read.get().testInt);
+            }
+            Thread.sleep(100);
+            try (var read = networkParticipant.pipeline().load(TestData.class, uuid, ReadConsistency.bounded(Duration.ofMillis(50))).read(ReadConsistency.bounded(Duration.ofMillis(50)))) {
+                Assertions.assertEquals(5, read.get().testInt);
+            }
+            Assertions.assertEquals(1, networkParticipant.pipeline().getLockMetrics().getMetrics(TestData.class).getRevalidations());
+
+            // The copy was just reloaded, so a read with a larger bound uses it without asking the storage again
+            saveRemoteChange(networkParticipant, globalStorage, uuid, 9);
+            try (var read = networkParticipant.pipeline().load(TestData.class, uuid, ReadConsistency.bounded(Duration.ofMinutes(1))).read(ReadConsistency.bounded(Duration.ofMinutes(1)))) {
+                Assertions.assertEquals(5, read.get().testInt);
+            }
+            try (var read = networkParticipant.pipeline().load(TestData.class, uuid, ReadConsistency.LOCAL).read(ReadConsistency.LOCAL)) {
+                Assertions.assertEquals(5, read.get().testInt);
+            }
+            Assertions.assertEquals(1, networkParticipant.pipeline().getLockMetrics().getMetrics(TestData.class).getRevalidations());
+        } finally {
+            networkParticipant.shutdown();
+            FileUtils.deleteDirectory(storagePath.toFile());
+        }
+    }
+
+    private static void saveRemoteChange(NetworkParticipant networkParticipant, GlobalStorage globalStorage, UUID uuid, int testInt) {
+        JsonObject changed = networkParticipant.pipeline().getLocalCache().loadData(TestData.class, uuid).getAsJsonObject().deepCopy();
+        changed.addProperty("testInt", testInt);
+        globalStorage.save(TestData.class, uuid, changed);
+    }
+
+    private static void lockRepeatedly(Lock lock) {
+        for (int i = 0; i < 10000; i++) {
+            lock.lock();
+            lock.unlock();
+        }
+    }
+}
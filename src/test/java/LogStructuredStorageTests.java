@@ -0,0 +1,128 @@
+import com.google.gson.JsonObject;
+import de.verdox.vpipeline.api.pipeline.parts.storage.LogStructuredStorage;
+import model.data.TestData;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+
+public class LogStructuredStorageTests {
+    private static final Path PATH = Path.of("log_storage");
+    private LogStructuredStorage storage;
+
+    @BeforeEach
+    public void setup() {
+        storage = new LogStructuredStorage(PATH);
+        storage.connect();
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        storage.shutdown();
+        FileUtils.deleteDirectory(PATH.toFile());
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        UUID uuid = UUID.randomUUID();
+        storage.save(TestData.class, uuid, createDocument(1));
+        storage.save(TestData.class, uuid, createDocument(2));
+        Assertions.assertTrue(storage.dataExist(TestData.class, uuid));
+        Assertions.assertEquals(createDocument(2), storage.loadData(TestData.class, uuid));
+    }
+
+    @Test
+    public void testRemove() {
+        UUID uuid = UUID.randomUUID();
+        storage.save(TestData.class, uuid, createDocument(1));
+        Assertions.assertTrue(storage.remove(TestData.class, uuid));
+        Assertions.assertFalse(storage.dataExist(TestData.class, uuid));
+        Assertions.assertNull(storage.loadData(TestData.class, uuid));
+    }
+
+    @Test
+    public void testRecovery() {
+        UUID saved = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        storage.saveBatch(TestData.class, Map.of(saved, createDocument(1), removed, createDocument(2)));
+        storage.remove(TestData.class, removed);
+        storage.shutdown();
+
+        storage = new LogStructuredStorage(PATH);
+        storage.connect();
+        Assertions.assertEquals(createDocument(1), storage.loadData(TestData.class, saved));
+        Assertions.assertFalse(storage.dataExist(TestData.class, removed));
+    }
+
+    @Test
+    public void testTornWriteIsDiscarded() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        storage.save(TestData.class, uuid, createDocument(1));
+        storage.shutdown();
+
+        Files.write(PATH.resolve("segment-0.log"), new byte[]{1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        storage = new LogStructuredStorage(PATH);
+        storage.connect();
+        Assertions.assertEquals(createDocument(1), storage.loadData(TestData.class, uuid));
+        UUID other = UUID.randomUUID();
+        storage.save(TestData.class, other, createDocument(3));
+        Assertions.assertEquals(createDocument(3), storage.loadData(TestData.class, other));
+    }
+
+    @Test
+    public void testCompactionKeepsLiveRecords() throws IOException {
+        storage.shutdown();
+        storage = new LogStructuredStorage(PATH, true, 256);
+        storage.connect();
+        UUID overwritten = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        UUID recreated = UUID.randomUUID();
+        UUID untouched = UUID.randomUUID();
+        storage.saveBatch(TestData.class, Map.of(removed, createDocument(1), recreated, createDocument(2), untouched, createDocument(3)));
+        for (int i = 0; i < 20; i++)
+            storage.save(TestData.class, overwritten, createDocument(i));
+        storage.remove(TestData.class, removed);
+        storage.remove(TestData.class, recreated);
+        for (int i = 0; i < 10; i++)
+            storage.save(TestData.class, overwritten, createDocument(100 + i));
+        storage.save(TestData.class, recreated, createDocument(4));
+
+        long segmentsBefore = countSegments();
+        storage.compact();
+        Assertions.assertTrue(countSegments() < segmentsBefore);
+        assertCompactedState(overwritten, removed, recreated, untouched);
+
+        storage.shutdown();
+        storage = new LogStructuredStorage(PATH, true, 256);
+        storage.connect();
+        assertCompactedState(overwritten, removed, recreated, untouched);
+    }
+
+    private void assertCompactedState(UUID overwritten, UUID removed, UUID recreated, UUID untouched) {
+        Assertions.assertEquals(createDocument(109), storage.loadData(TestData.class, overwritten));
+        Assertions.assertFalse(storage.dataExist(TestData.class, removed));
+        Assertions.assertEquals(createDocument(4), storage.loadData(TestData.class, recreated));
+        Assertions.assertEquals(createDocument(3), storage.loadData(TestData.class, untouched));
+    }
+
+    private static long countSegments() throws IOException {
+        try (var files = Files.list(PATH)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+
+    private static JsonObject createDocument(int value) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("value", value);
+        return jsonObject;
+    }
+}
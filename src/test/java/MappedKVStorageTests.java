@@ -0,0 +1,74 @@
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import de.verdox.vpipeline.api.pipeline.parts.storage.MappedKVStorage;
+import model.data.OnlyStorageData;
+import model.data.TestData;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public class MappedKVStorageTests {
+    private static final Path PATH = Path.of("mapped_storage");
+    private MappedKVStorage storage;
+
+    @BeforeEach
+    public void setup() {
+        storage = new MappedKVStorage(PATH);
+        storage.connect();
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        storage.shutdown();
+        FileUtils.deleteDirectory(PATH.toFile());
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        UUID uuid = UUID.randomUUID();
+        storage.save(TestData.class, uuid, createDocument(1, 10));
+        storage.save(TestData.class, uuid, createDocument(2, 1000));
+        Assertions.assertEquals(createDocument(2, 1000), storage.loadData(TestData.class, uuid));
+        Assertions.assertFalse(storage.dataExist(OnlyStorageData.class, uuid));
+    }
+
+    @Test
+    public void testRemove() {
+        UUID uuid = UUID.randomUUID();
+        storage.save(TestData.class, uuid, createDocument(1, 10));
+        Assertions.assertTrue(storage.remove(TestData.class, uuid));
+        Assertions.assertFalse(storage.dataExist(TestData.class, uuid));
+        Assertions.assertFalse(storage.remove(TestData.class, uuid));
+    }
+
+    @Test
+    public void testBatchGrowsIndexAndSurvivesReopen() {
+        Map<UUID, JsonElement> batch = new HashMap<>();
+        for (int i = 0; i < 5000; i++)
+            batch.put(UUID.randomUUID(), createDocument(i, 20));
+        storage.saveBatch(TestData.class, batch);
+        storage.shutdown();
+
+        storage = new MappedKVStorage(PATH);
+        storage.connect();
+        Set<UUID> saved = storage.getSavedUUIDs(TestData.class);
+        Assertions.assertEquals(batch.keySet(), saved);
+        batch.forEach((uuid, jsonElement) -> Assertions.assertEquals(jsonElement, storage.loadData(TestData.class, uuid)));
+    }
+
+    private static JsonObject createDocument(int value, int padding) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("value", value);
+        jsonObject.addProperty("padding", "x".repeat(padding));
+        return jsonObject;
+    }
+}
@@ -0,0 +1,158 @@
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.membership.MembershipService;
+import de.verdox.vpipeline.api.messaging.RemoteMessageReceiver;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.AccessInvalidException;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+public class MembershipTests {
+    private static final MembershipService.Settings SETTINGS = new MembershipService.Settings(Duration.ofMillis(200), Duration.ofSeconds(1), Duration.ofSeconds(2));
+    private static RedisServer redisServer = null;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+    private static final Set<UUID> joined = ConcurrentHashMap.newKeySet();
+    private static final Set<UUID> left = ConcurrentHashMap.newKeySet();
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = createParticipant("first");
+        second = createParticipant("second");
+        first.connect();
+        second.connect();
+        first.messagingService().getMembershipService().addListener(new MembershipService.Listener() {
+            @Override
+            public void onJoin(@NotNull RemoteMessageReceiver member) {
+                joined.add(member.getUuid());
+            }
+
+            @Override
+            public void onLeave(@NotNull RemoteMessageReceiver member) {
+                left.add(member.getUuid());
+            }
+        });
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.shutdown();
+        second.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    /**
+     * The join heartbeat is answered before connect returns, so both sides know each other right away
+     */
+    @Test
+    public void testMembersKnowEachOtherAfterConnect() {
+        Assertions.assertNotNull(first.messagingService().getMembershipService().getMember(second.getUUID()));
+        Assertions.assertNotNull(second.messagingService().getMembershipService().getMember(first.getUUID()));
+        Assertions.assertNull(first.messagingService().getMembershipService().getMember(first.getUUID()));
+        Assertions.assertEquals("second", first.messagingService().getMembershipService().getMember(second.getUUID()).getIdentifier());
+    }
+
+    @Test
+    public void testHeartbeatsKeepMembersAlive() throws InterruptedException {
+        Thread.sleep(SETTINGS.timeout().toMillis() * 2);
+        Assertions.assertNotNull(first.messagingService().getMembershipService().getMember(second.getUUID()));
+        Assertions.assertTrue(second.messagingService().getMembershipService().getMember(first.getUUID()).getLastKeepAlive() > System.currentTimeMillis() - SETTINGS.timeout().toMillis());
+    }
+
+    @Test
+    public void testJoinAndLeaveEvents() throws InterruptedException {
+        NetworkParticipant third = createParticipant("third");
+        third.connect();
+        Assertions.assertEquals(2, third.messagingService().getMembershipService().getMemberCount());
+        await(() -> joined.contains(third.getUUID()));
+
+        third.shutdown();
+        await(() -> left.contains(third.getUUID()));
+        Assertions.assertNull(first.messagingService().getMembershipService().getMember(third.getUUID()));
+    }
+
+    @Test
+    public void testMissingHeartbeatsLeave() throws InterruptedException {
+        NetworkParticipant fourth = createParticipant("fourth");
+        fourth.connect();
+        Assertions.assertNotNull(first.messagingService().getMembershipService().getMember(fourth.getUUID()));
+
+        // Stops the heartbeats without the offline ping, like a crashed participant
+        ((MessagingServiceImpl) fourth.messagingService()).getMembershipService().shutdown();
+        await(() -> left.contains(fourth.getUUID()));
+        Assertions.assertNull(first.messagingService().getMembershipService().getMember(fourth.getUUID()));
+        fourth.shutdown();
+    }
+
+    /**
+     * Session uuids are derived from the identifier. A second participant with a used identifier is shut down and does not disturb the running one.
+     */
+    @Test
+    public void testDuplicateIdentifierIsRefused() throws InterruptedException {
+        NetworkParticipant duplicate = createParticipant("second");
+        duplicate.connect();
+        Assertions.assertTrue(((MessagingServiceImpl) duplicate.messagingService()).getMembershipService().isSessionUUIDShared());
+        await(() -> ((MessagingServiceImpl) second.messagingService()).getMembershipService().isSessionUUIDShared());
+
+        // The offline ping of the duplicate carries its own nonce and is ignored
+        Thread.sleep(SETTINGS.heartbeatInterval().toMillis() * 2);
+        Assertions.assertNotNull(first.messagingService().getMembershipService().getMember(second.getUUID()));
+        Assertions.assertFalse(left.contains(second.getUUID()));
+    }
+
+    @Test
+    @SuppressWarnings("removal")
+    public void testDeprecatedLookupsUseTheMembershipView() throws AccessInvalidException {
+        try (var read = first.getOnlineNetworkClient("second").read()) {
+            Assertions.assertEquals("second", read.get().getIdentifier());
+        }
+        try (var read = first.getAsNetworkClient().read()) {
+            Assertions.assertEquals("first", read.get().getIdentifier());
+        }
+        Assertions.assertNull(first.getOnlineNetworkClient("unknown"));
+        Assertions.assertTrue(first.getOnlineNetworkClients().size() >= 2);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 60 && !condition.getAsBoolean(); i++)
+            Thread.sleep(50);
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder
+                        .withTransmitter(Transmitter.createRedisTransmitter(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                        .withMembership(SETTINGS))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                ).build();
+        return networkParticipant;
+    }
+}
@@ -0,0 +1,175 @@
+import com.google.gson.JsonObject;
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalCache;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.impl.util.RedisConnection;
+import model.data.TestData;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class OptimisticWriteTests {
+    private static final Path PATH = Path.of("optimistic_storage");
+    private static RedisServer redisServer = null;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = createParticipant("first");
+        second = createParticipant("second");
+        first.connect();
+        second.connect();
+    }
+
+    @AfterAll
+    public static void stopRedis() throws IOException {
+        first.shutdown();
+        second.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+        FileUtils.deleteDirectory(PATH.toFile());
+    }
+
+    @Test
+    public void testConcurrentOptimisticWritesAreNotLost() {
+        UUID uuid = UUID.randomUUID();
+        first.pipeline().loadOrCreate(TestData.class, uuid);
+        Assertions.assertNotNull(second.pipeline().load(TestData.class, uuid));
+
+        CompletableFuture<Void> firstWriter = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 50; i++)
+                Assertions.assertTrue(first.pipeline().writeOptimistic(TestData.class, uuid, testData -> testData.testInt++));
+        });
+        CompletableFuture<Void> secondWriter = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 50; i++)
+                Assertions.assertTrue(second.pipeline().writeOptimistic(TestData.class, uuid, testData -> testData.testInt++));
+        });
+        CompletableFuture.allOf(firstWriter, secondWriter).join();
+
+        GlobalCache.VersionedData versionedData = first.pipeline().getGlobalCache().loadVersioned(TestData.class, uuid);
+        Assertions.assertNotNull(versionedData);
+        Assertions.assertEquals(100, versionedData.data().getAsJsonObject().get("testInt").getAsInt());
+        // Storage writes of optimistic writers can arrive out of order, the last one must still leave the latest version
+        Assertions.assertEquals(100, first.pipeline().getGlobalStorage().loadData(TestData.class, uuid).getAsJsonObject().get("testInt").getAsInt());
+    }
+
+    @Test
+    public void testUncommittedLocalChangesAreNotCommitted() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        var access = first.pipeline().loadOrCreate(TestData.class, uuid);
+        // Makes this node the last committer, so the next optimistic write starts from the local object
+        Assertions.assertTrue(first.pipeline().writeOptimistic(TestData.class, uuid, testData -> testData.testInt++));
+
+        CountDownLatch changed = new CountDownLatch(1);
+        CountDownLatch optimisticStarted = new CountDownLatch(1);
+        CompletableFuture<Void> localWriter = CompletableFuture.runAsync(() -> {
+            try (var write = access.write()) {
+                write.get().testString = "uncommitted";
+                changed.countDown();
+                optimisticStarted.await();
+                Thread.sleep(200);
+                write.get().testString = "committed";
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Assertions.assertTrue(changed.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> optimisticWriter = CompletableFuture.supplyAsync(() -> {
+            optimisticStarted.countDown();
+            return first.pipeline().writeOptimistic(TestData.class, uuid, testData -> testData.testInt++);
+        });
+        // The optimistic write waits for the local writer instead of copying its unfinished changes
+        Thread.sleep(100);
+        Assertions.assertFalse(optimisticWriter.isDone());
+        localWriter.get(5, TimeUnit.SECONDS);
+        Assertions.assertTrue(optimisticWriter.get(5, TimeUnit.SECONDS));
+
+        GlobalCache.VersionedData versionedData = first.pipeline().getGlobalCache().loadVersioned(TestData.class, uuid);
+        Assertions.assertNotNull(versionedData);
+        Assertions.assertEquals("committed", versionedData.data().getAsJsonObject().get("testString").getAsString());
+        Assertions.assertEquals(2, versionedData.data().getAsJsonObject().get("testInt").getAsInt());
+        try (var read = access.read()) {
+            Assertions.assertEquals("committed", read.get().testString);
+            Assertions.assertEquals(2, read.get().testInt);
+        }
+    }
+
+    @Test
+    public void testCompareAndSaveRejectsOutdatedVersion() {
+        UUID uuid = UUID.randomUUID();
+        first.pipeline().loadOrCreate(TestData.class, uuid);
+        GlobalCache globalCache = first.pipeline().getGlobalCache();
+        GlobalCache.VersionedData versionedData = globalCache.loadVersioned(TestData.class, uuid);
+        Assertions.assertNotNull(versionedData);
+
+        long newVersion = globalCache.compareAndSave(TestData.class, uuid, versionedData.version(), versionedData.data());
+        Assertions.assertEquals(versionedData.version() + 1, newVersion);
+        Assertions.assertEquals(0, globalCache.compareAndSave(TestData.class, uuid, versionedData.version(), versionedData.data()));
+    }
+
+    @Test
+    public void testSaveInvalidatesReadVersion() {
+        UUID uuid = UUID.randomUUID();
+        first.pipeline().loadOrCreate(TestData.class, uuid);
+        GlobalCache globalCache = first.pipeline().getGlobalCache();
+        GlobalCache.VersionedData versionedData = globalCache.loadVersioned(TestData.class, uuid);
+        Assertions.assertNotNull(versionedData);
+
+        // A locked writer replaces the data, a compare-and-set on the version read before must not overwrite it
+        globalCache.save(TestData.class, uuid, versionedData.data());
+        Assertions.assertEquals(0, globalCache.compareAndSave(TestData.class, uuid, versionedData.version(), versionedData.data()));
+    }
+
+    @Test
+    public void testInsertedObjectHasVersion() {
+        UUID uuid = UUID.randomUUID();
+        GlobalCache globalCache = first.pipeline().getGlobalCache();
+        JsonObject data = new JsonObject();
+        data.addProperty("testInt", 1);
+        Assertions.assertTrue(globalCache.saveIfAbsent(TestData.class, uuid, data));
+        GlobalCache.VersionedData versionedData = globalCache.loadVersioned(TestData.class, uuid);
+        Assertions.assertNotNull(versionedData);
+        Assertions.assertNotEquals(0, versionedData.version());
+
+        Assertions.assertFalse(globalCache.saveIfAbsent(TestData.class, uuid, new JsonObject()));
+        Assertions.assertEquals(versionedData.version(), globalCache.getVersion(TestData.class, uuid));
+        Assertions.assertEquals(1, globalCache.loadData(TestData.class, uuid).getAsJsonObject().get("testInt").getAsInt());
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createDummy())
+                        .withGlobalCache(GlobalCache.createRedisCache(new RedisConnection(false, new String[]{"redis://localhost:6379"}, "")))
+                        .withGlobalStorage(GlobalStorage.buildJsonStorage(PATH))
+                ).build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        return networkParticipant;
+    }
+}
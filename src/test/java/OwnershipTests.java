@@ -0,0 +1,131 @@
+import com.google.gson.JsonObject;
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalCache;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.impl.ownership.ObjectOwnership;
+import model.data.TestData;
+import model.ownership.AddToTestInt;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+public class OwnershipTests {
+    private static RedisServer redisServer = null;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = createParticipant("first");
+        second = createParticipant("second");
+        first.connect();
+        second.connect();
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.shutdown();
+        second.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    @Test
+    public void testWriteIsForwardedToOwner() {
+        UUID uuid = UUID.randomUUID();
+        first.pipeline().loadOrCreate(TestData.class, uuid);
+        Assertions.assertTrue(first.messagingService().getOwnershipRegistry().claim(TestData.class, uuid));
+
+        Assertions.assertEquals(first.getUUID(), second.messagingService().getOwnershipRegistry().getOwner(TestData.class, uuid));
+        Assertions.assertTrue(second.messagingService().getOwnershipRegistry().write(TestData.class, uuid, new AddToTestInt(5)).join());
+        Assertions.assertEquals(5, first.pipeline().getLocalCache().loadObject(TestData.class, uuid).testInt);
+        Assertions.assertTrue(first.messagingService().getOwnershipRegistry().isOwner(TestData.class, uuid));
+    }
+
+    @Test
+    public void testOwnershipIsHandedOver() {
+        UUID uuid = UUID.randomUUID();
+        first.pipeline().loadOrCreate(TestData.class, uuid);
+        Assertions.assertTrue(first.messagingService().getOwnershipRegistry().write(TestData.class, uuid, new AddToTestInt(1)).join());
+        Assertions.assertTrue(first.messagingService().getOwnershipRegistry().isOwner(TestData.class, uuid));
+
+        Assertions.assertTrue(second.messagingService().getOwnershipRegistry().claim(TestData.class, uuid));
+        Assertions.assertFalse(first.messagingService().getOwnershipRegistry().isOwner(TestData.class, uuid));
+        Assertions.assertTrue(second.messagingService().getOwnershipRegistry().write(TestData.class, uuid, new AddToTestInt(2)).join());
+        Assertions.assertEquals(3, second.pipeline().getLocalCache().loadObject(TestData.class, uuid).testInt);
+    }
+
+    @Test
+    public void testLocalWritesAndMutationsExcludeEachOther() {
+        UUID uuid = UUID.randomUUID();
+        var access = first.pipeline().loadOrCreate(TestData.class, uuid);
+        Assertions.assertTrue(first.messagingService().getOwnershipRegistry().claim(TestData.class, uuid));
+
+        CompletableFuture<Void> localWriter = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 100; i++) {
+                try (var write = access.write()) {
+                    write.get().testInt++;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        CompletableFuture<Void> mutationWriter = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 100; i++)
+                Assertions.assertTrue(first.messagingService().getOwnershipRegistry().write(TestData.class, uuid, new AddToTestInt(1)).join());
+        });
+        CompletableFuture.allOf(localWriter, mutationWriter).join();
+        Assertions.assertEquals(200, first.pipeline().getLocalCache().loadObject(TestData.class, uuid).testInt);
+    }
+
+    @Test
+    public void testOwnerRejectsWritesAfterSilentTakeover() {
+        UUID uuid = UUID.randomUUID();
+        first.pipeline().loadOrCreate(TestData.class, uuid);
+        Assertions.assertTrue(first.messagingService().getOwnershipRegistry().write(TestData.class, uuid, new AddToTestInt(1)).join());
+
+        // Another node took the object over with a newer epoch while this node did not answer the handover
+        JsonObject record = new JsonObject();
+        record.addProperty("owner", second.messagingService().getSessionUUID().toString());
+        record.addProperty("epoch", 99);
+        UUID recordUUID = UUID.nameUUIDFromBytes(("test:model.data.TestData:" + uuid).getBytes(StandardCharsets.UTF_8));
+        first.pipeline().getGlobalCache().save(ObjectOwnership.class, recordUUID, record);
+
+        Assertions.assertFalse(first.messagingService().getOwnershipRegistry().write(TestData.class, uuid, new AddToTestInt(1)).join());
+        Assertions.assertFalse(first.messagingService().getOwnershipRegistry().isOwner(TestData.class, uuid));
+        Assertions.assertEquals(1, first.pipeline().getLocalCache().loadObject(TestData.class, uuid).testInt);
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder.withTransmitter(Transmitter.createRedisTransmitter(false, new String[]{"redis://127.0.0.1:6379"}, "")))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                        .withGlobalCache(GlobalCache.createRedisCache(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                ).build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        networkParticipant.messagingService().getOwnershipRegistry().registerMutationType("add_to_test_int", AddToTestInt.class, AddToTestInt::new);
+        return networkParticipant;
+    }
+}
@@ -0,0 +1,123 @@
+import com.google.gson.JsonParser;
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.pipeline.core.LoadMetrics;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.AccessInvalidException;
+import de.verdox.vpipeline.api.pipeline.parts.cache.local.LockableAction;
+import de.verdox.vpipeline.api.util.AnnotationResolver;
+import de.verdox.vpipeline.impl.pipeline.core.PeerFetchQuery;
+import model.data.TestData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+public class PeerFetchTests {
+    private static RedisServer redisServer = null;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = createParticipant("first");
+        second = createParticipant("second");
+        first.connect();
+        second.connect();
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.shutdown();
+        second.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    /**
+     * Neither participant has a global cache or storage, so the second one can only load the object from the local cache of the first one
+     */
+    @Test
+    public void testLoadFromPeer() {
+        UUID uuid = UUID.randomUUID();
+        try (LockableAction.Write<TestData> write = first.pipeline().loadOrCreate(TestData.class, uuid).write()) {
+            write.get().testInt = 7;
+        } catch (AccessInvalidException e) {
+            throw new RuntimeException(e);
+        }
+
+        long peerHits = second.pipeline().getLoadMetrics().getMetrics(TestData.class).getHits(LoadMetrics.Tier.PEER);
+        try (LockableAction.Read<TestData> read = second.pipeline().load(TestData.class, uuid).read()) {
+            Assertions.assertEquals(7, read.get().testInt);
+        } catch (AccessInvalidException e) {
+            throw new RuntimeException(e);
+        }
+        Assertions.assertEquals(peerHits + 1, second.pipeline().getLoadMetrics().getMetrics(TestData.class).getHits(LoadMetrics.Tier.PEER));
+    }
+
+    @Test
+    public void testPeerWaitsForLocalWriter() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        first.pipeline().loadOrCreate(TestData.class, uuid);
+        TestData local = first.pipeline().getLocalCache().loadObject(TestData.class, uuid);
+
+        CompletableFuture<String> answer;
+        Lock localWriteLock = first.pipeline().getLocalLockingService().getWriteLock(TestData.class, uuid);
+        localWriteLock.lock();
+        try {
+            local.testInt = 1;
+            answer = second.messagingService()
+                    .<String, PeerFetchQuery>sendInstruction(new PeerFetchQuery(UUID.randomUUID(), AnnotationResolver.getDataStorageIdentifier(TestData.class), uuid), first.messagingService().getSessionUUID())
+                    .firstMatching(Objects::nonNull, Duration.ofSeconds(2));
+            Thread.sleep(200);
+            // The uncommitted change must not be handed out
+            Assertions.assertFalse(answer.isDone());
+            local.testInt = 2;
+        } finally {
+            localWriteLock.unlock();
+        }
+        String serialized = answer.get(3, TimeUnit.SECONDS);
+        Assertions.assertNotNull(serialized);
+        Assertions.assertEquals(2, JsonParser.parseString(serialized).getAsJsonObject().get("testInt").getAsInt());
+    }
+
+    @Test
+    public void testUnknownObjectIsAMiss() {
+        long misses = second.pipeline().getLoadMetrics().getMetrics(TestData.class).getHits(LoadMetrics.Tier.MISS);
+        Assertions.assertNull(second.pipeline().load(TestData.class, UUID.randomUUID()));
+        Assertions.assertEquals(misses + 1, second.pipeline().getLoadMetrics().getMetrics(TestData.class).getHits(LoadMetrics.Tier.MISS));
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder.withTransmitter(Transmitter.createRedisTransmitter(false, new String[]{"redis://127.0.0.1:6379"}, "")))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                        .withPeerFetch(Duration.ofMillis(500))
+                ).build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        return networkParticipant;
+    }
+}
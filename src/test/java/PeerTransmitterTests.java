@@ -0,0 +1,134 @@
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.PeerTransmitter;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.RedisTransmitter;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.util.AnnotationResolver;
+import de.verdox.vpipeline.impl.pipeline.core.PeerFetchQuery;
+import de.verdox.vpipeline.impl.util.RedisConnection;
+import model.data.TestData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+public class PeerTransmitterTests {
+    private static RedisServer redisServer = null;
+    private static PeerTransmitter firstTransmitter;
+    private static PeerTransmitter secondTransmitter;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        firstTransmitter = createTransmitter();
+        secondTransmitter = createTransmitter();
+        first = createParticipant("first", firstTransmitter);
+        second = createParticipant("second", secondTransmitter);
+        first.connect();
+        second.connect();
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.shutdown();
+        second.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    @Test
+    public void testQueryIsAnsweredOverDirectConnections() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        second.pipeline().loadOrCreate(TestData.class, uuid);
+        long sentBefore = firstTransmitter.getDirectFrames();
+        long answeredBefore = secondTransmitter.getDirectFrames();
+
+        String data = first.messagingService()
+                .<String, PeerFetchQuery>sendInstruction(new PeerFetchQuery(UUID.randomUUID(), AnnotationResolver.getDataStorageIdentifier(TestData.class), uuid), second.messagingService().getSessionUUID())
+                .firstMatching(Objects::nonNull, Duration.ofSeconds(2))
+                .get(3, TimeUnit.SECONDS);
+
+        Assertions.assertNotNull(data);
+        Assertions.assertEquals(sentBefore + 1, firstTransmitter.getDirectFrames());
+        Assertions.assertEquals(answeredBefore + 1, secondTransmitter.getDirectFrames());
+    }
+
+    /**
+     * Frames that don't fit into a pooled buffer are read into a buffer of their own
+     */
+    @Test
+    public void testFramesLargerThanTheBufferPool() throws Exception {
+        String largeIdentifier = "x".repeat(200_000);
+        Map<UUID, String> answers = first.messagingService()
+                .<String, PeerFetchQuery>sendInstruction(new PeerFetchQuery(UUID.randomUUID(), largeIdentifier, UUID.randomUUID()), second.messagingService().getSessionUUID())
+                .allOf(Duration.ofSeconds(2))
+                .get(3, TimeUnit.SECONDS);
+        Assertions.assertTrue(answers.containsKey(second.messagingService().getSessionUUID()));
+    }
+
+    @Test
+    public void testManyInstructionsOverOneConnection() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            first.messagingService()
+                    .<String, PeerFetchQuery>sendInstruction(new PeerFetchQuery(UUID.randomUUID(), "", UUID.randomUUID()), second.messagingService().getSessionUUID())
+                    .allOf(Duration.ofSeconds(5))
+                    .get(6, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testUnknownPeersAreReachedOverRedis() {
+        long fallbackBefore = firstTransmitter.getFallbackFrames();
+        first.messagingService().sendInstruction(new PeerFetchQuery(UUID.randomUUID(), "", UUID.randomUUID()), Duration.ofMillis(100), UUID.randomUUID());
+        Assertions.assertEquals(fallbackBefore + 1, firstTransmitter.getFallbackFrames());
+    }
+
+    @Test
+    public void testBroadcastsUseRedis() throws Exception {
+        long directBefore = firstTransmitter.getDirectFrames();
+        Map<UUID, String> answers = first.messagingService()
+                .<String, PeerFetchQuery>sendInstruction(new PeerFetchQuery(UUID.randomUUID(), "", UUID.randomUUID()))
+                .allOf(Duration.ofSeconds(2))
+                .get(3, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, answers.size());
+        Assertions.assertEquals(directBefore, firstTransmitter.getDirectFrames());
+    }
+
+    private static PeerTransmitter createTransmitter() {
+        var redisTransmitter = new RedisTransmitter(new RedisConnection(false, new String[]{"redis://127.0.0.1:6379"}, ""));
+        return (PeerTransmitter) Transmitter.createPeerTransmitter(redisTransmitter, new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    private static NetworkParticipant createParticipant(String name, Transmitter transmitter) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder.withTransmitter(transmitter))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                ).build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        return networkParticipant;
+    }
+}
@@ -17,7 +17,10 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import redis.embedded.RedisServer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
@@ -274,6 +277,43 @@ public class PipelineSyncTest {
         }
     }
 
+    /**
+     * Several threads on both pipelines create the same objects at once. The atomic insert into the global cache lets exactly one creation win,
+     * and every loser ends up with the state of the winner instead of its own.
+     */
+    @Test
+    public void testConcurrentLoadOrCreateHasOneWinner() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            UUID uuid = UUID.randomUUID();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Pipeline creator = i % 2 == 0 ? pipeline : remotePipeline;
+                int value = i + 1;
+                threads.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    creator.loadOrCreate(TestData.class, uuid, testData -> testData.testInt = value);
+                }));
+            }
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+
+            int winner = pipeline.getGlobalCache().loadData(TestData.class, uuid).getAsJsonObject().get("testInt").getAsInt();
+            Assertions.assertTrue(winner >= 1 && winner <= 8);
+            try (LockableAction.Read<TestData> read1 = pipeline.load(TestData.class, uuid).read(); LockableAction.Read<TestData> read2 = remotePipeline.load(TestData.class, uuid).read()) {
+                Assertions.assertEquals(winner, read1.get().testInt);
+                Assertions.assertEquals(winner, read2.get().testInt);
+            } catch (AccessInvalidException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     /**
      * A DataAccess object exists even after the data was deleted from the pipeline.
      * An operation on this data access object should fail at this point with an exception.
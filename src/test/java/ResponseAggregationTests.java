@@ -0,0 +1,137 @@
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.instruction.ResponseCollector;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.util.AnnotationResolver;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import de.verdox.vpipeline.impl.pipeline.core.PeerFetchQuery;
+import model.data.TestData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class ResponseAggregationTests {
+    private static RedisServer redisServer = null;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+    private static NetworkParticipant third;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = createParticipant("first");
+        second = createParticipant("second");
+        third = createParticipant("third");
+        first.connect();
+        second.connect();
+        third.connect();
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.shutdown();
+        second.shutdown();
+        third.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    @Test
+    public void testFirstMatching() throws Exception {
+        UUID uuid = createOnSecond();
+        ResponseCollector<String> responses = fetch(uuid);
+        String data = responses.firstMatching(Objects::nonNull, Duration.ofSeconds(2)).get(3, TimeUnit.SECONDS);
+        Assertions.assertNotNull(data);
+    }
+
+    @Test
+    public void testFirstMatchingCompletesWithNullIfNobodyMatches() throws Exception {
+        ResponseCollector<String> responses = fetch(UUID.randomUUID());
+        Assertions.assertNull(responses.firstMatching(Objects::nonNull, Duration.ofSeconds(2)).get(3, TimeUnit.SECONDS));
+        Assertions.assertTrue(responses.hasReceivedAllAnswers());
+    }
+
+    @Test
+    public void testAllOf() throws Exception {
+        UUID uuid = createOnSecond();
+        Map<UUID, String> answers = fetch(uuid).allOf(Duration.ofSeconds(2)).get(3, TimeUnit.SECONDS);
+        Assertions.assertEquals(2, answers.size());
+        Assertions.assertNotNull(answers.get(second.messagingService().getSessionUUID()));
+        Assertions.assertNull(answers.get(third.messagingService().getSessionUUID()));
+    }
+
+    @Test
+    public void testQuorum() throws Exception {
+        ResponseCollector<String> responses = fetch(UUID.randomUUID());
+        List<String> answers = responses.quorum(2, Duration.ofSeconds(2)).get(3, TimeUnit.SECONDS);
+        Assertions.assertEquals(2, answers.size());
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> responses.quorum(3, Duration.ofSeconds(2)).get());
+        Assertions.assertInstanceOf(IllegalArgumentException.class, exception.getCause());
+    }
+
+    @Test
+    public void testDeadline() {
+        MessagingServiceImpl messagingService = (MessagingServiceImpl) first.messagingService();
+        ResponseCollector<String> responses = messagingService.sendInstruction(new PeerFetchQuery(UUID.randomUUID(), "", UUID.randomUUID()), UUID.randomUUID());
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> responses.allOf(Duration.ofMillis(200)).get(2, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(TimeoutException.class, exception.getCause());
+    }
+
+    /**
+     * Once the only aggregate completed the instruction does not wait for the missing answers anymore
+     */
+    @Test
+    public void testCompletedAggregateReleasesTheInstruction() throws Exception {
+        MessagingServiceImpl messagingService = (MessagingServiceImpl) first.messagingService();
+        ResponseCollector<String> responses = fetch(createOnSecond());
+        responses.firstMatching(Objects::nonNull, Duration.ofSeconds(2)).get(3, TimeUnit.SECONDS);
+        for (int i = 0; i < 20 && messagingService.getPendingInstructionCount() > 0; i++)
+            Thread.sleep(50);
+        Assertions.assertEquals(0, messagingService.getPendingInstructionCount());
+    }
+
+    private static UUID createOnSecond() {
+        UUID uuid = UUID.randomUUID();
+        second.pipeline().loadOrCreate(TestData.class, uuid);
+        return uuid;
+    }
+
+    private static ResponseCollector<String> fetch(UUID uuid) {
+        return first.messagingService().sendInstruction(new PeerFetchQuery(UUID.randomUUID(), AnnotationResolver.getDataStorageIdentifier(TestData.class), uuid));
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder.withTransmitter(Transmitter.createRedisTransmitter(false, new String[]{"redis://127.0.0.1:6379"}, "")))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                ).build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        return networkParticipant;
+    }
+}
@@ -0,0 +1,135 @@
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.instruction.ResponseCollector;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import de.verdox.vpipeline.impl.pipeline.core.PeerFetchQuery;
+import de.verdox.vpipeline.impl.util.HashedTimingWheel;
+import model.data.TestData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class ResponseTimeoutTests {
+    private static RedisServer redisServer = null;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = createParticipant("first");
+        second = createParticipant("second");
+        first.connect();
+        second.connect();
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.shutdown();
+        second.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    @Test
+    public void testTimingWheelRunsAndCancelsTasks() throws InterruptedException {
+        HashedTimingWheel timingWheel = new HashedTimingWheel("testWheel", 10, TimeUnit.MILLISECONDS, 8);
+        try {
+            CountDownLatch expired = new CountDownLatch(1000);
+            for (int i = 0; i < 1000; i++)
+                timingWheel.schedule(expired::countDown, 20 + i % 200, TimeUnit.MILLISECONDS);
+            CountDownLatch cancelledTask = new CountDownLatch(1);
+            HashedTimingWheel.Timeout cancelled = timingWheel.schedule(cancelledTask::countDown, 50, TimeUnit.MILLISECONDS);
+            Assertions.assertTrue(cancelled.cancel());
+
+            Assertions.assertTrue(expired.await(2, TimeUnit.SECONDS));
+            Assertions.assertFalse(cancelledTask.await(100, TimeUnit.MILLISECONDS));
+            Assertions.assertEquals(0, timingWheel.getPendingTimeouts());
+        } finally {
+            timingWheel.stop();
+        }
+    }
+
+    @Test
+    public void testTimingWheelDoesNotRunTasksEarly() throws InterruptedException {
+        HashedTimingWheel timingWheel = new HashedTimingWheel("testWheel", 10, TimeUnit.MILLISECONDS, 4);
+        try {
+            long start = System.nanoTime();
+            CountDownLatch expired = new CountDownLatch(1);
+            long[] elapsed = new long[1];
+            // Longer than one rotation of the wheel
+            timingWheel.schedule(() -> {
+                elapsed[0] = System.nanoTime() - start;
+                expired.countDown();
+            }, 150, TimeUnit.MILLISECONDS);
+            Assertions.assertTrue(expired.await(2, TimeUnit.SECONDS));
+            Assertions.assertTrue(elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(150));
+        } finally {
+            timingWheel.stop();
+        }
+    }
+
+    @Test
+    public void testUnansweredInstructionExpires() {
+        MessagingServiceImpl messagingService = (MessagingServiceImpl) first.messagingService();
+        ResponseCollector<String> responses = messagingService.sendInstruction(new PeerFetchQuery(UUID.randomUUID(), "", UUID.randomUUID()), Duration.ofMillis(300), UUID.randomUUID());
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> responses.askForValue(Objects::nonNull).get(2, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(TimeoutException.class, exception.getCause());
+        Assertions.assertTrue(responses.hasExpired());
+        Assertions.assertEquals(0, messagingService.getPendingInstructionCount());
+    }
+
+    @Test
+    public void testAnsweredBroadcastIsNoLongerPending() throws InterruptedException {
+        MessagingServiceImpl messagingService = (MessagingServiceImpl) first.messagingService();
+        ResponseCollector<String> responses = messagingService.sendInstruction(new PeerFetchQuery(UUID.randomUUID(), "", UUID.randomUUID()));
+
+        CountDownLatch answered = new CountDownLatch(1);
+        responses.whenResponseReceived((s, throwable) -> {
+            if (responses.hasReceivedAllAnswers())
+                answered.countDown();
+        });
+        Assertions.assertTrue(answered.await(2, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, responses.getAmountReceivedValues());
+        Assertions.assertFalse(responses.hasExpired());
+        // The answer is handed to the collector before the instruction is removed
+        for (int i = 0; i < 20 && messagingService.getPendingInstructionCount() > 0; i++)
+            Thread.sleep(50);
+        Assertions.assertEquals(0, messagingService.getPendingInstructionCount());
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder.withTransmitter(Transmitter.createRedisTransmitter(false, new String[]{"redis://127.0.0.1:6379"}, "")))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                ).build();
+        networkParticipant.pipeline().getDataRegistry().registerType(TestData.class);
+        return networkParticipant;
+    }
+}
@@ -0,0 +1,163 @@
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.pipeline.datatypes.IPipelineData;
+import de.verdox.vpipeline.api.pipeline.parts.GlobalStorage;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.api.pipeline.parts.storage.JDBCStorage;
+import de.verdox.vpipeline.api.pipeline.parts.storage.SQLDialect;
+import model.data.*;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the same cases against every embedded {@link SQLDialect} since each dialect builds its own upsert and insert statements
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public abstract class SQLStorageTests {
+    private NetworkParticipant networkParticipant;
+    private JDBCStorage binaryStorage;
+
+    protected abstract JDBCStorage createStorage(String database, boolean binary);
+
+    protected void cleanUpDatabases() throws IOException {
+    }
+
+    @BeforeAll
+    public void setup() {
+        GlobalStorage globalStorage = createStorage("pipeline", false);
+        networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName("s1")
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createDummy())
+                        .withGlobalStorage(globalStorage)
+                ).build();
+        Class<? extends IPipelineData>[] types = new Class[]{TestData.class, OnlyLocalData.class, OnlyCacheData.class, OnlyStorageData.class, LoadBeforeTest.class};
+
+        for (Class<? extends IPipelineData> type : types) {
+            networkParticipant.pipeline().getDataRegistry().registerType(type);
+        }
+        networkParticipant.connect();
+
+        binaryStorage = createStorage("binary", true);
+        binaryStorage.connect();
+    }
+
+    @AfterAll
+    public void cleanUp() throws IOException {
+        binaryStorage.shutdown();
+        networkParticipant.shutdown();
+        cleanUpDatabases();
+    }
+
+    @Test
+    public void testInsert() {
+        UUID uuid = UUID.randomUUID();
+        networkParticipant.pipeline().loadOrCreate(TestData.class, uuid);
+        Assertions.assertTrue(networkParticipant.pipeline().exist(TestData.class, uuid));
+    }
+
+    @Test
+    public void testRemove() {
+        UUID uuid = UUID.randomUUID();
+        networkParticipant.pipeline().loadOrCreate(TestData.class, uuid);
+        networkParticipant.pipeline().delete(TestData.class, uuid);
+        Assertions.assertFalse(networkParticipant.pipeline().exist(TestData.class, uuid));
+    }
+
+    @Test
+    public void testUpsertOverwritesBinaryDocument() {
+        UUID uuid = UUID.randomUUID();
+        JsonObject first = new JsonObject();
+        first.addProperty("value", 1);
+        JsonObject second = new JsonObject();
+        second.addProperty("value", 2);
+
+        binaryStorage.save(TestData.class, uuid, first);
+        binaryStorage.save(TestData.class, uuid, second);
+        Assertions.assertEquals(2, binaryStorage.loadData(TestData.class, uuid).getAsJsonObject().get("value").getAsInt());
+    }
+
+    @Test
+    public void testSaveBatch() {
+        Map<UUID, JsonElement> batch = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            JsonObject jsonObject = new JsonObject();
+            jsonObject.addProperty("value", i);
+            batch.put(UUID.randomUUID(), jsonObject);
+        }
+        binaryStorage.saveBatch(OnlyStorageData.class, batch);
+        Assertions.assertTrue(binaryStorage.getSavedUUIDs(OnlyStorageData.class).containsAll(batch.keySet()));
+    }
+
+    @Test
+    public void testSaveIfAbsent() {
+        UUID uuid = UUID.randomUUID();
+        JsonObject first = new JsonObject();
+        first.addProperty("value", 1);
+        JsonObject second = new JsonObject();
+        second.addProperty("value", 2);
+
+        Assertions.assertTrue(binaryStorage.saveIfAbsent(TestData.class, uuid, first));
+        Assertions.assertFalse(binaryStorage.saveIfAbsent(TestData.class, uuid, second));
+        Assertions.assertEquals(1, binaryStorage.loadData(TestData.class, uuid).getAsJsonObject().get("value").getAsInt());
+    }
+
+    @Test
+    public void testConcurrentLoadOrCreateCreatesOnce() {
+        UUID uuid = UUID.randomUUID();
+        var pipeline = networkParticipant.pipeline();
+        CompletableFuture<?>[] futures = IntStream.range(0, 8)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> pipeline.loadOrCreate(OnlyStorageData.class, uuid, onlyStorageData -> {})))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+        Assertions.assertTrue(pipeline.getGlobalStorage().dataExist(OnlyStorageData.class, uuid));
+        Assertions.assertTrue(pipeline.getLocalCache().dataExist(OnlyStorageData.class, uuid));
+    }
+
+    public static class H2 extends SQLStorageTests {
+        @Override
+        protected JDBCStorage createStorage(String database, boolean binary) {
+            return new JDBCStorage(SQLDialect.H2, "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1", "sa", "", binary);
+        }
+    }
+
+    /**
+     * SQLite keeps an in-memory database per connection, so the pooled connections share database files instead
+     */
+    public static class SQLite extends SQLStorageTests {
+        private static final Path PATH = Path.of("sqlite_storage");
+
+        @Override
+        protected JDBCStorage createStorage(String database, boolean binary) {
+            try {
+                Files.createDirectories(PATH);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new JDBCStorage(SQLDialect.SQLITE, "jdbc:sqlite:" + PATH.resolve(database + ".db"), "", "", binary);
+        }
+
+        @Override
+        protected void cleanUpDatabases() throws IOException {
+            FileUtils.deleteDirectory(PATH.toFile());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+import de.verdox.vpipeline.api.NetworkParticipant;
+import de.verdox.vpipeline.api.VNetwork;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.stream.ResponseStream;
+import de.verdox.vpipeline.api.pipeline.parts.NetworkDataLockingService;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import model.messages.TestStreamingQuery;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.embedded.RedisServer;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class StreamingQueryTests {
+    private static final ResponseStream.Settings SETTINGS = new ResponseStream.Settings(1024, 2, Duration.ofSeconds(2));
+    private static RedisServer redisServer = null;
+    private static NetworkParticipant first;
+    private static NetworkParticipant second;
+
+    @BeforeAll
+    public static void startRedis() {
+        if (redisServer == null) {
+            redisServer = RedisServer.builder()
+                    .port(6379)
+                    .setting("bind 127.0.0.1")
+                    .setting("maxmemory 128M")
+                    .build();
+            redisServer.start();
+        }
+        first = createParticipant("first");
+        second = createParticipant("second");
+        first.connect();
+        second.connect();
+    }
+
+    @AfterAll
+    public static void stopRedis() {
+        first.shutdown();
+        second.shutdown();
+        if (redisServer != null) {
+            redisServer.stop();
+            redisServer = null;
+        }
+    }
+
+    @BeforeEach
+    public void resetCounter() {
+        TestStreamingQuery.PRODUCED.set(0);
+    }
+
+    @Test
+    public void testAllElementsArriveInOrder() {
+        Iterator<Integer> iterator = stream(100_000, -1).toIterator();
+        int expected = 0;
+        while (iterator.hasNext())
+            Assertions.assertEquals(expected++, (int) iterator.next());
+        Assertions.assertEquals(100_000, expected);
+    }
+
+    @Test
+    public void testEmptyResult() {
+        Assertions.assertFalse(stream(0, -1).toIterator().hasNext());
+    }
+
+    /**
+     * The receiver only reads as many elements as fit into the window while the subscriber does not request more
+     */
+    @Test
+    public void testSlowSubscriberBoundsTheReceiver() throws Exception {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        stream(100_000, -1).subscribe(subscriber);
+        subscriber.subscription.join().request(1);
+        await(() -> subscriber.received.get() == 1);
+        Thread.sleep(500);
+        // Every chunk of 1 KiB holds 256 numbers, so the window of 2 chunks and the chunk being filled hold less than 1024
+        Assertions.assertTrue(TestStreamingQuery.PRODUCED.get() < 1024, "Read " + TestStreamingQuery.PRODUCED.get() + " elements");
+
+        subscriber.subscription.join().request(Long.MAX_VALUE);
+        subscriber.done.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(100_000, subscriber.received.get());
+    }
+
+    @Test
+    public void testReceiverErrorIsPropagated() {
+        Iterator<Integer> iterator = stream(1000, 300).toIterator();
+        int received = 0;
+        try {
+            while (iterator.hasNext()) {
+                iterator.next();
+                received++;
+            }
+            Assertions.fail("The stream did not fail");
+        } catch (CompletionException e) {
+            Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        // The chunks before the failing one are delivered
+        Assertions.assertEquals(256, received);
+    }
+
+    @Test
+    public void testCancelStopsTheReceiver() throws Exception {
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        stream(100_000, -1).subscribe(subscriber);
+        subscriber.subscription.join().request(1);
+        await(() -> subscriber.received.get() == 1);
+        subscriber.subscription.join().cancel();
+        await(() -> ((MessagingServiceImpl) second.messagingService()).getResponseStreams().getOutgoingStreamCount() == 0);
+        Assertions.assertEquals(0, ((MessagingServiceImpl) first.messagingService()).getResponseStreams().getIncomingStreamCount());
+    }
+
+    private static ResponseStream<Integer> stream(int amount, int failAfter) {
+        return first.messagingService().sendStreamingQuery(new TestStreamingQuery(UUID.randomUUID(), amount, failAfter), second.messagingService().getSessionUUID());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 60 && !condition.getAsBoolean(); i++)
+            Thread.sleep(50);
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    private static NetworkParticipant createParticipant(String name) {
+        NetworkParticipant networkParticipant = VNetwork
+                .getConstructionService()
+                .createNetworkParticipant()
+                .withName(name)
+                .withMessagingService(messagingServiceBuilder -> messagingServiceBuilder
+                        .withTransmitter(Transmitter.createRedisTransmitter(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                        .withResponseStreams(SETTINGS))
+                .withPipeline(pipelineBuilder -> pipelineBuilder
+                        .withNetworkDataLockingService(NetworkDataLockingService.createRedis(false, new String[]{"redis://127.0.0.1:6379"}, ""))
+                ).build();
+        networkParticipant.messagingService().getMessageFactory().registerInstructionType(100, TestStreamingQuery.class, () -> new TestStreamingQuery(UUID.randomUUID(), 0, -1), TestStreamingQuery.CODEC);
+        return networkParticipant;
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<Integer> {
+        private final CompletableFuture<Flow.Subscription> subscription = new CompletableFuture<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final AtomicInteger received = new AtomicInteger();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription.complete(subscription);
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            received.incrementAndGet();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import de.verdox.vpipeline.api.NetworkLogger;
+import de.verdox.vpipeline.api.messaging.MessageFactory;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.InstructionFrameCodec;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.WireFormat;
+import de.verdox.vpipeline.impl.handoff.HandoffChunkUpdate;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Compares frame size, throughput and allocations of both wire formats. Excluded from the unit tests, run it with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+public class WireFormatBenchmark {
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    public void compareFormats() {
+        MessageFactory messageFactory = new MessagingServiceImpl("wire", Transmitter.createDummyTransmitter()).getMessageFactory();
+        InstructionFrameCodec json = new InstructionFrameCodec(messageFactory, WireFormat.JSON);
+        InstructionFrameCodec binary = new InstructionFrameCodec(messageFactory, WireFormat.BINARY);
+        for (int size : new int[]{64, 4096, 65536}) {
+            byte[] chunk = new byte[size];
+            new Random(size).nextBytes(chunk);
+            HandoffChunkUpdate instruction = new HandoffChunkUpdate(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), chunk);
+            instruction.setupInstruction(messageFactory.findInstructionID(instruction), UUID.randomUUID(), "sender");
+
+            NetworkLogger.info("[WireFormat] " + size + " byte chunk | JSON   | " + json.encode(instruction).length + " bytes/frame | " + measure(json, instruction));
+            NetworkLogger.info("[WireFormat] " + size + " byte chunk | BINARY | " + binary.encode(instruction).length + " bytes/frame | " + measure(binary, instruction));
+        }
+    }
+
+    private static Measurement measure(InstructionFrameCodec codec, Instruction<?> instruction) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            codec.decode(codec.encode(instruction));
+
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            codec.decode(codec.encode(instruction));
+        long nanos = System.nanoTime() - start;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new Measurement(ITERATIONS * 1_000_000_000L / Math.max(1, nanos), allocated / ITERATIONS);
+    }
+
+    private record Measurement(long roundTripsPerSecond, long allocatedBytesPerRoundTrip) {
+        @Override
+        public String toString() {
+            return roundTripsPerSecond + " round trips/s | " + allocatedBytesPerRoundTrip + " bytes allocated/round trip";
+        }
+    }
+}
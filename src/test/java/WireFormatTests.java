@@ -0,0 +1,98 @@
+import de.verdox.vpipeline.api.messaging.MessageFactory;
+import de.verdox.vpipeline.api.messaging.Transmitter;
+import de.verdox.vpipeline.api.messaging.instruction.AbstractInstruction;
+import de.verdox.vpipeline.api.messaging.instruction.Instruction;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.InstructionFrameCodec;
+import de.verdox.vpipeline.api.messaging.parts.transmitter.WireFormat;
+import de.verdox.vpipeline.impl.handoff.HandoffChunkUpdate;
+import de.verdox.vpipeline.impl.messaging.MessagingServiceImpl;
+import de.verdox.vpipeline.impl.pipeline.core.PeerFetchQuery;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+public class WireFormatTests {
+    private static MessageFactory messageFactory;
+    private static InstructionFrameCodec json;
+    private static InstructionFrameCodec binary;
+
+    @BeforeAll
+    public static void setup() {
+        messageFactory = new MessagingServiceImpl("wire", Transmitter.createDummyTransmitter()).getMessageFactory();
+        json = new InstructionFrameCodec(messageFactory, WireFormat.JSON);
+        binary = new InstructionFrameCodec(messageFactory, WireFormat.BINARY);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        HandoffChunkUpdate instruction = createChunk(512);
+        AbstractInstruction<?> decoded = (AbstractInstruction<?>) binary.decode(binary.encode(instruction));
+
+        Assertions.assertNotNull(decoded);
+        Assertions.assertEquals(HandoffChunkUpdate.class, decoded.getClass());
+        Assertions.assertEquals(instruction.getUuid(), decoded.getUuid());
+        Assertions.assertEquals(instruction.getSenderUUID(), decoded.getSenderUUID());
+        Assertions.assertEquals(instruction.getSenderIdentifier(), decoded.getSenderIdentifier());
+        Assertions.assertEquals(instruction.getInstructionID(), decoded.getInstructionID());
+        Assertions.assertEquals(instruction.getCreationTimeStamp(), decoded.getCreationTimeStamp());
+        Assertions.assertArrayEquals(binary.encode(instruction), binary.encode(decoded));
+    }
+
+    @Test
+    public void testResponseRoundTrip() {
+        PeerFetchQuery query = setup(new PeerFetchQuery(UUID.randomUUID(), "model.data.TestData", UUID.randomUUID()));
+        query.setResponseToSend("{\"testInt\":5}");
+        AbstractInstruction<?> decoded = (AbstractInstruction<?>) binary.decode(binary.encode(query));
+
+        Assertions.assertNotNull(decoded);
+        Assertions.assertTrue(decoded.isResponse());
+        Assertions.assertEquals(query.getUuid(), decoded.getUuid());
+        Assertions.assertEquals("{\"testInt\":5}", decoded.getResponseToSend());
+    }
+
+    @Test
+    public void testJsonFramesAreReadByBinaryNodes() {
+        HandoffChunkUpdate instruction = createChunk(16);
+        Instruction<?> decoded = binary.decode(json.encode(instruction));
+        Assertions.assertNotNull(decoded);
+        Assertions.assertEquals(instruction.getUuid(), ((AbstractInstruction<?>) decoded).getUuid());
+        Assertions.assertArrayEquals(binary.encode(instruction), binary.encode(decoded));
+    }
+
+    @Test
+    public void testBatchFrameRoundTrip() {
+        HandoffChunkUpdate binaryInstruction = createChunk(32);
+        HandoffChunkUpdate jsonInstruction = createChunk(64);
+        byte[] batch = binary.encodeBatch(List.of(binary.encode(binaryInstruction), json.encode(jsonInstruction)));
+
+        List<Instruction<?>> decoded = binary.decodeAll(batch);
+        Assertions.assertEquals(2, decoded.size());
+        Assertions.assertEquals(binaryInstruction.getUuid(), ((AbstractInstruction<?>) decoded.get(0)).getUuid());
+        Assertions.assertEquals(jsonInstruction.getUuid(), ((AbstractInstruction<?>) decoded.get(1)).getUuid());
+        Assertions.assertEquals(1, binary.decodeAll(binary.encode(binaryInstruction)).size());
+    }
+
+    /**
+     * Throughput and allocations are compared by {@link WireFormatBenchmark}, which is not part of the unit tests
+     */
+    @Test
+    public void testBinaryFramesAreSmaller() {
+        HandoffChunkUpdate instruction = createChunk(4096);
+        Assertions.assertTrue(binary.encode(instruction).length < json.encode(instruction).length);
+    }
+
+    private static HandoffChunkUpdate createChunk(int size) {
+        byte[] chunk = new byte[size];
+        new Random(size).nextBytes(chunk);
+        return setup(new HandoffChunkUpdate(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), chunk));
+    }
+
+    private static <T extends AbstractInstruction<?>> T setup(T instruction) {
+        instruction.setupInstruction(messageFactory.findInstructionID(instruction), UUID.randomUUID(), "sender");
+        return instruction;
+    }
+}
@@ -0,0 +1,71 @@
+package model.messages;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import de.verdox.vpipeline.api.messaging.MessagingService;
+import de.verdox.vpipeline.api.messaging.instruction.InstructionCodec;
+import de.verdox.vpipeline.api.messaging.instruction.types.StreamingQuery;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the numbers from 0 to amount. Fails after failAfter elements if it is not negative.
+ */
+public class TestStreamingQuery extends StreamingQuery<Integer> {
+    public static final InstructionCodec<TestStreamingQuery, Boolean> CODEC = InstructionCodec.of(
+            (instruction, out) -> {
+                out.writeInt(instruction.amount);
+                out.writeInt(instruction.failAfter);
+            },
+            in -> new TestStreamingQuery(UUID.randomUUID(), in.readInt(), in.readInt()),
+            InstructionCodec.ResponseCodec.NONE
+    );
+    /**
+     * The amount of elements the receivers read from their iterators
+     */
+    public static final AtomicInteger PRODUCED = new AtomicInteger();
+    private final int amount;
+    private final int failAfter;
+
+    public TestStreamingQuery(@NotNull UUID uuid, int amount, int failAfter) {
+        super(uuid);
+        this.amount = amount;
+        this.failAfter = failAfter;
+    }
+
+    @Override
+    public Iterator<Integer> openStream(MessagingService messagingService) {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (failAfter >= 0 && next == failAfter)
+                    throw new IllegalStateException("Failing after " + failAfter + " elements");
+                return next < amount;
+            }
+
+            @Override
+            public Integer next() {
+                if (next >= amount)
+                    throw new NoSuchElementException();
+                PRODUCED.incrementAndGet();
+                return next++;
+            }
+        };
+    }
+
+    @Override
+    public void writeElement(@NotNull Integer element, @NotNull ByteArrayDataOutput out) {
+        out.writeInt(element);
+    }
+
+    @Override
+    public @NotNull Integer readElement(@NotNull ByteArrayDataInput in) {
+        return in.readInt();
+    }
+}
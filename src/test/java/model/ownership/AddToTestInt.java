@@ -0,0 +1,33 @@
+package model.ownership;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import de.verdox.vpipeline.api.ownership.ObjectMutation;
+import model.data.TestData;
+
+public class AddToTestInt implements ObjectMutation<TestData> {
+    public int amount;
+
+    public AddToTestInt(int amount) {
+        this.amount = amount;
+    }
+
+    public AddToTestInt() {
+
+    }
+
+    @Override
+    public void accept(TestData testData) {
+        testData.testInt += amount;
+    }
+
+    @Override
+    public void writeInputParameter(ByteArrayDataOutput out) {
+        out.writeInt(amount);
+    }
+
+    @Override
+    public void readInputParameter(ByteArrayDataInput in) {
+        this.amount = in.readInt();
+    }
+}